@@ -18,12 +18,23 @@ import android.content.Context;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.widget.AdapterView;
 import android.widget.ListView;
 import android.widget.TextView;
 
 import com.hilfritz.blescanner.adapters.ServiceListAdapter;
+import com.hilfritz.blescanner.decoders.CharacteristicDecoders;
+import com.hilfritz.blescanner.decoders.DecodedValue;
+import com.hilfritz.blescanner.manager.BleManager;
+import com.hilfritz.blescanner.manager.GattOperationQueue;
+import com.hilfritz.blescanner.manager.GattServiceCache;
+import com.hilfritz.blescanner.manager.LinkNegotiator;
+import com.hilfritz.blescanner.manager.LinkProfile;
+import com.hilfritz.blescanner.manager.NotificationRingBuffer;
 import com.hilfritz.blescanner.ui.animate.TypeWriterStatus;
 import com.hilfritz.blescanner.ui.dialog.DialogManager;
 import com.hilfritz.blescanner.utils.GattUtils;
@@ -41,6 +52,8 @@ public class DeviceDetailsActivity extends AppCompatActivity {
     // Standard CCCD (Client Characteristic Configuration Descriptor) UUID for NOTIFY/INDICATE.
     private static final UUID CLIENT_CHARACTERISTIC_CONFIG_UUID =
             UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+    // How often buffered notifications are drained into the UI
+    private static final long NOTIFICATION_DRAIN_INTERVAL_MS = 100;
 
     private TextView txtTitle;
     private TextView txtStatus;
@@ -49,8 +62,40 @@ public class DeviceDetailsActivity extends AppCompatActivity {
     private TypeWriterStatus typewriterStatus;
     private BluetoothAdapter bluetoothAdapter;
     private BluetoothGatt bluetoothGatt;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // One GATT op at a time; reads/descriptor writes issued while busy are queued, not dropped.
+    // Runs on BleManager's worker, like the GATT callbacks below.
+    private GattOperationQueue operationQueue;
+    private BleManager bleManager;
+
+    // BleManager's ring, so a capture replay lands here too. Notifications are copied in on the
+    // BLE worker (or the replay thread) and drained here on the main thread.
+    private NotificationRingBuffer notificationBuffer;
+    private final byte[] lastNotification = new byte[NotificationRingBuffer.DEFAULT_MAX_PAYLOAD];
+    private int lastNotificationLength;
+    private long lastNotificationMsb;
+    private long lastNotificationLsb;
+    private long drainedSinceTick;
+    private long lastTickMs;
+    private boolean draining;
+    private final NotificationRingBuffer.Consumer lastValueConsumer =
+            (msb, lsb, value, length, timestampNanos) -> {
+                // Only the latest value is displayed; keep it, skip the rest
+                System.arraycopy(value, 0, lastNotification, 0, length);
+                lastNotificationLength = length;
+                lastNotificationMsb = msb;
+                lastNotificationLsb = lsb;
+            };
+    private final Runnable drainRunnable = this::drainNotifications;
+    private final StringBuilder notificationText = new StringBuilder(1024);
+    // Only touched from drainNotifications() on the main thread
+    private final CharacteristicDecoders decoders = new CharacteristicDecoders();
 
     private ServiceListAdapter listAdapter;
+    private GattServiceCache serviceCache;
+    private String deviceAddress;
+    // True while the list shows the cached table; its characteristics are not usable yet
+    private boolean showingCachedServices;
 
     // Display text for each row
     private final List<String> displayItems = new ArrayList<>();
@@ -64,6 +109,10 @@ public class DeviceDetailsActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_device_details);
 
+        bleManager = BleManager.getInstance(this);
+        operationQueue = new GattOperationQueue(bleManager.getBleHandler());
+        notificationBuffer = bleManager.getNotificationBuffer();
+
         dialogManager = new DialogManager(DeviceDetailsActivity.this);
 
         txtTitle = findViewById(R.id.txtDeviceTitle);
@@ -104,6 +153,11 @@ public class DeviceDetailsActivity extends AppCompatActivity {
                 return;
             }
 
+            if (showingCachedServices) {
+                dialogManager.showInfoDialog("INFO", "Still discovering services, try again in a moment.");
+                return;
+            }
+
             int props = ch.getProperties();
 
             if ((props & BluetoothGattCharacteristic.PROPERTY_NOTIFY) != 0) {
@@ -113,10 +167,11 @@ public class DeviceDetailsActivity extends AppCompatActivity {
 
             if ((props & BluetoothGattCharacteristic.PROPERTY_READ) != 0) {
                 typewriterStatus.start("Reading characteristic...");
-                boolean started = bluetoothGatt.readCharacteristic(ch);
-                if (!started) {
-                    dialogManager.showInfoDialog("ERROR", "readCharacteristic() failed to start.");
-                }
+                operationQueue.read(ch).thenAccept(result -> {
+                    // Formatted on the worker; the main thread only shows it
+                    String text = result.isSuccess() ? formatReadResult(ch, result.value) : null;
+                    runOnUiThread(() -> showReadResult(result, text));
+                });
             } else {
                 dialogManager.showInfoDialog(
                         "ERROR",
@@ -125,6 +180,13 @@ public class DeviceDetailsActivity extends AppCompatActivity {
             }
         });
 
+        if (bleManager.isReplaying()) {
+            // The replay is the only producer the ring may have: show it instead of connecting
+            txtStatus.setText("Replaying capture");
+            startDrainingNotifications();
+            return;
+        }
+
         BluetoothManager bluetoothManager =
                 (BluetoothManager) getSystemService(Context.BLUETOOTH_SERVICE);
         bluetoothAdapter = bluetoothManager.getAdapter();
@@ -148,7 +210,69 @@ public class DeviceDetailsActivity extends AppCompatActivity {
             return;
         }
 
-        bluetoothGatt = device.connectGatt(this, false, gattCallback);
+        deviceAddress = address;
+        serviceCache = bleManager.getServiceCache();
+        // Known device: show last session's table while discovery runs. The file is read on
+        // the worker, ahead of the GATT callbacks queued there.
+        bleManager.getBleHandler().post(() -> {
+            List<BluetoothGattService> cached = serviceCache.getRenderOnlyServices(address);
+            if (cached != null) showServices(cached, true);
+        });
+
+        bluetoothGatt = BleManager.connectGatt(this, device, gattCallback, bleManager.getBleHandler());
+        if (bluetoothGatt != null) {
+            operationQueue.attach(bluetoothGatt);
+        }
+    }
+
+    private void showServices(List<BluetoothGattService> services, boolean fromCache) {
+        List<String> tempDisplay = new ArrayList<>();
+        List<BluetoothGattCharacteristic> tempChars = new ArrayList<>();
+
+        for (BluetoothGattService service : services) {
+            UUID sUuid = service.getUuid();
+            String sShort = GattUtils.shortUuid(sUuid);
+            String sName = GattUtils.gattName(sUuid, true);
+
+            String serviceLine = "Service " + sShort +
+                    (sName != null ? " – " + sName : "");
+            tempDisplay.add(serviceLine);
+            tempChars.add(null); // header row
+
+            for (BluetoothGattCharacteristic characteristic : service.getCharacteristics()) {
+                UUID cUuid = characteristic.getUuid();
+                String cShort = GattUtils.shortUuid(cUuid);
+                String cName = GattUtils.gattName(cUuid, false);
+
+                int props = characteristic.getProperties();
+                String propsText = GattUtils.buildPropsText(props);
+
+                StringBuilder line = new StringBuilder();
+                line.append("  Char ").append(cShort);
+                if (cName != null) {
+                    line.append(" – ").append(cName);
+                }
+                if (!propsText.isEmpty()) {
+                    line.append("\n    Props: ").append(propsText);
+                }
+
+                tempDisplay.add(line.toString());
+                tempChars.add(characteristic);
+            }
+        }
+
+        runOnUiThread(() -> {
+            showingCachedServices = fromCache;
+            if (!fromCache) {
+                typewriterStatus.setAutoClear(false);
+                typewriterStatus.start("Services discovered.\nTap a NOTIFY char for live updates, or READ for one-time value.");
+            }
+            displayItems.clear();
+            characteristicItems.clear();
+            displayItems.addAll(tempDisplay);
+            characteristicItems.addAll(tempChars);
+            listAdapter.setItems(displayItems);
+        });
     }
 
     private boolean hasConnectPermission() {
@@ -175,6 +299,7 @@ public class DeviceDetailsActivity extends AppCompatActivity {
                 gatt.discoverServices();
             } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
                 Log.d(TAG, "Disconnected from GATT server");
+                operationQueue.detach();
                 runOnUiThread(() -> typewriterStatus.start("Disconnected"));
             }
         }
@@ -191,50 +316,24 @@ public class DeviceDetailsActivity extends AppCompatActivity {
                 return;
             }
 
-            List<String> tempDisplay = new ArrayList<>();
-            List<BluetoothGattCharacteristic> tempChars = new ArrayList<>();
-
-            for (BluetoothGattService service : gatt.getServices()) {
-                UUID sUuid = service.getUuid();
-                String sShort = GattUtils.shortUuid(sUuid);
-                String sName = GattUtils.gattName(sUuid, true);
-
-                String serviceLine = "Service " + sShort +
-                        (sName != null ? " – " + sName : "");
-                tempDisplay.add(serviceLine);
-                tempChars.add(null); // header row
-
-                for (BluetoothGattCharacteristic characteristic : service.getCharacteristics()) {
-                    UUID cUuid = characteristic.getUuid();
-                    String cShort = GattUtils.shortUuid(cUuid);
-                    String cName = GattUtils.gattName(cUuid, false);
-
-                    int props = characteristic.getProperties();
-                    String propsText = GattUtils.buildPropsText(props);
-
-                    StringBuilder line = new StringBuilder();
-                    line.append("  Char ").append(cShort);
-                    if (cName != null) {
-                        line.append(" – ").append(cName);
-                    }
-                    if (!propsText.isEmpty()) {
-                        line.append("\n    Props: ").append(propsText);
-                    }
-
-                    tempDisplay.add(line.toString());
-                    tempChars.add(characteristic);
-                }
+            List<BluetoothGattService> services = new ArrayList<>(gatt.getServices());
+            showServices(services, false);
+            LinkProfile linkProfile = bleManager.getLinkProfile();
+            if (!linkProfile.isEmpty()) {
+                LinkNegotiator.negotiate(gatt, operationQueue, linkProfile, bluetoothAdapter)
+                        .thenAccept(link -> runOnUiThread(() -> txtValue.setText(
+                                "MTU " + link.mtu + " (" + link.getMaxPayload() + " B payload), "
+                                        + (link.is2MPhy() ? "2M" : "1M") + " PHY")));
             }
+            serviceCache.verify(deviceAddress, services, operationQueue);
+        }
 
-            runOnUiThread(() -> {
-                typewriterStatus.setAutoClear(false);
-                typewriterStatus.start("Services discovered.\nTap a NOTIFY char for live updates, or READ for one-time value.");
-                displayItems.clear();
-                characteristicItems.clear();
-                displayItems.addAll(tempDisplay);
-                characteristicItems.addAll(tempChars);
-                listAdapter.setItems(displayItems);
-            });
+        @Override
+        public void onServiceChanged(@NonNull BluetoothGatt gatt) {
+            super.onServiceChanged(gatt);
+            Log.d(TAG, "Service Changed; rediscovering");
+            serviceCache.invalidate(deviceAddress);
+            gatt.discoverServices();
         }
 
         @Override
@@ -242,20 +341,12 @@ public class DeviceDetailsActivity extends AppCompatActivity {
                                             @NonNull BluetoothGattCharacteristic characteristic) {
             super.onCharacteristicChanged(gatt, characteristic);
 
+            // BLE worker: copy into the ring and return, see drainNotifications(). Published on
+            // the bus as well, like BleManager's own connection and a capture replay.
             byte[] value = characteristic.getValue();
-            final String hex = GattUtils.bytesToHex(value);
-            final String ascii = GattUtils.bytesToAsciiSafe(value);
-
-            Log.d(TAG, "onCharacteristicChanged, UUID=" + characteristic.getUuid()
-                    + ", value=" + hex);
-
-            runOnUiThread(() -> {
-                typewriterStatus.start("Notification received (live updates)");
-                String str = "Last notification:\nUUID: " + characteristic.getUuid()
-                        + "\nHex: " + hex
-                        + "\nASCII-ish: " + ascii;
-                dialogManager.showInfoDialog("Notification Received!", str);
-            });
+            long now = SystemClock.elapsedRealtimeNanos();
+            notificationBuffer.offer(characteristic.getUuid(), value, now);
+            bleManager.getEventBus().publishNotification(characteristic.getUuid(), value, now);
         }
 
         @Override
@@ -263,31 +354,59 @@ public class DeviceDetailsActivity extends AppCompatActivity {
                                          @NonNull BluetoothGattCharacteristic characteristic,
                                          int status) {
             super.onCharacteristicRead(gatt, characteristic, status);
+            // UI is updated from the queued read's result, see showReadResult()
+            operationQueue.onCharacteristicRead(characteristic, characteristic.getValue(), status);
+        }
 
-            if (status != BluetoothGatt.GATT_SUCCESS) {
-                Log.w(TAG, "onCharacteristicRead failed: " + status);
-                runOnUiThread(() ->
-                        dialogManager.showInfoDialog("ERROR",
-                                "Characteristic read failed (status " + status + ")."));
-                return;
-            }
+        @Override
+        public void onDescriptorWrite(@NonNull BluetoothGatt gatt,
+                                      @NonNull BluetoothGattDescriptor descriptor,
+                                      int status) {
+            super.onDescriptorWrite(gatt, descriptor, status);
+            operationQueue.onDescriptorWrite(descriptor, status);
+        }
 
-            byte[] value = characteristic.getValue();
-            final String hex = GattUtils.bytesToHex(value);
-            final String ascii = GattUtils.bytesToAsciiSafe(value);
-
-            Log.d(TAG, "onCharacteristicRead, UUID=" + characteristic.getUuid()
-                    + ", value=" + hex);
-
-            runOnUiThread(() -> {
-                String str = "Last value:\nUUID: " + characteristic.getUuid()
-                        + "\nHex: " + hex
-                        + "\nASCII-ish: " + ascii;
-                dialogManager.showInfoDialogXml("Characteristic Read Success", str);
-            });
+        @Override
+        public void onMtuChanged(@NonNull BluetoothGatt gatt, int mtu, int status) {
+            super.onMtuChanged(gatt, mtu, status);
+            operationQueue.onMtuChanged(mtu, status);
+        }
+
+        @Override
+        public void onPhyUpdate(@NonNull BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+            super.onPhyUpdate(gatt, txPhy, rxPhy, status);
+            operationQueue.onPhyUpdate(txPhy, rxPhy, status);
+        }
+
+        @Override
+        public void onPhyRead(@NonNull BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+            super.onPhyRead(gatt, txPhy, rxPhy, status);
+            operationQueue.onPhyRead(txPhy, rxPhy, status);
         }
     };
 
+    private static String formatReadResult(BluetoothGattCharacteristic characteristic, byte[] value) {
+        final String hex = GattUtils.bytesToHex(value);
+        final String ascii = GattUtils.bytesToAsciiSafe(value);
+
+        Log.d(TAG, "onCharacteristicRead, UUID=" + characteristic.getUuid()
+                + ", value=" + hex);
+
+        return "Last value:\nUUID: " + characteristic.getUuid()
+                + "\nHex: " + hex
+                + "\nASCII-ish: " + ascii;
+    }
+
+    private void showReadResult(GattOperationQueue.Result result, String text) {
+        if (!result.isSuccess()) {
+            Log.w(TAG, "onCharacteristicRead failed: " + result.status);
+            dialogManager.showInfoDialog("ERROR",
+                    "Characteristic read failed (status " + result.status + ").");
+            return;
+        }
+        dialogManager.showInfoDialogXml("Characteristic Read Success", text);
+    }
+
     private void enableNotifications(BluetoothGattCharacteristic characteristic) {
         if (bluetoothGatt == null) return;
 
@@ -303,21 +422,67 @@ public class DeviceDetailsActivity extends AppCompatActivity {
             dialogManager.showInfoDialog("INFO",
                     "CCCD descriptor not found; some devices still send notifications without it.");
             typewriterStatus.start("Notifications enabled (no CCCD write)");
+            startDrainingNotifications();
             return;
         }
 
-        descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
-        boolean wrote = bluetoothGatt.writeDescriptor(descriptor);
-        if (!wrote) {
-            dialogManager.showInfoDialog("ERROR", "writeDescriptor() failed to start.");
-        } else {
-            typewriterStatus.start("Enabling notifications...");
+        typewriterStatus.start("Enabling notifications...");
+        operationQueue.writeDescriptor(descriptor, BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE)
+                .thenAccept(result -> runOnUiThread(() -> {
+                    if (result.isSuccess()) {
+                        typewriterStatus.start("Notifications enabled (live updates)");
+                        startDrainingNotifications();
+                    } else {
+                        dialogManager.showInfoDialog("ERROR",
+                                "CCCD write failed (status " + result.status + ").");
+                    }
+                }));
+    }
+
+    private void startDrainingNotifications() {
+        if (draining) return;
+        draining = true;
+        lastTickMs = SystemClock.elapsedRealtime();
+        mainHandler.postDelayed(drainRunnable, NOTIFICATION_DRAIN_INTERVAL_MS);
+    }
+
+    private void drainNotifications() {
+        if (!draining) return;
+        int n = notificationBuffer.drain(lastValueConsumer);
+        drainedSinceTick += n;
+
+        long now = SystemClock.elapsedRealtime();
+        if (n > 0) {
+            // One format per tick, however many notifications arrived, into a reused builder
+            UUID uuid = new UUID(lastNotificationMsb, lastNotificationLsb);
+            long rate = now > lastTickMs ? drainedSinceTick * 1000 / (now - lastTickMs) : 0;
+            StringBuilder sb = notificationText;
+            sb.setLength(0);
+            sb.append("Last notification (").append(GattUtils.shortUuid(uuid)).append("):\nHex: ");
+            GattUtils.appendHex(lastNotification, 0, lastNotificationLength, sb);
+            sb.append("\nASCII-ish: ");
+            GattUtils.appendAsciiSafe(lastNotification, 0, lastNotificationLength, sb);
+            DecodedValue decoded = decoders.decode(lastNotificationMsb, lastNotificationLsb,
+                    lastNotification, 0, lastNotificationLength);
+            if (decoded != null) decoded.appendTo(sb.append("\nDecoded: "));
+            sb.append('\n').append(notificationBuffer.getConsumedCount()).append(" received, ~")
+                    .append(rate).append("/s, ")
+                    .append(notificationBuffer.getDroppedCount()).append(" dropped");
+            txtValue.setText(sb);
+        }
+        if (now - lastTickMs >= 1000) {
+            drainedSinceTick = 0;
+            lastTickMs = now;
         }
+        mainHandler.postDelayed(drainRunnable, NOTIFICATION_DRAIN_INTERVAL_MS);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        draining = false;
+        mainHandler.removeCallbacks(drainRunnable);
+        operationQueue.detach();
         if (bluetoothGatt != null) {
             bluetoothGatt.close();
             bluetoothGatt = null;
@@ -15,11 +15,13 @@ import android.bluetooth.le.ScanCallback;
 import android.bluetooth.le.ScanResult;
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -49,16 +51,26 @@ import android.widget.Button;
 import android.widget.Toast;
 
 import com.hilfritz.blescanner.manager.BleManager;
+import com.hilfritz.blescanner.manager.DeviceRegistry;
 import com.hilfritz.blescanner.manager.SafeDelay;
+import com.hilfritz.blescanner.manager.ScanConfig;
+import com.hilfritz.blescanner.manager.ScanDevice;
 import com.hilfritz.blescanner.ui.animate.TypeWriterStatus;
+import com.hilfritz.blescanner.utils.LongIntHashMap;
+import com.hilfritz.blescanner.utils.MacAddresses;
+import com.hilfritz.blescanner.utils.MainThreadMonitor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 
 public class MainActivity extends AppCompatActivity {
     public static final String TAG = "MainActivity";
     private static final int REQUEST_ENABLE_BT = 100;
     private static final int REQUEST_PERMISSIONS = 101;
+    // One coalesced list update per window instead of one UI hop per advertisement
+    private static final long SCAN_BATCH_WINDOW_MS = 500;
 
     TypeWriterStatus typeWriterStatus;
     private SafeDelay safeDelay;
@@ -128,40 +140,59 @@ public class MainActivity extends AppCompatActivity {
 
             txtScanStatus.setVisibility(View.VISIBLE);
             typeWriterStatus.start("Scanning...");
-            safeDelay.post(1500, () -> bleManager.startScan());
+            safeDelay.post(1500, () -> bleManager.startScan(ScanConfig.batched(SCAN_BATCH_WINDOW_MS)));
             //bleManager.startScan();
         });
 
-        // Attach listener for scan results
+        // Attach listener for scan results; BleManager calls it on the main thread
         bleManager.setScanListener(new BleManager.ScanListener() {
             @Override
             public void onDeviceFound(String name, String address, int rssi) {
-                runOnUiThread(() -> {
-                    deviceAdapter.addOrUpdateDevice(name, address, rssi);
-                    txtScanStatus.setVisibility(View.INVISIBLE);
-                });
+                txtScanStatus.setVisibility(View.INVISIBLE);
             }
 
             @Override
-            public void onScanStarted() {
-                runOnUiThread(() -> {
+            public void onDevicesFound(List<ScanDevice> devices) {
+                txtScanStatus.setVisibility(View.INVISIBLE);
+            }
 
-                    //btnScan.setText("Scanning...");
-                    deviceAdapter.clearDevices();
-                });
+            // Render from the registry snapshots so the list shows smoothed RSSI, not single raw samples
+            @Override
+            public void onDeviceSnapshots(List<DeviceRegistry.Snapshot> snapshots) {
+                showSnapshots(snapshots);
+            }
+
+            @Override
+            public void onScanStarted() {
+                //btnScan.setText("Scanning...");
+                deviceAdapter.clearDevices();
+                // Devices from earlier scans are still in the registry unless they went stale
+                showSnapshots(bleManager.getDeviceRegistry().snapshotAll());
             }
 
             @Override
             public void onScanStopped() {
-                runOnUiThread(() -> btnScan.setText("Start Scan"));
+                btnScan.setText("Start Scan");
             }
         });
 
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            // Logs main-thread busy ms/s once a second
+            MainThreadMonitor.start();
+        }
+
         if (!hasAllPermissions()) {
             requestPermissions();
         }
     }
 
+    private void showSnapshots(List<DeviceRegistry.Snapshot> snapshots) {
+        for (DeviceRegistry.Snapshot snapshot : snapshots) {
+            deviceAdapter.addOrUpdateDevice(snapshot.name, snapshot.address,
+                    snapshot.getSmoothedRssiRounded());
+        }
+    }
+
     @Override
     protected void onPause() {
         super.onPause();
@@ -228,35 +259,106 @@ public class MainActivity extends AppCompatActivity {
     }
 
     // DeviceAdapter and DeviceItem same as before
-    public static class DeviceAdapter extends RecyclerView.Adapter<DeviceAdapter.DeviceViewHolder> {
+    public static class DeviceAdapter extends RecyclerView.Adapter<DeviceAdapter.DeviceViewHolder>
+            implements Choreographer.FrameCallback {
         public interface OnDeviceClickListener {
             void onDeviceClick(DeviceItem item);
         }
 
+        // Partial-bind payloads: only the changed TextView is touched
+        static final Object PAYLOAD_NAME = new Object();
+        static final Object PAYLOAD_RSSI = new Object();
+
+        private static final int DIRTY_NAME = 1;
+        private static final int DIRTY_RSSI = 1 << 1;
+
+        // "RSSI: -NN dBm" for every value the radio can report, built once
+        private static final int RSSI_MIN = -127;
+        private static final int RSSI_MAX = 20;
+        private static final String[] RSSI_LABELS = new String[RSSI_MAX - RSSI_MIN + 1];
+
         private final List<DeviceItem> devices = new ArrayList<>();
+        // Packed MAC -> row in devices, so updates don't walk the list
+        private final LongIntHashMap rowByMac = new LongIntHashMap(256);
         private final OnDeviceClickListener listener;
 
+        // Frame-paced mode: rows changed since the last vsync, flushed once per frame
+        private boolean framePaced = true;
+        private boolean frameScheduled = false;
+        private int[] dirtyRows = new int[64];
+        private int dirtyCount = 0;
+
         public DeviceAdapter(OnDeviceClickListener listener) {
             this.listener = listener;
         }
 
+        /**
+         * When enabled (the default) updates to existing rows are collected and rebound at most
+         * once per frame, with payloads so only the changed fields are rebound. When disabled,
+         * every update is notified immediately.
+         */
+        public void setFramePacedUpdates(boolean enabled) {
+            if (!enabled) flushDirtyRows();
+            framePaced = enabled;
+        }
+
         @NonNull
         @Override
         public DeviceViewHolder onCreateViewHolder(@NonNull android.view.ViewGroup parent, int viewType) {
             android.view.View view = android.view.LayoutInflater.from(parent.getContext())
                     .inflate(R.layout.item_device, parent, false);
-            return new DeviceViewHolder(view);
+            DeviceViewHolder holder = new DeviceViewHolder(view);
+            // One listener per holder, resolved to the row at click time
+            view.setOnClickListener(v -> {
+                int position = holder.getBindingAdapterPosition();
+                if (listener != null && position != RecyclerView.NO_POSITION) {
+                    listener.onDeviceClick(devices.get(position));
+                }
+            });
+            return holder;
         }
 
         @Override
         public void onBindViewHolder(@NonNull DeviceViewHolder holder, int position) {
             DeviceItem item = devices.get(position);
-            holder.txtName.setText(item.name != null ? item.name : "Unknown Device");
+            bindName(holder, item);
             holder.txtAddress.setText(item.address);
-            holder.txtRssi.setText("RSSI: " + item.rssi + " dBm");
-            holder.itemView.setOnClickListener(v -> {
-                if (listener != null) listener.onDeviceClick(item);
-            });
+            bindRssi(holder, item);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull DeviceViewHolder holder, int position,
+                                     @NonNull List<Object> payloads) {
+            if (payloads.isEmpty()) {
+                onBindViewHolder(holder, position);
+                return;
+            }
+            DeviceItem item = devices.get(position);
+            for (Object payload : payloads) {
+                if (payload == PAYLOAD_RSSI) {
+                    bindRssi(holder, item);
+                } else if (payload == PAYLOAD_NAME) {
+                    bindName(holder, item);
+                }
+            }
+        }
+
+        private static void bindName(DeviceViewHolder holder, DeviceItem item) {
+            holder.txtName.setText(item.name != null ? item.name : "Unknown Device");
+        }
+
+        private static void bindRssi(DeviceViewHolder holder, DeviceItem item) {
+            holder.txtRssi.setText(rssiLabel(item.rssi));
+        }
+
+        static String rssiLabel(int rssi) {
+            if (rssi < RSSI_MIN || rssi > RSSI_MAX) return "RSSI: " + rssi + " dBm";
+            String label = RSSI_LABELS[rssi - RSSI_MIN];
+            if (label == null) {
+                label = "RSSI: " + rssi + " dBm";
+                RSSI_LABELS[rssi - RSSI_MIN] = label;
+            }
+            return label;
         }
 
         @Override
@@ -265,24 +367,100 @@ public class MainActivity extends AppCompatActivity {
         }
 
         public void clearDevices() {
+            cancelFrame();
+            dirtyCount = 0;
             devices.clear();
+            rowByMac.clear();
             notifyDataSetChanged();
         }
 
         public void addOrUpdateDevice(String name, String address, int rssi) {
-            for (int i = 0; i < devices.size(); i++) {
+            long mac = MacAddresses.pack(address);
+            int i = mac != MacAddresses.INVALID ? rowByMac.get(mac) : indexOfSlow(address);
+            if (i >= 0) {
                 DeviceItem item = devices.get(i);
-                if (item.address.equals(address)) {
+                int changed = 0;
+                if (!Objects.equals(item.name, name)) {
                     item.name = name;
+                    changed |= DIRTY_NAME;
+                }
+                if (item.rssi != rssi) {
                     item.rssi = rssi;
-                    notifyItemChanged(i);
-                    return;
+                    changed |= DIRTY_RSSI;
                 }
+                if (changed != 0) markDirty(i, item, changed);
+                return;
             }
             devices.add(new DeviceItem(name, address, rssi));
+            if (mac != MacAddresses.INVALID) {
+                rowByMac.put(mac, devices.size() - 1);
+            }
+            // Inserts are not deferred: the RecyclerView must see the new count before any layout
             notifyItemInserted(devices.size() - 1);
         }
 
+        // Only for addresses that don't parse as a MAC, which Android never hands out
+        private int indexOfSlow(String address) {
+            for (int i = 0; i < devices.size(); i++) {
+                if (devices.get(i).address.equals(address)) return i;
+            }
+            return -1;
+        }
+
+        private void markDirty(int row, DeviceItem item, int flags) {
+            if (!framePaced) {
+                notifyRow(row, flags);
+                return;
+            }
+            if (item.dirtyFlags == 0) {
+                if (dirtyCount == dirtyRows.length) {
+                    dirtyRows = Arrays.copyOf(dirtyRows, dirtyCount * 2);
+                }
+                dirtyRows[dirtyCount++] = row;
+            }
+            item.dirtyFlags |= flags;
+            if (!frameScheduled) {
+                frameScheduled = true;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            frameScheduled = false;
+            flushDirtyRows();
+        }
+
+        private void flushDirtyRows() {
+            for (int i = 0; i < dirtyCount; i++) {
+                int row = dirtyRows[i];
+                DeviceItem item = devices.get(row);
+                int flags = item.dirtyFlags;
+                item.dirtyFlags = 0;
+                notifyRow(row, flags);
+            }
+            dirtyCount = 0;
+        }
+
+        private void notifyRow(int row, int flags) {
+            if ((flags & DIRTY_NAME) != 0) notifyItemChanged(row, PAYLOAD_NAME);
+            if ((flags & DIRTY_RSSI) != 0) notifyItemChanged(row, PAYLOAD_RSSI);
+        }
+
+        private void cancelFrame() {
+            if (frameScheduled) {
+                Choreographer.getInstance().removeFrameCallback(this);
+                frameScheduled = false;
+            }
+        }
+
+        @Override
+        public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+            super.onDetachedFromRecyclerView(recyclerView);
+            cancelFrame();
+            flushDirtyRows();
+        }
+
         static class DeviceViewHolder extends RecyclerView.ViewHolder {
             TextView txtName, txtAddress, txtRssi;
             DeviceViewHolder(@NonNull android.view.View itemView) {
@@ -298,6 +476,8 @@ public class MainActivity extends AppCompatActivity {
         String name;
         String address;
         int rssi;
+        // DeviceAdapter.DIRTY_* bits not yet pushed to the RecyclerView
+        int dirtyFlags;
         DeviceItem(String name, String address, int rssi) {
             this.name = name;
             this.address = address;
@@ -0,0 +1,470 @@
+package com.hilfritz.blescanner.manager;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.BluetoothProfile;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.content.Context;
+import android.os.Handler;
+import android.os.ParcelUuid;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.hilfritz.blescanner.core.BleAdapter;
+import com.hilfritz.blescanner.core.BleGatt;
+import com.hilfritz.blescanner.core.BleGattCallback;
+import com.hilfritz.blescanner.core.BleScanner;
+import com.hilfritz.blescanner.core.BleService;
+import com.hilfritz.blescanner.core.ScanOptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * {@link BleAdapter} over the real BluetoothAdapter, so code written against the
+ * Android-free ble-core interfaces (and tested there against SimulatedRadio) runs on a phone.
+ * BleManager scans and opens its UI connection through it.
+ *
+ * Thin on purpose: no retries, the same one-operation-at-a-time contract as BluetoothGatt.
+ * Scan callbacks arrive on the main looper, GATT callbacks on the handler passed in (API 26+,
+ * the binder thread below that). Timestamps are elapsed-realtime nanos. Permission failures are
+ * logged and reported as a refused call.
+ *
+ * {@link ScanOptions.Filter}s become one ScanFilter each. Characteristic-level work that needs
+ * the framework objects (descriptors, long reads, PHY) goes through a {@link GattOperationQueue}
+ * handed to {@link #connect(String, BleGattCallback, GattOperationQueue)}: the returned
+ * {@link AndroidGatt} attaches it and forwards the completions it waits for.
+ */
+@SuppressLint("MissingPermission")
+public class AndroidBleAdapter implements BleAdapter {
+
+    private static final String TAG = "AndroidBleAdapter";
+
+    private static final UUID CLIENT_CHARACTERISTIC_CONFIG_UUID =
+            UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+
+    private final Context appContext;
+    private final BluetoothAdapter bluetoothAdapter;
+    private final Handler gattHandler;
+    private final Scanner scanner = new Scanner();
+
+    public AndroidBleAdapter(@NonNull Context context, BluetoothAdapter bluetoothAdapter,
+                             @NonNull Handler gattHandler) {
+        this.appContext = context.getApplicationContext();
+        this.bluetoothAdapter = bluetoothAdapter;
+        this.gattHandler = gattHandler;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return bluetoothAdapter != null && bluetoothAdapter.isEnabled();
+    }
+
+    @Override
+    public BleScanner getScanner() {
+        if (!isEnabled() || bluetoothAdapter.getBluetoothLeScanner() == null) return null;
+        return scanner;
+    }
+
+    @Override
+    public boolean isOffloadedFilteringSupported() {
+        return bluetoothAdapter != null && bluetoothAdapter.isOffloadedFilteringSupported();
+    }
+
+    @Override
+    public boolean isOffloadedScanBatchingSupported() {
+        return bluetoothAdapter != null && bluetoothAdapter.isOffloadedScanBatchingSupported();
+    }
+
+    @Override
+    public BleGatt connect(@NonNull String address, @NonNull BleGattCallback callback) {
+        return connect(address, callback, null);
+    }
+
+    /**
+     * Like {@link #connect(String, BleGattCallback)}, with {@code queue} (if any) attached to the
+     * connection until it drops or is closed.
+     */
+    public AndroidGatt connect(@NonNull String address, @NonNull BleGattCallback callback,
+                               GattOperationQueue queue) {
+        if (!isEnabled() || !BluetoothAdapter.checkBluetoothAddress(address)) {
+            Log.w(TAG, "connect: adapter off or bad address " + address);
+            return null;
+        }
+        AndroidGatt gatt = new AndroidGatt(address, callback, queue);
+        BluetoothDevice device = bluetoothAdapter.getRemoteDevice(address);
+        // Logs and returns null when BLUETOOTH_CONNECT is missing
+        BluetoothGatt g = BleManager.connectGatt(appContext, device, gatt.androidCallback, gattHandler);
+        if (g == null) return null;
+        gatt.gatt = g;
+        if (queue != null) queue.attach(g);
+        return gatt;
+    }
+
+    // region Scanner
+
+    private final class Scanner implements BleScanner {
+        private final Map<Callback, ScanCallback> callbacks = new HashMap<>();
+
+        @Override
+        public synchronized boolean startScan(@NonNull ScanOptions options, @NonNull Callback callback) {
+            BluetoothLeScanner leScanner = bluetoothAdapter.getBluetoothLeScanner();
+            if (leScanner == null || callbacks.containsKey(callback)) return false;
+            ScanCallback scanCallback = new ScanCallback() {
+                @Override
+                public void onScanResult(int callbackType, ScanResult result) {
+                    if (callbackType == ScanSettings.CALLBACK_TYPE_MATCH_LOST) {
+                        callback.onAdvertisementLost(result.getDevice().getAddress());
+                        return;
+                    }
+                    deliver(callback, result);
+                }
+
+                @Override
+                public void onBatchScanResults(List<ScanResult> results) {
+                    if (results.isEmpty()) return;
+                    for (ScanResult r : results) deliver(callback, r);
+                    callback.onBatchComplete();
+                }
+
+                @Override
+                public void onScanFailed(int errorCode) {
+                    callback.onScanFailed(errorCode);
+                }
+            };
+            try {
+                leScanner.startScan(toScanFilters(options), toScanSettings(options), scanCallback);
+            } catch (SecurityException e) {
+                Log.e(TAG, "startScan: scan permission not granted");
+                return false;
+            }
+            callbacks.put(callback, scanCallback);
+            return true;
+        }
+
+        @Override
+        public synchronized void flushPendingResults(@NonNull Callback callback) {
+            ScanCallback scanCallback = callbacks.get(callback);
+            BluetoothLeScanner leScanner = bluetoothAdapter.getBluetoothLeScanner();
+            if (scanCallback == null || leScanner == null) return;
+            try {
+                leScanner.flushPendingScanResults(scanCallback);
+            } catch (SecurityException e) {
+                Log.e(TAG, "flushPendingResults: scan permission not granted");
+            }
+        }
+
+        @Override
+        public synchronized void stopScan(@NonNull Callback callback) {
+            ScanCallback scanCallback = callbacks.remove(callback);
+            BluetoothLeScanner leScanner = bluetoothAdapter.getBluetoothLeScanner();
+            if (scanCallback == null || leScanner == null) return;
+            try {
+                leScanner.stopScan(scanCallback);
+            } catch (SecurityException e) {
+                Log.e(TAG, "stopScan: scan permission not granted");
+            }
+        }
+
+        private void deliver(Callback callback, ScanResult result) {
+            byte[] adv = result.getScanRecord() != null ? result.getScanRecord().getBytes() : null;
+            callback.onAdvertisement(result.getDevice().getAddress(), result.getRssi(), adv,
+                    result.getTimestampNanos());
+        }
+    }
+
+    private static ScanSettings toScanSettings(ScanOptions options) {
+        return new ScanSettings.Builder()
+                .setScanMode(options.getScanMode())
+                .setCallbackType(options.getCallbackType())
+                .setMatchMode(options.getMatchMode())
+                .setNumOfMatches(options.getNumOfMatches())
+                .setReportDelay(options.getReportDelayMillis())
+                .build();
+    }
+
+    // Null (not an empty list) is what the framework takes as "match everything"
+    private static List<ScanFilter> toScanFilters(ScanOptions options) {
+        if (options.getFilters().isEmpty()) return null;
+        List<ScanFilter> filters = new ArrayList<>(options.getFilters().size());
+        for (ScanOptions.Filter f : options.getFilters()) {
+            ScanFilter.Builder filter = new ScanFilter.Builder();
+            if (f.getServiceUuid() != null) filter.setServiceUuid(new ParcelUuid(f.getServiceUuid()));
+            if (f.getDeviceAddress() != null) filter.setDeviceAddress(f.getDeviceAddress());
+            if (f.getManufacturerId() >= 0) {
+                byte[] data = f.getManufacturerData();
+                filter.setManufacturerData(f.getManufacturerId(), data != null ? data : new byte[0],
+                        f.getManufacturerDataMask());
+            }
+            filters.add(filter.build());
+        }
+        return filters;
+    }
+
+    // endregion
+
+    // region GATT
+
+    /** The Android connection; also hands out the framework objects the app module needs. */
+    public static final class AndroidGatt implements BleGatt {
+        private final String address;
+        private final BleGattCallback callback;
+        private final GattOperationQueue queue;
+        private volatile BluetoothGatt gatt;
+        private volatile List<BleService> services = Collections.emptyList();
+        private volatile boolean closed;
+
+        AndroidGatt(String address, BleGattCallback callback, GattOperationQueue queue) {
+            this.address = address;
+            this.callback = callback;
+            this.queue = queue;
+        }
+
+        /** For GattOperationQueue, LinkNegotiator and the listeners, which take framework types. */
+        public BluetoothGatt getBluetoothGatt() {
+            return gatt;
+        }
+
+        /** The framework services of the last discovery, for listeners and the service cache. */
+        @NonNull
+        public List<BluetoothGattService> getBluetoothGattServices() {
+            BluetoothGatt g = gatt;
+            return g != null ? new ArrayList<>(g.getServices()) : Collections.emptyList();
+        }
+
+        @NonNull
+        @Override
+        public String getAddress() {
+            return address;
+        }
+
+        @NonNull
+        @Override
+        public List<BleService> getServices() {
+            return services;
+        }
+
+        @Override
+        public boolean discoverServices() {
+            try {
+                return gatt.discoverServices();
+            } catch (SecurityException e) {
+                Log.e(TAG, "discoverServices: BLUETOOTH_CONNECT not granted");
+                return false;
+            }
+        }
+
+        @Override
+        public boolean readCharacteristic(@NonNull UUID characteristic) {
+            BluetoothGattCharacteristic ch = find(characteristic);
+            if (ch == null) return false;
+            try {
+                return gatt.readCharacteristic(ch);
+            } catch (SecurityException e) {
+                Log.e(TAG, "readCharacteristic: BLUETOOTH_CONNECT not granted");
+                return false;
+            }
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public boolean writeCharacteristic(@NonNull UUID characteristic, @NonNull byte[] value,
+                                           boolean withResponse) {
+            BluetoothGattCharacteristic ch = find(characteristic);
+            if (ch == null) return false;
+            ch.setWriteType(withResponse
+                    ? BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT
+                    : BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
+            ch.setValue(value);
+            try {
+                return gatt.writeCharacteristic(ch);
+            } catch (SecurityException e) {
+                Log.e(TAG, "writeCharacteristic: BLUETOOTH_CONNECT not granted");
+                return false;
+            }
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public boolean setNotificationsEnabled(@NonNull UUID characteristic, boolean enable) {
+            BluetoothGattCharacteristic ch = find(characteristic);
+            if (ch == null) return false;
+            try {
+                if (!gatt.setCharacteristicNotification(ch, enable)) return false;
+                BluetoothGattDescriptor cccd = ch.getDescriptor(CLIENT_CHARACTERISTIC_CONFIG_UUID);
+                if (cccd == null) {
+                    // Nothing to write; report straight away like a completed descriptor write
+                    callback.onNotificationStateChanged(this, characteristic, enable,
+                            BluetoothGatt.GATT_SUCCESS);
+                    return true;
+                }
+                boolean indicate = (ch.getProperties() & BluetoothGattCharacteristic.PROPERTY_NOTIFY) == 0;
+                cccd.setValue(!enable ? BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE
+                        : indicate ? BluetoothGattDescriptor.ENABLE_INDICATION_VALUE
+                        : BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
+                return gatt.writeDescriptor(cccd);
+            } catch (SecurityException e) {
+                Log.e(TAG, "setNotificationsEnabled: BLUETOOTH_CONNECT not granted");
+                return false;
+            }
+        }
+
+        @Override
+        public boolean requestMtu(int mtu) {
+            try {
+                return gatt.requestMtu(mtu);
+            } catch (SecurityException e) {
+                Log.e(TAG, "requestMtu: BLUETOOTH_CONNECT not granted");
+                return false;
+            }
+        }
+
+        @Override
+        public void disconnect() {
+            try {
+                gatt.disconnect();
+            } catch (SecurityException e) {
+                Log.e(TAG, "disconnect: BLUETOOTH_CONNECT not granted");
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            if (queue != null) queue.detach();
+            try {
+                gatt.close();
+            } catch (SecurityException e) {
+                Log.e(TAG, "close: BLUETOOTH_CONNECT not granted");
+            }
+        }
+
+        private BluetoothGattCharacteristic find(UUID uuid) {
+            BluetoothGatt g = gatt;
+            if (g == null) return null;
+            for (BluetoothGattService s : g.getServices()) {
+                BluetoothGattCharacteristic ch = s.getCharacteristic(uuid);
+                if (ch != null) return ch;
+            }
+            return null;
+        }
+
+        private static List<BleService> toServices(List<BluetoothGattService> services) {
+            List<BleService> out = new ArrayList<>(services.size());
+            for (BluetoothGattService s : services) {
+                List<BleService.Characteristic> chars = new ArrayList<>();
+                for (BluetoothGattCharacteristic ch : s.getCharacteristics()) {
+                    chars.add(new BleService.Characteristic(ch.getUuid(), ch.getProperties()));
+                }
+                out.add(new BleService(s.getUuid(), chars));
+            }
+            return out;
+        }
+
+        final BluetoothGattCallback androidCallback = new BluetoothGattCallback() {
+            @Override
+            public void onConnectionStateChange(BluetoothGatt g, int status, int newState) {
+                if (closed) return;
+                // Can beat connect() storing the client
+                if (gatt == null) gatt = g;
+                if (newState == BluetoothProfile.STATE_CONNECTED) {
+                    callback.onConnectionStateChange(AndroidGatt.this, status, true);
+                } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+                    services = Collections.emptyList();
+                    if (queue != null) queue.detach();
+                    callback.onConnectionStateChange(AndroidGatt.this, status, false);
+                }
+            }
+
+            @Override
+            public void onServicesDiscovered(BluetoothGatt g, int status) {
+                if (closed) return;
+                if (status == BluetoothGatt.GATT_SUCCESS) services = toServices(g.getServices());
+                callback.onServicesDiscovered(AndroidGatt.this, status);
+            }
+
+            @Override
+            public void onServiceChanged(@NonNull BluetoothGatt g) {
+                if (closed) return;
+                callback.onServiceChanged(AndroidGatt.this);
+            }
+
+            @Override
+            @SuppressWarnings("deprecation")
+            public void onCharacteristicRead(BluetoothGatt g, BluetoothGattCharacteristic ch,
+                                             int status) {
+                if (closed) return;
+                byte[] value = ch.getValue();
+                callback.onCharacteristicRead(AndroidGatt.this, ch.getUuid(), value, status);
+                if (queue != null) queue.onCharacteristicRead(ch, value, status);
+            }
+
+            @Override
+            public void onCharacteristicWrite(BluetoothGatt g, BluetoothGattCharacteristic ch,
+                                              int status) {
+                if (closed) return;
+                callback.onCharacteristicWrite(AndroidGatt.this, ch.getUuid(), status);
+                if (queue != null) queue.onCharacteristicWrite(ch, status);
+            }
+
+            @Override
+            @SuppressWarnings("deprecation")
+            public void onDescriptorWrite(BluetoothGatt g, BluetoothGattDescriptor descriptor,
+                                          int status) {
+                if (closed) return;
+                if (queue != null) queue.onDescriptorWrite(descriptor, status);
+                if (!CLIENT_CHARACTERISTIC_CONFIG_UUID.equals(descriptor.getUuid())) return;
+                byte[] v = descriptor.getValue();
+                boolean enabled = v != null && v.length > 0 && v[0] != 0;
+                callback.onNotificationStateChanged(AndroidGatt.this,
+                        descriptor.getCharacteristic().getUuid(), enabled, status);
+            }
+
+            @Override
+            @SuppressWarnings("deprecation")
+            public void onCharacteristicChanged(BluetoothGatt g, BluetoothGattCharacteristic ch) {
+                if (closed) return;
+                callback.onCharacteristicChanged(AndroidGatt.this, ch.getUuid(), ch.getValue(),
+                        SystemClock.elapsedRealtimeNanos());
+            }
+
+            @Override
+            public void onMtuChanged(BluetoothGatt g, int mtu, int status) {
+                if (closed) return;
+                callback.onMtuChanged(AndroidGatt.this, mtu, status);
+                if (queue != null) queue.onMtuChanged(mtu, status);
+            }
+
+            @Override
+            public void onPhyUpdate(BluetoothGatt g, int txPhy, int rxPhy, int status) {
+                if (closed) return;
+                Log.d(TAG, "PHY updated tx=" + txPhy + " rx=" + rxPhy + ", status=" + status);
+                if (queue != null) queue.onPhyUpdate(txPhy, rxPhy, status);
+            }
+
+            @Override
+            public void onPhyRead(BluetoothGatt g, int txPhy, int rxPhy, int status) {
+                if (closed) return;
+                if (queue != null) queue.onPhyRead(txPhy, rxPhy, status);
+            }
+        };
+    }
+
+    // endregion
+}
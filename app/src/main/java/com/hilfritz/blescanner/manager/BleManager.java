@@ -6,53 +6,167 @@ import android.bluetooth.BluetoothDevice;
 import android.bluetooth.BluetoothGatt;
 import android.bluetooth.BluetoothGattCallback;
 import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
 import android.bluetooth.BluetoothGattService;
 //import android.bluetooth.BluetoothLeScanner;
 import android.bluetooth.BluetoothManager;
-import android.bluetooth.le.BluetoothLeScanner;
 import android.bluetooth.le.ScanCallback;
-import android.bluetooth.le.ScanResult;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
+import com.hilfritz.blescanner.core.BleAdapter;
+import com.hilfritz.blescanner.core.BleGatt;
+import com.hilfritz.blescanner.core.BleGattCallback;
+import com.hilfritz.blescanner.core.BleScanner;
+import com.hilfritz.blescanner.core.ScanOptions;
+import com.hilfritz.blescanner.utils.AdvertisementParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Scanning, the UI's GATT connection and the connection pool.
+ *
+ * Threads: scan results and GATT callbacks are processed on a dedicated "ble-worker"
+ * HandlerThread (GATT callbacks are bound to it on API 26+, scan results hop onto it from the
+ * main looper). Name resolution, parsing, registry updates, capture and event bus publishing
+ * happen there. Listener methods are always called on the main thread with data that is
+ * already built, so the UI only renders. The public methods are meant to be called from the
+ * main thread.
+ */
 public class BleManager {
 
     private static final String TAG = "BleManager";
-    private static final long SCAN_PERIOD = 10_000;
 
-    private static BleManager instance;
+    /** The stack is throttling scan starts (more than 5 in 30 s); results may not arrive. */
+    public static final int SCAN_DOWNGRADE_THROTTLED = 1;
+    /** A scan ran past the 30 minute limit and was demoted to opportunistic by the OS. */
+    public static final int SCAN_DOWNGRADE_DURATION_LIMIT = 2;
+    // Devices not heard from for this long are dropped from the registry
+    public static final long STALE_DEVICE_MS = 60_000;
+    // Standard CCCD (Client Characteristic Configuration Descriptor) UUID for NOTIFY/INDICATE.
+    private static final UUID CLIENT_CHARACTERISTIC_CONFIG_UUID =
+            UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+
+    private static volatile BleManager instance;
 
+    // Double-checked: activities, services and worker threads may all ask first
     public static BleManager getInstance(Context context) {
-        if (instance == null) {
-            instance = new BleManager(context.getApplicationContext());
+        BleManager local = instance;
+        if (local == null) {
+            synchronized (BleManager.class) {
+                local = instance;
+                if (local == null) {
+                    local = new BleManager(context.getApplicationContext());
+                    instance = local;
+                }
+            }
         }
-        return instance;
+        return local;
     }
 
     // --- Core BLE fields ---
     private final Context appContext;
     private final BluetoothAdapter bluetoothAdapter;
-    private BluetoothLeScanner bluetoothLeScanner;
-    private BluetoothGatt bluetoothGatt;
-    private final Handler handler = new Handler();
+    // Scans and the UI connection go through this; the pool and sessions use BluetoothAdapter
+    private final AndroidBleAdapter bleAdapter;
+    private BleScanner bleScanner;
+    private volatile AndroidBleAdapter.AndroidGatt bleGatt;
+    // Guards bleGatt: only the caller that wins connect() opens one
+    private final ConnectionStateMachine connectionState = new ConnectionStateMachine();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // "ble-worker": GATT callbacks, scan result processing and GATT operation timeouts
+    private final Handler bleHandler;
+    private final Executor bleExecutor;
+    private final GattOperationQueue operationQueue;
 
-    private boolean isScanning = false;
+    // Claimed with compareAndSet so racing start/stop calls don't double-start the scanner
+    private final AtomicBoolean isScanning = new AtomicBoolean();
+    private volatile ScanConfig activeScanConfig = ScanConfig.DEFAULT;
+    private final Runnable stopScanRunnable = this::stopScan;
+    // Main thread only, like startScan()
+    private final ScanStartThrottle scanStartThrottle = new ScanStartThrottle();
+    // Batched scans collect here (keyed by address, latest wins). The controller ends a batch
+    // with onBatchComplete; in software a timer does, when the controller cannot batch.
+    private volatile boolean hardwareBatching = false;
+    private volatile boolean softwareBatching = false;
+    private final Map<String, ScanDevice> pendingBatch = new LinkedHashMap<>();
+    private final Runnable flushBatchRunnable = this::flushBatch;
+    // Reused for every scan result; they are all processed on the BLE worker
+    private final AdvertisementParser advertisementParser = new AdvertisementParser();
+    // Survives across scans; the UI reads smoothed snapshots from here
+    private final DeviceRegistry deviceRegistry = new DeviceRegistry();
+    // Concurrent connections for multi-sensor use; the single bleGatt above stays for the UI
+    private GattConnectionPool connectionPool;
+    private final GattServiceCache serviceCache;
+    private LinkProfile linkProfile = LinkProfile.HIGH_THROUGHPUT;
+    private volatile int currentMtu = LinkProfile.DEFAULT_ATT_MTU;
+    // Reassembly buffers for long reads, recycled across reads
+    private final ByteBufferPool bufferPool = new ByteBufferPool();
+    // Non-null while recording; written from the BLE worker
+    private volatile CaptureRecorder captureRecorder;
+    // The last replay started; see isReplaying()
+    private volatile CaptureReplayer activeReplayer;
+    // Filled by onCharacteristicChanged (ours and DeviceDetailsActivity's, on binder threads
+    // below API 26) and by capture replays; drained on the main thread by DeviceDetailsActivity
+    private final NotificationRingBuffer notificationBuffer =
+            new NotificationRingBuffer(NotificationRingBuffer.OverflowPolicy.DROP_OLDEST);
 
     // --- Listeners for UI ---
     public interface ScanListener {
         void onDeviceFound(String name, String address, int rssi);
         void onScanStarted();
         void onScanStopped();
+
+        /**
+         * Called once per batch window when scanning with {@link ScanConfig#isBatched()}.
+         * Each address appears at most once, with its latest values.
+         * The default forwards every entry to {@link #onDeviceFound}.
+         */
+        default void onDevicesFound(List<ScanDevice> devices) {
+            for (ScanDevice d : devices) {
+                onDeviceFound(d.name, d.address, d.rssi);
+            }
+        }
+
+        /** Only with ScanSettings.CALLBACK_TYPE_MATCH_LOST: a filtered device went away. */
+        default void onDeviceLost(String address) {
+        }
+
+        /**
+         * The OS has (or is about to have) quietly degraded the scan: one of the
+         * SCAN_DOWNGRADE_* reasons.
+         */
+        default void onScanDowngraded(int reason) {
+        }
+
+        /**
+         * Registry snapshots (smoothed RSSI) of the devices just passed to {@link #onDeviceFound}
+         * or {@link #onDevicesFound}, right after that call. Built on the BLE worker, so
+         * rendering from these needs no registry lookups on the main thread.
+         */
+        default void onDeviceSnapshots(List<DeviceRegistry.Snapshot> snapshots) {
+        }
     }
 
     public interface ConnectionListener {
@@ -60,6 +174,17 @@ public class BleManager {
         void onConnected();
         void onDisconnected();
         void onServicesAvailable(List<BluetoothGattService> services);
+
+        /**
+         * The table cached from an earlier connection, delivered before discovery finishes.
+         * For display only; {@link #onServicesAvailable} follows with the usable objects.
+         */
+        default void onCachedServicesAvailable(List<BluetoothGattService> services) {
+        }
+
+        /** The {@link LinkProfile} has been applied; size payloads from {@code link}. */
+        default void onLinkNegotiated(LinkNegotiator.Result link) {
+        }
     }
 
     // Small “read manager” callback interface
@@ -68,15 +193,28 @@ public class BleManager {
         void onCharacteristicReadError(BluetoothGattCharacteristic characteristic, int status);
     }
 
-    private ScanListener scanListener;
-    private ConnectionListener connectionListener;
-    private CharacteristicReadListener characteristicReadListener;
+    // Set on the main thread, read on the BLE worker
+    private volatile ScanListener scanListener;
+    private volatile ConnectionListener connectionListener;
+    private volatile CharacteristicReadListener characteristicReadListener;
+    // Fan-out for everyone besides the single listeners above (loggers, uploaders, BleStreams)
+    private final BleEventBus eventBus = new BleEventBus();
+    private final Executor mainExecutor = mainHandler::post;
 
     private BleManager(Context context) {
         this.appContext = context;
         BluetoothManager bm =
                 (BluetoothManager) context.getSystemService(Context.BLUETOOTH_SERVICE);
         bluetoothAdapter = bm != null ? bm.getAdapter() : null;
+        HandlerThread bleThread = new HandlerThread("ble-worker");
+        bleThread.start();
+        bleHandler = new Handler(bleThread.getLooper());
+        bleExecutor = bleHandler::post;
+        operationQueue = new GattOperationQueue(bleHandler);
+        bleAdapter = new AndroidBleAdapter(appContext, bluetoothAdapter, bleHandler);
+        connectionPool = new GattConnectionPool(appContext, bluetoothAdapter, bleHandler,
+                GattConnectionPool.DEFAULT_MAX_SESSIONS);
+        serviceCache = new GattServiceCache(new File(context.getFilesDir(), "gatt-cache"));
     }
 
     // region Public API
@@ -93,6 +231,117 @@ public class BleManager {
         this.characteristicReadListener = listener;
     }
 
+    /**
+     * Scan results, connection state and notifications for any number of subscribers, each
+     * on its own executor and queue. Publishing happens on the BLE worker (and the binder
+     * thread below API 26); {@link BleEventBus#DIRECT} subscribers run there.
+     */
+    public BleEventBus getEventBus() {
+        return eventBus;
+    }
+
+    /** Posts to the main looper; pass to {@link BleEventBus#subscribe} for UI subscribers. */
+    public Executor getMainExecutor() {
+        return mainExecutor;
+    }
+
+    /** Posts to the BLE worker thread, for subscribers that do their own heavy lifting. */
+    public Executor getBleExecutor() {
+        return bleExecutor;
+    }
+
+    /** The BLE worker's handler: GATT callbacks and operation timeouts run on its looper. */
+    public Handler getBleHandler() {
+        return bleHandler;
+    }
+
+    /**
+     * Connect over LE with callbacks on {@code handler}'s looper. Before API 26 there is no
+     * handler parameter and callbacks stay on the binder thread.
+     */
+    public static BluetoothGatt connectGatt(Context context, BluetoothDevice device,
+                                            BluetoothGattCallback callback, Handler handler) {
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                return device.connectGatt(context, false, callback, BluetoothDevice.TRANSPORT_LE,
+                        BluetoothDevice.PHY_LE_1M_MASK, handler);
+            }
+            return device.connectGatt(context, false, callback, BluetoothDevice.TRANSPORT_LE);
+        } catch (SecurityException e) {
+            Log.e(TAG, "connectGatt: BLUETOOTH_CONNECT permission not granted");
+            return null;
+        }
+    }
+
+    public DeviceRegistry getDeviceRegistry() {
+        return deviceRegistry;
+    }
+
+    /** Applied after each service discovery. {@link LinkProfile#NONE} disables negotiation. */
+    public void setLinkProfile(@NonNull LinkProfile profile) {
+        this.linkProfile = profile;
+    }
+
+    public LinkProfile getLinkProfile() {
+        return linkProfile;
+    }
+
+    /** Notifications from the current connection; drain with a single consumer. */
+    public NotificationRingBuffer getNotificationBuffer() {
+        return notificationBuffer;
+    }
+
+    public GattServiceCache getServiceCache() {
+        return serviceCache;
+    }
+
+    /**
+     * The radio behind the ble-core {@link BleAdapter} interfaces; this manager's own scan and
+     * UI connection run on it too.
+     */
+    public BleAdapter getBleAdapter() {
+        return bleAdapter;
+    }
+
+    public GattConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    /** Resize the connection pool. Closes every pooled session. */
+    public void setMaxConnections(int maxConnections) {
+        if (maxConnections == connectionPool.getMaxSessions()) return;
+        connectionPool.closeAll();
+        connectionPool = new GattConnectionPool(appContext, bluetoothAdapter, bleHandler, maxConnections);
+    }
+
+    /**
+     * Connect to {@code address} through the pool, alongside any other pooled sessions.
+     * Returns the (possibly existing) session, or null if it cannot be opened.
+     */
+    public GattSession openSession(String address, GattSession.Listener listener) {
+        return connectionPool.acquire(address, listener);
+    }
+
+    public boolean isScanning() {
+        return isScanning.get();
+    }
+
+    /** A capture replay is feeding the listeners, notification buffer and event bus. */
+    public boolean isReplaying() {
+        CaptureReplayer replayer = activeReplayer;
+        return replayer != null && replayer.isRunning();
+    }
+
+    /** Where the UI connection is in its lifecycle; commands invalid in this state are ignored. */
+    public ConnectionStateMachine.State getConnectionState() {
+        return connectionState.getState();
+    }
+
+    /** Milliseconds until a scan start would stay within the OS start limit; 0 if safe now. */
+    public long getScanStartDelayMillis() {
+        return scanStartThrottle.delayUntilAllowed(SystemClock.elapsedRealtime());
+    }
+
     public boolean isBluetoothAvailable() {
         return bluetoothAdapter != null;
     }
@@ -102,6 +351,10 @@ public class BleManager {
     }
 
     public void startScan() {
+        startScan(ScanConfig.DEFAULT);
+    }
+
+    public void startScan(@NonNull ScanConfig config) {
         if (!isBluetoothAvailable() || !isBluetoothEnabled()) {
             Log.w(TAG, "Bluetooth not available or not enabled");
             return;
@@ -112,37 +365,77 @@ public class BleManager {
             return;
         }
 
-        if (isScanning) return;
-
-        bluetoothLeScanner = bluetoothAdapter.getBluetoothLeScanner();
-        if (bluetoothLeScanner == null) {
-            Log.w(TAG, "BluetoothLeScanner is null");
+        BleScanner scanner = bleAdapter.getScanner();
+        if (scanner == null) {
+            Log.w(TAG, "No LE scanner");
             return;
         }
+        if (!isScanning.compareAndSet(false, true)) return;
 
-        isScanning = true;
+        bleScanner = scanner;
+        activeScanConfig = config;
+        deviceRegistry.evictStale(SystemClock.elapsedRealtime(), STALE_DEVICE_MS);
         if (scanListener != null) scanListener.onScanStarted();
 
-        handler.postDelayed(this::stopScan, SCAN_PERIOD);
+        mainHandler.removeCallbacks(stopScanRunnable);
+        if (config.getDurationMillis() > 0) {
+            mainHandler.postDelayed(stopScanRunnable, config.getDurationMillis());
+        }
         if (ActivityCompat.checkSelfPermission(appContext, Manifest.permission.BLUETOOTH_SCAN) != PackageManager.PERMISSION_GRANTED) {
             Log.e(TAG, "startScan: ERROR: Manifest.permission.BLUETOOTH_SCAN permission not granted");
             Log.e(TAG, "startScan: ERROR: Scanning not started because permission not granted");
             return;
         }
-        bluetoothLeScanner.startScan(scanCallback);
-        Log.d(TAG, "Scan started");
+        hardwareBatching = config.isBatched() && bleAdapter.isOffloadedScanBatchingSupported();
+        softwareBatching = config.isBatched() && !hardwareBatching;
+
+        ScanOptions options = config.toScanOptions(hardwareBatching);
+        int filters = options.getFilters().size();
+        if (filters > 0) {
+            if (filters > ScanConfig.HARDWARE_FILTER_BUDGET) {
+                Log.w(TAG, filters + " scan filters may exceed the controller's filter slots");
+            }
+            if (!bleAdapter.isOffloadedFilteringSupported()) {
+                Log.w(TAG, "Offloaded filtering not supported; filters run in the Bluetooth stack");
+            }
+        }
+        long now = SystemClock.elapsedRealtime();
+        if (!scanStartThrottle.isAllowed(now)) {
+            Log.w(TAG, "Starting scan inside the OS start limit; it will likely be throttled");
+            notifyScanDowngraded(SCAN_DOWNGRADE_THROTTLED);
+        }
+        scanStartThrottle.recordStart(now);
+        if (!bleScanner.startScan(options, scanCallback)) {
+            Log.w(TAG, "Scanner refused to start");
+            mainHandler.removeCallbacks(stopScanRunnable);
+            isScanning.set(false);
+            if (scanListener != null) scanListener.onScanStopped();
+            return;
+        }
+        Log.d(TAG, "Scan started, mode=" + config.getScanMode()
+                + ", filters=" + filters
+                + ", reportDelay=" + config.getReportDelayMillis()
+                + (softwareBatching ? " (software)" : ""));
     }
 
     public void stopScan() {
-        if (!isScanning || bluetoothLeScanner == null) return;
+        mainHandler.removeCallbacks(stopScanRunnable);
+        if (!isScanning.get() || bleScanner == null) return;
 
         if (ActivityCompat.checkSelfPermission(appContext, Manifest.permission.BLUETOOTH_SCAN) != PackageManager.PERMISSION_GRANTED) {
             Log.e(TAG, "stopScan: ERROR: Manifest.permission.BLUETOOTH_SCAN permission not granted");
             Log.e(TAG, "stopScan: ERROR: Scanning not stopped (or impossible to stop) because permission not granted");
             return;
         }
-        bluetoothLeScanner.stopScan(scanCallback);
-        isScanning = false;
+        if (!isScanning.compareAndSet(true, false)) return;
+        if (hardwareBatching) {
+            // Deliver whatever the controller is still holding before the scan goes away
+            bleScanner.flushPendingResults(scanCallback);
+        }
+        bleScanner.stopScan(scanCallback);
+        // The flushed results end with their own onBatchComplete
+        flushBatch();
+        deviceRegistry.evictStale(SystemClock.elapsedRealtime(), STALE_DEVICE_MS);
         if (scanListener != null) scanListener.onScanStopped();
         Log.d(TAG, "Scan stopped");
     }
@@ -158,60 +451,99 @@ public class BleManager {
             return;
         }
 
+        // One client at a time: disconnect (or close) the current one first
+        if (!connectionState.connect()) {
+            Log.w(TAG, "connect: ignored, connection is " + connectionState.getState());
+            return;
+        }
+
         if (connectionListener != null) {
             connectionListener.onConnecting();
         }
+        eventBus.publishConnectionState(address, BleEventBus.STATE_CONNECTING);
+
+        // Read and parse the cached table on the worker. Queued ahead of the new client's
+        // callbacks, so it reaches the listener before onServicesAvailable.
+        bleHandler.post(() -> {
+            List<BluetoothGattService> cached = serviceCache.getRenderOnlyServices(address);
+            if (cached == null) return;
+            runOnMain(() -> {
+                ConnectionListener listener = connectionListener;
+                if (listener != null && connectionState.getState().hasGatt()) {
+                    listener.onCachedServicesAvailable(cached);
+                }
+            });
+        });
 
-        BluetoothDevice device = bluetoothAdapter.getRemoteDevice(address);
-        if (device == null) {
-            Log.w(TAG, "Device not found for address: " + address);
+        // IDLE means the previous client was closed (close() or STATE_DISCONNECTED). The
+        // adapter attaches operationQueue and feeds it the completions.
+        AndroidBleAdapter.AndroidGatt gatt = bleAdapter.connect(address, gattCallback, operationQueue);
+        bleGatt = gatt;
+        if (gatt == null) {
+            Log.w(TAG, "Could not connect to " + address);
+            connectionState.onDisconnected();
             if (connectionListener != null) {
                 connectionListener.onDisconnected();
             }
+            eventBus.publishConnectionState(address, BleEventBus.STATE_DISCONNECTED);
             return;
         }
-
-        if (bluetoothGatt != null) {
-            if (ActivityCompat.checkSelfPermission(appContext, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
-                Log.e(TAG, "connect: ERROR: Manifest.permission.BLUETOOTH_SCAN permission not granted");
-                Log.e(TAG, "connect: ERROR: connect failed (or impossible to start) because permission not granted");
-                return;
-            }
-            bluetoothGatt.close();
-            bluetoothGatt = null;
-        }
-
-        bluetoothGatt = device.connectGatt(appContext, false, gattCallback);
         Log.d(TAG, "Connecting to " + address);
     }
 
     public void disconnect() {
-        if (bluetoothGatt != null) {
+        BleGatt gatt = bleGatt;
+        if (gatt != null) {
             if (ActivityCompat.checkSelfPermission(appContext, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
                 Log.e(TAG, "disconnect: ERROR: Manifest.permission.BLUETOOTH_SCAN permission not granted");
                 Log.e(TAG, "disconnect: ERROR: disconnect failed (or impossible to disconnect) because permission not granted");
                 return;
             }
-            bluetoothGatt.disconnect();
+            if (connectionState.transition(ConnectionStateMachine.State.CONNECTING,
+                    ConnectionStateMachine.State.DISCONNECTING)) {
+                // Cancelling a pending connect often gets no STATE_DISCONNECTED back, so don't
+                // wait for one: close the client here
+                gatt.disconnect();
+                close();
+                notifyDisconnected(gatt.getAddress());
+                return;
+            }
+            if (!connectionState.disconnect()) {
+                Log.w(TAG, "disconnect: ignored, connection is " + connectionState.getState());
+                return;
+            }
+            gatt.disconnect();
         }
     }
 
+    private void notifyDisconnected(String address) {
+        runOnMain(() -> {
+            ConnectionListener listener = connectionListener;
+            if (listener != null) listener.onDisconnected();
+        });
+        eventBus.publishConnectionState(address, BleEventBus.STATE_DISCONNECTED);
+    }
+
     public void close() {
-        if (bluetoothGatt != null) {
+        BleGatt gatt = bleGatt;
+        if (gatt != null) {
             if (ActivityCompat.checkSelfPermission(appContext, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
                 Log.e(TAG, "close: ERROR: Manifest.permission.BLUETOOTH_SCAN permission not granted");
                 Log.e(TAG, "close: ERROR: close failed (or impossible to close) because permission not granted");
                 return;
             }
-            bluetoothGatt.close();
-            bluetoothGatt = null;
+            // Detaches operationQueue as well
+            gatt.close();
+            bleGatt = null;
         }
+        // No callbacks follow a close, so nothing else will bring the state back
+        connectionState.onDisconnected();
     }
 
-    // Small manager API: request a read
+    // Small manager API: request a read. The result is delivered to the CharacteristicReadListener.
     public boolean readCharacteristic(BluetoothGattCharacteristic characteristic) {
-        if (bluetoothGatt == null) {
-            Log.w(TAG, "readCharacteristic: bluetoothGatt is null");
+        if (bleGatt == null) {
+            Log.w(TAG, "readCharacteristic: not connected");
             return false;
         }
         if (!hasConnectPermission()) {
@@ -219,15 +551,181 @@ public class BleManager {
             return false;
         }
 
-        if (ActivityCompat.checkSelfPermission(appContext, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
-            Log.e(TAG, "readCharacteristic: ERROR: Manifest.permission.BLUETOOTH_SCAN permission not granted");
-            Log.e(TAG, "readCharacteristic: ERROR: readCharacteristic failed (or impossible to read) because permission not granted");
+        operationQueue.read(characteristic).thenAccept(result -> runOnMain(() -> {
+            CharacteristicReadListener listener = characteristicReadListener;
+            if (listener == null) return;
+            if (result.isSuccess()) {
+                listener.onCharacteristicRead(characteristic, result.value);
+            } else {
+                listener.onCharacteristicReadError(characteristic, result.status);
+            }
+        }));
+        Log.d(TAG, "readCharacteristic queued uuid=" + characteristic.getUuid());
+        return true;
+    }
+
+    // Queued GATT operations. Each future completes on the BLE worker, or with
+    // GattOperationQueue.STATUS_TIMEOUT / STATUS_CANCELLED if the link never answers.
+
+    public CompletableFuture<GattOperationQueue.Result> readCharacteristicAsync(
+            BluetoothGattCharacteristic characteristic) {
+        if (!canQueue("readCharacteristicAsync")) return notStarted(GattOperationQueue.Type.READ);
+        return operationQueue.read(characteristic);
+    }
+
+    public CompletableFuture<GattOperationQueue.Result> writeCharacteristic(
+            BluetoothGattCharacteristic characteristic, byte[] value, int writeType) {
+        if (!canQueue("writeCharacteristic")) return notStarted(GattOperationQueue.Type.WRITE);
+        return operationQueue.write(characteristic, value, writeType);
+    }
+
+    public CompletableFuture<GattOperationQueue.Result> writeDescriptor(
+            BluetoothGattDescriptor descriptor, byte[] value) {
+        if (!canQueue("writeDescriptor")) return notStarted(GattOperationQueue.Type.WRITE_DESCRIPTOR);
+        return operationQueue.writeDescriptor(descriptor, value);
+    }
+
+    /**
+     * Subscribe to notifications (or indications) of {@code characteristic}. Values land in
+     * {@link #getNotificationBuffer()}.
+     */
+    public CompletableFuture<GattOperationQueue.Result> enableNotifications(
+            BluetoothGattCharacteristic characteristic) {
+        AndroidBleAdapter.AndroidGatt gatt = bleGatt;
+        if (gatt == null || !canQueue("enableNotifications")) {
+            return notStarted(GattOperationQueue.Type.WRITE_DESCRIPTOR);
+        }
+        if (!gatt.getBluetoothGatt().setCharacteristicNotification(characteristic, true)) {
+            Log.w(TAG, "enableNotifications: setCharacteristicNotification failed");
+            return notStarted(GattOperationQueue.Type.WRITE_DESCRIPTOR);
+        }
+        BluetoothGattDescriptor cccd = characteristic.getDescriptor(CLIENT_CHARACTERISTIC_CONFIG_UUID);
+        if (cccd == null) {
+            // Some peripherals notify without a CCCD; nothing more to write
+            return CompletableFuture.completedFuture(new GattOperationQueue.Result(
+                    GattOperationQueue.Type.WRITE_DESCRIPTOR, BluetoothGatt.GATT_SUCCESS, null, 0, 0));
+        }
+        boolean indicate = (characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_NOTIFY) == 0
+                && (characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_INDICATE) != 0;
+        return operationQueue.writeDescriptor(cccd, indicate
+                ? BluetoothGattDescriptor.ENABLE_INDICATION_VALUE
+                : BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
+    }
+
+    /**
+     * Stream {@code data} to {@code characteristic} at the current MTU, see {@link BulkTransfer}.
+     * Returns null if nothing can be sent (not connected / no permission).
+     */
+    public BulkTransfer writeBulk(BluetoothGattCharacteristic characteristic, ByteBuffer data,
+                                  int ackWindow, BulkTransfer.Listener listener) {
+        if (!canQueue("writeBulk")) return null;
+        BulkTransfer transfer = new BulkTransfer(operationQueue, characteristic, bleHandler, ackWindow);
+        transfer.start(data, currentMtu, listener);
+        return transfer;
+    }
+
+    /**
+     * Read a value that may span several reads into a pooled buffer, see {@link LongRead}.
+     * Release the completed buffer to {@link #getBufferPool()}. Returns null if not connected.
+     */
+    public LongRead readLong(BluetoothGattCharacteristic characteristic, LongRead.Mode mode,
+                             LongRead.Listener listener) {
+        if (!canQueue("readLong")) return null;
+        LongRead read = new LongRead(operationQueue, characteristic, bufferPool, mode,
+                LongRead.DEFAULT_MAX_BYTES);
+        read.start(listener);
+        return read;
+    }
+
+    /**
+     * Record every scan result, notification, read, write and connection change to
+     * memory-mapped segment files in {@code dir} until {@link #stopCapture()}.
+     */
+    public boolean startCapture(File dir) {
+        stopCapture();
+        try {
+            captureRecorder = new CaptureRecorder(dir);
+            Log.d(TAG, "Capturing to " + dir);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "startCapture: cannot open " + dir + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    public void stopCapture() {
+        CaptureRecorder recorder = captureRecorder;
+        captureRecorder = null;
+        if (recorder != null) {
+            recorder.close();
+            Log.d(TAG, "Capture stopped: " + recorder.getFramesWritten() + " frames, "
+                    + recorder.getFramesDropped() + " dropped");
+        }
+    }
+
+    public CaptureRecorder getCaptureRecorder() {
+        return captureRecorder;
+    }
+
+    /**
+     * Play a capture back through the current listeners, device registry, notification buffer
+     * and event bus instead of the radio. Returns null while scanning or connected, when replayed
+     * frames would interleave with live ones in the same listeners and registry.
+     */
+    public CaptureReplayer replayCapture(File dir, CaptureReplayer.Mode mode, double speed,
+                                         CaptureReplayer.Listener listener) {
+        if (isScanning.get() || connectionState.getState().hasGatt()) {
+            Log.w(TAG, "replayCapture ignored: stop scanning and disconnect first");
+            return null;
+        }
+        CaptureReplayer replayer = new CaptureReplayer(dir)
+                .setScanListener(scanListener)
+                .setConnectionListener(connectionListener)
+                .setCharacteristicReadListener(characteristicReadListener)
+                .setDeviceRegistry(deviceRegistry)
+                .setNotificationBuffer(notificationBuffer)
+                .setEventBus(eventBus)
+                .setCallbackExecutor(mainExecutor)
+                .setListener(listener);
+        replayer.start(mode, speed);
+        activeReplayer = replayer;
+        return replayer;
+    }
+
+    public ByteBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /** ATT MTU of the current connection (23 until a larger one has been negotiated). */
+    public int getCurrentMtu() {
+        return currentMtu;
+    }
+
+    public CompletableFuture<GattOperationQueue.Result> requestMtu(int mtu) {
+        if (!canQueue("requestMtu")) return notStarted(GattOperationQueue.Type.REQUEST_MTU);
+        return operationQueue.requestMtu(mtu);
+    }
+
+    public CompletableFuture<GattOperationQueue.Result> setPreferredPhy(int txPhy, int rxPhy, int phyOptions) {
+        if (!canQueue("setPreferredPhy")) return notStarted(GattOperationQueue.Type.SET_PREFERRED_PHY);
+        return operationQueue.setPreferredPhy(txPhy, rxPhy, phyOptions);
+    }
+
+    private boolean canQueue(String caller) {
+        if (bleGatt == null) {
+            Log.w(TAG, caller + ": not connected");
+            return false;
+        }
+        if (!hasConnectPermission()) {
+            Log.w(TAG, caller + ": missing BLUETOOTH_CONNECT permission");
             return false;
         }
-        boolean started = bluetoothGatt.readCharacteristic(characteristic);
-        Log.d(TAG, "readCharacteristic started=" + started +
-                " uuid=" + characteristic.getUuid());
-        return started;
+        return true;
+    }
+
+    private static CompletableFuture<GattOperationQueue.Result> notStarted(GattOperationQueue.Type type) {
+        return CompletableFuture.completedFuture(new GattOperationQueue.Result(
+                type, GattOperationQueue.STATUS_NOT_STARTED, null, 0, 0));
     }
 
     // endregion
@@ -258,90 +756,286 @@ public class BleManager {
 
     // endregion
 
+    void notifyScanDowngraded(int reason) {
+        Log.w(TAG, "Scan downgraded, reason=" + reason);
+        runOnMain(() -> {
+            ScanListener listener = scanListener;
+            if (listener != null) listener.onScanDowngraded(reason);
+        });
+    }
+
+    // Listener calls from the worker; inline when already on the main thread to keep ordering
+    private void runOnMain(Runnable task) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            task.run();
+        } else {
+            mainHandler.post(task);
+        }
+    }
+
+    /**
+     * Hand found devices to the scan listener on the main thread, together with their registry
+     * snapshots. Called on the BLE worker; {@code batch} selects onDevicesFound over onDeviceFound.
+     */
+    private void deliverDevices(List<ScanDevice> devices, boolean batch) {
+        if (scanListener == null || devices.isEmpty()) return;
+        List<DeviceRegistry.Snapshot> snapshots = new ArrayList<>(devices.size());
+        for (ScanDevice d : devices) {
+            DeviceRegistry.Snapshot snapshot = deviceRegistry.snapshot(d.address);
+            if (snapshot != null) snapshots.add(snapshot);
+        }
+        runOnMain(() -> {
+            ScanListener listener = scanListener;
+            if (listener == null) return;
+            if (batch) {
+                listener.onDevicesFound(devices);
+            } else {
+                ScanDevice d = devices.get(0);
+                listener.onDeviceFound(d.name, d.address, d.rssi);
+            }
+            listener.onDeviceSnapshots(snapshots);
+        });
+    }
+
+    // region Scan batching
+
+    private void flushBatch() {
+        bleHandler.removeCallbacks(flushBatchRunnable);
+        List<ScanDevice> batch;
+        synchronized (pendingBatch) {
+            if (pendingBatch.isEmpty()) return;
+            batch = new ArrayList<>(pendingBatch.values());
+            pendingBatch.clear();
+        }
+        deviceRegistry.evictStale(SystemClock.elapsedRealtime(), STALE_DEVICE_MS);
+        deliverDevices(batch, true);
+    }
+
+    private void addToBatch(ScanDevice device) {
+        boolean first;
+        synchronized (pendingBatch) {
+            first = pendingBatch.isEmpty();
+            pendingBatch.put(device.address, device);
+        }
+        if (first && softwareBatching) {
+            bleHandler.postDelayed(flushBatchRunnable, activeScanConfig.getReportDelayMillis());
+        }
+    }
+
+    // endregion
+
     // region Callbacks
 
-    private final ScanCallback scanCallback = new ScanCallback() {
+    /**
+     * Parses the advertisement and applies the name prefix straight to its bytes, so
+     * non-matching results never get as far as a name String or a BluetoothDevice.getName() call.
+     */
+    private boolean rejectedByAdvertisedName(byte[] advertisement) {
+        advertisementParser.parse(advertisement);
+        String prefix = activeScanConfig.getNamePrefix();
+        if (prefix == null || advertisement == null) return false;
+        return advertisementParser.hasName() && !advertisementParser.nameStartsWith(prefix);
+    }
+
+    private void capture(String address, int rssi, byte[] advertisement, long timestampNanos) {
+        CaptureRecorder recorder = captureRecorder;
+        if (recorder == null) return;
+        recorder.recordScan(timestampNanos, address, rssi, advertisement);
+    }
+
+    private void capture(int type, BleGatt gatt, UUID characteristic, int status, byte[] value) {
+        CaptureRecorder recorder = captureRecorder;
+        if (recorder == null) return;
+        recorder.recordValue(type, SystemClock.elapsedRealtimeNanos(), gatt.getAddress(),
+                characteristic, status, value);
+    }
+
+    // The advertised name from the parse in rejectedByAdvertisedName(), else the one the OS has
+    private String resolveName(String address) {
+        if (advertisementParser.hasName()) return advertisementParser.getName();
+        if (ActivityCompat.checkSelfPermission(appContext, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
+            Log.e(TAG, "onScanResult: ERROR: Manifest.permission.BLUETOOTH_SCAN permission not granted");
+            Log.e(TAG, "onScanResult: ERROR: device name get failed (or impossible to get) because permission not granted");
+            return null;
+        }
+        return bluetoothAdapter.getRemoteDevice(address).getName();
+    }
+
+    // timestampNanos: when the controller received the packet, on the elapsedRealtime clock
+    private void handleAdvertisement(String address, int rssi, byte[] advertisement,
+                                     long timestampNanos) {
+        capture(address, rssi, advertisement, timestampNanos);
+
+        if (rejectedByAdvertisedName(advertisement)) return;
+        String name = resolveName(address);
+        if (!activeScanConfig.matchesName(name)) return;
+        deviceRegistry.record(address, name, rssi, timestampNanos / 1_000_000L);
+        if (eventBus.hasSubscribers()) {
+            eventBus.publishScanResult(address, name, rssi, timestampNanos);
+        }
+
+        ScanDevice device = new ScanDevice(name, address, rssi);
+        if (hardwareBatching || softwareBatching) {
+            addToBatch(device);
+            return;
+        }
+        deliverDevices(Collections.singletonList(device), false);
+    }
+
+    // Delivered on the main looper; everything after the hop to the worker stays off it
+    private final BleScanner.Callback scanCallback = new BleScanner.Callback() {
         @Override
-        public void onScanResult(int callbackType, @NonNull ScanResult result) {
-            super.onScanResult(callbackType, result);
+        public void onAdvertisement(String address, int rssi, byte[] advertisement,
+                                    long timestampNanos) {
+            bleHandler.post(() -> handleAdvertisement(address, rssi, advertisement, timestampNanos));
+        }
 
-            String name = null;
-            if (result.getScanRecord() != null) {
-                name = result.getScanRecord().getDeviceName();
-            }
-            if (name == null) {
-                if (ActivityCompat.checkSelfPermission(appContext, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
-                    Log.e(TAG, "onScanResult: ERROR: Manifest.permission.BLUETOOTH_SCAN permission not granted");
-                    Log.e(TAG, "onScanResult: ERROR: device name get failed (or impossible to get) because permission not granted");
-                    return;
-                }
-                name = result.getDevice().getName();
-            }
+        @Override
+        public void onAdvertisementLost(String address) {
+            // Through the worker, so it stays behind the device's last onDeviceFound
+            bleHandler.post(() -> runOnMain(() -> {
+                ScanListener listener = scanListener;
+                if (listener != null) listener.onDeviceLost(address);
+            }));
+        }
 
-            String address = result.getDevice().getAddress();
-            int rssi = result.getRssi();
+        @Override
+        public void onBatchComplete() {
+            // Not flushBatchRunnable: flushBatch() cancels that one, and with it later batches
+            bleHandler.post(() -> flushBatch());
+        }
 
-            if (scanListener != null) {
-                scanListener.onDeviceFound(name, address, rssi);
+        @Override
+        public void onScanFailed(int errorCode) {
+            Log.e(TAG, "Scan failed, errorCode=" + errorCode);
+            if (errorCode == ScanCallback.SCAN_FAILED_ALREADY_STARTED) return;
+            if (errorCode == ScanCallback.SCAN_FAILED_SCANNING_TOO_FREQUENTLY) {
+                notifyScanDowngraded(SCAN_DOWNGRADE_THROTTLED);
             }
+            mainHandler.removeCallbacks(stopScanRunnable);
+            isScanning.set(false);
+            if (scanListener != null) scanListener.onScanStopped();
         }
     };
 
-    private final BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
+    // Runs on the BLE worker (API 26+, see connectGatt); listener calls are posted to main.
+    // Operation completions reach operationQueue through AndroidGatt, not through here.
+    private final BleGattCallback gattCallback = new BleGattCallback() {
         @Override
-        public void onConnectionStateChange(@NonNull BluetoothGatt gatt,
-                                            int status,
-                                            int newState) {
-            super.onConnectionStateChange(gatt, status, newState);
+        public void onConnectionStateChange(BleGatt gatt, int status, boolean connected) {
+            BleGatt current = bleGatt;
+            if (current != null && gatt != current) {
+                // A client already replaced; its state is not ours any more
+                Log.d(TAG, "Ignoring state change from a stale client");
+                return;
+            }
 
-            if (newState == BluetoothGatt.STATE_CONNECTED) {
-                Log.d(TAG, "Connected to GATT server");
-                if (connectionListener != null) {
-                    connectionListener.onConnected();
+            CaptureRecorder recorder = captureRecorder;
+            if (recorder != null) {
+                recorder.recordConnection(connected, SystemClock.elapsedRealtimeNanos(),
+                        gatt.getAddress(), status);
+            }
+
+            if (connected) {
+                if (!connectionState.onConnected()) {
+                    // disconnect() got in while connecting; its STATE_DISCONNECTED follows
+                    Log.d(TAG, "Connected while " + connectionState.getState() + "; not discovering");
+                    return;
                 }
+                Log.d(TAG, "Connected to GATT server");
+                runOnMain(() -> {
+                    ConnectionListener listener = connectionListener;
+                    if (listener != null) listener.onConnected();
+                });
+                eventBus.publishConnectionState(gatt.getAddress(), BleEventBus.STATE_CONNECTED);
                 if (ActivityCompat.checkSelfPermission(appContext, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
                     Log.e(TAG, "onConnectionStateChange: ERROR: Manifest.permission.BLUETOOTH_SCAN permission not granted");
                     Log.e(TAG, "onConnectionStateChange: ERROR: onConnectionStateChange failed (or impossible to get) because permission not granted");
                     return;
                 }
-                gatt.discoverServices();
-            } else if (newState == BluetoothGatt.STATE_DISCONNECTED) {
+                if (connectionState.discover()) gatt.discoverServices();
+            } else {
                 Log.d(TAG, "Disconnected from GATT server");
-                if (connectionListener != null) {
-                    connectionListener.onDisconnected();
+                currentMtu = LinkProfile.DEFAULT_ATT_MTU;
+                // Free the client slot before IDLE lets the next connect() open another
+                if (ActivityCompat.checkSelfPermission(appContext, Manifest.permission.BLUETOOTH_CONNECT) == PackageManager.PERMISSION_GRANTED) {
+                    gatt.close();
+                } else {
+                    Log.e(TAG, "onConnectionStateChange: ERROR: close impossible because permission not granted");
                 }
+                bleGatt = null;
+                connectionState.onDisconnected();
+                notifyDisconnected(gatt.getAddress());
             }
         }
 
         @Override
-        public void onServicesDiscovered(@NonNull BluetoothGatt gatt, int status) {
-            super.onServicesDiscovered(gatt, status);
+        public void onServicesDiscovered(BleGatt gatt, int status) {
+            AndroidBleAdapter.AndroidGatt current = bleGatt;
+            if (current == null || gatt != current) return;
 
             if (status != BluetoothGatt.GATT_SUCCESS) {
                 Log.w(TAG, "Service discovery failed with status: " + status);
+                // Back to CONNECTED so a Service Changed or a new discovery can run again
+                connectionState.onDiscoveryFailed();
+                return;
+            }
+            if (!connectionState.onServicesDiscovered()) {
+                Log.d(TAG, "Services discovered while " + connectionState.getState() + "; dropped");
                 return;
             }
 
-            List<BluetoothGattService> services = new ArrayList<>(gatt.getServices());
-            if (connectionListener != null) {
-                connectionListener.onServicesAvailable(services);
+            List<BluetoothGattService> services = current.getBluetoothGattServices();
+            runOnMain(() -> {
+                ConnectionListener listener = connectionListener;
+                if (listener != null) listener.onServicesAvailable(services);
+            });
+            eventBus.publishConnectionState(gatt.getAddress(), BleEventBus.STATE_SERVICES_DISCOVERED);
+            if (!linkProfile.isEmpty()) {
+                LinkNegotiator.negotiate(current.getBluetoothGatt(), operationQueue, linkProfile, bluetoothAdapter)
+                        .thenAccept(link -> runOnMain(() -> {
+                            ConnectionListener listener = connectionListener;
+                            if (listener != null) listener.onLinkNegotiated(link);
+                        }));
             }
+            serviceCache.verify(gatt.getAddress(), services, operationQueue);
         }
 
         @Override
-        public void onCharacteristicRead(@NonNull BluetoothGatt gatt,
-                                         @NonNull BluetoothGattCharacteristic characteristic,
-                                         int status) {
-            super.onCharacteristicRead(gatt, characteristic, status);
+        public void onServiceChanged(BleGatt gatt) {
+            Log.d(TAG, "Service Changed; dropping cached table and rediscovering");
+            serviceCache.invalidate(gatt.getAddress());
+            if (ActivityCompat.checkSelfPermission(appContext, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
+                Log.e(TAG, "onServiceChanged: ERROR: rediscovery impossible because permission not granted");
+                return;
+            }
+            if (connectionState.discover()) gatt.discoverServices();
+        }
 
-            if (characteristicReadListener == null) return;
+        @Override
+        public void onCharacteristicRead(BleGatt gatt, UUID characteristic, byte[] value, int status) {
+            // Listener dispatch happens in readCharacteristic() once the queued op completes
+            capture(CaptureRecorder.EVENT_READ, gatt, characteristic, status, value);
+        }
 
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                byte[] value = characteristic.getValue();
-                characteristicReadListener.onCharacteristicRead(characteristic, value);
-            } else {
-                characteristicReadListener.onCharacteristicReadError(characteristic, status);
-            }
+        @Override
+        public void onCharacteristicWrite(BleGatt gatt, UUID characteristic, int status) {
+            capture(CaptureRecorder.EVENT_WRITE, gatt, characteristic, status, null);
+        }
+
+        @Override
+        public void onCharacteristicChanged(BleGatt gatt, UUID characteristic, byte[] value,
+                                            long timestampNanos) {
+            // Copy and return; no logging or formatting on this thread
+            notificationBuffer.offer(characteristic, value, timestampNanos);
+            eventBus.publishNotification(characteristic, value, timestampNanos);
+            capture(CaptureRecorder.EVENT_NOTIFY, gatt, characteristic, BluetoothGatt.GATT_SUCCESS, value);
+        }
+
+        @Override
+        public void onMtuChanged(BleGatt gatt, int mtu, int status) {
+            Log.d(TAG, "MTU changed to " + mtu + ", status=" + status);
+            if (status == BluetoothGatt.GATT_SUCCESS) currentMtu = mtu;
         }
     };
 
@@ -0,0 +1,143 @@
+package com.hilfritz.blescanner.manager
+
+import kotlinx.coroutines.FlowPreview
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asSharedFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.buffer
+import kotlinx.coroutines.flow.conflate
+import kotlinx.coroutines.flow.emitAll
+import kotlinx.coroutines.flow.filter
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.sample
+import java.util.UUID
+
+/**
+ * [BleManager]'s scan results, connection state and notifications as Flows, for any number of
+ * collectors.
+ *
+ * The sources are hot: a [BleEventBus] subscriber on [BleEventBus.DIRECT] feeds them with
+ * `tryEmit`, which never suspends, and a source with no collectors costs one volatile read.
+ * Each collector picks its own [Delivery] so a UI that only wants the latest value cannot
+ * hold back a recorder that wants every one, and neither can block the Bluetooth callbacks.
+ *
+ * Any number may exist side by side with other bus subscribers; [close] unsubscribes.
+ */
+class BleStreams(private val manager: BleManager) {
+
+    data class ScanEvent(
+        val address: String,
+        val name: String?,
+        val rssi: Int,
+        val timestampNanos: Long,
+    )
+
+    data class ConnectionEvent(val address: String, val state: ConnectionState)
+
+    enum class ConnectionState { DISCONNECTED, CONNECTING, CONNECTED, SERVICES_DISCOVERED }
+
+    class Notification(
+        val characteristic: UUID,
+        /** Shared with other bus subscribers; safe to keep, don't modify. */
+        val value: ByteArray,
+        val timestampNanos: Long,
+    )
+
+    /** How a collector takes values from a hot source. */
+    sealed class Delivery {
+        /**
+         * Every value, through a per-collector buffer of [capacity]. If the collector falls
+         * further behind than that, the oldest buffered values are dropped for it alone.
+         */
+        data class All(val capacity: Int = DEFAULT_CAPACITY) : Delivery()
+
+        /** Only the most recent value whenever the collector is ready. */
+        object Latest : Delivery()
+
+        /** At most one value (the latest) per [periodMillis]. */
+        data class Sample(val periodMillis: Long) : Delivery()
+    }
+
+    private val scanEvents = MutableSharedFlow<ScanEvent>(
+        extraBufferCapacity = SOURCE_CAPACITY, onBufferOverflow = BufferOverflow.DROP_OLDEST)
+    private val notificationEvents = MutableSharedFlow<Notification>(
+        extraBufferCapacity = SOURCE_CAPACITY, onBufferOverflow = BufferOverflow.DROP_OLDEST)
+    private val connection = MutableStateFlow<ConnectionEvent?>(null)
+
+    private val subscription = manager.eventBus.subscribe(object : BleEventBus.Subscriber {
+        override fun onScanResult(address: String, name: String?, rssi: Int, timestampNanos: Long) {
+            if (scanEvents.subscriptionCount.value == 0) return
+            scanEvents.tryEmit(ScanEvent(address, name, rssi, timestampNanos))
+        }
+
+        override fun onConnectionStateChanged(address: String, state: Int) {
+            connection.value = ConnectionEvent(address, toConnectionState(state))
+        }
+
+        override fun onNotification(characteristic: UUID, value: ByteArray, timestampNanos: Long) {
+            if (notificationEvents.subscriptionCount.value == 0) return
+            notificationEvents.tryEmit(Notification(characteristic, value, timestampNanos))
+        }
+    }, BleEventBus.DIRECT)
+
+    /** Hot: every accepted scan result from whichever scan is running. */
+    val scanResults: SharedFlow<ScanEvent> = scanEvents.asSharedFlow()
+
+    /** Hot: all notifications from the current connection. */
+    val notifications: SharedFlow<Notification> = notificationEvents.asSharedFlow()
+
+    /** The current connection's last state; null until the first connect. */
+    val connectionState: StateFlow<ConnectionEvent?> = connection.asStateFlow()
+
+    fun scanResults(delivery: Delivery): Flow<ScanEvent> = scanResults.deliver(delivery)
+
+    fun notifications(delivery: Delivery): Flow<Notification> = notifications.deliver(delivery)
+
+    /** Notifications of one characteristic. */
+    fun notifications(characteristic: UUID, delivery: Delivery): Flow<Notification> =
+        notifications.filter { it.characteristic == characteristic }.deliver(delivery)
+
+    /**
+     * Cold: starts a scan with [config] when collected and stops it when the collector is
+     * cancelled. Collect on the main thread, where BleManager expects scan calls.
+     */
+    fun scan(config: ScanConfig, delivery: Delivery = Delivery.All()): Flow<ScanEvent> = flow {
+        manager.startScan(config)
+        try {
+            emitAll(scanResults)
+        } finally {
+            manager.stopScan()
+        }
+    }.deliver(delivery)
+
+    /** Unsubscribe from the manager; existing flows stop receiving values. */
+    fun close() {
+        subscription.cancel()
+    }
+
+    companion object {
+        const val DEFAULT_CAPACITY = 256
+
+        // Shared replay-free buffer; only fills while the slowest All-collector catches up
+        private const val SOURCE_CAPACITY = 64
+
+        private fun toConnectionState(state: Int): ConnectionState = when (state) {
+            BleEventBus.STATE_CONNECTING -> ConnectionState.CONNECTING
+            BleEventBus.STATE_CONNECTED -> ConnectionState.CONNECTED
+            BleEventBus.STATE_SERVICES_DISCOVERED -> ConnectionState.SERVICES_DISCOVERED
+            else -> ConnectionState.DISCONNECTED
+        }
+
+        @OptIn(FlowPreview::class)
+        private fun <T> Flow<T>.deliver(delivery: Delivery): Flow<T> = when (delivery) {
+            is Delivery.All -> buffer(delivery.capacity, BufferOverflow.DROP_OLDEST)
+            Delivery.Latest -> conflate()
+            is Delivery.Sample -> sample(delivery.periodMillis)
+        }
+    }
+}
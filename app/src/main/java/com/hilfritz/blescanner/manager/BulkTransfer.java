@@ -0,0 +1,235 @@
+package com.hilfritz.blescanner.manager;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothStatusCodes;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Streams a large payload to one characteristic as MTU-3 sized write-without-response packets.
+ *
+ * Pacing comes from the stack: every packet goes through the {@link GattOperationQueue} and the
+ * next one is only issued once the write callback for the previous one has arrived, which on
+ * Android means the controller has buffer space again. When the stack is still full it rejects
+ * the write (ERROR_GATT_WRITE_REQUEST_BUSY on API 33+, a false return before that); the packet
+ * is retried after a short back-off instead of failing the transfer.
+ *
+ * Write-without-response is not acknowledged by the peripheral. With an ack window of N, every
+ * Nth packet (and the last one) is sent as a write request instead, so the transfer cannot
+ * run more than N packets ahead of what the peripheral has actually taken in.
+ *
+ * Listener calls happen on the handler passed to the constructor. One transfer per instance.
+ */
+public class BulkTransfer {
+
+    private static final String TAG = "BulkTransfer";
+
+    /** Consecutive busy rejections of one packet before the transfer gives up. */
+    public static final int DEFAULT_MAX_BUSY_RETRIES = 50;
+    public static final long BUSY_RETRY_DELAY_MS = 5;
+    public static final long PROGRESS_INTERVAL_MS = 100;
+
+    public interface Listener {
+        default void onProgress(long bytesSent, long totalBytes, float kbps) {
+        }
+
+        void onComplete(Stats stats);
+
+        void onFailed(int status, Stats stats);
+    }
+
+    public static final class Stats {
+        public final long bytesSent;
+        public final long totalBytes;
+        public final int packets;
+        public final int busyRetries;
+        public final long elapsedMs;
+
+        Stats(long bytesSent, long totalBytes, int packets, int busyRetries, long elapsedMs) {
+            this.bytesSent = bytesSent;
+            this.totalBytes = totalBytes;
+            this.packets = packets;
+            this.busyRetries = busyRetries;
+            this.elapsedMs = elapsedMs;
+        }
+
+        /** Sustained throughput in kilobits per second. */
+        public float getKbps() {
+            return elapsedMs > 0 ? bytesSent * 8f / elapsedMs : 0f;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return bytesSent + "/" + totalBytes + " B in " + elapsedMs + " ms ("
+                    + String.format(java.util.Locale.US, "%.1f", getKbps()) + " kbps, "
+                    + packets + " packets, " + busyRetries + " busy retries)";
+        }
+    }
+
+    private final GattOperationQueue queue;
+    private final BluetoothGattCharacteristic characteristic;
+    private final Handler handler;
+    private final int ackWindow;
+    private final int maxBusyRetries;
+
+    private ByteBuffer data;
+    private int chunkSize;
+    private byte[] chunk;       // reused for every full packet
+    private byte[] tailChunk;   // the shorter last packet, if any
+    private long totalBytes;
+    private long bytesSent;
+    private int packets;
+    private int busyRetries;
+    private int retriesForPacket;
+    private long startedAt;
+    private long lastProgressAt;
+    private volatile boolean cancelled;
+    private Listener listener;
+    private final CompletableFuture<Stats> done = new CompletableFuture<>();
+
+    private final Runnable sendNextRunnable = this::sendNext;
+
+    /**
+     * @param ackWindow send every Nth packet with response; 0 = never
+     */
+    public BulkTransfer(@NonNull GattOperationQueue queue,
+                        @NonNull BluetoothGattCharacteristic characteristic,
+                        @NonNull Handler handler,
+                        int ackWindow) {
+        this(queue, characteristic, handler, ackWindow, DEFAULT_MAX_BUSY_RETRIES);
+    }
+
+    public BulkTransfer(@NonNull GattOperationQueue queue,
+                        @NonNull BluetoothGattCharacteristic characteristic,
+                        @NonNull Handler handler,
+                        int ackWindow,
+                        int maxBusyRetries) {
+        if (ackWindow < 0) throw new IllegalArgumentException("ackWindow must be >= 0");
+        this.queue = queue;
+        this.characteristic = characteristic;
+        this.handler = handler;
+        this.ackWindow = ackWindow;
+        this.maxBusyRetries = maxBusyRetries;
+    }
+
+    /**
+     * Send {@code data} from its position to its limit. The buffer is read in place, so don't
+     * touch it until the transfer finishes. Completes with the final stats, or exceptionally
+     * with {@link BulkTransferException} on failure or cancellation.
+     */
+    public CompletableFuture<Stats> start(@NonNull ByteBuffer data, int mtu, Listener listener) {
+        if (this.data != null) throw new IllegalStateException("transfer already started");
+        if (mtu < LinkProfile.DEFAULT_ATT_MTU) throw new IllegalArgumentException("mtu too small: " + mtu);
+        this.data = data.slice();
+        this.listener = listener;
+        this.chunkSize = mtu - 3;
+        this.chunk = new byte[chunkSize];
+        this.totalBytes = this.data.remaining();
+        int tail = (int) (totalBytes % chunkSize);
+        this.tailChunk = tail > 0 ? new byte[tail] : null;
+        this.startedAt = SystemClock.elapsedRealtime();
+        Log.d(TAG, "Sending " + totalBytes + " B in " + chunkSize + " B packets, ack window " + ackWindow);
+        handler.post(sendNextRunnable);
+        return done;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public Stats getStats() {
+        return new Stats(bytesSent, totalBytes, packets, busyRetries,
+                SystemClock.elapsedRealtime() - startedAt);
+    }
+
+    private void sendNext() {
+        if (cancelled) {
+            fail(GattOperationQueue.STATUS_CANCELLED);
+            return;
+        }
+        if (!data.hasRemaining()) {
+            Stats stats = getStats();
+            Log.d(TAG, "Done: " + stats);
+            if (listener != null) {
+                listener.onProgress(bytesSent, totalBytes, stats.getKbps());
+                listener.onComplete(stats);
+            }
+            done.complete(stats);
+            return;
+        }
+
+        // Peek, don't consume: a busy packet is re-sent from the same position
+        byte[] packet = data.remaining() >= chunkSize ? chunk : tailChunk;
+        int position = data.position();
+        data.get(packet);
+        data.position(position);
+
+        boolean last = data.remaining() == packet.length;
+        boolean withResponse = ackWindow > 0 && ((packets + 1) % ackWindow == 0 || last);
+        int writeType = withResponse
+                ? BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT
+                : BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE;
+
+        queue.write(characteristic, packet, writeType)
+                .thenAccept(result -> handler.post(() -> onPacketResult(packet.length, result.status)));
+    }
+
+    private void onPacketResult(int length, int status) {
+        if (status == BluetoothGatt.GATT_SUCCESS) {
+            data.position(data.position() + length);
+            bytesSent += length;
+            packets++;
+            retriesForPacket = 0;
+            long now = SystemClock.elapsedRealtime();
+            if (listener != null && now - lastProgressAt >= PROGRESS_INTERVAL_MS) {
+                lastProgressAt = now;
+                float kbps = now > startedAt ? bytesSent * 8f / (now - startedAt) : 0f;
+                listener.onProgress(bytesSent, totalBytes, kbps);
+            }
+            sendNext();
+            return;
+        }
+
+        if (isBusy(status) && retriesForPacket < maxBusyRetries) {
+            retriesForPacket++;
+            busyRetries++;
+            handler.postDelayed(sendNextRunnable, BUSY_RETRY_DELAY_MS);
+            return;
+        }
+
+        Log.w(TAG, "Packet " + packets + " failed with status: " + status);
+        fail(status);
+    }
+
+    private static boolean isBusy(int status) {
+        // Before API 33 a full stack just makes writeCharacteristic() return false
+        return status == BluetoothStatusCodes.ERROR_GATT_WRITE_REQUEST_BUSY
+                || status == GattOperationQueue.STATUS_NOT_STARTED;
+    }
+
+    private void fail(int status) {
+        Stats stats = getStats();
+        if (listener != null) listener.onFailed(status, stats);
+        done.completeExceptionally(new BulkTransferException(status, stats));
+    }
+
+    /** Carries the failing status and how far the transfer got. */
+    public static class BulkTransferException extends Exception {
+        public final int status;
+        public final Stats stats;
+
+        BulkTransferException(int status, Stats stats) {
+            super("Bulk transfer failed with status " + status + " after " + stats);
+            this.status = status;
+            this.stats = stats;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.hilfritz.blescanner.manager;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.hilfritz.blescanner.utils.AdvertisementParser;
+import com.hilfritz.blescanner.utils.MacAddresses;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+/**
+ * Plays a {@link CaptureRecorder} capture back through the listeners BleManager normally drives,
+ * so screens and decoders can be profiled against recorded field data without a radio.
+ *
+ * - Scan frames update the {@link DeviceRegistry} and call {@link BleManager.ScanListener#onDeviceFound}
+ *   and onDeviceSnapshots (bracketed by onScanStarted / onScanStopped).
+ * - Connection frames call {@link BleManager.ConnectionListener#onConnected} / onDisconnected.
+ * - Read frames call the {@link BleManager.CharacteristicReadListener}.
+ * - Notification frames are offered to the {@link NotificationRingBuffer}.
+ * - Scan, connection and notification frames are also published on the {@link BleEventBus},
+ *   exactly as BleManager publishes live events.
+ *
+ * Characteristics handed to listeners are detached BluetoothGattCharacteristic objects that only
+ * carry the UUID. Frames are read and dispatched on a private "capture-replay" thread; the
+ * BleManager listeners are called through the {@link #setCallbackExecutor callback executor}
+ * (directly on that thread by default).
+ */
+public class CaptureReplayer {
+
+    private static final String TAG = "CaptureReplayer";
+
+    public enum Mode {
+        /** Original timing. */
+        REAL_TIME,
+        /** Original timing divided by the speed factor (10x, 100x...). */
+        ACCELERATED,
+        /** No delays at all; for throughput profiling. */
+        AS_FAST_AS_POSSIBLE
+    }
+
+    public interface Listener {
+        default void onReplayFinished(long frames, long elapsedMs) {
+        }
+
+        default void onReplayFailed(IOException e) {
+        }
+    }
+
+    // AS_FAST_AS_POSSIBLE yields to the looper this often so stop() is honoured
+    private static final int FRAMES_PER_SLICE = 1024;
+
+    private final File dir;
+    private BleManager.ScanListener scanListener;
+    private BleManager.ConnectionListener connectionListener;
+    private BleManager.CharacteristicReadListener readListener;
+    private DeviceRegistry deviceRegistry;
+    private NotificationRingBuffer notificationBuffer;
+    private BleEventBus eventBus;
+    private Listener listener;
+    private Executor callbackExecutor = Runnable::run;
+
+    private final AdvertisementParser parser = new AdvertisementParser();
+    private final Map<UUID, BluetoothGattCharacteristic> characteristics = new HashMap<>();
+
+    private HandlerThread thread;
+    private Handler handler;
+    private CaptureReader reader;
+    private Mode mode;
+    private double speed;
+    private long firstFrameNanos;
+    private long startUptimeMs;
+    private long frames;
+    private boolean pending;
+    private boolean finished;
+    private volatile boolean running;
+
+    private final Runnable stepRunnable = this::step;
+
+    public CaptureReplayer(@NonNull File dir) {
+        this.dir = dir;
+    }
+
+    public CaptureReplayer setScanListener(BleManager.ScanListener listener) {
+        this.scanListener = listener;
+        return this;
+    }
+
+    public CaptureReplayer setConnectionListener(BleManager.ConnectionListener listener) {
+        this.connectionListener = listener;
+        return this;
+    }
+
+    public CaptureReplayer setCharacteristicReadListener(BleManager.CharacteristicReadListener listener) {
+        this.readListener = listener;
+        return this;
+    }
+
+    public CaptureReplayer setDeviceRegistry(DeviceRegistry registry) {
+        this.deviceRegistry = registry;
+        return this;
+    }
+
+    public CaptureReplayer setNotificationBuffer(NotificationRingBuffer buffer) {
+        this.notificationBuffer = buffer;
+        return this;
+    }
+
+    public CaptureReplayer setEventBus(BleEventBus bus) {
+        this.eventBus = bus;
+        return this;
+    }
+
+    public CaptureReplayer setListener(Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /** Where the scan, connection and read listeners run, e.g. BleManager's main executor. */
+    public CaptureReplayer setCallbackExecutor(@NonNull Executor executor) {
+        this.callbackExecutor = executor;
+        return this;
+    }
+
+    /**
+     * @param speed playback speed for {@link Mode#ACCELERATED}, e.g. 10 or 100; ignored otherwise
+     */
+    public synchronized void start(@NonNull Mode mode, double speed) {
+        if (running) throw new IllegalStateException("replay already running");
+        if (mode == Mode.ACCELERATED && !(speed > 0)) {
+            throw new IllegalArgumentException("speed must be > 0: " + speed);
+        }
+        this.mode = mode;
+        this.speed = mode == Mode.REAL_TIME ? 1.0 : speed;
+        this.reader = new CaptureReader(dir);
+        this.frames = 0;
+        this.pending = false;
+        this.finished = false;
+        this.running = true;
+
+        thread = new HandlerThread("capture-replay");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        handler.post(() -> {
+            startUptimeMs = SystemClock.uptimeMillis();
+            BleManager.ScanListener scan = scanListener;
+            if (scan != null) callbackExecutor.execute(scan::onScanStarted);
+            step();
+        });
+        Log.d(TAG, "Replaying " + dir + " " + mode + (mode == Mode.ACCELERATED ? " x" + speed : ""));
+    }
+
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        handler.removeCallbacks(stepRunnable);
+        handler.post(this::finish);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void step() {
+        if (!running) return;
+        try {
+            int budget = FRAMES_PER_SLICE;
+            while (running) {
+                if (!pending) {
+                    if (!reader.next()) {
+                        running = false;
+                        finish();
+                        return;
+                    }
+                    pending = true;
+                    if (frames == 0) firstFrameNanos = reader.getTimestampNanos();
+                }
+
+                if (mode != Mode.AS_FAST_AS_POSSIBLE) {
+                    long offsetMs = (long) ((reader.getTimestampNanos() - firstFrameNanos) / 1_000_000L / speed);
+                    long dueAt = startUptimeMs + offsetMs;
+                    if (dueAt > SystemClock.uptimeMillis()) {
+                        handler.postAtTime(stepRunnable, dueAt);
+                        return;
+                    }
+                } else if (--budget == 0) {
+                    handler.post(stepRunnable);
+                    return;
+                }
+
+                dispatch();
+                pending = false;
+                frames++;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Replay failed: " + e.getMessage());
+            running = false;
+            if (listener != null) listener.onReplayFailed(e);
+            finish();
+        }
+    }
+
+    private void dispatch() {
+        String address = MacAddresses.format(reader.getMac());
+        switch (reader.getType()) {
+            case CaptureRecorder.EVENT_SCAN: {
+                // Live scan results always carry an address; a frame recorded without one
+                // has nothing to key the registry, listeners or subscribers on
+                if (address == null) break;
+                byte[] adv = reader.getPayload();
+                String name = parser.parse(adv) && parser.hasName() ? parser.getName() : null;
+                int rssi = reader.getRssi();
+                DeviceRegistry.Snapshot snapshot = null;
+                if (deviceRegistry != null) {
+                    deviceRegistry.record(address, name, rssi, SystemClock.elapsedRealtime());
+                    snapshot = deviceRegistry.snapshot(address);
+                }
+                if (eventBus != null) {
+                    eventBus.publishScanResult(address, name, rssi, SystemClock.elapsedRealtimeNanos());
+                }
+                BleManager.ScanListener scan = scanListener;
+                if (scan == null) break;
+                List<DeviceRegistry.Snapshot> snapshots = snapshot != null
+                        ? Collections.singletonList(snapshot) : Collections.emptyList();
+                callbackExecutor.execute(() -> {
+                    scan.onDeviceFound(name, address, rssi);
+                    scan.onDeviceSnapshots(snapshots);
+                });
+                break;
+            }
+            case CaptureRecorder.EVENT_CONNECTED: {
+                publishConnectionState(address, BleEventBus.STATE_CONNECTED);
+                BleManager.ConnectionListener connection = connectionListener;
+                if (connection != null) callbackExecutor.execute(connection::onConnected);
+                break;
+            }
+            case CaptureRecorder.EVENT_DISCONNECTED: {
+                publishConnectionState(address, BleEventBus.STATE_DISCONNECTED);
+                BleManager.ConnectionListener connection = connectionListener;
+                if (connection != null) callbackExecutor.execute(connection::onDisconnected);
+                break;
+            }
+            case CaptureRecorder.EVENT_READ: {
+                BleManager.CharacteristicReadListener read = readListener;
+                if (read == null) break;
+                BluetoothGattCharacteristic ch = characteristic();
+                int status = reader.getStatus();
+                if (status == 0) {
+                    byte[] value = reader.getPayload();
+                    callbackExecutor.execute(() -> read.onCharacteristicRead(ch, value));
+                } else {
+                    callbackExecutor.execute(() -> read.onCharacteristicReadError(ch, status));
+                }
+                break;
+            }
+            case CaptureRecorder.EVENT_NOTIFY: {
+                // Same order as BleManager's live onCharacteristicChanged: ring, then bus
+                byte[] value = reader.getPayload();
+                long now = SystemClock.elapsedRealtimeNanos();
+                if (notificationBuffer != null) {
+                    notificationBuffer.offer(reader.getUuidMsb(), reader.getUuidLsb(),
+                            value, 0, value.length, now);
+                }
+                if (eventBus != null) {
+                    eventBus.publishNotification(new UUID(reader.getUuidMsb(), reader.getUuidLsb()),
+                            value, now);
+                }
+                break;
+            }
+            default:
+                // Writes and unknown types have no listener
+                break;
+        }
+    }
+
+    // Subscribers get an address with every connection event, as from a live connection
+    private void publishConnectionState(String address, int state) {
+        if (eventBus != null && address != null) eventBus.publishConnectionState(address, state);
+    }
+
+    private BluetoothGattCharacteristic characteristic() {
+        UUID uuid = new UUID(reader.getUuidMsb(), reader.getUuidLsb());
+        BluetoothGattCharacteristic ch = characteristics.get(uuid);
+        if (ch == null) {
+            ch = new BluetoothGattCharacteristic(uuid, 0, 0);
+            characteristics.put(uuid, ch);
+        }
+        return ch;
+    }
+
+    private void finish() {
+        if (finished) return;
+        finished = true;
+        long elapsed = SystemClock.uptimeMillis() - startUptimeMs;
+        Log.d(TAG, "Replay done: " + frames + " frames in " + elapsed + " ms");
+        BleManager.ScanListener scan = scanListener;
+        if (scan != null) callbackExecutor.execute(scan::onScanStopped);
+        if (listener != null) listener.onReplayFinished(frames, elapsed);
+        thread.quitSafely();
+    }
+}
@@ -0,0 +1,180 @@
+package com.hilfritz.blescanner.manager;
+
+import android.Manifest;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Concurrent GATT connections, one {@link GattSession} per address.
+ *
+ * Android caps concurrent LE links (typically around 7, fewer on some chipsets), so the pool
+ * has a fixed maximum. When it is full, acquiring a new address closes the least recently
+ * used session that has no operations pending; if every session is busy the acquire fails.
+ * Sessions whose link drops close themselves and leave the pool. Every session the pool drops
+ * (eviction, {@link #closeIdleSessions}, {@link #closeAll}) reports onDisconnected to its
+ * listener with {@link GattSession#STATUS_CLOSED_LOCALLY}.
+ */
+public class GattConnectionPool {
+
+    private static final String TAG = "GattConnectionPool";
+
+    public static final int DEFAULT_MAX_SESSIONS = 7;
+
+    private final Context appContext;
+    private final BluetoothAdapter bluetoothAdapter;
+    private final Handler handler;
+    private final int maxSessions;
+    // Access-ordered: iteration starts at the least recently used session
+    private final LinkedHashMap<String, GattSession> sessions = new LinkedHashMap<>(16, 0.75f, true);
+
+    GattConnectionPool(@NonNull Context appContext, BluetoothAdapter bluetoothAdapter,
+                       @NonNull Handler handler, int maxSessions) {
+        if (maxSessions <= 0) throw new IllegalArgumentException("maxSessions must be > 0");
+        this.appContext = appContext;
+        this.bluetoothAdapter = bluetoothAdapter;
+        this.handler = handler;
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * The session for {@code address}, connecting if needed. An existing session gets the new
+     * listener. Returns null if Bluetooth/permission is missing, the pool is full of busy
+     * sessions or the stack refuses the connection.
+     */
+    public GattSession acquire(@NonNull String address, GattSession.Listener listener) {
+        if (bluetoothAdapter == null || !bluetoothAdapter.isEnabled()) {
+            Log.w(TAG, "Bluetooth not available or not enabled");
+            return null;
+        }
+        if (!hasConnectPermission()) {
+            Log.w(TAG, "Missing connect permission");
+            return null;
+        }
+
+        GattSession session;
+        GattSession evicted = null;
+        synchronized (this) {
+            session = sessions.get(address);
+            if (session != null && (session.getState() == GattSession.State.CONNECTING
+                    || session.getState() == GattSession.State.CONNECTED)) {
+                session.setListener(listener);
+                return session;
+            }
+            if (session != null) {
+                // Closed but still mapped; replace it
+                sessions.remove(address);
+                evicted = session;
+            }
+            if (evicted == null && sessions.size() >= maxSessions) {
+                evicted = removeLeastRecentlyUsedIdle();
+                if (evicted == null) {
+                    Log.w(TAG, "Pool full (" + maxSessions + ") and every session is busy");
+                    return null;
+                }
+            }
+            session = new GattSession(address, handler, this, listener);
+            sessions.put(address, session);
+        }
+        if (evicted != null) {
+            Log.d(TAG, "Evicting session " + evicted.getAddress());
+            evicted.closeInternal();
+        }
+
+        BluetoothDevice device = bluetoothAdapter.getRemoteDevice(address);
+        session.connect(appContext, device);
+        if (session.getState() == GattSession.State.CLOSED) {
+            Log.w(TAG, "connectGatt failed for " + address);
+            return null;
+        }
+        Log.d(TAG, "Connecting to " + address + " (" + size() + "/" + maxSessions + ")");
+        return session;
+    }
+
+    public synchronized GattSession get(@NonNull String address) {
+        return sessions.get(address);
+    }
+
+    public synchronized List<GattSession> getSessions() {
+        return new ArrayList<>(sessions.values());
+    }
+
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    /** Close sessions with nothing pending and no activity for {@code idleMs}. */
+    public int closeIdleSessions(long idleMs) {
+        long now = SystemClock.elapsedRealtime();
+        List<GattSession> closed = new ArrayList<>();
+        synchronized (this) {
+            Iterator<GattSession> it = sessions.values().iterator();
+            while (it.hasNext()) {
+                GattSession s = it.next();
+                if (s.isIdle() && now - s.getLastActivityMs() >= idleMs) {
+                    it.remove();
+                    closed.add(s);
+                }
+            }
+        }
+        for (GattSession s : closed) s.closeInternal();
+        return closed.size();
+    }
+
+    public void closeAll() {
+        List<GattSession> all;
+        synchronized (this) {
+            all = new ArrayList<>(sessions.values());
+            sessions.clear();
+        }
+        for (GattSession s : all) s.closeInternal();
+    }
+
+    synchronized void touch(GattSession session) {
+        // get() on an access-ordered map moves the entry to the MRU end
+        sessions.get(session.getAddress());
+    }
+
+    synchronized void remove(GattSession session) {
+        if (sessions.get(session.getAddress()) == session) {
+            sessions.remove(session.getAddress());
+        }
+    }
+
+    private GattSession removeLeastRecentlyUsedIdle() {
+        Iterator<GattSession> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            GattSession s = it.next();
+            if (s.isIdle() && s.getState() != GattSession.State.CONNECTING) {
+                it.remove();
+                return s;
+            }
+        }
+        return null;
+    }
+
+    private boolean hasConnectPermission() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            return ContextCompat.checkSelfPermission(appContext,
+                    Manifest.permission.BLUETOOTH_CONNECT) == PackageManager.PERMISSION_GRANTED;
+        }
+        return true;
+    }
+}
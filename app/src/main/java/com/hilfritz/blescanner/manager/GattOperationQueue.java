@@ -0,0 +1,373 @@
+package com.hilfritz.blescanner.manager;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothStatusCodes;
+import android.os.Build;
+import android.os.Handler;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Serializes GATT operations for one connection.
+ *
+ * Android only allows a single outstanding operation per {@link BluetoothGatt}; anything issued
+ * while another one is in flight is rejected and easy to lose. This queue holds reads, writes,
+ * descriptor writes, MTU and PHY requests, starts the next one straight from the completion
+ * callback (so the link never sits idle between operations) and fails an operation with
+ * {@link #STATUS_TIMEOUT} if the stack never answers.
+ *
+ * The owner forwards the matching {@link android.bluetooth.BluetoothGattCallback} events to the
+ * {@code on...} methods below. Callers must hold BLUETOOTH_CONNECT before enqueuing.
+ */
+@SuppressLint("MissingPermission")
+public class GattOperationQueue {
+
+    private static final String TAG = "GattOperationQueue";
+
+    public static final long DEFAULT_TIMEOUT_MS = 5_000;
+
+    /** The stack never called back within the operation timeout. */
+    public static final int STATUS_TIMEOUT = -1;
+    /** The stack refused to start the operation (busy, bad handle, not connected...). */
+    public static final int STATUS_NOT_STARTED = -2;
+    /** The operation was dropped because the connection went away. */
+    public static final int STATUS_CANCELLED = -3;
+
+    public enum Type {
+        READ,
+        WRITE,
+        WRITE_DESCRIPTOR,
+        REQUEST_MTU,
+        SET_PREFERRED_PHY,
+        READ_PHY
+    }
+
+    /**
+     * Outcome of a queued operation. {@code value} holds the bytes of a read;
+     * {@code arg1}/{@code arg2} hold the MTU, or the TX/RX PHY for PHY requests and reads.
+     */
+    public static final class Result {
+        public final Type type;
+        public final int status;
+        public final byte[] value;
+        public final int arg1;
+        public final int arg2;
+
+        Result(Type type, int status, byte[] value, int arg1, int arg2) {
+            this.type = type;
+            this.status = status;
+            this.value = value;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+        }
+
+        public boolean isSuccess() {
+            return status == BluetoothGatt.GATT_SUCCESS;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return type + "(status=" + status + ", arg1=" + arg1 + ", arg2=" + arg2 + ")";
+        }
+    }
+
+    private abstract static class Operation implements Runnable {
+        final Type type;
+        final Object target;
+        final long timeoutMs;
+        final CompletableFuture<Result> future = new CompletableFuture<>();
+        private final GattOperationQueue queue;
+        int startCode = STATUS_NOT_STARTED;
+
+        Operation(GattOperationQueue queue, Type type, Object target, long timeoutMs) {
+            this.queue = queue;
+            this.type = type;
+            this.target = target;
+            this.timeoutMs = timeoutMs;
+        }
+
+        /** Issue the call; return GATT_SUCCESS if the stack accepted it. */
+        abstract int start(BluetoothGatt gatt);
+
+        // Timeout tick, posted on the queue handler
+        @Override
+        public void run() {
+            queue.onTimeout(this);
+        }
+    }
+
+    private final Handler handler;
+    private final ArrayDeque<Operation> pending = new ArrayDeque<>();
+    private BluetoothGatt gatt;
+    private Operation current;
+    private long defaultTimeoutMs = DEFAULT_TIMEOUT_MS;
+
+    public GattOperationQueue(@NonNull Handler handler) {
+        this.handler = handler;
+    }
+
+    // region Lifecycle
+
+    public synchronized void attach(@NonNull BluetoothGatt gatt) {
+        this.gatt = gatt;
+    }
+
+    /**
+     * Forget the current connection and cancel everything that is queued or in flight.
+     */
+    public void detach() {
+        List<Operation> dropped;
+        synchronized (this) {
+            gatt = null;
+            dropped = new ArrayList<>(pending);
+            pending.clear();
+            if (current != null) {
+                handler.removeCallbacks(current);
+                dropped.add(0, current);
+                current = null;
+            }
+        }
+        for (Operation op : dropped) {
+            op.future.complete(new Result(op.type, STATUS_CANCELLED, null, 0, 0));
+        }
+    }
+
+    public synchronized void setDefaultTimeout(long timeoutMs) {
+        this.defaultTimeoutMs = timeoutMs;
+    }
+
+    public synchronized int size() {
+        return pending.size() + (current != null ? 1 : 0);
+    }
+
+    // endregion
+
+    // region Operations
+
+    public CompletableFuture<Result> read(@NonNull BluetoothGattCharacteristic characteristic) {
+        return read(characteristic, defaultTimeout());
+    }
+
+    public CompletableFuture<Result> read(@NonNull BluetoothGattCharacteristic characteristic,
+                                          long timeoutMs) {
+        return enqueue(new Operation(this, Type.READ, characteristic, timeoutMs) {
+            @Override
+            int start(BluetoothGatt gatt) {
+                return gatt.readCharacteristic(characteristic)
+                        ? BluetoothGatt.GATT_SUCCESS : STATUS_NOT_STARTED;
+            }
+        });
+    }
+
+    public CompletableFuture<Result> write(@NonNull BluetoothGattCharacteristic characteristic,
+                                           @NonNull byte[] value,
+                                           int writeType) {
+        return write(characteristic, value, writeType, defaultTimeout());
+    }
+
+    public CompletableFuture<Result> write(@NonNull BluetoothGattCharacteristic characteristic,
+                                           @NonNull byte[] value,
+                                           int writeType,
+                                           long timeoutMs) {
+        return enqueue(new Operation(this, Type.WRITE, characteristic, timeoutMs) {
+            @Override
+            int start(BluetoothGatt gatt) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                    int code = gatt.writeCharacteristic(characteristic, value, writeType);
+                    return code == BluetoothStatusCodes.SUCCESS ? BluetoothGatt.GATT_SUCCESS : code;
+                }
+                characteristic.setWriteType(writeType);
+                characteristic.setValue(value);
+                return gatt.writeCharacteristic(characteristic)
+                        ? BluetoothGatt.GATT_SUCCESS : STATUS_NOT_STARTED;
+            }
+        });
+    }
+
+    public CompletableFuture<Result> writeDescriptor(@NonNull BluetoothGattDescriptor descriptor,
+                                                     @NonNull byte[] value) {
+        return enqueue(new Operation(this, Type.WRITE_DESCRIPTOR, descriptor, defaultTimeout()) {
+            @Override
+            int start(BluetoothGatt gatt) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                    int code = gatt.writeDescriptor(descriptor, value);
+                    return code == BluetoothStatusCodes.SUCCESS ? BluetoothGatt.GATT_SUCCESS : code;
+                }
+                descriptor.setValue(value);
+                return gatt.writeDescriptor(descriptor)
+                        ? BluetoothGatt.GATT_SUCCESS : STATUS_NOT_STARTED;
+            }
+        });
+    }
+
+    public CompletableFuture<Result> requestMtu(int mtu) {
+        return enqueue(new Operation(this, Type.REQUEST_MTU, null, defaultTimeout()) {
+            @Override
+            int start(BluetoothGatt gatt) {
+                return gatt.requestMtu(mtu) ? BluetoothGatt.GATT_SUCCESS : STATUS_NOT_STARTED;
+            }
+        });
+    }
+
+    /**
+     * Request a PHY change (API 26+). On older releases the result fails with
+     * {@link #STATUS_NOT_STARTED}.
+     */
+    public CompletableFuture<Result> setPreferredPhy(int txPhy, int rxPhy, int phyOptions) {
+        return setPreferredPhy(txPhy, rxPhy, phyOptions, defaultTimeout());
+    }
+
+    /**
+     * As above with its own timeout: many stacks send no onPhyUpdate when the PHY is already the
+     * one asked for, so callers use a short timeout rather than hold the queue for the default.
+     */
+    public CompletableFuture<Result> setPreferredPhy(int txPhy, int rxPhy, int phyOptions,
+                                                     long timeoutMs) {
+        return enqueue(new Operation(this, Type.SET_PREFERRED_PHY, null, timeoutMs) {
+            @Override
+            int start(BluetoothGatt gatt) {
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return STATUS_NOT_STARTED;
+                gatt.setPreferredPhy(txPhy, rxPhy, phyOptions);
+                return BluetoothGatt.GATT_SUCCESS;
+            }
+        });
+    }
+
+    /**
+     * Read the PHY currently in use (API 26+). On older releases the result fails with
+     * {@link #STATUS_NOT_STARTED}.
+     */
+    public CompletableFuture<Result> readPhy() {
+        return enqueue(new Operation(this, Type.READ_PHY, null, defaultTimeout()) {
+            @Override
+            int start(BluetoothGatt gatt) {
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return STATUS_NOT_STARTED;
+                gatt.readPhy();
+                return BluetoothGatt.GATT_SUCCESS;
+            }
+        });
+    }
+
+    // endregion
+
+    // region Callbacks (forwarded from BluetoothGattCallback)
+
+    public void onCharacteristicRead(@NonNull BluetoothGattCharacteristic characteristic,
+                                     byte[] value,
+                                     int status) {
+        complete(Type.READ, characteristic, status, value, 0, 0);
+    }
+
+    public void onCharacteristicWrite(@NonNull BluetoothGattCharacteristic characteristic,
+                                      int status) {
+        complete(Type.WRITE, characteristic, status, null, 0, 0);
+    }
+
+    public void onDescriptorWrite(@NonNull BluetoothGattDescriptor descriptor, int status) {
+        complete(Type.WRITE_DESCRIPTOR, descriptor, status, null, 0, 0);
+    }
+
+    public void onMtuChanged(int mtu, int status) {
+        complete(Type.REQUEST_MTU, null, status, null, mtu, 0);
+    }
+
+    public void onPhyUpdate(int txPhy, int rxPhy, int status) {
+        complete(Type.SET_PREFERRED_PHY, null, status, null, txPhy, rxPhy);
+    }
+
+    public void onPhyRead(int txPhy, int rxPhy, int status) {
+        complete(Type.READ_PHY, null, status, null, txPhy, rxPhy);
+    }
+
+    // endregion
+
+    // region Internals
+
+    private synchronized long defaultTimeout() {
+        return defaultTimeoutMs;
+    }
+
+    private CompletableFuture<Result> enqueue(Operation op) {
+        List<Operation> failed = new ArrayList<>();
+        synchronized (this) {
+            if (gatt == null) {
+                failed.add(op);
+            } else {
+                pending.add(op);
+                if (current == null) startNextLocked(failed);
+            }
+        }
+        failAll(failed);
+        return op.future;
+    }
+
+    private void complete(Type type, Object target, int status, byte[] value, int arg1, int arg2) {
+        Operation done;
+        List<Operation> failed = new ArrayList<>();
+        synchronized (this) {
+            if (current == null || current.type != type
+                    || (target != null && current.target != target)) {
+                Log.w(TAG, "Unexpected " + type + " callback, current=" + (current != null ? current.type : null));
+                return;
+            }
+            done = current;
+            current = null;
+            handler.removeCallbacks(done);
+            // Keep the link busy: issue the next request before handing the result out
+            startNextLocked(failed);
+        }
+        failAll(failed);
+        done.future.complete(new Result(type, status, value, arg1, arg2));
+    }
+
+    private void onTimeout(Operation op) {
+        List<Operation> failed = new ArrayList<>();
+        synchronized (this) {
+            if (current != op) return;
+            current = null;
+            Log.w(TAG, op.type + " timed out after " + op.timeoutMs + " ms");
+            startNextLocked(failed);
+        }
+        failAll(failed);
+        op.future.complete(new Result(op.type, STATUS_TIMEOUT, null, 0, 0));
+    }
+
+    private void startNextLocked(List<Operation> failed) {
+        while (current == null && gatt != null && !pending.isEmpty()) {
+            Operation op = pending.poll();
+            int code;
+            try {
+                code = op.start(gatt);
+            } catch (SecurityException e) {
+                Log.e(TAG, op.type + " rejected: " + e.getMessage());
+                code = STATUS_NOT_STARTED;
+            }
+            if (code == BluetoothGatt.GATT_SUCCESS) {
+                current = op;
+                handler.postDelayed(op, op.timeoutMs);
+            } else {
+                Log.w(TAG, op.type + " failed to start, code=" + code);
+                op.startCode = code;
+                failed.add(op);
+            }
+        }
+    }
+
+    private static void failAll(List<Operation> failed) {
+        for (Operation op : failed) {
+            op.future.complete(new Result(op.type, op.startCode, null, 0, 0));
+        }
+    }
+
+    // endregion
+}
@@ -0,0 +1,383 @@
+package com.hilfritz.blescanner.manager;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Disk-backed copy of each device's attribute table, one small binary file per address.
+ *
+ * Android cannot skip {@code discoverServices()}: BluetoothGatt only accepts reads and writes on
+ * the objects it produced itself. What the cache buys is time-to-first-render: on reconnect the
+ * cached table is shown right away (see {@link #toRenderOnlyServices}) while discovery runs, and
+ * once it finishes {@link #verify} checks the cached copy against the GATT Database Hash
+ * (0x2B2A) when the peripheral exposes one, or against the discovered table otherwise.
+ * A Service Changed indication ({@code onServiceChanged}) drops the entry.
+ *
+ * Hit rate is hits / (hits + misses) over all verifications; a device seen for the first time
+ * counts as a miss.
+ */
+public class GattServiceCache {
+
+    private static final String TAG = "GattServiceCache";
+
+    public static final UUID GENERIC_ATTRIBUTE_SERVICE_UUID =
+            UUID.fromString("00001801-0000-1000-8000-00805f9b34fb");
+    public static final UUID DATABASE_HASH_UUID =
+            UUID.fromString("00002b2a-0000-1000-8000-00805f9b34fb");
+
+    private static final int FILE_MAGIC = 0x47415454; // "GATT"
+    private static final int FILE_VERSION = 1;
+    private static final String FILE_SUFFIX = ".gatt";
+
+    public static final class CharacteristicRecord {
+        public final UUID uuid;
+        public final int properties;
+        public final int permissions;
+        public final List<UUID> descriptors;
+
+        CharacteristicRecord(UUID uuid, int properties, int permissions, List<UUID> descriptors) {
+            this.uuid = uuid;
+            this.properties = properties;
+            this.permissions = permissions;
+            this.descriptors = descriptors;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CharacteristicRecord)) return false;
+            CharacteristicRecord c = (CharacteristicRecord) o;
+            return properties == c.properties && permissions == c.permissions
+                    && uuid.equals(c.uuid) && descriptors.equals(c.descriptors);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(uuid, properties, permissions, descriptors);
+        }
+    }
+
+    public static final class ServiceRecord {
+        public final UUID uuid;
+        public final int type;
+        public final List<CharacteristicRecord> characteristics;
+
+        ServiceRecord(UUID uuid, int type, List<CharacteristicRecord> characteristics) {
+            this.uuid = uuid;
+            this.type = type;
+            this.characteristics = characteristics;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ServiceRecord)) return false;
+            ServiceRecord s = (ServiceRecord) o;
+            return type == s.type && uuid.equals(s.uuid) && characteristics.equals(s.characteristics);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(uuid, type, characteristics);
+        }
+    }
+
+    public static final class Entry {
+        /** Null when the peripheral has no Database Hash characteristic. */
+        public final byte[] databaseHash;
+        public final List<ServiceRecord> services;
+
+        Entry(byte[] databaseHash, List<ServiceRecord> services) {
+            this.databaseHash = databaseHash;
+            this.services = services;
+        }
+    }
+
+    private final File dir;
+    // Entries already read from (or written to) disk; a null value means "known absent"
+    private final Map<String, Entry> memory = new HashMap<>();
+    private int hits;
+    private int misses;
+
+    public GattServiceCache(@NonNull File dir) {
+        this.dir = dir;
+    }
+
+    // region Lookup / update
+
+    /** The cached table for {@code address}, or null. May read the file: not on the main thread. */
+    public synchronized Entry get(@NonNull String address) {
+        if (memory.containsKey(address)) return memory.get(address);
+        Entry entry = readFile(address);
+        memory.put(address, entry);
+        return entry;
+    }
+
+    /** Cached table as detached BluetoothGattService objects for display; null if none. */
+    public List<BluetoothGattService> getRenderOnlyServices(@NonNull String address) {
+        Entry entry = get(address);
+        return entry != null ? toRenderOnlyServices(entry) : null;
+    }
+
+    /**
+     * Compare a fresh discovery with the cache, store it if it differs, and count a hit or
+     * miss. {@code databaseHash} is the value read from 0x2B2A, or null if unavailable.
+     * Returns true on a hit.
+     */
+    public synchronized boolean validate(@NonNull String address,
+                                         @NonNull List<BluetoothGattService> discovered,
+                                         byte[] databaseHash) {
+        Entry cached = get(address);
+        List<ServiceRecord> fresh = toRecords(discovered);
+        boolean hit;
+        if (cached == null) {
+            hit = false;
+        } else if (databaseHash != null && cached.databaseHash != null) {
+            hit = Arrays.equals(databaseHash, cached.databaseHash);
+        } else {
+            hit = cached.services.equals(fresh);
+        }
+
+        if (hit) {
+            hits++;
+        } else {
+            misses++;
+            Entry entry = new Entry(databaseHash, fresh);
+            memory.put(address, entry);
+            writeFile(address, entry);
+        }
+        Log.d(TAG, address + (hit ? " cache hit" : " cache miss")
+                + " (hit rate " + Math.round(getHitRate() * 100) + "%)");
+        return hit;
+    }
+
+    /**
+     * Read the Database Hash through {@code queue} if the table has one, then
+     * {@link #validate}. Completes with the hit/miss result.
+     */
+    public CompletableFuture<Boolean> verify(@NonNull String address,
+                                             @NonNull List<BluetoothGattService> discovered,
+                                             @NonNull GattOperationQueue queue) {
+        BluetoothGattCharacteristic hashChar = findDatabaseHash(discovered);
+        if (hashChar == null) {
+            return CompletableFuture.completedFuture(validate(address, discovered, null));
+        }
+        return queue.read(hashChar).thenApply(result ->
+                validate(address, discovered, result.isSuccess() ? result.value : null));
+    }
+
+    /** Forget {@code address}, e.g. after Service Changed. */
+    public synchronized void invalidate(@NonNull String address) {
+        memory.put(address, null);
+        File f = fileFor(address);
+        if (f.exists() && !f.delete()) {
+            Log.w(TAG, "Could not delete " + f);
+        }
+    }
+
+    public synchronized void clear() {
+        memory.clear();
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File f : files) {
+            if (f.getName().endsWith(FILE_SUFFIX) && !f.delete()) {
+                Log.w(TAG, "Could not delete " + f);
+            }
+        }
+    }
+
+    // endregion
+
+    // region Stats
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    /** 0 when nothing has been verified yet. */
+    public synchronized float getHitRate() {
+        int total = hits + misses;
+        return total == 0 ? 0f : (float) hits / total;
+    }
+
+    public synchronized void resetStats() {
+        hits = 0;
+        misses = 0;
+    }
+
+    // endregion
+
+    // region Conversion
+
+    public static BluetoothGattCharacteristic findDatabaseHash(List<BluetoothGattService> services) {
+        for (BluetoothGattService s : services) {
+            if (GENERIC_ATTRIBUTE_SERVICE_UUID.equals(s.getUuid())) {
+                return s.getCharacteristic(DATABASE_HASH_UUID);
+            }
+        }
+        return null;
+    }
+
+    static List<ServiceRecord> toRecords(List<BluetoothGattService> services) {
+        List<ServiceRecord> out = new ArrayList<>(services.size());
+        for (BluetoothGattService s : services) {
+            List<CharacteristicRecord> chars = new ArrayList<>();
+            for (BluetoothGattCharacteristic c : s.getCharacteristics()) {
+                List<UUID> descriptors = new ArrayList<>();
+                for (BluetoothGattDescriptor d : c.getDescriptors()) {
+                    descriptors.add(d.getUuid());
+                }
+                chars.add(new CharacteristicRecord(c.getUuid(), c.getProperties(),
+                        c.getPermissions(), descriptors));
+            }
+            out.add(new ServiceRecord(s.getUuid(), s.getType(), chars));
+        }
+        return out;
+    }
+
+    /**
+     * Rebuild BluetoothGattService objects for display. They are not bound to a connection:
+     * reads and writes on them fail, so swap them for the discovered ones before use.
+     */
+    public static List<BluetoothGattService> toRenderOnlyServices(Entry entry) {
+        List<BluetoothGattService> out = new ArrayList<>(entry.services.size());
+        for (ServiceRecord s : entry.services) {
+            BluetoothGattService service = new BluetoothGattService(s.uuid, s.type);
+            for (CharacteristicRecord c : s.characteristics) {
+                BluetoothGattCharacteristic ch =
+                        new BluetoothGattCharacteristic(c.uuid, c.properties, c.permissions);
+                for (UUID d : c.descriptors) {
+                    ch.addDescriptor(new BluetoothGattDescriptor(d, 0));
+                }
+                service.addCharacteristic(ch);
+            }
+            out.add(service);
+        }
+        return out;
+    }
+
+    // endregion
+
+    // region File format
+
+    private File fileFor(String address) {
+        return new File(dir, address.replace(":", "") + FILE_SUFFIX);
+    }
+
+    private Entry readFile(String address) {
+        File f = fileFor(address);
+        if (!f.isFile()) return null;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(f)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                Log.w(TAG, "Ignoring cache file with unknown format: " + f);
+                return null;
+            }
+            byte[] hash = null;
+            int hashLen = in.readUnsignedShort();
+            if (hashLen > 0) {
+                hash = new byte[hashLen];
+                in.readFully(hash);
+            }
+            int serviceCount = in.readUnsignedShort();
+            List<ServiceRecord> services = new ArrayList<>(serviceCount);
+            for (int i = 0; i < serviceCount; i++) {
+                UUID sUuid = readUuid(in);
+                int type = in.readUnsignedByte();
+                int charCount = in.readUnsignedShort();
+                List<CharacteristicRecord> chars = new ArrayList<>(charCount);
+                for (int j = 0; j < charCount; j++) {
+                    UUID cUuid = readUuid(in);
+                    int props = in.readInt();
+                    int perms = in.readInt();
+                    int descCount = in.readUnsignedShort();
+                    List<UUID> descs = new ArrayList<>(descCount);
+                    for (int k = 0; k < descCount; k++) descs.add(readUuid(in));
+                    chars.add(new CharacteristicRecord(cUuid, props, perms,
+                            Collections.unmodifiableList(descs)));
+                }
+                services.add(new ServiceRecord(sUuid, type, Collections.unmodifiableList(chars)));
+            }
+            return new Entry(hash, Collections.unmodifiableList(services));
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read " + f + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeFile(String address, Entry entry) {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "Could not create " + dir);
+            return;
+        }
+        File f = fileFor(address);
+        File tmp = new File(dir, f.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            byte[] hash = entry.databaseHash;
+            out.writeShort(hash != null ? hash.length : 0);
+            if (hash != null) out.write(hash);
+            out.writeShort(entry.services.size());
+            for (ServiceRecord s : entry.services) {
+                writeUuid(out, s.uuid);
+                out.writeByte(s.type);
+                out.writeShort(s.characteristics.size());
+                for (CharacteristicRecord c : s.characteristics) {
+                    writeUuid(out, c.uuid);
+                    out.writeInt(c.properties);
+                    out.writeInt(c.permissions);
+                    out.writeShort(c.descriptors.size());
+                    for (UUID d : c.descriptors) writeUuid(out, d);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write " + f + ": " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        // Rename so a crash mid-write never leaves a truncated entry behind
+        if (!tmp.renameTo(f)) {
+            Log.w(TAG, "Could not replace " + f);
+            tmp.delete();
+        }
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    // endregion
+}
@@ -0,0 +1,290 @@
+package com.hilfritz.blescanner.manager;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.BluetoothProfile;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One GATT connection owned by a {@link GattConnectionPool}: its own BluetoothGatt, callback,
+ * {@link GattOperationQueue} and listener. Operations should go through the session (not
+ * {@link #getGatt()}) so they are serialized and count as activity for LRU eviction.
+ *
+ * A dropped link (or a connect the stack refuses) closes the session and takes it out of the
+ * pool, so it never holds a client slot while disconnected; acquire the address again to
+ * reconnect.
+ *
+ * {@link Listener#onDisconnected} is called exactly once per session handed out by the pool,
+ * however it ends: link loss (with the stack's status), {@link #close()}, or the pool dropping
+ * it for LRU eviction, idleness or closeAll() (with {@link #STATUS_CLOSED_LOCALLY}). Closing
+ * unregisters the GATT callback, so in the latter cases no disconnect event would arrive from
+ * the stack. The call is posted to the pool's looper unless it is already running there.
+ */
+@SuppressLint("MissingPermission")
+public class GattSession {
+
+    private static final String TAG = "GattSession";
+
+    /** onDisconnected status when this side closed the session (GATT_CONN_TERMINATE_LOCAL_HOST). */
+    public static final int STATUS_CLOSED_LOCALLY = 0x16;
+
+    public enum State {
+        CONNECTING,
+        CONNECTED,
+        CLOSED
+    }
+
+    public interface Listener {
+        void onConnected(GattSession session);
+        void onServicesDiscovered(GattSession session, List<BluetoothGattService> services);
+        void onDisconnected(GattSession session, int status);
+
+        default void onNotification(GattSession session,
+                                    BluetoothGattCharacteristic characteristic,
+                                    byte[] value) {
+        }
+    }
+
+    private final String address;
+    // The pool's looper: timeouts, and GATT callbacks too on API 26+
+    private final Handler handler;
+    private final GattOperationQueue queue;
+    private final GattConnectionPool pool;
+    private volatile Listener listener;
+    // Closed from the main thread (close(), pool eviction) and from the callback thread (link
+    // loss): the CAS in closeInternal() lets exactly one of them release the client
+    private final AtomicReference<State> state = new AtomicReference<>(State.CONNECTING);
+    private volatile long lastActivityMs = SystemClock.elapsedRealtime();
+    // Taken with getAndSet(null) so only one caller ever closes the client
+    private final AtomicReference<BluetoothGatt> gatt = new AtomicReference<>();
+
+    GattSession(@NonNull String address, @NonNull Handler handler,
+                @NonNull GattConnectionPool pool, Listener listener) {
+        this.address = address;
+        this.handler = handler;
+        this.queue = new GattOperationQueue(handler);
+        this.pool = pool;
+        this.listener = listener;
+    }
+
+    void connect(Context context, BluetoothDevice device) {
+        BluetoothGatt g = BleManager.connectGatt(context, device, callback, handler);
+        if (g == null) {
+            // acquire() returns null for this; there is no session to report on
+            pool.remove(this);
+            closeInternal(STATUS_CLOSED_LOCALLY, false);
+            return;
+        }
+        gatt.set(g);
+        queue.attach(g);
+        // Closed while connectGatt ran: the CAS winner saw no client to release
+        if (state.get() == State.CLOSED) releaseGatt();
+    }
+
+    // region Accessors
+
+    public String getAddress() {
+        return address;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public boolean isConnected() {
+        return state.get() == State.CONNECTED;
+    }
+
+    public BluetoothGatt getGatt() {
+        return gatt.get();
+    }
+
+    public GattOperationQueue getQueue() {
+        return queue;
+    }
+
+    public long getLastActivityMs() {
+        return lastActivityMs;
+    }
+
+    /** No queued or in-flight operations. */
+    public boolean isIdle() {
+        return queue.size() == 0;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // endregion
+
+    // region Operations
+
+    public CompletableFuture<GattOperationQueue.Result> read(@NonNull BluetoothGattCharacteristic characteristic) {
+        touch();
+        return queue.read(characteristic);
+    }
+
+    public CompletableFuture<GattOperationQueue.Result> write(@NonNull BluetoothGattCharacteristic characteristic,
+                                                              @NonNull byte[] value, int writeType) {
+        touch();
+        return queue.write(characteristic, value, writeType);
+    }
+
+    public CompletableFuture<GattOperationQueue.Result> writeDescriptor(@NonNull BluetoothGattDescriptor descriptor,
+                                                                        @NonNull byte[] value) {
+        touch();
+        return queue.writeDescriptor(descriptor, value);
+    }
+
+    public CompletableFuture<GattOperationQueue.Result> requestMtu(int mtu) {
+        touch();
+        return queue.requestMtu(mtu);
+    }
+
+    public boolean setCharacteristicNotification(@NonNull BluetoothGattCharacteristic characteristic,
+                                                 boolean enable) {
+        touch();
+        BluetoothGatt g = gatt.get();
+        return g != null && g.setCharacteristicNotification(characteristic, enable);
+    }
+
+    public void disconnect() {
+        BluetoothGatt g = gatt.get();
+        if (g != null) g.disconnect();
+    }
+
+    /** Release the client slot. The pool forgets the session. */
+    public void close() {
+        pool.remove(this);
+        closeInternal(STATUS_CLOSED_LOCALLY, true);
+    }
+
+    /** For the pool, which has already unmapped the session. */
+    void closeInternal() {
+        closeInternal(STATUS_CLOSED_LOCALLY, true);
+    }
+
+    private void closeInternal(int status, boolean notify) {
+        if (state.getAndSet(State.CLOSED) == State.CLOSED) return;
+        queue.detach();
+        releaseGatt();
+        Listener l = listener;
+        if (!notify || l == null) return;
+        if (Looper.myLooper() == handler.getLooper()) {
+            l.onDisconnected(this, status);
+        } else {
+            handler.post(() -> l.onDisconnected(this, status));
+        }
+    }
+
+    private void releaseGatt() {
+        BluetoothGatt g = gatt.getAndSet(null);
+        if (g != null) g.close();
+    }
+
+    void touch() {
+        lastActivityMs = SystemClock.elapsedRealtime();
+        pool.touch(this);
+    }
+
+    // endregion
+
+    private final BluetoothGattCallback callback = new BluetoothGattCallback() {
+        @Override
+        public void onConnectionStateChange(@NonNull BluetoothGatt gatt, int status, int newState) {
+            super.onConnectionStateChange(gatt, status, newState);
+            if (newState == BluetoothProfile.STATE_CONNECTED) {
+                if (!state.compareAndSet(State.CONNECTING, State.CONNECTED)) return;
+                Log.d(TAG, address + " connected");
+                touch();
+                Listener l = listener;
+                if (l != null) l.onConnected(GattSession.this);
+                gatt.discoverServices();
+            } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+                Log.d(TAG, address + " disconnected, status=" + status);
+                // Give the client slot back; the listener sees the session already CLOSED
+                pool.remove(GattSession.this);
+                closeInternal(status, true);
+            }
+        }
+
+        @Override
+        public void onServicesDiscovered(@NonNull BluetoothGatt gatt, int status) {
+            super.onServicesDiscovered(gatt, status);
+            if (status != BluetoothGatt.GATT_SUCCESS) {
+                Log.w(TAG, address + " service discovery failed with status: " + status);
+                return;
+            }
+            Listener l = listener;
+            if (l != null) l.onServicesDiscovered(GattSession.this, new ArrayList<>(gatt.getServices()));
+        }
+
+        @Override
+        public void onCharacteristicRead(@NonNull BluetoothGatt gatt,
+                                         @NonNull BluetoothGattCharacteristic characteristic,
+                                         int status) {
+            super.onCharacteristicRead(gatt, characteristic, status);
+            queue.onCharacteristicRead(characteristic, characteristic.getValue(), status);
+        }
+
+        @Override
+        public void onCharacteristicWrite(@NonNull BluetoothGatt gatt,
+                                          @NonNull BluetoothGattCharacteristic characteristic,
+                                          int status) {
+            super.onCharacteristicWrite(gatt, characteristic, status);
+            queue.onCharacteristicWrite(characteristic, status);
+        }
+
+        @Override
+        public void onDescriptorWrite(@NonNull BluetoothGatt gatt,
+                                      @NonNull BluetoothGattDescriptor descriptor,
+                                      int status) {
+            super.onDescriptorWrite(gatt, descriptor, status);
+            queue.onDescriptorWrite(descriptor, status);
+        }
+
+        @Override
+        public void onMtuChanged(@NonNull BluetoothGatt gatt, int mtu, int status) {
+            super.onMtuChanged(gatt, mtu, status);
+            queue.onMtuChanged(mtu, status);
+        }
+
+        @Override
+        public void onPhyUpdate(@NonNull BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+            super.onPhyUpdate(gatt, txPhy, rxPhy, status);
+            queue.onPhyUpdate(txPhy, rxPhy, status);
+        }
+
+        @Override
+        public void onPhyRead(@NonNull BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+            super.onPhyRead(gatt, txPhy, rxPhy, status);
+            queue.onPhyRead(txPhy, rxPhy, status);
+        }
+
+        @Override
+        public void onCharacteristicChanged(@NonNull BluetoothGatt gatt,
+                                            @NonNull BluetoothGattCharacteristic characteristic) {
+            super.onCharacteristicChanged(gatt, characteristic);
+            lastActivityMs = SystemClock.elapsedRealtime();
+            Listener l = listener;
+            if (l != null) l.onNotification(GattSession.this, characteristic, characteristic.getValue());
+        }
+    };
+}
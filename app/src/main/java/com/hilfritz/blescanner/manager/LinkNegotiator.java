@@ -0,0 +1,137 @@
+package com.hilfritz.blescanner.manager;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Applies a {@link LinkProfile} to a fresh connection.
+ *
+ * Order matters: connection priority goes first because a shorter interval makes the MTU and
+ * PHY exchanges themselves faster. Priority is a plain request with no callback, so it is
+ * issued directly; MTU and PHY go through the {@link GattOperationQueue} so they don't collide
+ * with other GATT operations. A step that fails or times out leaves that parameter at its
+ * default and negotiation carries on.
+ *
+ * PHY selection needs API 26; below that the link stays on 1M. The PHY request gets a short
+ * timeout of its own because many stacks never call onPhyUpdate when nothing changes. After a
+ * timeout the PHY actually in use is read back rather than assumed, since the link may already
+ * have been on the requested PHY, or the update may simply have been slow. The owner of the
+ * queue must forward onPhyRead as well as onPhyUpdate.
+ */
+@SuppressLint("MissingPermission")
+public final class LinkNegotiator {
+
+    private static final String TAG = "LinkNegotiator";
+
+    /** Long enough for a real PHY update procedure, short enough that "no change" costs little. */
+    private static final long PHY_TIMEOUT_MS = 1000;
+
+    /** The link as negotiated. */
+    public static final class Result {
+        public final int mtu;
+        public final int txPhy;
+        public final int rxPhy;
+        /** The requested priority if the stack accepted it, else {@link LinkProfile#NO_PRIORITY}. */
+        public final int connectionPriority;
+
+        Result(int mtu, int txPhy, int rxPhy, int connectionPriority) {
+            this.mtu = mtu;
+            this.txPhy = txPhy;
+            this.rxPhy = rxPhy;
+            this.connectionPriority = connectionPriority;
+        }
+
+        /** Largest value that fits one notification or write-without-response (MTU - 3). */
+        public int getMaxPayload() {
+            return mtu - 3;
+        }
+
+        public boolean is2MPhy() {
+            return txPhy == BluetoothDevice.PHY_LE_2M && rxPhy == BluetoothDevice.PHY_LE_2M;
+        }
+
+        @Override
+        public String toString() {
+            return "Link(mtu=" + mtu + ", phy=" + txPhy + "/" + rxPhy
+                    + ", priority=" + connectionPriority + ")";
+        }
+    }
+
+    private LinkNegotiator() {
+        // no instance
+    }
+
+    /** Never completes exceptionally. */
+    public static CompletableFuture<Result> negotiate(@NonNull BluetoothGatt gatt,
+                                                      @NonNull GattOperationQueue queue,
+                                                      @NonNull LinkProfile profile,
+                                                      BluetoothAdapter adapter) {
+        int priority = LinkProfile.NO_PRIORITY;
+        if (profile.getConnectionPriority() != LinkProfile.NO_PRIORITY) {
+            if (gatt.requestConnectionPriority(profile.getConnectionPriority())) {
+                priority = profile.getConnectionPriority();
+            } else {
+                Log.w(TAG, "Connection priority request rejected");
+            }
+        }
+        final int acceptedPriority = priority;
+
+        CompletableFuture<Integer> mtu;
+        if (profile.getMtu() > 0) {
+            mtu = queue.requestMtu(profile.getMtu()).thenApply(r -> {
+                if (r.isSuccess()) return r.arg1;
+                Log.w(TAG, "MTU request failed with status: " + r.status);
+                return LinkProfile.DEFAULT_ATT_MTU;
+            });
+        } else {
+            mtu = CompletableFuture.completedFuture(LinkProfile.DEFAULT_ATT_MTU);
+        }
+
+        int phyMask = profile.getPreferredPhyMask();
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            // Neither setPreferredPhy nor the 2M/Coded PHYs exist before API 26
+            phyMask = 0;
+        } else if ((phyMask & BluetoothDevice.PHY_LE_2M_MASK) != 0
+                && adapter != null && !adapter.isLe2MPhySupported()) {
+            Log.d(TAG, "2M PHY not supported by this controller");
+            phyMask &= ~BluetoothDevice.PHY_LE_2M_MASK;
+        }
+        CompletableFuture<int[]> phy;
+        if (phyMask != 0) {
+            phy = queue.setPreferredPhy(phyMask, phyMask, profile.getPhyOptions(), PHY_TIMEOUT_MS)
+                    .thenCompose(r -> {
+                        if (r.isSuccess()) {
+                            return CompletableFuture.completedFuture(new int[]{r.arg1, r.arg2});
+                        }
+                        if (r.status != GattOperationQueue.STATUS_TIMEOUT) {
+                            Log.w(TAG, "PHY update failed with status: " + r.status);
+                            return CompletableFuture.completedFuture(
+                                    new int[]{BluetoothDevice.PHY_LE_1M, BluetoothDevice.PHY_LE_1M});
+                        }
+                        Log.d(TAG, "No PHY update reported, reading the PHY in use");
+                        return queue.readPhy().thenApply(read -> {
+                            if (read.isSuccess()) return new int[]{read.arg1, read.arg2};
+                            Log.w(TAG, "PHY read failed with status: " + read.status);
+                            return new int[]{BluetoothDevice.PHY_LE_1M, BluetoothDevice.PHY_LE_1M};
+                        });
+                    });
+        } else {
+            phy = CompletableFuture.completedFuture(
+                    new int[]{BluetoothDevice.PHY_LE_1M, BluetoothDevice.PHY_LE_1M});
+        }
+
+        return mtu.thenCombine(phy, (m, p) -> {
+            Result result = new Result(m, p[0], p[1], acceptedPriority);
+            Log.d(TAG, "Negotiated " + result);
+            return result;
+        });
+    }
+}
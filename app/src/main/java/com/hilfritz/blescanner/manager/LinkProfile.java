@@ -0,0 +1,114 @@
+package com.hilfritz.blescanner.manager;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+
+/**
+ * What to ask the peripheral for right after service discovery, see {@link LinkNegotiator}.
+ *
+ * Each knob can be left at "don't ask": an MTU of 0 skips the exchange (the link stays at the
+ * default 23 bytes), a connection priority of {@link #NO_PRIORITY} keeps the stack's balanced
+ * interval and a PHY mask of 0 keeps 1M. The peripheral has the last word on all three; the
+ * negotiated values are reported through {@link BleManager.ConnectionListener#onLinkNegotiated}.
+ */
+public final class LinkProfile {
+
+    public static final int NO_PRIORITY = -1;
+    public static final int DEFAULT_ATT_MTU = 23;
+    /** Largest ATT MTU Android will request. */
+    public static final int MAX_ATT_MTU = 517;
+
+    /** Leave the link alone. */
+    public static final LinkProfile NONE = new Builder().build();
+
+    /** Largest MTU, high priority (short interval) and 2M PHY where the controller supports it. */
+    public static final LinkProfile HIGH_THROUGHPUT = new Builder()
+            .setMtu(MAX_ATT_MTU)
+            .setConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_HIGH)
+            .setPreferredPhy(BluetoothDevice.PHY_LE_2M_MASK)
+            .build();
+
+    private final int mtu;
+    private final int connectionPriority;
+    private final int preferredPhyMask;
+    private final int phyOptions;
+
+    private LinkProfile(Builder builder) {
+        this.mtu = builder.mtu;
+        this.connectionPriority = builder.connectionPriority;
+        this.preferredPhyMask = builder.preferredPhyMask;
+        this.phyOptions = builder.phyOptions;
+    }
+
+    /** ATT MTU to request; 0 = don't ask. */
+    public int getMtu() {
+        return mtu;
+    }
+
+    /** One of BluetoothGatt.CONNECTION_PRIORITY_*, or {@link #NO_PRIORITY}. */
+    public int getConnectionPriority() {
+        return connectionPriority;
+    }
+
+    /** BluetoothDevice.PHY_LE_*_MASK bits for both directions; 0 = don't ask. */
+    public int getPreferredPhyMask() {
+        return preferredPhyMask;
+    }
+
+    public int getPhyOptions() {
+        return phyOptions;
+    }
+
+    public boolean isEmpty() {
+        return mtu == 0 && connectionPriority == NO_PRIORITY && preferredPhyMask == 0;
+    }
+
+    public Builder buildUpon() {
+        return new Builder(this);
+    }
+
+    public static final class Builder {
+        private int mtu = 0;
+        private int connectionPriority = NO_PRIORITY;
+        private int preferredPhyMask = 0;
+        private int phyOptions = BluetoothDevice.PHY_OPTION_NO_PREFERRED;
+
+        public Builder() {
+        }
+
+        private Builder(LinkProfile profile) {
+            this.mtu = profile.mtu;
+            this.connectionPriority = profile.connectionPriority;
+            this.preferredPhyMask = profile.preferredPhyMask;
+            this.phyOptions = profile.phyOptions;
+        }
+
+        public Builder setMtu(int mtu) {
+            if (mtu != 0 && (mtu < DEFAULT_ATT_MTU || mtu > MAX_ATT_MTU)) {
+                throw new IllegalArgumentException("mtu must be 0 or in ["
+                        + DEFAULT_ATT_MTU + ", " + MAX_ATT_MTU + "]: " + mtu);
+            }
+            this.mtu = mtu;
+            return this;
+        }
+
+        public Builder setConnectionPriority(int connectionPriority) {
+            this.connectionPriority = connectionPriority;
+            return this;
+        }
+
+        public Builder setPreferredPhy(int phyMask) {
+            this.preferredPhyMask = phyMask;
+            return this;
+        }
+
+        public Builder setPhyOptions(int phyOptions) {
+            this.phyOptions = phyOptions;
+            return this;
+        }
+
+        public LinkProfile build() {
+            return new LinkProfile(this);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.hilfritz.blescanner.manager;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Pulls a large value out of a characteristic into a pooled direct buffer, delivering each chunk
+ * as it arrives.
+ *
+ * Android already does the ATT Read Blob round trips of a single long read (up to 512 bytes)
+ * and only calls back with the whole attribute, so a "chunk" here is one complete read.
+ * {@link Mode#SINGLE} does one read. {@link Mode#UNTIL_EMPTY} keeps reading until the
+ * peripheral returns an empty value, the usual way devices hand out logs and other data
+ * larger than an attribute. In both modes the value is appended to one pooled direct buffer
+ * that grows through the {@link ByteBufferPool}, so repeated pulls don't churn the heap.
+ *
+ * Listener calls come on the Bluetooth callback thread.
+ */
+public class LongRead {
+
+    private static final String TAG = "LongRead";
+
+    public static final int DEFAULT_MAX_BYTES = 64 * 1024;
+
+    public enum Mode {
+        SINGLE,
+        UNTIL_EMPTY
+    }
+
+    public interface Listener {
+        /**
+         * One read's worth of data. {@code chunk} is a read-only view into the reassembly
+         * buffer, valid only during the call.
+         */
+        default void onChunk(ByteBuffer chunk, int offset) {
+        }
+
+        /**
+         * The whole value, position 0 to limit. It belongs to the pool: pass it to
+         * {@link ByteBufferPool#release} when done.
+         */
+        void onComplete(ByteBuffer value);
+
+        void onFailed(int status, int bytesRead);
+    }
+
+    private final GattOperationQueue queue;
+    private final BluetoothGattCharacteristic characteristic;
+    private final ByteBufferPool pool;
+    private final Mode mode;
+    private final int maxBytes;
+
+    private Listener listener;
+    private ByteBuffer buffer;
+    private int reads;
+    private volatile boolean cancelled;
+    private final CompletableFuture<ByteBuffer> done = new CompletableFuture<>();
+
+    public LongRead(@NonNull GattOperationQueue queue,
+                    @NonNull BluetoothGattCharacteristic characteristic,
+                    @NonNull ByteBufferPool pool,
+                    @NonNull Mode mode,
+                    int maxBytes) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be > 0");
+        this.queue = queue;
+        this.characteristic = characteristic;
+        this.pool = pool;
+        this.mode = mode;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Completes with the same pooled buffer that is passed to {@link Listener#onComplete}
+     * (release it once), or exceptionally with {@link LongReadException}.
+     */
+    public CompletableFuture<ByteBuffer> start(Listener listener) {
+        if (buffer != null) throw new IllegalStateException("read already started");
+        this.listener = listener;
+        this.buffer = pool.acquire(ByteBufferPool.MIN_BUFFER_SIZE);
+        readNext();
+        return done;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private void readNext() {
+        queue.read(characteristic).thenAccept(this::onRead);
+    }
+
+    private void onRead(GattOperationQueue.Result result) {
+        if (cancelled) {
+            fail(GattOperationQueue.STATUS_CANCELLED);
+            return;
+        }
+        if (!result.isSuccess()) {
+            Log.w(TAG, "Read " + reads + " failed with status: " + result.status);
+            fail(result.status);
+            return;
+        }
+        reads++;
+
+        byte[] value = result.value;
+        int length = value != null ? value.length : 0;
+        int room = maxBytes - buffer.position();
+        boolean full = length >= room;
+        if (full) length = room;
+
+        if (length > 0) {
+            int offset = buffer.position();
+            buffer = pool.grow(buffer, offset + length);
+            buffer.put(value, 0, length);
+
+            if (listener != null) {
+                ByteBuffer chunk = buffer.duplicate();
+                chunk.position(offset).limit(offset + length);
+                listener.onChunk(chunk.slice().asReadOnlyBuffer(), offset);
+            }
+        }
+
+        if (mode == Mode.UNTIL_EMPTY && length > 0 && !full) {
+            readNext();
+            return;
+        }
+        if (full) Log.w(TAG, "Stopped at maxBytes=" + maxBytes);
+
+        buffer.flip();
+        Log.d(TAG, "Read " + buffer.remaining() + " B in " + reads + " reads");
+        if (listener != null) listener.onComplete(buffer);
+        done.complete(buffer);
+    }
+
+    private void fail(int status) {
+        int bytesRead = buffer.position();
+        pool.release(buffer);
+        if (listener != null) listener.onFailed(status, bytesRead);
+        done.completeExceptionally(new LongReadException(status, bytesRead));
+    }
+
+    /** Carries the failing status and how much had been read. */
+    public static class LongReadException extends Exception {
+        public final int status;
+        public final int bytesRead;
+
+        LongReadException(int status, int bytesRead) {
+            super("Long read failed with status " + status + " after " + bytesRead + " bytes");
+            this.status = status;
+            this.bytesRead = bytesRead;
+        }
+    }
+}
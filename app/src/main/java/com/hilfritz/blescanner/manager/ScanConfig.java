@@ -0,0 +1,278 @@
+package com.hilfritz.blescanner.manager;
+
+import android.bluetooth.le.ScanSettings;
+
+import androidx.annotation.NonNull;
+
+import com.hilfritz.blescanner.core.ScanOptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Options for {@link BleManager#startScan(ScanConfig)}.
+ *
+ * With a report delay of 0 every advertisement is delivered on its own. With a positive delay
+ * results are coalesced and handed to {@link BleManager.ScanListener#onDevicesFound} once per
+ * window: by the controller when it supports offloaded batching, otherwise in software.
+ *
+ * Filters are pushed down to the controller as ScanFilters, so packets that don't match
+ * never wake the app processor. Service UUIDs and addresses are alternatives (any one matches);
+ * manufacturer data must match as well when set. A name prefix cannot be expressed as a
+ * ScanFilter and is checked in Java on whatever the hardware filters let through.
+ *
+ * A scan stops by itself after {@link #getDurationMillis()} (10 s by default); 0 keeps it
+ * running until {@link BleManager#stopScan()}. For long-running scans use {@link ScanScheduler}.
+ */
+public final class ScanConfig {
+
+    public static final ScanConfig DEFAULT = new Builder().build();
+
+    // Most controllers have somewhere between 8 and 32 filter slots
+    static final int HARDWARE_FILTER_BUDGET = 16;
+
+    public static final long DEFAULT_DURATION_MS = 10_000;
+
+    private final long durationMillis;
+    private final long reportDelayMillis;
+    private final int scanMode;
+    private final int matchMode;
+    private final int callbackType;
+    private final int numOfMatches;
+    private final List<UUID> serviceUuids;
+    private final List<String> deviceAddresses;
+    private final int manufacturerId;
+    private final byte[] manufacturerData;
+    private final byte[] manufacturerDataMask;
+    private final String namePrefix;
+
+    private ScanConfig(Builder builder) {
+        this.durationMillis = builder.durationMillis;
+        this.reportDelayMillis = builder.reportDelayMillis;
+        this.scanMode = builder.scanMode;
+        this.matchMode = builder.matchMode;
+        this.callbackType = builder.callbackType;
+        this.numOfMatches = builder.numOfMatches;
+        this.serviceUuids = Collections.unmodifiableList(new ArrayList<>(builder.serviceUuids));
+        this.deviceAddresses = Collections.unmodifiableList(new ArrayList<>(builder.deviceAddresses));
+        this.manufacturerId = builder.manufacturerId;
+        this.manufacturerData = builder.manufacturerData;
+        this.manufacturerDataMask = builder.manufacturerDataMask;
+        this.namePrefix = builder.namePrefix;
+    }
+
+    /** How long the scan runs before BleManager stops it; 0 = until stopScan(). */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public long getReportDelayMillis() {
+        return reportDelayMillis;
+    }
+
+    public boolean isBatched() {
+        return reportDelayMillis > 0;
+    }
+
+    public int getScanMode() {
+        return scanMode;
+    }
+
+    public int getCallbackType() {
+        return callbackType;
+    }
+
+    public List<UUID> getServiceUuids() {
+        return serviceUuids;
+    }
+
+    public List<String> getDeviceAddresses() {
+        return deviceAddresses;
+    }
+
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    public boolean hasHardwareFilters() {
+        return !serviceUuids.isEmpty() || !deviceAddresses.isEmpty() || manufacturerId >= 0;
+    }
+
+    /** Java-side check for what the controller can't filter on. */
+    public boolean matchesName(String name) {
+        return namePrefix == null || (name != null && name.startsWith(namePrefix));
+    }
+
+    /** A builder pre-filled with this config's values. */
+    public Builder buildUpon() {
+        return new Builder(this);
+    }
+
+    /** Shorthand for a config that only sets the batch window. */
+    public static ScanConfig batched(long reportDelayMillis) {
+        return new Builder().setReportDelayMillis(reportDelayMillis).build();
+    }
+
+    /**
+     * What the scanner is asked for. The report delay is only passed on with
+     * {@code hardwareBatching}; otherwise BleManager batches in software.
+     *
+     * Filters: one per service UUID plus one per address, so any one of them matches (fields
+     * inside a single filter are ANDed). Each carries the manufacturer data, which is required
+     * on top; with only manufacturer data there is a single filter. None at all means match
+     * everything.
+     */
+    ScanOptions toScanOptions(boolean hardwareBatching) {
+        ScanOptions.Builder options = new ScanOptions.Builder()
+                .setScanMode(scanMode)
+                .setCallbackType(callbackType)
+                .setMatchMode(matchMode)
+                .setNumOfMatches(numOfMatches);
+        if (hardwareBatching) {
+            options.setReportDelayMillis(reportDelayMillis);
+        }
+        if (!hasHardwareFilters()) return options.build();
+
+        for (UUID uuid : serviceUuids) {
+            options.addFilter(newFilter().setServiceUuid(uuid).build());
+        }
+        for (String address : deviceAddresses) {
+            options.addFilter(newFilter().setDeviceAddress(address).build());
+        }
+        if (serviceUuids.isEmpty() && deviceAddresses.isEmpty()) {
+            options.addFilter(newFilter().build());
+        }
+        return options.build();
+    }
+
+    private ScanOptions.Filter.Builder newFilter() {
+        ScanOptions.Filter.Builder filter = new ScanOptions.Filter.Builder();
+        if (manufacturerId >= 0) {
+            filter.setManufacturerData(manufacturerId, manufacturerData, manufacturerDataMask);
+        }
+        return filter;
+    }
+
+    public static final class Builder {
+        private long durationMillis = DEFAULT_DURATION_MS;
+        private long reportDelayMillis = 0;
+        private int scanMode = ScanSettings.SCAN_MODE_LOW_POWER;
+        private int matchMode = ScanSettings.MATCH_MODE_AGGRESSIVE;
+        private int callbackType = ScanSettings.CALLBACK_TYPE_ALL_MATCHES;
+        private int numOfMatches = ScanSettings.MATCH_NUM_MAX_ADVERTISEMENT;
+        private final List<UUID> serviceUuids = new ArrayList<>();
+        private final List<String> deviceAddresses = new ArrayList<>();
+        private int manufacturerId = -1;
+        private byte[] manufacturerData;
+        private byte[] manufacturerDataMask;
+        private String namePrefix;
+
+        public Builder() {
+        }
+
+        private Builder(ScanConfig config) {
+            durationMillis = config.durationMillis;
+            reportDelayMillis = config.reportDelayMillis;
+            scanMode = config.scanMode;
+            matchMode = config.matchMode;
+            callbackType = config.callbackType;
+            numOfMatches = config.numOfMatches;
+            serviceUuids.addAll(config.serviceUuids);
+            deviceAddresses.addAll(config.deviceAddresses);
+            manufacturerId = config.manufacturerId;
+            manufacturerData = config.manufacturerData;
+            manufacturerDataMask = config.manufacturerDataMask;
+            namePrefix = config.namePrefix;
+        }
+
+        /** 0 keeps scanning until BleManager.stopScan(). */
+        public Builder setDurationMillis(long durationMillis) {
+            if (durationMillis < 0) {
+                throw new IllegalArgumentException("durationMillis < 0: " + durationMillis);
+            }
+            this.durationMillis = durationMillis;
+            return this;
+        }
+
+        public Builder setReportDelayMillis(long reportDelayMillis) {
+            if (reportDelayMillis < 0) {
+                throw new IllegalArgumentException("reportDelayMillis < 0: " + reportDelayMillis);
+            }
+            this.reportDelayMillis = reportDelayMillis;
+            return this;
+        }
+
+        /** One of the ScanSettings.SCAN_MODE_* constants. */
+        public Builder setScanMode(int scanMode) {
+            this.scanMode = scanMode;
+            return this;
+        }
+
+        /** ScanSettings.MATCH_MODE_AGGRESSIVE or MATCH_MODE_STICKY. */
+        public Builder setMatchMode(int matchMode) {
+            this.matchMode = matchMode;
+            return this;
+        }
+
+        /** ScanSettings.CALLBACK_TYPE_* flags. Anything but ALL_MATCHES needs a hardware filter. */
+        public Builder setCallbackType(int callbackType) {
+            this.callbackType = callbackType;
+            return this;
+        }
+
+        /** One of the ScanSettings.MATCH_NUM_* constants. */
+        public Builder setNumOfMatches(int numOfMatches) {
+            this.numOfMatches = numOfMatches;
+            return this;
+        }
+
+        public Builder addServiceUuid(@NonNull UUID uuid) {
+            serviceUuids.add(uuid);
+            return this;
+        }
+
+        public Builder addDeviceAddress(@NonNull String address) {
+            deviceAddresses.add(address);
+            return this;
+        }
+
+        /**
+         * Match advertisements whose manufacturer specific data for {@code companyId} starts
+         * with {@code data}, comparing only the bits set in {@code mask} (null = all bits).
+         */
+        public Builder setManufacturerData(int companyId, @NonNull byte[] data, byte[] mask) {
+            if (companyId < 0 || companyId > 0xFFFF) {
+                throw new IllegalArgumentException("companyId out of range: " + companyId);
+            }
+            if (mask != null && mask.length != data.length) {
+                throw new IllegalArgumentException("mask length " + mask.length
+                        + " != data length " + data.length);
+            }
+            this.manufacturerId = companyId;
+            this.manufacturerData = data.clone();
+            this.manufacturerDataMask = mask != null ? mask.clone() : null;
+            return this;
+        }
+
+        public Builder setNamePrefix(String namePrefix) {
+            this.namePrefix = namePrefix;
+            return this;
+        }
+
+        public ScanConfig build() {
+            ScanConfig config = new ScanConfig(this);
+            if (callbackType != ScanSettings.CALLBACK_TYPE_ALL_MATCHES) {
+                if (!config.hasHardwareFilters()) {
+                    throw new IllegalStateException("callbackType " + callbackType
+                            + " requires a service UUID, address or manufacturer filter");
+                }
+                if (reportDelayMillis > 0) {
+                    throw new IllegalStateException("batching requires CALLBACK_TYPE_ALL_MATCHES");
+                }
+            }
+            return config;
+        }
+    }
+}
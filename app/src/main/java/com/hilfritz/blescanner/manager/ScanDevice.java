@@ -0,0 +1,24 @@
+package com.hilfritz.blescanner.manager;
+
+import androidx.annotation.NonNull;
+
+/**
+ * One advertiser as seen by a scan: the unit handed to {@link BleManager.ScanListener}.
+ */
+public final class ScanDevice {
+    public final String name;
+    public final String address;
+    public final int rssi;
+
+    public ScanDevice(String name, @NonNull String address, int rssi) {
+        this.name = name;
+        this.address = address;
+        this.rssi = rssi;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "ScanDevice(" + address + ", " + name + ", " + rssi + " dBm)";
+    }
+}
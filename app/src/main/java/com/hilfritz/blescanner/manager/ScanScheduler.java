@@ -0,0 +1,149 @@
+package com.hilfritz.blescanner.manager;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+/**
+ * Long-running scanning on top of {@link BleManager}: either duty-cycled (scan for a window,
+ * idle, repeat) or continuous.
+ *
+ * Two OS limits are handled here:
+ * - More than 5 scan starts in 30 s are silently throttled. Every start asks BleManager how
+ *   long to wait first, so cycles that are too short get stretched instead of killed.
+ * - Scans running longer than 30 minutes are demoted to opportunistic. Continuous mode
+ *   restarts the scan before that; if a scan still outlives the limit the listener gets
+ *   {@link BleManager#SCAN_DOWNGRADE_DURATION_LIMIT}.
+ *
+ * Note that unfiltered scans are also paused while the screen is off; pass a ScanConfig with
+ * hardware filters for unattended use.
+ */
+public class ScanScheduler {
+
+    private static final String TAG = "ScanScheduler";
+
+    /** Android demotes scans that run longer than this. */
+    public static final long OS_SCAN_DURATION_LIMIT_MS = 30 * 60_000L;
+    /** Continuous mode restarts the scan after this long, safely below the OS limit. */
+    public static final long CONTINUOUS_RESTART_MS = 25 * 60_000L;
+
+    public interface Listener {
+        /** A scan window is about to start. */
+        default void onWindowStarted() {
+        }
+
+        /** A scan window ended and the scheduler is idling. */
+        default void onWindowEnded(long idleMs) {
+        }
+
+        /** The next start was pushed back by {@code delayMs} to stay within the start limit. */
+        default void onStartDeferred(long delayMs) {
+        }
+    }
+
+    private final BleManager bleManager;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private Listener listener;
+
+    private ScanConfig config;
+    private long scanWindowMs;
+    private long idleWindowMs;
+    private boolean running;
+    private long windowStartedAt;
+
+    private final Runnable beginWindowRunnable = this::beginWindow;
+    private final Runnable endWindowRunnable = this::endWindow;
+    private final Runnable durationLimitRunnable = this::onDurationLimit;
+
+    public ScanScheduler(@NonNull BleManager bleManager) {
+        this.bleManager = bleManager;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Scan for {@code scanWindowMs}, idle for {@code idleWindowMs}, repeat until {@link #stop()}.
+     * Windows shorter than about 6 s in total will be stretched by the start limit.
+     */
+    @MainThread
+    public void startDutyCycle(@NonNull ScanConfig config, long scanWindowMs, long idleWindowMs) {
+        if (scanWindowMs <= 0 || idleWindowMs <= 0) {
+            throw new IllegalArgumentException("scan and idle windows must be > 0");
+        }
+        start(config, scanWindowMs, idleWindowMs);
+    }
+
+    /** Scan without gaps, restarting every {@link #CONTINUOUS_RESTART_MS} to stay un-demoted. */
+    @MainThread
+    public void startContinuous(@NonNull ScanConfig config) {
+        start(config, CONTINUOUS_RESTART_MS, 0);
+    }
+
+    @MainThread
+    public void stop() {
+        running = false;
+        handler.removeCallbacks(beginWindowRunnable);
+        handler.removeCallbacks(endWindowRunnable);
+        handler.removeCallbacks(durationLimitRunnable);
+        bleManager.stopScan();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void start(ScanConfig config, long scanWindowMs, long idleWindowMs) {
+        stop();
+        // The scheduler owns the timing, so BleManager must not auto-stop
+        this.config = config.buildUpon().setDurationMillis(0).build();
+        this.scanWindowMs = scanWindowMs;
+        this.idleWindowMs = idleWindowMs;
+        running = true;
+        beginWindow();
+    }
+
+    private void beginWindow() {
+        if (!running) return;
+
+        long wait = bleManager.getScanStartDelayMillis();
+        if (wait > 0) {
+            Log.d(TAG, "Deferring scan start by " + wait + " ms (start limit)");
+            if (listener != null) listener.onStartDeferred(wait);
+            handler.postDelayed(beginWindowRunnable, wait);
+            return;
+        }
+
+        if (listener != null) listener.onWindowStarted();
+        bleManager.startScan(config);
+        windowStartedAt = SystemClock.elapsedRealtime();
+        handler.postDelayed(endWindowRunnable, scanWindowMs);
+        handler.removeCallbacks(durationLimitRunnable);
+        handler.postDelayed(durationLimitRunnable, OS_SCAN_DURATION_LIMIT_MS);
+    }
+
+    private void endWindow() {
+        if (!running) return;
+        handler.removeCallbacks(durationLimitRunnable);
+        bleManager.stopScan();
+        if (listener != null) listener.onWindowEnded(idleWindowMs);
+        if (idleWindowMs > 0) {
+            handler.postDelayed(beginWindowRunnable, idleWindowMs);
+        } else {
+            // Continuous: restart right away (beginWindow defers if the limit requires it)
+            beginWindow();
+        }
+    }
+
+    private void onDurationLimit() {
+        if (!running || !bleManager.isScanning()) return;
+        Log.w(TAG, "Scan running for " + (SystemClock.elapsedRealtime() - windowStartedAt)
+                + " ms; the OS has demoted it to opportunistic");
+        bleManager.notifyScanDowngraded(BleManager.SCAN_DOWNGRADE_DURATION_LIMIT);
+    }
+}
@@ -0,0 +1,53 @@
+package com.hilfritz.blescanner.utils;
+
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.Printer;
+
+/**
+ * Logs how many milliseconds per second the main thread spends dispatching messages, using the
+ * Looper's message logging hooks ({@code >>>>> Dispatching} / {@code <<<<< Finished}).
+ *
+ * The Looper formats a String for every message while a Printer is installed, so only run
+ * this in debug builds or while measuring. Replaces any other message logging on the main
+ * looper. Main thread only.
+ */
+public final class MainThreadMonitor {
+
+    private static final String TAG = "MainThreadMonitor";
+
+    private static final BusyTimeMeter meter = new BusyTimeMeter();
+    private static boolean running;
+
+    private static final Printer printer = line -> {
+        if (line.isEmpty()) return;
+        char c = line.charAt(0);
+        if (c == '>') {
+            meter.begin(SystemClock.elapsedRealtimeNanos());
+        } else if (c == '<' && meter.end(SystemClock.elapsedRealtimeNanos())) {
+            Log.d(TAG, "Main thread " + meter);
+        }
+    };
+
+    private MainThreadMonitor() {
+        // no instance
+    }
+
+    public static void start() {
+        if (running) return;
+        running = true;
+        Looper.getMainLooper().setMessageLogging(printer);
+    }
+
+    public static void stop() {
+        if (!running) return;
+        running = false;
+        Looper.getMainLooper().setMessageLogging(null);
+    }
+
+    /** Last completed one-second window. */
+    public static BusyTimeMeter getMeter() {
+        return meter;
+    }
+}
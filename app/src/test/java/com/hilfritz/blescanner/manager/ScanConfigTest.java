@@ -0,0 +1,93 @@
+package com.hilfritz.blescanner.manager;
+
+import com.hilfritz.blescanner.core.ScanOptions;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ScanConfigTest {
+
+    private static final UUID HEART_RATE = UUID.fromString("0000180d-0000-1000-8000-00805f9b34fb");
+    private static final UUID BATTERY = UUID.fromString("0000180f-0000-1000-8000-00805f9b34fb");
+    private static final String ADDRESS = "AA:BB:CC:DD:EE:01";
+    private static final int COMPANY = 0x0059;
+    private static final byte[] DATA = {0x01, 0x02};
+    private static final byte[] MASK = {(byte) 0xFF, 0x00};
+
+    @Test
+    public void noFiltersMeansMatchEverything() {
+        assertTrue(ScanConfig.DEFAULT.toScanOptions(false).getFilters().isEmpty());
+    }
+
+    @Test
+    public void uuidsAndAddressesAreSeparateAlternatives() {
+        List<ScanOptions.Filter> filters = new ScanConfig.Builder()
+                .addServiceUuid(HEART_RATE)
+                .addServiceUuid(BATTERY)
+                .addDeviceAddress(ADDRESS)
+                .setManufacturerData(COMPANY, DATA, MASK)
+                .build()
+                .toScanOptions(false)
+                .getFilters();
+
+        // N + M, not N x M
+        assertEquals(3, filters.size());
+        assertEquals(HEART_RATE, filters.get(0).getServiceUuid());
+        assertNull(filters.get(0).getDeviceAddress());
+        assertEquals(BATTERY, filters.get(1).getServiceUuid());
+        assertNull(filters.get(1).getDeviceAddress());
+        assertNull(filters.get(2).getServiceUuid());
+        assertEquals(ADDRESS, filters.get(2).getDeviceAddress());
+        for (ScanOptions.Filter filter : filters) {
+            assertEquals(COMPANY, filter.getManufacturerId());
+            assertArrayEquals(DATA, filter.getManufacturerData());
+            assertArrayEquals(MASK, filter.getManufacturerDataMask());
+        }
+    }
+
+    @Test
+    public void manufacturerDataAloneIsOneFilter() {
+        List<ScanOptions.Filter> filters = new ScanConfig.Builder()
+                .setManufacturerData(COMPANY, DATA, null)
+                .build()
+                .toScanOptions(false)
+                .getFilters();
+
+        assertEquals(1, filters.size());
+        ScanOptions.Filter filter = filters.get(0);
+        assertNull(filter.getServiceUuid());
+        assertNull(filter.getDeviceAddress());
+        assertEquals(COMPANY, filter.getManufacturerId());
+        assertArrayEquals(DATA, filter.getManufacturerData());
+    }
+
+    @Test
+    public void addressesWithoutManufacturerData() {
+        List<ScanOptions.Filter> filters = new ScanConfig.Builder()
+                .addDeviceAddress(ADDRESS)
+                .addDeviceAddress("AA:BB:CC:DD:EE:02")
+                .build()
+                .toScanOptions(false)
+                .getFilters();
+
+        assertEquals(2, filters.size());
+        assertEquals(ADDRESS, filters.get(0).getDeviceAddress());
+        assertEquals("AA:BB:CC:DD:EE:02", filters.get(1).getDeviceAddress());
+        assertEquals(-1, filters.get(1).getManufacturerId());
+        assertNull(filters.get(1).getServiceUuid());
+    }
+
+    @Test
+    public void reportDelayOnlyReachesTheScannerWithHardwareBatching() {
+        ScanConfig config = ScanConfig.batched(500);
+        assertEquals(500, config.toScanOptions(true).getReportDelayMillis());
+        assertEquals(0, config.toScanOptions(false).getReportDelayMillis());
+    }
+}
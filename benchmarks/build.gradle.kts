@@ -0,0 +1,31 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+// JMH suite for the per-packet paths in :ble-core.
+//   ./gradlew :benchmarks:jmh                          everything
+//   ./gradlew :benchmarks:jmh -PjmhIncludes=GattUtils  one class (regex)
+// Results, with the gc profiler's alloc.rate.norm (bytes/op), go to build/results/jmh/.
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    jmh(project(":ble-core"))
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh.get())
+    profilers.add("gc")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+    (findProperty("jmhIncludes") as String?)?.let { includes.add(it) }
+}
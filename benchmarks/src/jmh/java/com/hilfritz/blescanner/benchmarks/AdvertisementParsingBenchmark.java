@@ -0,0 +1,146 @@
+package com.hilfritz.blescanner.benchmarks;
+
+import com.hilfritz.blescanner.utils.AdvertisementParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-advertisement parsing as done in the scan callback. {@link #parse} should stay at
+ * 0 B/op in the gc profiler; {@link #parseWithName} shows the cost of materializing the name.
+ * {@link #frameworkParse} is the baseline: an allocating parse shaped like the framework's
+ * ScanRecord.parseFromBytes, which is not callable off-device, over the same record.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AdvertisementParsingBenchmark {
+
+    // Flags, 16-bit UUIDs (180D, 180F), TX power, manufacturer data, complete name: 31 bytes
+    private final byte[] typical = {
+            0x02, 0x01, 0x06,
+            0x05, 0x03, 0x0D, 0x18, 0x0F, 0x18,
+            0x02, 0x0A, (byte) 0xF4,
+            0x07, (byte) 0xFF, 0x6B, 0x00, 0x01, 0x02, 0x03, 0x04,
+            0x09, 0x09, 'P', 'o', 'l', 'a', 'r', ' ', 'H', '1',
+            0x00,
+    };
+
+    // Flags only, as sent by many beacons between bursts
+    private final byte[] minimal = {0x02, 0x01, 0x06};
+
+    private final AdvertisementParser parser = new AdvertisementParser();
+
+    @Benchmark
+    public int parse() {
+        parser.parse(typical);
+        return parser.getServiceUuidCount() + parser.getManufacturerId(0) + parser.getNameLength()
+                + parser.getTxPower();
+    }
+
+    @Benchmark
+    public int frameworkParse() {
+        ReferenceRecord r = ReferenceRecord.parse(typical);
+        return r.serviceUuids.size() + r.manufacturerData.keySet().iterator().next()
+                + r.name.length() + r.txPower;
+    }
+
+    @Benchmark
+    public int parseMinimal() {
+        parser.parse(minimal);
+        return parser.getFlags();
+    }
+
+    @Benchmark
+    public String parseWithName() {
+        parser.parse(typical);
+        return parser.hasName() ? parser.getName() : null;
+    }
+
+    @Benchmark
+    public boolean filterByService() {
+        parser.parse(typical);
+        return parser.hasServiceUuid16(0x180D);
+    }
+
+    /** Same shape as android.bluetooth.le.ScanRecord's parsed fields. */
+    private static final class ReferenceRecord {
+        final List<UUID> serviceUuids = new ArrayList<>();
+        final Map<Integer, byte[]> manufacturerData = new HashMap<>();
+        final Map<UUID, byte[]> serviceData = new HashMap<>();
+        String name;
+        int flags = -1;
+        int txPower = Integer.MIN_VALUE;
+
+        static ReferenceRecord parse(byte[] bytes) {
+            ReferenceRecord r = new ReferenceRecord();
+            int pos = 0;
+            while (pos < bytes.length) {
+                int len = bytes[pos++] & 0xFF;
+                if (len == 0) break;
+                int type = bytes[pos++] & 0xFF;
+                int dataLen = len - 1;
+                switch (type) {
+                    case 0x01:
+                        r.flags = bytes[pos] & 0xFF;
+                        break;
+                    case 0x02:
+                    case 0x03:
+                        for (int p = pos; p < pos + dataLen; p += 2) {
+                            int v = (bytes[p] & 0xFF) | (bytes[p + 1] & 0xFF) << 8;
+                            r.serviceUuids.add(fromShort(v));
+                        }
+                        break;
+                    case 0x08:
+                    case 0x09:
+                        r.name = new String(extract(bytes, pos, dataLen), StandardCharsets.UTF_8);
+                        break;
+                    case 0x0A:
+                        r.txPower = bytes[pos];
+                        break;
+                    case 0x16:
+                        int uuid = (bytes[pos] & 0xFF) | (bytes[pos + 1] & 0xFF) << 8;
+                        r.serviceData.put(fromShort(uuid), extract(bytes, pos + 2, dataLen - 2));
+                        break;
+                    case 0xFF:
+                        int id = (bytes[pos] & 0xFF) | (bytes[pos + 1] & 0xFF) << 8;
+                        r.manufacturerData.put(id, extract(bytes, pos + 2, dataLen - 2));
+                        break;
+                    default:
+                        break;
+                }
+                pos += dataLen;
+            }
+            return r;
+        }
+
+        // As BluetoothUuid.parseUuidFrom does it: arithmetic onto the Base UUID
+        private static UUID fromShort(int value) {
+            return new UUID(((long) value << 32) | 0x1000L, 0x800000805F9B34FBL);
+        }
+
+        private static byte[] extract(byte[] bytes, int start, int length) {
+            byte[] out = new byte[length];
+            System.arraycopy(bytes, start, out, 0, length);
+            return out;
+        }
+    }
+}
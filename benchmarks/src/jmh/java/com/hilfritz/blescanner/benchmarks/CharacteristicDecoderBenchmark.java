@@ -0,0 +1,84 @@
+package com.hilfritz.blescanner.benchmarks;
+
+import com.hilfritz.blescanner.decoders.CharacteristicDecoders;
+import com.hilfritz.blescanner.decoders.DecodedValue;
+import com.hilfritz.blescanner.decoders.HeartRateMeasurement;
+import com.hilfritz.blescanner.utils.AssignedNumbers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding notifications into reused records, as a chart or logger would at notification rate.
+ * gc.alloc.rate.norm should be ~0 B/op for all of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CharacteristicDecoderBenchmark {
+
+    @State(Scope.Thread)
+    public static class Values {
+        final CharacteristicDecoders decoders = new CharacteristicDecoders();
+        final HeartRateMeasurement hr = HeartRateMeasurement.DECODER.newRecord();
+
+        // uint16 rate, contact, energy expended, four RR-intervals
+        final byte[] heartRate = {0x1F, 0x48, 0x00, 0x10, 0x00,
+                0x00, 0x04, 0x10, 0x04, 0x20, 0x04, 0x30, 0x04};
+        final ByteBuffer direct = ByteBuffer.allocateDirect(heartRate.length);
+
+        final long[] msb = new long[3];
+        final long[] lsb = new long[3];
+        final byte[][] values = {heartRate, {87}, {0x07, 0x00, 0x03, (byte) 170, 120, 0x00,
+                0x10, 0x27, 0x00, 0x00}};
+        int next;
+
+        public Values() {
+            direct.put(heartRate).flip();
+            int[] aliases = {0x2A37, 0x2A19, 0x2A53};
+            for (int i = 0; i < aliases.length; i++) {
+                UUID uuid = AssignedNumbers.fromAlias(aliases[i]);
+                msb[i] = uuid.getMostSignificantBits();
+                lsb[i] = uuid.getLeastSignificantBits();
+            }
+        }
+
+        int index() {
+            int i = next;
+            next = i == values.length - 1 ? 0 : i + 1;
+            return i;
+        }
+    }
+
+    @Benchmark
+    public int heartRateArray(Values v) {
+        HeartRateMeasurement.DECODER.decode(v.heartRate, v.hr);
+        return v.hr.heartRate + v.hr.rrCount;
+    }
+
+    @Benchmark
+    public int heartRateDirectBuffer(Values v) {
+        HeartRateMeasurement.DECODER.decode(v.direct, v.hr);
+        return v.hr.heartRate + v.hr.rrCount;
+    }
+
+    @Benchmark
+    public DecodedValue registryDispatch(Values v) {
+        int i = v.index();
+        byte[] value = v.values[i];
+        return v.decoders.decode(v.msb[i], v.lsb[i], value, 0, value.length);
+    }
+}
@@ -0,0 +1,154 @@
+package com.hilfritz.blescanner.benchmarks;
+
+import com.hilfritz.blescanner.manager.DeviceRegistry;
+import com.hilfritz.blescanner.utils.LongIntHashMap;
+import com.hilfritz.blescanner.utils.MacAddresses;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Device-list updates as the number of nearby advertisers grows.
+ *
+ * - {@link #recordAdvertisement}: one scan result into the {@link DeviceRegistry}.
+ * - {@link #updateRow}: the DeviceAdapter row update (packed-MAC index lookup, append if new,
+ *   rewrite RSSI), without the RecyclerView part.
+ * - {@link #updateRowLinear}: the same update with the adapter's old lookup, a linear
+ *   String.equals scan over the rows; the baseline for updateRow.
+ * - {@link #snapshotAll}: the list rebuild the UI does when it refreshes.
+ *
+ * Addresses arrive as fresh String instances, as from BluetoothDevice.getAddress().
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeviceListBenchmark {
+
+    private static final int QUERIES = 4096;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int devices;
+
+    private String[] queries;
+    private int[] rssis;
+    private int next;
+    private long now;
+
+    private DeviceRegistry registry;
+    private LongIntHashMap rowByMac;
+    private List<Row> rows;
+
+    /** Stand-in for MainActivity.DeviceItem. */
+    static final class Row {
+        final String address;
+        int rssi;
+
+        Row(String address) {
+            this.address = address;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(devices);
+        String[] addresses = new String[devices];
+        for (int i = 0; i < devices; i++) {
+            long mac = random.nextLong() & 0xFFFFFFFFFFFFL;
+            addresses[i] = MacAddresses.format(mac);
+        }
+        queries = new String[QUERIES];
+        rssis = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = new String(addresses[random.nextInt(devices)].toCharArray());
+            rssis[i] = -40 - random.nextInt(60);
+        }
+
+        registry = new DeviceRegistry(Math.max(devices, DeviceRegistry.DEFAULT_CAPACITY),
+                DeviceRegistry.DEFAULT_SAMPLES_PER_DEVICE, DeviceRegistry.DEFAULT_ALPHA);
+        rowByMac = new LongIntHashMap(devices);
+        rows = new ArrayList<>(devices);
+        // Warm state: every device already known, as after the first few seconds of a scan
+        for (String address : addresses) {
+            registry.record(address, String.format(Locale.US, "dev-%s", address), -60, 0);
+            updateRow(address, -60);
+        }
+    }
+
+    @Benchmark
+    public int recordAdvertisement() {
+        int i = next();
+        registry.record(queries[i], null, rssis[i], ++now);
+        return i;
+    }
+
+    @Benchmark
+    public int updateRow() {
+        int i = next();
+        return updateRow(queries[i], rssis[i]);
+    }
+
+    @Benchmark
+    public int updateRowLinear() {
+        int i = next();
+        return updateRowLinear(queries[i], rssis[i]);
+    }
+
+    @Benchmark
+    public Object snapshotAll() {
+        return registry.snapshotAll();
+    }
+
+    private int updateRow(String address, int rssi) {
+        long mac = MacAddresses.pack(address);
+        int row = rowByMac.get(mac);
+        if (row < 0) {
+            row = rows.size();
+            rows.add(new Row(address));
+            rowByMac.put(mac, row);
+        }
+        rows.get(row).rssi = rssi;
+        return row;
+    }
+
+    private int updateRowLinear(String address, int rssi) {
+        int row = -1;
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).address.equals(address)) {
+                row = i;
+                break;
+            }
+        }
+        if (row < 0) {
+            row = rows.size();
+            rows.add(new Row(address));
+            // Keep the index in step so updateRow sees the same rows
+            rowByMac.put(MacAddresses.pack(address), row);
+        }
+        rows.get(row).rssi = rssi;
+        return row;
+    }
+
+    private int next() {
+        int i = next;
+        next = (i + 1) & (QUERIES - 1);
+        return i;
+    }
+}
@@ -0,0 +1,108 @@
+package com.hilfritz.blescanner.benchmarks;
+
+import com.hilfritz.blescanner.utils.GattUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The formatting helpers that run for every read, notification and rendered row.
+ * Payload sizes: a default-MTU notification (20) and a full 247-MTU one (244).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GattUtilsBenchmark {
+
+    @State(Scope.Thread)
+    public static class Payload {
+        @Param({"20", "244"})
+        public int size;
+
+        byte[] value;
+        final StringBuilder out = new StringBuilder(1024);
+
+        @Setup
+        public void setUp() {
+            value = new byte[size];
+            new Random(size).nextBytes(value);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Uuids {
+        // Known and unknown SIG UUIDs plus a vendor UUID, cycled so no call site sees a constant
+        final UUID[] services = {
+                sig(0x180D), sig(0x180F), sig(0x1800), sig(0x1816),
+                UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e"),
+        };
+        final UUID[] characteristics = {
+                sig(0x2A37), sig(0x2A19), sig(0x2A00), sig(0x2A5B),
+                UUID.fromString("6e400003-b5a3-f393-e0a9-e50e24dcca9e"),
+        };
+        final int[] properties = {0x02, 0x12, 0x0C, 0x3E, 0x20};
+        int next;
+
+        int index() {
+            int i = next;
+            next = i + 1 == services.length ? 0 : i + 1;
+            return i;
+        }
+
+        static UUID sig(int uuid16) {
+            return new UUID(0x0000000000001000L | ((long) uuid16 << 32), 0x800000805F9B34FBL);
+        }
+    }
+
+    @Benchmark
+    public String bytesToHex(Payload p) {
+        return GattUtils.bytesToHex(p.value);
+    }
+
+    /** Into a caller-owned builder; should be 0 B/op. */
+    @Benchmark
+    public int appendHexReused(Payload p) {
+        p.out.setLength(0);
+        return GattUtils.appendHex(p.value, 0, p.value.length, p.out).length();
+    }
+
+    @Benchmark
+    public String bytesToAsciiSafe(Payload p) {
+        return GattUtils.bytesToAsciiSafe(p.value);
+    }
+
+    @Benchmark
+    public String shortUuid(Uuids u) {
+        return GattUtils.shortUuid(u.characteristics[u.index()]);
+    }
+
+    @Benchmark
+    public String gattNameService(Uuids u) {
+        return GattUtils.gattName(u.services[u.index()], true);
+    }
+
+    @Benchmark
+    public String gattNameCharacteristic(Uuids u) {
+        return GattUtils.gattName(u.characteristics[u.index()], false);
+    }
+
+    @Benchmark
+    public String buildPropsText(Uuids u) {
+        return GattUtils.buildPropsText(u.properties[u.index()]);
+    }
+}
@@ -0,0 +1,23 @@
+plugins {
+    `java-library`
+}
+
+// Plain JVM module: no android.* here, so everything in it runs under `./gradlew :ble-core:test`
+// on any CI machine.
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    // @NonNull/@Nullable only; the annotations are not needed at runtime
+    compileOnly(libs.androidx.annotation)
+    testImplementation(libs.junit)
+}
+
+// utils/assigned_numbers.txt is regenerated from the SIG's YAML by a standalone script, not a
+// task here: java scripts/GenerateAssignedNumbers.java <checkout of bluetooth-SIG/public>
@@ -0,0 +1,35 @@
+package com.hilfritz.blescanner.core;
+
+import androidx.annotation.NonNull;
+
+/**
+ * The local Bluetooth radio, without any android.* types.
+ *
+ * {@link SimulatedRadio} implements it in plain Java so scanning and GATT logic can run in JVM
+ * tests and benchmarks; AndroidBleAdapter in the app wraps BluetoothAdapter and is what
+ * BleManager scans and connects through.
+ */
+public interface BleAdapter {
+
+    boolean isEnabled();
+
+    /** Null when the radio is off or has no LE scanner. */
+    BleScanner getScanner();
+
+    /** The controller can evaluate {@link ScanOptions.Filter}s itself. */
+    default boolean isOffloadedFilteringSupported() {
+        return false;
+    }
+
+    /** The controller can hold results for a {@link ScanOptions#getReportDelayMillis()}. */
+    default boolean isOffloadedScanBatchingSupported() {
+        return false;
+    }
+
+    /**
+     * Start connecting to {@code address}. The outcome arrives through
+     * {@link BleGattCallback#onConnectionStateChange}. Returns null if the attempt could not be
+     * started at all (radio off, bad address, no permission).
+     */
+    BleGatt connect(@NonNull String address, @NonNull BleGattCallback callback);
+}
@@ -0,0 +1,53 @@
+package com.hilfritz.blescanner.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A GATT client connection, as returned by {@link BleAdapter#connect}.
+ *
+ * Same contract as BluetoothGatt: one operation may be outstanding at a time, a call made while
+ * another is in flight (or while disconnected) returns false, and the result of an accepted one
+ * arrives through the {@link BleGattCallback}. Characteristics are addressed by UUID; if a UUID
+ * appears in several services the first one wins.
+ */
+public interface BleGatt {
+
+    // Status codes, same values as BluetoothGatt.GATT_*
+    int GATT_SUCCESS = 0;
+    int GATT_READ_NOT_PERMITTED = 0x02;
+    int GATT_WRITE_NOT_PERMITTED = 0x03;
+    int GATT_REQUEST_NOT_SUPPORTED = 0x06;
+    int GATT_CONNECTION_TIMEOUT = 0x08;
+    int GATT_ERROR = 0x85;
+    int GATT_FAILURE = 0x101;
+
+    int DEFAULT_ATT_MTU = 23;
+    int MAX_ATT_MTU = 517;
+
+    @NonNull
+    String getAddress();
+
+    /** The services found by the last successful discovery; empty before that. */
+    @NonNull
+    List<BleService> getServices();
+
+    boolean discoverServices();
+
+    boolean readCharacteristic(@NonNull UUID characteristic);
+
+    boolean writeCharacteristic(@NonNull UUID characteristic, @NonNull byte[] value,
+                                boolean withResponse);
+
+    /** Subscribe to notifications, or indications if the characteristic only indicates. */
+    boolean setNotificationsEnabled(@NonNull UUID characteristic, boolean enable);
+
+    boolean requestMtu(int mtu);
+
+    void disconnect();
+
+    /** Release the connection; no callbacks are delivered afterwards. */
+    void close();
+}
@@ -0,0 +1,37 @@
+package com.hilfritz.blescanner.core;
+
+import java.util.UUID;
+
+/**
+ * Events of a {@link BleGatt}. Each backend calls these on a single thread of its own (the
+ * binder thread on Android), never on the caller's.
+ */
+public interface BleGattCallback {
+
+    void onConnectionStateChange(BleGatt gatt, int status, boolean connected);
+
+    default void onServicesDiscovered(BleGatt gatt, int status) {
+    }
+
+    /** The peripheral's GATT table changed; the services found so far are stale. */
+    default void onServiceChanged(BleGatt gatt) {
+    }
+
+    default void onCharacteristicRead(BleGatt gatt, UUID characteristic, byte[] value, int status) {
+    }
+
+    default void onCharacteristicWrite(BleGatt gatt, UUID characteristic, int status) {
+    }
+
+    default void onNotificationStateChanged(BleGatt gatt, UUID characteristic, boolean enabled,
+                                            int status) {
+    }
+
+    /** {@code timestampNanos} is monotonic, from the same clock as the scanner's. */
+    default void onCharacteristicChanged(BleGatt gatt, UUID characteristic, byte[] value,
+                                         long timestampNanos) {
+    }
+
+    default void onMtuChanged(BleGatt gatt, int mtu, int status) {
+    }
+}
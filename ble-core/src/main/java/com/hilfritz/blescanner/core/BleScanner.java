@@ -0,0 +1,42 @@
+package com.hilfritz.blescanner.core;
+
+import androidx.annotation.NonNull;
+
+/** LE scanner of a {@link BleAdapter}. */
+public interface BleScanner {
+
+    interface Callback {
+        /**
+         * One received advertisement. {@code advertisement} is the raw AD structure payload and
+         * belongs to the callee; {@code timestampNanos} is monotonic, from the backend's clock.
+         */
+        void onAdvertisement(String address, int rssi, byte[] advertisement, long timestampNanos);
+
+        /** The device stopped matching; only with {@link ScanOptions#CALLBACK_TYPE_MATCH_LOST}. */
+        default void onAdvertisementLost(String address) {
+        }
+
+        /**
+         * A batch from the controller was delivered as onAdvertisement calls and is complete.
+         * Only when the scan has a report delay and the backend batches in hardware.
+         */
+        default void onBatchComplete() {
+        }
+
+        default void onScanFailed(int errorCode) {
+        }
+    }
+
+    /** Returns false if the scan could not be started. Several callbacks may scan at once. */
+    boolean startScan(@NonNull ScanOptions options, @NonNull Callback callback);
+
+    default boolean startScan(@NonNull Callback callback) {
+        return startScan(ScanOptions.DEFAULT, callback);
+    }
+
+    /** Deliver whatever a batched scan is still holding, ahead of stopScan. */
+    default void flushPendingResults(@NonNull Callback callback) {
+    }
+
+    void stopScan(@NonNull Callback callback);
+}
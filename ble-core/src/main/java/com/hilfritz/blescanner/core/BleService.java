@@ -0,0 +1,62 @@
+package com.hilfritz.blescanner.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/** Immutable description of a discovered GATT service and its characteristics. */
+public final class BleService {
+
+    public static final class Characteristic {
+        public final UUID uuid;
+        /** Property bits, see GattUtils.PROPERTY_*. */
+        public final int properties;
+
+        public Characteristic(@NonNull UUID uuid, int properties) {
+            this.uuid = uuid;
+            this.properties = properties;
+        }
+
+        public boolean hasProperty(int property) {
+            return (properties & property) != 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Characteristic{" + uuid + ", properties=0x" + Integer.toHexString(properties) + "}";
+        }
+    }
+
+    public final UUID uuid;
+    public final List<Characteristic> characteristics;
+
+    public BleService(@NonNull UUID uuid, @NonNull List<Characteristic> characteristics) {
+        this.uuid = uuid;
+        this.characteristics = Collections.unmodifiableList(new ArrayList<>(characteristics));
+    }
+
+    /** Null if this service has no such characteristic. */
+    public Characteristic getCharacteristic(@NonNull UUID characteristic) {
+        for (Characteristic c : characteristics) {
+            if (c.uuid.equals(characteristic)) return c;
+        }
+        return null;
+    }
+
+    /** First characteristic with that UUID across {@code services}, or null. */
+    public static Characteristic find(@NonNull List<BleService> services, @NonNull UUID characteristic) {
+        for (BleService s : services) {
+            Characteristic c = s.getCharacteristic(characteristic);
+            if (c != null) return c;
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "BleService{" + uuid + ", " + characteristics.size() + " characteristics}";
+    }
+}
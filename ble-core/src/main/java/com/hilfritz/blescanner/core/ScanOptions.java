@@ -0,0 +1,246 @@
+package com.hilfritz.blescanner.core;
+
+import androidx.annotation.NonNull;
+
+import com.hilfritz.blescanner.utils.AdvertisementParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Settings and filters for {@link BleScanner#startScan(ScanOptions, BleScanner.Callback)}.
+ *
+ * The mode, callback type and match constants have the same values as ScanSettings.*. Filters
+ * are alternatives: an advertisement is reported if any one of them matches, and with no
+ * filters everything is. The fields set inside one {@link Filter} must all match. A backend
+ * pushes filters down to the controller where it can.
+ */
+public final class ScanOptions {
+
+    public static final int SCAN_MODE_OPPORTUNISTIC = -1;
+    public static final int SCAN_MODE_LOW_POWER = 0;
+    public static final int SCAN_MODE_BALANCED = 1;
+    public static final int SCAN_MODE_LOW_LATENCY = 2;
+
+    public static final int CALLBACK_TYPE_ALL_MATCHES = 1;
+    public static final int CALLBACK_TYPE_FIRST_MATCH = 2;
+    public static final int CALLBACK_TYPE_MATCH_LOST = 4;
+
+    public static final int MATCH_MODE_AGGRESSIVE = 1;
+    public static final int MATCH_MODE_STICKY = 2;
+
+    public static final int MATCH_NUM_ONE_ADVERTISEMENT = 1;
+    public static final int MATCH_NUM_FEW_ADVERTISEMENT = 2;
+    public static final int MATCH_NUM_MAX_ADVERTISEMENT = 3;
+
+    public static final ScanOptions DEFAULT = new Builder().build();
+
+    /** One hardware filter. Unset fields match anything. */
+    public static final class Filter {
+        private final UUID serviceUuid;
+        private final String deviceAddress;
+        private final int manufacturerId;
+        private final byte[] manufacturerData;
+        private final byte[] manufacturerDataMask;
+
+        private Filter(Builder builder) {
+            this.serviceUuid = builder.serviceUuid;
+            this.deviceAddress = builder.deviceAddress;
+            this.manufacturerId = builder.manufacturerId;
+            this.manufacturerData = builder.manufacturerData;
+            this.manufacturerDataMask = builder.manufacturerDataMask;
+        }
+
+        public UUID getServiceUuid() {
+            return serviceUuid;
+        }
+
+        public String getDeviceAddress() {
+            return deviceAddress;
+        }
+
+        /** -1 when the filter has no manufacturer data. */
+        public int getManufacturerId() {
+            return manufacturerId;
+        }
+
+        public byte[] getManufacturerData() {
+            return manufacturerData != null ? manufacturerData.clone() : null;
+        }
+
+        public byte[] getManufacturerDataMask() {
+            return manufacturerDataMask != null ? manufacturerDataMask.clone() : null;
+        }
+
+        /**
+         * Software check, for backends that cannot filter in hardware. {@code parsed} holds the
+         * advertisement from {@code address}, already parsed.
+         */
+        public boolean matches(@NonNull String address, @NonNull AdvertisementParser parsed) {
+            if (deviceAddress != null && !deviceAddress.equalsIgnoreCase(address)) return false;
+            if (serviceUuid != null && !parsed.hasServiceUuid(serviceUuid.getMostSignificantBits(),
+                    serviceUuid.getLeastSignificantBits())) {
+                return false;
+            }
+            if (manufacturerId < 0) return true;
+            int index = parsed.findManufacturerData(manufacturerId);
+            if (index < 0) return false;
+            if (manufacturerData == null) return true;
+            if (parsed.getManufacturerDataLength(index) < manufacturerData.length) return false;
+            byte[] bytes = parsed.getBytes();
+            int offset = parsed.getManufacturerDataOffset(index);
+            for (int i = 0; i < manufacturerData.length; i++) {
+                int mask = manufacturerDataMask != null ? manufacturerDataMask[i] : 0xFF;
+                if (((bytes[offset + i] ^ manufacturerData[i]) & mask) != 0) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "Filter{service=" + serviceUuid + ", address=" + deviceAddress
+                    + ", manufacturer=" + manufacturerId
+                    + (manufacturerData != null ? " " + Arrays.toString(manufacturerData) : "") + "}";
+        }
+
+        public static final class Builder {
+            private UUID serviceUuid;
+            private String deviceAddress;
+            private int manufacturerId = -1;
+            private byte[] manufacturerData;
+            private byte[] manufacturerDataMask;
+
+            public Builder setServiceUuid(UUID serviceUuid) {
+                this.serviceUuid = serviceUuid;
+                return this;
+            }
+
+            public Builder setDeviceAddress(String deviceAddress) {
+                this.deviceAddress = deviceAddress;
+                return this;
+            }
+
+            /**
+             * Manufacturer specific data for {@code companyId} starting with {@code data},
+             * comparing only the bits set in {@code mask} (null = all bits).
+             */
+            public Builder setManufacturerData(int companyId, byte[] data, byte[] mask) {
+                if (companyId < 0 || companyId > 0xFFFF) {
+                    throw new IllegalArgumentException("companyId out of range: " + companyId);
+                }
+                if (mask != null && (data == null || mask.length != data.length)) {
+                    throw new IllegalArgumentException("mask needs data of the same length");
+                }
+                this.manufacturerId = companyId;
+                this.manufacturerData = data != null ? data.clone() : null;
+                this.manufacturerDataMask = mask != null ? mask.clone() : null;
+                return this;
+            }
+
+            public Filter build() {
+                return new Filter(this);
+            }
+        }
+    }
+
+    private final int scanMode;
+    private final int callbackType;
+    private final int matchMode;
+    private final int numOfMatches;
+    private final long reportDelayMillis;
+    private final List<Filter> filters;
+
+    private ScanOptions(Builder builder) {
+        this.scanMode = builder.scanMode;
+        this.callbackType = builder.callbackType;
+        this.matchMode = builder.matchMode;
+        this.numOfMatches = builder.numOfMatches;
+        this.reportDelayMillis = builder.reportDelayMillis;
+        this.filters = Collections.unmodifiableList(new ArrayList<>(builder.filters));
+    }
+
+    public int getScanMode() {
+        return scanMode;
+    }
+
+    public int getCallbackType() {
+        return callbackType;
+    }
+
+    public int getMatchMode() {
+        return matchMode;
+    }
+
+    public int getNumOfMatches() {
+        return numOfMatches;
+    }
+
+    /** Above 0 the backend batches results in the controller, see Callback#onBatchComplete. */
+    public long getReportDelayMillis() {
+        return reportDelayMillis;
+    }
+
+    /** Empty means match everything. */
+    @NonNull
+    public List<Filter> getFilters() {
+        return filters;
+    }
+
+    /** True if no filter is set or any one of them matches. */
+    public boolean matches(@NonNull String address, @NonNull AdvertisementParser parsed) {
+        if (filters.isEmpty()) return true;
+        for (Filter filter : filters) {
+            if (filter.matches(address, parsed)) return true;
+        }
+        return false;
+    }
+
+    public static final class Builder {
+        private int scanMode = SCAN_MODE_LOW_POWER;
+        private int callbackType = CALLBACK_TYPE_ALL_MATCHES;
+        private int matchMode = MATCH_MODE_AGGRESSIVE;
+        private int numOfMatches = MATCH_NUM_MAX_ADVERTISEMENT;
+        private long reportDelayMillis = 0;
+        private final List<Filter> filters = new ArrayList<>();
+
+        public Builder setScanMode(int scanMode) {
+            this.scanMode = scanMode;
+            return this;
+        }
+
+        public Builder setCallbackType(int callbackType) {
+            this.callbackType = callbackType;
+            return this;
+        }
+
+        public Builder setMatchMode(int matchMode) {
+            this.matchMode = matchMode;
+            return this;
+        }
+
+        public Builder setNumOfMatches(int numOfMatches) {
+            this.numOfMatches = numOfMatches;
+            return this;
+        }
+
+        public Builder setReportDelayMillis(long reportDelayMillis) {
+            if (reportDelayMillis < 0) {
+                throw new IllegalArgumentException("reportDelayMillis < 0: " + reportDelayMillis);
+            }
+            this.reportDelayMillis = reportDelayMillis;
+            return this;
+        }
+
+        public Builder addFilter(@NonNull Filter filter) {
+            filters.add(filter);
+            return this;
+        }
+
+        public ScanOptions build() {
+            return new ScanOptions(this);
+        }
+    }
+}
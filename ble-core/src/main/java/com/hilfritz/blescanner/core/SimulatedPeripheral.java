@@ -0,0 +1,252 @@
+package com.hilfritz.blescanner.core;
+
+import androidx.annotation.NonNull;
+
+import com.hilfritz.blescanner.utils.AdvertisementParser;
+import com.hilfritz.blescanner.utils.MacAddresses;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A fake peripheral for {@link SimulatedRadio}: what it advertises, how fast, how it behaves once
+ * connected and what its characteristics contain.
+ *
+ * The configuration is fixed at {@link Builder#build()}. Characteristic values are live: reads
+ * return the current value, writes replace it and tests can change it with {@link #setValue}.
+ */
+public final class SimulatedPeripheral {
+
+    /** Produces the value of the {@code sequence}-th notification (0, 1, 2...). */
+    public interface ValueSource {
+        byte[] next(long sequence);
+    }
+
+    public static final long DEFAULT_ADVERTISING_INTERVAL_MS = 100;
+    public static final long DEFAULT_CONNECTION_LATENCY_MS = 30;
+    public static final int DEFAULT_RSSI = -60;
+
+    private final String address;
+    private final byte[] advertisement;
+    private final long advertisingIntervalMs;
+    private final int rssi;
+    private final int rssiJitter;
+    private final long connectionLatencyMs;
+    private final long operationLatencyMs;
+    private final int maxMtu;
+    private final List<BleService> services;
+    private final Map<UUID, Integer> notificationRates;
+    private final Map<UUID, ValueSource> valueSources;
+    private final Map<UUID, byte[]> values;
+
+    private SimulatedPeripheral(Builder builder) {
+        this.address = builder.address;
+        this.advertisement = builder.advertisement != null
+                ? builder.advertisement.clone() : defaultAdvertisement(builder.name);
+        this.advertisingIntervalMs = builder.advertisingIntervalMs;
+        this.rssi = builder.rssi;
+        this.rssiJitter = builder.rssiJitter;
+        this.connectionLatencyMs = builder.connectionLatencyMs;
+        this.operationLatencyMs = builder.operationLatencyMs;
+        this.maxMtu = builder.maxMtu;
+
+        List<BleService> services = new ArrayList<>();
+        for (Map.Entry<UUID, List<BleService.Characteristic>> e : builder.services.entrySet()) {
+            services.add(new BleService(e.getKey(), e.getValue()));
+        }
+        this.services = services;
+        this.notificationRates = new HashMap<>(builder.notificationRates);
+        this.valueSources = new HashMap<>(builder.valueSources);
+        this.values = new HashMap<>(builder.values);
+    }
+
+    private static byte[] defaultAdvertisement(String name) {
+        byte[] nameBytes = name != null ? name.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        // Flags (LE General Discoverable, BR/EDR not supported) + Complete Local Name
+        int nameLength = Math.min(nameBytes.length, 31 - 3 - 2);
+        byte[] adv = new byte[3 + (nameLength > 0 ? 2 + nameLength : 0)];
+        adv[0] = 2;
+        adv[1] = AdvertisementParser.AD_FLAGS;
+        adv[2] = 0x06;
+        if (nameLength > 0) {
+            adv[3] = (byte) (nameLength + 1);
+            adv[4] = (byte) AdvertisementParser.AD_NAME_COMPLETE;
+            System.arraycopy(nameBytes, 0, adv, 5, nameLength);
+        }
+        return adv;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    /** Raw AD structures; a copy. */
+    public byte[] getAdvertisement() {
+        return advertisement.clone();
+    }
+
+    public long getAdvertisingIntervalMs() {
+        return advertisingIntervalMs;
+    }
+
+    public int getRssi() {
+        return rssi;
+    }
+
+    /** Each advertisement's RSSI is uniform in [rssi - jitter, rssi + jitter]. */
+    public int getRssiJitter() {
+        return rssiJitter;
+    }
+
+    public long getConnectionLatencyMs() {
+        return connectionLatencyMs;
+    }
+
+    public long getOperationLatencyMs() {
+        return operationLatencyMs;
+    }
+
+    /** Largest ATT MTU this peripheral accepts in an MTU exchange. */
+    public int getMaxMtu() {
+        return maxMtu;
+    }
+
+    public List<BleService> getServices() {
+        return services;
+    }
+
+    /** Notifications per second while subscribed; 0 if the characteristic never notifies. */
+    public int getNotificationRate(@NonNull UUID characteristic) {
+        Integer rate = notificationRates.get(characteristic);
+        return rate != null ? rate : 0;
+    }
+
+    ValueSource getValueSource(@NonNull UUID characteristic) {
+        return valueSources.get(characteristic);
+    }
+
+    /** Current value of {@code characteristic} (a copy), or null if it has none. */
+    public synchronized byte[] getValue(@NonNull UUID characteristic) {
+        byte[] v = values.get(characteristic);
+        return v != null ? v.clone() : null;
+    }
+
+    public synchronized void setValue(@NonNull UUID characteristic, byte[] value) {
+        values.put(characteristic, value != null ? value.clone() : null);
+    }
+
+    @Override
+    public String toString() {
+        return "SimulatedPeripheral{" + address + ", adv every " + advertisingIntervalMs + " ms, "
+                + services.size() + " services}";
+    }
+
+    public static final class Builder {
+        private final String address;
+        private String name;
+        private byte[] advertisement;
+        private long advertisingIntervalMs = DEFAULT_ADVERTISING_INTERVAL_MS;
+        private int rssi = DEFAULT_RSSI;
+        private int rssiJitter = 0;
+        private long connectionLatencyMs = DEFAULT_CONNECTION_LATENCY_MS;
+        private long operationLatencyMs = 0;
+        private int maxMtu = BleGatt.MAX_ATT_MTU;
+        private final Map<UUID, List<BleService.Characteristic>> services = new LinkedHashMap<>();
+        private final Map<UUID, Integer> notificationRates = new HashMap<>();
+        private final Map<UUID, ValueSource> valueSources = new HashMap<>();
+        private final Map<UUID, byte[]> values = new HashMap<>();
+
+        public Builder(@NonNull String address) {
+            if (MacAddresses.pack(address) == MacAddresses.INVALID) {
+                throw new IllegalArgumentException("bad address: " + address);
+            }
+            this.address = address;
+        }
+
+        /** Advertised as the Complete Local Name, unless {@link #setAdvertisement} is used. */
+        public Builder setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /** Raw AD structures to advertise instead of flags + name. */
+        public Builder setAdvertisement(byte[] advertisement) {
+            this.advertisement = advertisement;
+            return this;
+        }
+
+        public Builder setAdvertisingIntervalMs(long intervalMs) {
+            if (intervalMs <= 0) throw new IllegalArgumentException("interval must be > 0: " + intervalMs);
+            this.advertisingIntervalMs = intervalMs;
+            return this;
+        }
+
+        public Builder setRssi(int rssi, int jitter) {
+            if (jitter < 0) throw new IllegalArgumentException("jitter must be >= 0: " + jitter);
+            this.rssi = rssi;
+            this.rssiJitter = jitter;
+            return this;
+        }
+
+        /** Delay between connect() and the connected callback. */
+        public Builder setConnectionLatencyMs(long latencyMs) {
+            if (latencyMs < 0) throw new IllegalArgumentException("latency must be >= 0: " + latencyMs);
+            this.connectionLatencyMs = latencyMs;
+            return this;
+        }
+
+        /** Delay before each GATT operation completes, e.g. one connection interval. */
+        public Builder setOperationLatencyMs(long latencyMs) {
+            if (latencyMs < 0) throw new IllegalArgumentException("latency must be >= 0: " + latencyMs);
+            this.operationLatencyMs = latencyMs;
+            return this;
+        }
+
+        public Builder setMaxMtu(int maxMtu) {
+            if (maxMtu < BleGatt.DEFAULT_ATT_MTU || maxMtu > BleGatt.MAX_ATT_MTU) {
+                throw new IllegalArgumentException("maxMtu must be in [" + BleGatt.DEFAULT_ATT_MTU
+                        + ", " + BleGatt.MAX_ATT_MTU + "]: " + maxMtu);
+            }
+            this.maxMtu = maxMtu;
+            return this;
+        }
+
+        /** @param properties GattUtils.PROPERTY_* bits */
+        public Builder addCharacteristic(@NonNull UUID service, @NonNull UUID characteristic,
+                                         int properties, byte[] value) {
+            List<BleService.Characteristic> list = services.get(service);
+            if (list == null) {
+                list = new ArrayList<>();
+                services.put(service, list);
+            }
+            list.add(new BleService.Characteristic(characteristic, properties));
+            values.put(characteristic, value != null ? value.clone() : null);
+            return this;
+        }
+
+        /**
+         * Send {@code perSecond} notifications while subscribed. Values come from {@code source},
+         * or repeat the current value if it is null.
+         */
+        public Builder setNotificationRate(@NonNull UUID characteristic, int perSecond,
+                                           ValueSource source) {
+            if (perSecond < 0) throw new IllegalArgumentException("rate must be >= 0: " + perSecond);
+            notificationRates.put(characteristic, perSecond);
+            if (source != null) {
+                valueSources.put(characteristic, source);
+            } else {
+                valueSources.remove(characteristic);
+            }
+            return this;
+        }
+
+        public SimulatedPeripheral build() {
+            return new SimulatedPeripheral(this);
+        }
+    }
+}
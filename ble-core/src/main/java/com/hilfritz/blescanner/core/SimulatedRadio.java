@@ -0,0 +1,404 @@
+package com.hilfritz.blescanner.core;
+
+import androidx.annotation.NonNull;
+
+import com.hilfritz.blescanner.utils.AdvertisementParser;
+import com.hilfritz.blescanner.utils.GattUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link BleAdapter} with no hardware behind it, driven by {@link SimulatedPeripheral}s.
+ *
+ * - Scanning delivers each peripheral's advertisement every advertising interval (first one at a
+ *   random offset, like real advertisers), with the configured RSSI jitter. Peripherals added
+ *   during a scan are picked up by the next startScan(). {@link ScanOptions} filters are applied
+ *   in software; there is no offloaded batching, so the report delay is ignored.
+ * - connect() reports the connection after the peripheral's connection latency, or fails with
+ *   {@link BleGatt#GATT_ERROR} (133) for unknown addresses.
+ * - GATT operations follow the Android rules: one at a time, completing after the
+ *   peripheral's operation latency, MTU capped by the peripheral, no-response writes and
+ *   notifications truncated to MTU - 3.
+ * - Notifications are sent at the characteristic's configured rate while subscribed.
+ * - {@link #removePeripheral} drops live connections with {@link BleGatt#GATT_CONNECTION_TIMEOUT}.
+ *
+ * Every callback runs on one "simulated-radio" thread, standing in for the binder thread.
+ * Timestamps come from System.nanoTime(). Pass a seed for reproducible RSSI sequences.
+ */
+public class SimulatedRadio implements BleAdapter {
+
+    private final ScheduledExecutorService executor;
+    private final Random random;
+    private final Map<String, SimulatedPeripheral> peripherals = new ConcurrentHashMap<>();
+    private final Set<SimulatedGatt> connections = ConcurrentHashMap.newKeySet();
+    private final Scanner scanner = new Scanner();
+    private volatile boolean enabled = true;
+
+    private final AtomicLong advertisementsSent = new AtomicLong();
+    private final AtomicLong notificationsSent = new AtomicLong();
+
+    public SimulatedRadio() {
+        this(System.nanoTime());
+    }
+
+    public SimulatedRadio(long seed) {
+        this.random = new Random(seed);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "simulated-radio");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // region Peripherals
+
+    public SimulatedRadio addPeripheral(@NonNull SimulatedPeripheral peripheral) {
+        peripherals.put(peripheral.getAddress(), peripheral);
+        return this;
+    }
+
+    /** The peripheral goes out of range: it stops advertising and its connections drop. */
+    public void removePeripheral(@NonNull String address) {
+        if (peripherals.remove(address) == null) return;
+        scanner.stopAdvertising(address);
+        for (SimulatedGatt gatt : connections) {
+            if (gatt.address.equals(address)) {
+                executor.execute(() -> gatt.drop(BleGatt.GATT_CONNECTION_TIMEOUT));
+            }
+        }
+    }
+
+    public SimulatedPeripheral getPeripheral(@NonNull String address) {
+        return peripherals.get(address);
+    }
+
+    // endregion
+
+    // region BleAdapter
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Turning the radio off stops scans and drops every connection. */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            scanner.stopAll();
+            for (SimulatedGatt gatt : connections) {
+                executor.execute(() -> gatt.drop(BleGatt.GATT_FAILURE));
+            }
+        }
+    }
+
+    @Override
+    public BleScanner getScanner() {
+        return enabled ? scanner : null;
+    }
+
+    @Override
+    public BleGatt connect(@NonNull String address, @NonNull BleGattCallback callback) {
+        if (!enabled) return null;
+        SimulatedGatt gatt = new SimulatedGatt(address, callback);
+        connections.add(gatt);
+        SimulatedPeripheral p = peripherals.get(address);
+        long latency = p != null ? p.getConnectionLatencyMs() : SimulatedPeripheral.DEFAULT_CONNECTION_LATENCY_MS;
+        executor.schedule(gatt::onConnectTimerFired, latency, TimeUnit.MILLISECONDS);
+        return gatt;
+    }
+
+    // endregion
+
+    /** Stop the radio thread. The radio cannot be used afterwards. */
+    public void shutdown() {
+        enabled = false;
+        scanner.stopAll();
+        for (SimulatedGatt gatt : connections) gatt.close();
+        executor.shutdownNow();
+    }
+
+    public long getAdvertisementsSent() {
+        return advertisementsSent.get();
+    }
+
+    public long getNotificationsSent() {
+        return notificationsSent.get();
+    }
+
+    private int nextRssi(SimulatedPeripheral p) {
+        int jitter = p.getRssiJitter();
+        return jitter == 0 ? p.getRssi() : p.getRssi() - jitter + random.nextInt(2 * jitter + 1);
+    }
+
+    // region Scanner
+
+    private final class Scanner implements BleScanner {
+        // callback -> (address -> advertising task)
+        private final Map<Callback, Map<String, ScheduledFuture<?>>> scans = new HashMap<>();
+
+        // Guarded by this, like scans
+        private final AdvertisementParser parser = new AdvertisementParser();
+
+        @Override
+        public synchronized boolean startScan(@NonNull ScanOptions options, @NonNull Callback callback) {
+            if (!enabled || scans.containsKey(callback)) return false;
+            Map<String, ScheduledFuture<?>> tasks = new HashMap<>();
+            for (SimulatedPeripheral p : peripherals.values()) {
+                parser.parse(p.getAdvertisement());
+                if (!options.matches(p.getAddress(), parser)) continue;
+                long interval = p.getAdvertisingIntervalMs();
+                long offset = (long) (random.nextDouble() * interval);
+                tasks.put(p.getAddress(), executor.scheduleAtFixedRate(() -> advertise(p, callback),
+                        offset, interval, TimeUnit.MILLISECONDS));
+            }
+            scans.put(callback, tasks);
+            return true;
+        }
+
+        @Override
+        public synchronized void stopScan(@NonNull Callback callback) {
+            Map<String, ScheduledFuture<?>> tasks = scans.remove(callback);
+            if (tasks == null) return;
+            for (ScheduledFuture<?> f : tasks.values()) f.cancel(false);
+        }
+
+        synchronized void stopAdvertising(String address) {
+            for (Map<String, ScheduledFuture<?>> tasks : scans.values()) {
+                ScheduledFuture<?> f = tasks.remove(address);
+                if (f != null) f.cancel(false);
+            }
+        }
+
+        synchronized void stopAll() {
+            for (Callback callback : new ArrayList<>(scans.keySet())) stopScan(callback);
+        }
+
+        private void advertise(SimulatedPeripheral p, Callback callback) {
+            advertisementsSent.incrementAndGet();
+            callback.onAdvertisement(p.getAddress(), nextRssi(p), p.getAdvertisement(), System.nanoTime());
+        }
+    }
+
+    // endregion
+
+    // region GATT
+
+    private final class SimulatedGatt implements BleGatt {
+        final String address;
+        private final BleGattCallback callback;
+
+        private boolean connecting = true;
+        private boolean connected;
+        private boolean closed;
+        private boolean busy;
+        private int mtu = DEFAULT_ATT_MTU;
+        private List<BleService> services = Collections.emptyList();
+        private final Map<UUID, ScheduledFuture<?>> subscriptions = new HashMap<>();
+
+        SimulatedGatt(String address, BleGattCallback callback) {
+            this.address = address;
+            this.callback = callback;
+        }
+
+        void onConnectTimerFired() {
+            boolean ok = peripherals.containsKey(address) && enabled;
+            synchronized (this) {
+                if (closed || !connecting) return;
+                connecting = false;
+                connected = ok;
+            }
+            callback.onConnectionStateChange(this, ok ? GATT_SUCCESS : GATT_ERROR, ok);
+        }
+
+        @NonNull
+        @Override
+        public String getAddress() {
+            return address;
+        }
+
+        @NonNull
+        @Override
+        public synchronized List<BleService> getServices() {
+            return services;
+        }
+
+        @Override
+        public boolean discoverServices() {
+            return start(p -> {
+                synchronized (this) {
+                    services = p.getServices();
+                }
+                callback.onServicesDiscovered(this, GATT_SUCCESS);
+            });
+        }
+
+        @Override
+        public boolean readCharacteristic(@NonNull UUID characteristic) {
+            return start(p -> {
+                BleService.Characteristic c = find(characteristic);
+                if (c == null || !c.hasProperty(GattUtils.PROPERTY_READ)) {
+                    callback.onCharacteristicRead(this, characteristic, null, GATT_READ_NOT_PERMITTED);
+                    return;
+                }
+                byte[] value = p.getValue(characteristic);
+                if (value != null && value.length > 512) value = Arrays.copyOf(value, 512);
+                callback.onCharacteristicRead(this, characteristic, value, GATT_SUCCESS);
+            });
+        }
+
+        @Override
+        public boolean writeCharacteristic(@NonNull UUID characteristic, @NonNull byte[] value,
+                                           boolean withResponse) {
+            byte[] copy = value.clone();
+            return start(p -> {
+                BleService.Characteristic c = find(characteristic);
+                int required = withResponse ? GattUtils.PROPERTY_WRITE : GattUtils.PROPERTY_WRITE_NO_RESPONSE;
+                if (c == null || !c.hasProperty(required)) {
+                    callback.onCharacteristicWrite(this, characteristic, GATT_WRITE_NOT_PERMITTED);
+                    return;
+                }
+                p.setValue(characteristic, withResponse ? copy : truncate(copy));
+                callback.onCharacteristicWrite(this, characteristic, GATT_SUCCESS);
+            });
+        }
+
+        @Override
+        public boolean setNotificationsEnabled(@NonNull UUID characteristic, boolean enable) {
+            return start(p -> {
+                BleService.Characteristic c = find(characteristic);
+                if (c == null || !c.hasProperty(GattUtils.PROPERTY_NOTIFY | GattUtils.PROPERTY_INDICATE)) {
+                    callback.onNotificationStateChanged(this, characteristic, enable,
+                            GATT_REQUEST_NOT_SUPPORTED);
+                    return;
+                }
+                synchronized (this) {
+                    ScheduledFuture<?> old = subscriptions.remove(characteristic);
+                    if (old != null) old.cancel(false);
+                    int rate = p.getNotificationRate(characteristic);
+                    if (enable && rate > 0) {
+                        long periodNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+                        SimulatedPeripheral.ValueSource source = p.getValueSource(characteristic);
+                        long[] sequence = new long[1];
+                        subscriptions.put(characteristic, executor.scheduleAtFixedRate(
+                                () -> notifyValue(p, characteristic, source, sequence[0]++),
+                                periodNanos, periodNanos, TimeUnit.NANOSECONDS));
+                    }
+                }
+                callback.onNotificationStateChanged(this, characteristic, enable, GATT_SUCCESS);
+            });
+        }
+
+        @Override
+        public boolean requestMtu(int requested) {
+            return start(p -> {
+                int negotiated = Math.max(DEFAULT_ATT_MTU, Math.min(requested, p.getMaxMtu()));
+                synchronized (this) {
+                    mtu = negotiated;
+                }
+                callback.onMtuChanged(this, negotiated, GATT_SUCCESS);
+            });
+        }
+
+        @Override
+        public void disconnect() {
+            synchronized (this) {
+                // Cancels a pending connect silently, like disconnect() before STATE_CONNECTED
+                connecting = false;
+                if (!connected || closed) return;
+            }
+            executor.execute(() -> drop(GATT_SUCCESS));
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                closed = true;
+                connecting = false;
+                connected = false;
+                cancelSubscriptions();
+            }
+            connections.remove(this);
+        }
+
+        /** Link lost (or disconnect() completed): report it once, unless closed. */
+        void drop(int status) {
+            synchronized (this) {
+                if (!connected || closed) return;
+                connected = false;
+                busy = false;
+                mtu = DEFAULT_ATT_MTU;
+                cancelSubscriptions();
+            }
+            callback.onConnectionStateChange(this, status, false);
+        }
+
+        private void cancelSubscriptions() {
+            for (ScheduledFuture<?> f : subscriptions.values()) f.cancel(false);
+            subscriptions.clear();
+        }
+
+        private void notifyValue(SimulatedPeripheral p, UUID characteristic,
+                                 SimulatedPeripheral.ValueSource source, long sequence) {
+            synchronized (this) {
+                if (!connected || closed) return;
+            }
+            byte[] value = source != null ? source.next(sequence) : p.getValue(characteristic);
+            notificationsSent.incrementAndGet();
+            callback.onCharacteristicChanged(this, characteristic, truncate(value), System.nanoTime());
+        }
+
+        private BleService.Characteristic find(UUID characteristic) {
+            return BleService.find(getServices(), characteristic);
+        }
+
+        private synchronized byte[] truncate(byte[] value) {
+            int max = mtu - 3;
+            return value != null && value.length > max ? Arrays.copyOf(value, max) : value;
+        }
+
+        /** Accept one operation and complete it on the radio thread, like the real stack. */
+        private boolean start(Operation op) {
+            SimulatedPeripheral p = peripherals.get(address);
+            synchronized (this) {
+                if (!connected || closed || busy || p == null) return false;
+                busy = true;
+            }
+            Runnable completion = () -> {
+                synchronized (this) {
+                    if (!busy) return; // dropped in the meantime
+                    busy = false;
+                    if (closed) return;
+                }
+                op.complete(p);
+            };
+            long latency = p.getOperationLatencyMs();
+            if (latency > 0) {
+                executor.schedule(completion, latency, TimeUnit.MILLISECONDS);
+            } else {
+                executor.execute(completion);
+            }
+            return true;
+        }
+    }
+
+    private interface Operation {
+        void complete(SimulatedPeripheral peripheral);
+    }
+
+    // endregion
+}
@@ -0,0 +1,39 @@
+package com.hilfritz.blescanner.decoders;
+
+import androidx.annotation.NonNull;
+
+/** Battery Level (0x2A19). */
+public final class BatteryLevel extends DecodedValue {
+
+    public static final int UUID16 = 0x2A19;
+
+    public static final CharacteristicDecoder<BatteryLevel> DECODER =
+            new CharacteristicDecoder<BatteryLevel>(UUID16) {
+                @NonNull
+                @Override
+                public BatteryLevel newRecord() {
+                    return new BatteryLevel();
+                }
+
+                @Override
+                public boolean decode(@NonNull byte[] v, int offset, int length,
+                                      @NonNull BatteryLevel out) {
+                    if (length < 1) return false;
+                    out.percent = u8(v, offset);
+                    return true;
+                }
+            };
+
+    /** 0-100; some devices report values above 100, which are passed through. */
+    public int percent;
+
+    @Override
+    public int getUuid16() {
+        return UUID16;
+    }
+
+    @Override
+    public StringBuilder appendTo(@NonNull StringBuilder sb) {
+        return sb.append(percent).append('%');
+    }
+}
@@ -0,0 +1,95 @@
+package com.hilfritz.blescanner.decoders;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes one SIG characteristic's value into a reusable {@link DecodedValue}.
+ *
+ * Decoders are stateless and shared; all state lives in the record, so decoding a
+ * notification reads the bytes in place and allocates nothing. Multi-byte fields are
+ * little-endian as in every GATT characteristic, whatever the ByteBuffer's own byte order.
+ *
+ * {@code decode} returns false if the value is too short for the fields its flags announce;
+ * the record is then partially written and should be ignored.
+ */
+public abstract class CharacteristicDecoder<R extends DecodedValue> {
+
+    private final int uuid16;
+
+    protected CharacteristicDecoder(int uuid16) {
+        this.uuid16 = uuid16;
+    }
+
+    public final int getUuid16() {
+        return uuid16;
+    }
+
+    /** A fresh record to pass to {@code decode}; keep it and reuse it. */
+    @NonNull
+    public abstract R newRecord();
+
+    public abstract boolean decode(@NonNull byte[] value, int offset, int length, @NonNull R out);
+
+    public final boolean decode(@NonNull byte[] value, @NonNull R out) {
+        return decode(value, 0, value.length, out);
+    }
+
+    /**
+     * Decode the buffer's remaining bytes. The buffer's position is not changed. Direct buffers
+     * are copied into a scratch array owned by {@code out}, so this stays allocation-free once
+     * the record has seen its largest value.
+     */
+    public final boolean decode(@NonNull ByteBuffer value, @NonNull R out) {
+        int length = value.remaining();
+        if (value.hasArray()) {
+            return decode(value.array(), value.arrayOffset() + value.position(), length, out);
+        }
+        byte[] copy = out.scratch(length);
+        value.duplicate().get(copy, 0, length);
+        return decode(copy, 0, length, out);
+    }
+
+    // region Field readers
+
+    static int u8(byte[] b, int i) {
+        return b[i] & 0xFF;
+    }
+
+    static int u16(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8;
+    }
+
+    static int s16(byte[] b, int i) {
+        return (short) u16(b, i);
+    }
+
+    static long u32(byte[] b, int i) {
+        return (u16(b, i) | (long) u16(b, i + 2) << 16);
+    }
+
+    private static final double[] POW10 = {
+            1e-8, 1e-7, 1e-6, 1e-5, 1e-4, 1e-3, 1e-2, 1e-1, 1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8};
+
+    /** IEEE 11073-20601 32-bit FLOAT: 24-bit mantissa, 8-bit base-10 exponent. */
+    static double float32(byte[] b, int i) {
+        int raw = (int) u32(b, i);
+        int mantissa = (raw << 8) >> 8;
+        int exponent = raw >> 24;
+        switch (mantissa) {
+            case 0x7FFFFE: return Double.POSITIVE_INFINITY;
+            case -0x7FFFFE: return Double.NEGATIVE_INFINITY;
+            case 0x7FFFFF: // NaN
+            case -0x800000: // NRes
+            case -0x7FFFFF: // reserved
+                return Double.NaN;
+            default:
+                break;
+        }
+        double scale = exponent >= -8 && exponent <= 8 ? POW10[exponent + 8] : Math.pow(10, exponent);
+        return mantissa * scale;
+    }
+
+    // endregion
+}
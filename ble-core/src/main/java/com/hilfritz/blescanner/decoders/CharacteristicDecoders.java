@@ -0,0 +1,113 @@
+package com.hilfritz.blescanner.decoders;
+
+import androidx.annotation.NonNull;
+
+import com.hilfritz.blescanner.utils.AssignedNumbers;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Registry of {@link CharacteristicDecoder}s keyed by 16-bit UUID, with one reusable record per
+ * decoder.
+ *
+ * Meant to sit next to a notification consumer (e.g. the {@code NotificationRingBuffer} drain
+ * loop): {@link #decode(long, long, byte[], int, int)} takes the UUID as two longs, finds the
+ * decoder by binary search and refills its record, so the whole path allocates nothing. The
+ * returned record is overwritten by the next decode of the same characteristic; copy fields
+ * out if they need to outlive that.
+ *
+ * Like {@code AdvertisementParser}, an instance is not thread-safe: give each consumer thread
+ * its own.
+ */
+public final class CharacteristicDecoders {
+
+    private int[] keys = new int[0];
+    private CharacteristicDecoder<?>[] decoders = new CharacteristicDecoder<?>[0];
+    private DecodedValue[] records = new DecodedValue[0];
+
+    /** A registry with the built-in decoders. */
+    public CharacteristicDecoders() {
+        register(HeartRateMeasurement.DECODER);
+        register(BatteryLevel.DECODER);
+        register(TemperatureMeasurement.DECODER);
+        register(TemperatureMeasurement.TEMPERATURE_DECODER);
+        register(CscMeasurement.DECODER);
+        register(RscMeasurement.DECODER);
+    }
+
+    /** Add a decoder, replacing any previous one for the same UUID. */
+    public void register(@NonNull CharacteristicDecoder<?> decoder) {
+        int uuid16 = decoder.getUuid16();
+        int i = Arrays.binarySearch(keys, uuid16);
+        if (i >= 0) {
+            decoders[i] = decoder;
+            records[i] = decoder.newRecord();
+            return;
+        }
+        int at = -i - 1;
+        int n = keys.length;
+        int[] newKeys = new int[n + 1];
+        CharacteristicDecoder<?>[] newDecoders = new CharacteristicDecoder<?>[n + 1];
+        DecodedValue[] newRecords = new DecodedValue[n + 1];
+        System.arraycopy(keys, 0, newKeys, 0, at);
+        System.arraycopy(decoders, 0, newDecoders, 0, at);
+        System.arraycopy(records, 0, newRecords, 0, at);
+        newKeys[at] = uuid16;
+        newDecoders[at] = decoder;
+        newRecords[at] = decoder.newRecord();
+        System.arraycopy(keys, at, newKeys, at + 1, n - at);
+        System.arraycopy(decoders, at, newDecoders, at + 1, n - at);
+        System.arraycopy(records, at, newRecords, at + 1, n - at);
+        keys = newKeys;
+        decoders = newDecoders;
+        records = newRecords;
+    }
+
+    public CharacteristicDecoder<?> get(int uuid16) {
+        int i = Arrays.binarySearch(keys, uuid16);
+        return i >= 0 ? decoders[i] : null;
+    }
+
+    public boolean canDecode(long uuidMsb, long uuidLsb) {
+        int alias = AssignedNumbers.toAlias(uuidMsb, uuidLsb);
+        return alias != AssignedNumbers.NOT_SIG && Arrays.binarySearch(keys, alias) >= 0;
+    }
+
+    /**
+     * Decode into this registry's record for the characteristic. Returns null if there is no
+     * decoder for it or the value is malformed.
+     */
+    public DecodedValue decode(long uuidMsb, long uuidLsb, @NonNull byte[] value, int offset,
+                               int length) {
+        int i = indexOf(uuidMsb, uuidLsb);
+        return i >= 0 && decodeAt(i, value, offset, length) ? records[i] : null;
+    }
+
+    public DecodedValue decode(@NonNull UUID uuid, @NonNull byte[] value) {
+        return decode(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), value, 0,
+                value.length);
+    }
+
+    /** See {@link CharacteristicDecoder#decode(ByteBuffer, DecodedValue)}. */
+    public DecodedValue decode(@NonNull UUID uuid, @NonNull ByteBuffer value) {
+        int i = indexOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        return i >= 0 && decodeAt(i, value) ? records[i] : null;
+    }
+
+    private int indexOf(long uuidMsb, long uuidLsb) {
+        int alias = AssignedNumbers.toAlias(uuidMsb, uuidLsb);
+        return alias == AssignedNumbers.NOT_SIG ? -1 : Arrays.binarySearch(keys, alias);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R extends DecodedValue> boolean decodeAt(int i, byte[] value, int offset, int length) {
+        return ((CharacteristicDecoder<R>) decoders[i]).decode(value, offset, length, (R) records[i]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R extends DecodedValue> boolean decodeAt(int i, ByteBuffer value) {
+        return ((CharacteristicDecoder<R>) decoders[i]).decode(value, (R) records[i]);
+    }
+}
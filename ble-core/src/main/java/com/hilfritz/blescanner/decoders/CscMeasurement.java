@@ -0,0 +1,73 @@
+package com.hilfritz.blescanner.decoders;
+
+import androidx.annotation.NonNull;
+
+/**
+ * CSC Measurement (0x2A5B), Cycling Speed and Cadence. Revolution counters and event times
+ * are cumulative; speed and cadence come from the difference between two measurements.
+ */
+public final class CscMeasurement extends DecodedValue {
+
+    public static final int UUID16 = 0x2A5B;
+
+    private static final int FLAG_WHEEL = 0x01;
+    private static final int FLAG_CRANK = 0x02;
+
+    public static final CharacteristicDecoder<CscMeasurement> DECODER =
+            new CharacteristicDecoder<CscMeasurement>(UUID16) {
+                @NonNull
+                @Override
+                public CscMeasurement newRecord() {
+                    return new CscMeasurement();
+                }
+
+                @Override
+                public boolean decode(@NonNull byte[] v, int offset, int length,
+                                      @NonNull CscMeasurement out) {
+                    int end = offset + length;
+                    if (length < 1) return false;
+                    int flags = u8(v, offset);
+                    int p = offset + 1;
+                    out.hasWheel = (flags & FLAG_WHEEL) != 0;
+                    if (out.hasWheel) {
+                        if (p + 6 > end) return false;
+                        out.wheelRevolutions = u32(v, p);
+                        out.lastWheelEventTime = u16(v, p + 4);
+                        p += 6;
+                    }
+                    out.hasCrank = (flags & FLAG_CRANK) != 0;
+                    if (out.hasCrank) {
+                        if (p + 4 > end) return false;
+                        out.crankRevolutions = u16(v, p);
+                        out.lastCrankEventTime = u16(v, p + 2);
+                    }
+                    return true;
+                }
+            };
+
+    public boolean hasWheel;
+    public long wheelRevolutions;
+    /** 1/1024 s, wraps at 64 s. */
+    public int lastWheelEventTime;
+    public boolean hasCrank;
+    public int crankRevolutions;
+    /** 1/1024 s, wraps at 64 s. */
+    public int lastCrankEventTime;
+
+    @Override
+    public int getUuid16() {
+        return UUID16;
+    }
+
+    @Override
+    public StringBuilder appendTo(@NonNull StringBuilder sb) {
+        if (hasWheel) {
+            sb.append("wheel ").append(wheelRevolutions).append(" rev @ ").append(lastWheelEventTime);
+        }
+        if (hasCrank) {
+            if (hasWheel) sb.append(", ");
+            sb.append("crank ").append(crankRevolutions).append(" rev @ ").append(lastCrankEventTime);
+        }
+        return sb;
+    }
+}
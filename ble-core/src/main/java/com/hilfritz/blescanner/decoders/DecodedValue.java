@@ -0,0 +1,34 @@
+package com.hilfritz.blescanner.decoders;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Base class for the mutable records {@link CharacteristicDecoder}s write into.
+ *
+ * A record is meant to be allocated once and refilled for every notification: fields are
+ * public primitives so charts and loggers can read them directly, and only {@link #appendTo}
+ * / {@link #toString()} produce text. Records are not thread-safe; each consumer thread keeps
+ * its own.
+ */
+public abstract class DecodedValue {
+
+    // Staging copy for direct ByteBuffers, grown on demand and then reused
+    byte[] scratch;
+
+    /** 16-bit UUID of the characteristic this record was decoded from. */
+    public abstract int getUuid16();
+
+    /** Human-readable form of the current fields, e.g. for a log line. */
+    public abstract StringBuilder appendTo(@NonNull StringBuilder sb);
+
+    byte[] scratch(int length) {
+        if (scratch == null || scratch.length < length) scratch = new byte[Math.max(length, 32)];
+        return scratch;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder()).toString();
+    }
+}
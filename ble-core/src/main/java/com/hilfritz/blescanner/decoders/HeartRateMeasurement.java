@@ -0,0 +1,96 @@
+package com.hilfritz.blescanner.decoders;
+
+import androidx.annotation.NonNull;
+
+/** Heart Rate Measurement (0x2A37). */
+public final class HeartRateMeasurement extends DecodedValue {
+
+    public static final int UUID16 = 0x2A37;
+
+    public static final int NO_ENERGY_EXPENDED = -1;
+
+    // A 512-byte value holds at most (512 - 2) / 2 RR-intervals
+    public static final int MAX_RR_INTERVALS = 255;
+
+    private static final int FLAG_UINT16 = 0x01;
+    private static final int FLAG_CONTACT_DETECTED = 0x02;
+    private static final int FLAG_CONTACT_SUPPORTED = 0x04;
+    private static final int FLAG_ENERGY_EXPENDED = 0x08;
+    private static final int FLAG_RR_INTERVALS = 0x10;
+
+    public static final CharacteristicDecoder<HeartRateMeasurement> DECODER =
+            new CharacteristicDecoder<HeartRateMeasurement>(UUID16) {
+                @NonNull
+                @Override
+                public HeartRateMeasurement newRecord() {
+                    return new HeartRateMeasurement();
+                }
+
+                @Override
+                public boolean decode(@NonNull byte[] v, int offset, int length,
+                                      @NonNull HeartRateMeasurement out) {
+                    int end = offset + length;
+                    if (length < 2) return false;
+                    int flags = u8(v, offset);
+                    int p = offset + 1;
+                    if ((flags & FLAG_UINT16) != 0) {
+                        if (p + 2 > end) return false;
+                        out.heartRate = u16(v, p);
+                        p += 2;
+                    } else {
+                        out.heartRate = u8(v, p++);
+                    }
+                    out.sensorContactSupported = (flags & FLAG_CONTACT_SUPPORTED) != 0;
+                    out.sensorContactDetected = out.sensorContactSupported
+                            && (flags & FLAG_CONTACT_DETECTED) != 0;
+                    out.energyExpended = NO_ENERGY_EXPENDED;
+                    if ((flags & FLAG_ENERGY_EXPENDED) != 0) {
+                        if (p + 2 > end) return false;
+                        out.energyExpended = u16(v, p);
+                        p += 2;
+                    }
+                    out.rrCount = 0;
+                    if ((flags & FLAG_RR_INTERVALS) != 0) {
+                        while (p + 2 <= end && out.rrCount < MAX_RR_INTERVALS) {
+                            out.rrIntervals[out.rrCount++] = u16(v, p);
+                            p += 2;
+                        }
+                    }
+                    return true;
+                }
+            };
+
+    /** Beats per minute. */
+    public int heartRate;
+    public boolean sensorContactSupported;
+    public boolean sensorContactDetected;
+    /** Kilojoules since the last reset, or {@link #NO_ENERGY_EXPENDED}. */
+    public int energyExpended;
+    public int rrCount;
+    /** First {@link #rrCount} entries are valid, in 1/1024 s. */
+    public final int[] rrIntervals = new int[MAX_RR_INTERVALS];
+
+    public float getRrIntervalMillis(int index) {
+        return rrIntervals[index] * 1000f / 1024f;
+    }
+
+    @Override
+    public int getUuid16() {
+        return UUID16;
+    }
+
+    @Override
+    public StringBuilder appendTo(@NonNull StringBuilder sb) {
+        sb.append(heartRate).append(" bpm");
+        if (sensorContactSupported) sb.append(sensorContactDetected ? ", contact" : ", no contact");
+        if (energyExpended != NO_ENERGY_EXPENDED) sb.append(", ").append(energyExpended).append(" kJ");
+        if (rrCount > 0) {
+            sb.append(", RR");
+            for (int i = 0; i < rrCount; i++) {
+                sb.append(' ').append(Math.round(getRrIntervalMillis(i)));
+            }
+            sb.append(" ms");
+        }
+        return sb;
+    }
+}
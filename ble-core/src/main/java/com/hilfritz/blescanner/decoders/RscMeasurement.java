@@ -0,0 +1,80 @@
+package com.hilfritz.blescanner.decoders;
+
+import androidx.annotation.NonNull;
+
+/** RSC Measurement (0x2A53), Running Speed and Cadence. */
+public final class RscMeasurement extends DecodedValue {
+
+    public static final int UUID16 = 0x2A53;
+
+    public static final int NO_STRIDE_LENGTH = -1;
+    public static final long NO_TOTAL_DISTANCE = -1;
+
+    private static final int FLAG_STRIDE_LENGTH = 0x01;
+    private static final int FLAG_TOTAL_DISTANCE = 0x02;
+    private static final int FLAG_RUNNING = 0x04;
+
+    public static final CharacteristicDecoder<RscMeasurement> DECODER =
+            new CharacteristicDecoder<RscMeasurement>(UUID16) {
+                @NonNull
+                @Override
+                public RscMeasurement newRecord() {
+                    return new RscMeasurement();
+                }
+
+                @Override
+                public boolean decode(@NonNull byte[] v, int offset, int length,
+                                      @NonNull RscMeasurement out) {
+                    int end = offset + length;
+                    if (length < 4) return false;
+                    int flags = u8(v, offset);
+                    out.speed = u16(v, offset + 1);
+                    out.cadence = u8(v, offset + 3);
+                    out.running = (flags & FLAG_RUNNING) != 0;
+                    int p = offset + 4;
+                    out.strideLength = NO_STRIDE_LENGTH;
+                    if ((flags & FLAG_STRIDE_LENGTH) != 0) {
+                        if (p + 2 > end) return false;
+                        out.strideLength = u16(v, p);
+                        p += 2;
+                    }
+                    out.totalDistance = NO_TOTAL_DISTANCE;
+                    if ((flags & FLAG_TOTAL_DISTANCE) != 0) {
+                        if (p + 4 > end) return false;
+                        out.totalDistance = u32(v, p);
+                    }
+                    return true;
+                }
+            };
+
+    /** 1/256 m/s. */
+    public int speed;
+    /** Steps per minute. */
+    public int cadence;
+    /** Running rather than walking. */
+    public boolean running;
+    /** Centimetres, or {@link #NO_STRIDE_LENGTH}. */
+    public int strideLength;
+    /** 1/10 m, or {@link #NO_TOTAL_DISTANCE}. */
+    public long totalDistance;
+
+    public float getSpeedMetresPerSecond() {
+        return speed / 256f;
+    }
+
+    @Override
+    public int getUuid16() {
+        return UUID16;
+    }
+
+    @Override
+    public StringBuilder appendTo(@NonNull StringBuilder sb) {
+        sb.append(Math.round(getSpeedMetresPerSecond() * 100) / 100f).append(" m/s, ")
+                .append(cadence).append(" spm, ").append(running ? "running" : "walking");
+        if (strideLength != NO_STRIDE_LENGTH) sb.append(", stride ").append(strideLength).append(" cm");
+        if (totalDistance != NO_TOTAL_DISTANCE) {
+            sb.append(", ").append(totalDistance / 10.0).append(" m");
+        }
+        return sb;
+    }
+}
@@ -0,0 +1,118 @@
+package com.hilfritz.blescanner.decoders;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Health Thermometer's Temperature Measurement (0x2A1C), and the plain Environmental Sensing
+ * Temperature (0x2A6E), which fills the same record without timestamp or type.
+ */
+public final class TemperatureMeasurement extends DecodedValue {
+
+    public static final int UUID16 = 0x2A1C;
+    public static final int UUID16_TEMPERATURE = 0x2A6E;
+
+    public static final int NO_TYPE = -1;
+
+    private static final int FLAG_FAHRENHEIT = 0x01;
+    private static final int FLAG_TIMESTAMP = 0x02;
+    private static final int FLAG_TYPE = 0x04;
+
+    private static final int TEMPERATURE_UNKNOWN = -0x8000;
+
+    public static final CharacteristicDecoder<TemperatureMeasurement> DECODER =
+            new CharacteristicDecoder<TemperatureMeasurement>(UUID16) {
+                @NonNull
+                @Override
+                public TemperatureMeasurement newRecord() {
+                    return new TemperatureMeasurement(UUID16);
+                }
+
+                @Override
+                public boolean decode(@NonNull byte[] v, int offset, int length,
+                                      @NonNull TemperatureMeasurement out) {
+                    int end = offset + length;
+                    if (length < 5) return false;
+                    int flags = u8(v, offset);
+                    out.value = float32(v, offset + 1);
+                    out.fahrenheit = (flags & FLAG_FAHRENHEIT) != 0;
+                    int p = offset + 5;
+                    out.hasTimestamp = (flags & FLAG_TIMESTAMP) != 0;
+                    if (out.hasTimestamp) {
+                        if (p + 7 > end) return false;
+                        out.year = u16(v, p);
+                        out.month = u8(v, p + 2);
+                        out.day = u8(v, p + 3);
+                        out.hours = u8(v, p + 4);
+                        out.minutes = u8(v, p + 5);
+                        out.seconds = u8(v, p + 6);
+                        p += 7;
+                    }
+                    out.type = NO_TYPE;
+                    if ((flags & FLAG_TYPE) != 0) {
+                        if (p + 1 > end) return false;
+                        out.type = u8(v, p);
+                    }
+                    return true;
+                }
+            };
+
+    public static final CharacteristicDecoder<TemperatureMeasurement> TEMPERATURE_DECODER =
+            new CharacteristicDecoder<TemperatureMeasurement>(UUID16_TEMPERATURE) {
+                @NonNull
+                @Override
+                public TemperatureMeasurement newRecord() {
+                    return new TemperatureMeasurement(UUID16_TEMPERATURE);
+                }
+
+                @Override
+                public boolean decode(@NonNull byte[] v, int offset, int length,
+                                      @NonNull TemperatureMeasurement out) {
+                    if (length < 2) return false;
+                    int raw = s16(v, offset);
+                    out.value = raw == TEMPERATURE_UNKNOWN ? Double.NaN : raw / 100.0;
+                    out.fahrenheit = false;
+                    out.hasTimestamp = false;
+                    out.type = NO_TYPE;
+                    return true;
+                }
+            };
+
+    private final int uuid16;
+
+    /** In {@link #fahrenheit} units; NaN if the sensor reported no value. */
+    public double value;
+    public boolean fahrenheit;
+    public boolean hasTimestamp;
+    public int year;
+    public int month;
+    public int day;
+    public int hours;
+    public int minutes;
+    public int seconds;
+    /** Temperature Type (body location, e.g. 2 = body), or {@link #NO_TYPE}. */
+    public int type;
+
+    private TemperatureMeasurement(int uuid16) {
+        this.uuid16 = uuid16;
+    }
+
+    public double getCelsius() {
+        return fahrenheit ? (value - 32) * 5 / 9 : value;
+    }
+
+    @Override
+    public int getUuid16() {
+        return uuid16;
+    }
+
+    @Override
+    public StringBuilder appendTo(@NonNull StringBuilder sb) {
+        sb.append(Math.round(value * 100) / 100.0).append(fahrenheit ? " °F" : " °C");
+        if (type != NO_TYPE) sb.append(", type ").append(type);
+        if (hasTimestamp) {
+            sb.append(", ").append(year).append('-').append(month).append('-').append(day)
+                    .append(' ').append(hours).append(':').append(minutes).append(':').append(seconds);
+        }
+        return sb;
+    }
+}
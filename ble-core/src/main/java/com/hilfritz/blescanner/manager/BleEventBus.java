@@ -0,0 +1,286 @@
+package com.hilfritz.blescanner.manager;
+
+import androidx.annotation.NonNull;
+
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fans scan, connection and notification events out to any number of subscribers.
+ *
+ * Subscribers live in a copy-on-write array, so publishing iterates without a lock. Each
+ * subscriber has its own bounded queue and its own {@link Executor}: publishing only enqueues
+ * and, if the subscriber is idle, schedules one drain task, so a slow subscriber fills (and
+ * overflows) its own queue without delaying the others or the Bluetooth callback thread.
+ *
+ * Pick the executor per subscriber: {@link #DIRECT} runs on the publishing thread (the BLE
+ * worker in the app; the subscriber must be quick), a Handler-backed executor runs on that
+ * looper, and any thread pool works too. Events reach one subscriber in publish order, one at a time.
+ *
+ * Exceptions thrown by a subscriber are counted in its {@link Subscription} and otherwise
+ * swallowed so they cannot break delivery to the others.
+ */
+public final class BleEventBus {
+
+    // Connection states passed to onConnectionStateChanged
+    public static final int STATE_DISCONNECTED = 0;
+    public static final int STATE_CONNECTING = 1;
+    public static final int STATE_CONNECTED = 2;
+    public static final int STATE_SERVICES_DISCOVERED = 3;
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    /** Deliver on the publishing thread. */
+    public static final Executor DIRECT = Runnable::run;
+
+    // Events delivered per drain task before it re-posts itself, so a busy subscriber on a
+    // shared looper lets other work in between
+    private static final int MAX_BATCH = 64;
+
+    private static final int KIND_SCAN = 0;
+    private static final int KIND_CONNECTION = 1;
+    private static final int KIND_NOTIFICATION = 2;
+
+    public enum Overflow {
+        /** Drop the subscriber's oldest queued event (live views: latest data wins). */
+        DROP_OLDEST,
+        /** Drop the new event (logging: keep what is already queued). */
+        DROP_NEWEST
+    }
+
+    /** Every callback runs on the executor given to {@link #subscribe}. */
+    public interface Subscriber {
+        default void onScanResult(String address, String name, int rssi, long timestampNanos) {
+        }
+
+        default void onConnectionStateChanged(String address, int state) {
+        }
+
+        /** {@code value} is shared with the other subscribers; don't modify it. */
+        default void onNotification(UUID characteristic, byte[] value, long timestampNanos) {
+        }
+    }
+
+    private static final Subscription[] NONE = new Subscription[0];
+
+    private volatile Subscription[] subscriptions = NONE;
+
+    // region Subscribing
+
+    public Subscription subscribe(@NonNull Subscriber subscriber, @NonNull Executor executor) {
+        return subscribe(subscriber, executor, DEFAULT_QUEUE_CAPACITY, Overflow.DROP_OLDEST);
+    }
+
+    public Subscription subscribe(@NonNull Subscriber subscriber, @NonNull Executor executor,
+                                  int queueCapacity, @NonNull Overflow overflow) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be > 0: " + queueCapacity);
+        }
+        Subscription s = new Subscription(this, subscriber, executor, queueCapacity, overflow);
+        synchronized (this) {
+            Subscription[] old = subscriptions;
+            Subscription[] grown = new Subscription[old.length + 1];
+            System.arraycopy(old, 0, grown, 0, old.length);
+            grown[old.length] = s;
+            subscriptions = grown;
+        }
+        return s;
+    }
+
+    private synchronized void remove(Subscription s) {
+        Subscription[] old = subscriptions;
+        for (int i = 0; i < old.length; i++) {
+            if (old[i] != s) continue;
+            if (old.length == 1) {
+                subscriptions = NONE;
+                return;
+            }
+            Subscription[] shrunk = new Subscription[old.length - 1];
+            System.arraycopy(old, 0, shrunk, 0, i);
+            System.arraycopy(old, i + 1, shrunk, i, old.length - i - 1);
+            subscriptions = shrunk;
+            return;
+        }
+    }
+
+    public boolean hasSubscribers() {
+        return subscriptions.length > 0;
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.length;
+    }
+
+    // endregion
+
+    // region Publishing
+
+    public void publishScanResult(String address, String name, int rssi, long timestampNanos) {
+        Subscription[] subs = subscriptions;
+        if (subs.length == 0) return;
+        publish(subs, new Event(KIND_SCAN, address, name, rssi, 0, null, null, timestampNanos));
+    }
+
+    public void publishConnectionState(String address, int state) {
+        Subscription[] subs = subscriptions;
+        if (subs.length == 0) return;
+        publish(subs, new Event(KIND_CONNECTION, address, null, 0, state, null, null, 0));
+    }
+
+    /** {@code value} is copied once, and only if anyone is subscribed. */
+    public void publishNotification(@NonNull UUID characteristic, byte[] value, long timestampNanos) {
+        Subscription[] subs = subscriptions;
+        if (subs.length == 0) return;
+        byte[] copy = value != null ? value.clone() : new byte[0];
+        publish(subs, new Event(KIND_NOTIFICATION, null, null, 0, 0, characteristic, copy,
+                timestampNanos));
+    }
+
+    private static void publish(Subscription[] subs, Event event) {
+        for (Subscription s : subs) {
+            s.enqueue(event);
+        }
+    }
+
+    // endregion
+
+    /** Immutable and shared by every subscriber's queue. */
+    private static final class Event {
+        final int kind;
+        final String address;
+        final String name;
+        final int rssi;
+        final int state;
+        final UUID characteristic;
+        final byte[] value;
+        final long timestampNanos;
+
+        Event(int kind, String address, String name, int rssi, int state, UUID characteristic,
+              byte[] value, long timestampNanos) {
+            this.kind = kind;
+            this.address = address;
+            this.name = name;
+            this.rssi = rssi;
+            this.state = state;
+            this.characteristic = characteristic;
+            this.value = value;
+            this.timestampNanos = timestampNanos;
+        }
+
+        void deliverTo(Subscriber subscriber) {
+            switch (kind) {
+                case KIND_SCAN:
+                    subscriber.onScanResult(address, name, rssi, timestampNanos);
+                    break;
+                case KIND_CONNECTION:
+                    subscriber.onConnectionStateChanged(address, state);
+                    break;
+                default:
+                    subscriber.onNotification(characteristic, value, timestampNanos);
+                    break;
+            }
+        }
+    }
+
+    /** One subscriber's queue and counters. */
+    public static final class Subscription {
+        private final BleEventBus bus;
+        private final Subscriber subscriber;
+        private final Executor executor;
+        private final Overflow overflow;
+        private final ArrayBlockingQueue<Event> queue;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final Runnable drainTask = this::drain;
+        private volatile boolean cancelled;
+
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+
+        Subscription(BleEventBus bus, Subscriber subscriber, Executor executor, int capacity,
+                     Overflow overflow) {
+            this.bus = bus;
+            this.subscriber = subscriber;
+            this.executor = executor;
+            this.overflow = overflow;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        void enqueue(Event event) {
+            if (cancelled) return;
+            if (!queue.offer(event)) {
+                if (overflow == Overflow.DROP_NEWEST) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                // Another publisher may refill the slot in between; give up rather than spin
+                if (queue.poll() != null) dropped.incrementAndGet();
+                if (!queue.offer(event)) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (!scheduled.compareAndSet(false, true)) return;
+            try {
+                executor.execute(drainTask);
+            } catch (RejectedExecutionException e) {
+                // Executor shut down: nothing will ever drain this queue
+                scheduled.set(false);
+                dropped.addAndGet(queue.size());
+                queue.clear();
+            }
+        }
+
+        private void drain() {
+            for (int i = 0; i < MAX_BATCH && !cancelled; i++) {
+                Event event = queue.poll();
+                if (event == null) break;
+                try {
+                    event.deliverTo(subscriber);
+                    delivered.incrementAndGet();
+                } catch (RuntimeException e) {
+                    failures.incrementAndGet();
+                }
+            }
+            scheduled.set(false);
+            // Events published after the last poll, or a batch cut short
+            if (!cancelled && !queue.isEmpty()) schedule();
+        }
+
+        /** Stop delivery. Events already queued are discarded; one in flight may still run. */
+        public void cancel() {
+            cancelled = true;
+            bus.remove(this);
+            queue.clear();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public long getDeliveredCount() {
+            return delivered.get();
+        }
+
+        public long getDroppedCount() {
+            return dropped.get();
+        }
+
+        /** Subscriber callbacks that threw. */
+        public long getFailureCount() {
+            return failures.get();
+        }
+
+        public int getQueuedCount() {
+            return queue.size();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.hilfritz.blescanner.manager;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recycles direct ByteBuffers in power-of-two size classes.
+ *
+ * Direct buffers are expensive to allocate and are freed only when the GC gets around to their
+ * cleaner, so readers that pull large values over and over should borrow from here instead.
+ * Each size class keeps at most {@code maxPerClass} idle buffers; anything beyond that, and any
+ * request above {@code maxBufferSize}, is simply left to the GC.
+ *
+ * Thread-safe.
+ */
+public class ByteBufferPool {
+
+    public static final int MIN_BUFFER_SIZE = 512;
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 1 << 20;
+    public static final int DEFAULT_MAX_PER_CLASS = 4;
+
+    private final int maxBufferSize;
+    private final int maxPerClass;
+    private final List<ArrayDeque<ByteBuffer>> classes;
+    private long allocated;
+    private long reused;
+
+    public ByteBufferPool() {
+        this(DEFAULT_MAX_BUFFER_SIZE, DEFAULT_MAX_PER_CLASS);
+    }
+
+    public ByteBufferPool(int maxBufferSize, int maxPerClass) {
+        if (maxBufferSize < MIN_BUFFER_SIZE || maxPerClass < 0) {
+            throw new IllegalArgumentException("maxBufferSize must be >= " + MIN_BUFFER_SIZE
+                    + " and maxPerClass >= 0");
+        }
+        this.maxBufferSize = maxBufferSize;
+        this.maxPerClass = maxPerClass;
+        int count = sizeClass(maxBufferSize) + 1;
+        classes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) classes.add(new ArrayDeque<>(maxPerClass));
+    }
+
+    /** A cleared direct buffer with at least {@code minCapacity} bytes of room. */
+    public ByteBuffer acquire(int minCapacity) {
+        if (minCapacity < 0) throw new IllegalArgumentException("minCapacity < 0: " + minCapacity);
+        if (minCapacity > maxBufferSize) {
+            synchronized (this) {
+                allocated++;
+            }
+            return ByteBuffer.allocateDirect(minCapacity);
+        }
+        int c = sizeClass(minCapacity);
+        synchronized (this) {
+            ByteBuffer buffer = classes.get(c).pollFirst();
+            if (buffer != null) {
+                reused++;
+                buffer.clear();
+                return buffer;
+            }
+            allocated++;
+        }
+        return ByteBuffer.allocateDirect(MIN_BUFFER_SIZE << c);
+    }
+
+    /**
+     * A buffer of at least {@code minCapacity} holding {@code buffer}'s content (position 0 up to
+     * its position); {@code buffer} goes back to the pool.
+     */
+    public ByteBuffer grow(@NonNull ByteBuffer buffer, int minCapacity) {
+        if (buffer.capacity() >= minCapacity) return buffer;
+        ByteBuffer bigger = acquire(Math.max(minCapacity, buffer.capacity() * 2));
+        buffer.flip();
+        bigger.put(buffer);
+        release(buffer);
+        return bigger;
+    }
+
+    /** Hand a buffer back. Don't touch it afterwards. */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) return;
+        int capacity = buffer.capacity();
+        // Only exact class sizes come from us; anything else is left to the GC
+        if (capacity > maxBufferSize || Integer.bitCount(capacity) != 1 || capacity < MIN_BUFFER_SIZE) {
+            return;
+        }
+        int c = sizeClass(capacity);
+        synchronized (this) {
+            ArrayDeque<ByteBuffer> idle = classes.get(c);
+            if (idle.size() < maxPerClass) idle.addFirst(buffer);
+        }
+    }
+
+    public synchronized int idleCount() {
+        int n = 0;
+        for (ArrayDeque<ByteBuffer> q : classes) n += q.size();
+        return n;
+    }
+
+    public synchronized long getAllocatedCount() {
+        return allocated;
+    }
+
+    public synchronized long getReusedCount() {
+        return reused;
+    }
+
+    public synchronized void clear() {
+        for (ArrayDeque<ByteBuffer> q : classes) q.clear();
+    }
+
+    // Index of the smallest class (MIN_BUFFER_SIZE << index) that holds `size` bytes
+    private static int sizeClass(int size) {
+        if (size <= MIN_BUFFER_SIZE) return 0;
+        return 32 - Integer.numberOfLeadingZeros((size - 1) / MIN_BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,134 @@
+package com.hilfritz.blescanner.manager;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads back the segments written by {@link CaptureRecorder}, oldest first.
+ *
+ * Flyweight: {@link #next()} moves to the following frame and the getters describe it until the
+ * next call. Segments are mapped read-only one at a time; a segment with a bad header is
+ * skipped.
+ */
+public class CaptureReader {
+
+    private final File dir;
+    private final int[] segments;
+    private int segmentPos = -1;
+    private MappedByteBuffer segment;
+
+    // Current frame
+    private int type;
+    private int rssiOrStatus;
+    private long timestampNanos;
+    private long mac;
+    private long uuidMsb;
+    private long uuidLsb;
+    private int payloadOffset;
+    private int payloadLength;
+
+    public CaptureReader(@NonNull File dir) {
+        this.dir = dir;
+        this.segments = CaptureRecorder.segmentIndices(dir);
+    }
+
+    /** Advance to the next frame. Returns false at the end of the capture. */
+    public boolean next() throws IOException {
+        while (true) {
+            if (segment != null && segment.remaining() >= CaptureRecorder.FRAME_HEADER_SIZE) {
+                int length = segment.getShort() & 0xFFFF;
+                int t = segment.get() & 0xFF;
+                if (t != CaptureRecorder.EVENT_END
+                        && segment.remaining() >= CaptureRecorder.FRAME_HEADER_SIZE - 3 + length) {
+                    type = t;
+                    rssiOrStatus = segment.get();
+                    timestampNanos = segment.getLong();
+                    mac = segment.getLong();
+                    uuidMsb = segment.getLong();
+                    uuidLsb = segment.getLong();
+                    payloadOffset = segment.position();
+                    payloadLength = length;
+                    segment.position(payloadOffset + length);
+                    return true;
+                }
+            }
+            if (!openNextSegment()) return false;
+        }
+    }
+
+    private boolean openNextSegment() throws IOException {
+        segment = null;
+        while (++segmentPos < segments.length) {
+            File f = CaptureRecorder.segmentFile(dir, segments[segmentPos]);
+            if (!f.isFile()) continue;
+            MappedByteBuffer b;
+            try (RandomAccessFile raf = new RandomAccessFile(f, "r");
+                 FileChannel channel = raf.getChannel()) {
+                b = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            b.order(ByteOrder.LITTLE_ENDIAN);
+            if (b.remaining() < CaptureRecorder.SEGMENT_HEADER_SIZE
+                    || b.getInt() != CaptureRecorder.MAGIC
+                    || b.getInt() != CaptureRecorder.VERSION) {
+                continue;
+            }
+            b.position(CaptureRecorder.SEGMENT_HEADER_SIZE);
+            segment = b;
+            return true;
+        }
+        return false;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    /** Signed RSSI for scan frames. */
+    public int getRssi() {
+        return rssiOrStatus;
+    }
+
+    /** GATT status for read/write/connection frames. */
+    public int getStatus() {
+        return rssiOrStatus & 0xFF;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    public long getMac() {
+        return mac;
+    }
+
+    public long getUuidMsb() {
+        return uuidMsb;
+    }
+
+    public long getUuidLsb() {
+        return uuidLsb;
+    }
+
+    public int getPayloadLength() {
+        return payloadLength;
+    }
+
+    /** Copy the payload into {@code dst} (at least getPayloadLength() long). */
+    public void copyPayload(byte[] dst, int offset) {
+        for (int i = 0; i < payloadLength; i++) {
+            dst[offset + i] = segment.get(payloadOffset + i);
+        }
+    }
+
+    public byte[] getPayload() {
+        byte[] out = new byte[payloadLength];
+        copyPayload(out, 0);
+        return out;
+    }
+}
@@ -0,0 +1,262 @@
+package com.hilfritz.blescanner.manager;
+
+import androidx.annotation.NonNull;
+
+import com.hilfritz.blescanner.utils.MacAddresses;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Append-only binary log of scan results and GATT events, written through memory-mapped
+ * segment files so recording hours of field data costs a few memcpys per event.
+ *
+ * Each segment is a fixed-size file named {@code capture-NNNNN.bin}. It starts with a
+ * {@value #SEGMENT_HEADER_SIZE}-byte header (magic, version, segment index, reserved), followed
+ * by frames laid out back to back, little-endian:
+ *
+ * <pre>
+ *  0  u16  payload length
+ *  2  u8   event type (EVENT_*; 0 marks the end of the segment)
+ *  3  u8   RSSI (signed) for scans, low byte of the GATT status otherwise
+ *  4  i64  timestamp, elapsed-realtime nanoseconds
+ * 12  i64  MAC address packed into 48 bits (-1 if unknown)
+ * 20  i64  characteristic UUID, most significant bits (0 for scans and connection events)
+ * 28  i64  characteristic UUID, least significant bits
+ * 36  ...  payload (raw advertisement or attribute value)
+ * </pre>
+ *
+ * A frame that does not fit in the current segment starts the next one. The unused tail of a
+ * segment stays zero-filled, which readers see as an end marker. Once more than
+ * {@code maxSegments} segments exist, the oldest is deleted.
+ *
+ * Appends are synchronized and allocation-free, so the scan and GATT callback threads can both
+ * record directly. An I/O error while rotating stops the recorder; after that
+ * events are counted as dropped and {@link #getLastError()} says why.
+ */
+public class CaptureRecorder {
+
+    public static final int EVENT_END = 0;
+    public static final int EVENT_SCAN = 1;
+    public static final int EVENT_NOTIFY = 2;
+    public static final int EVENT_READ = 3;
+    public static final int EVENT_WRITE = 4;
+    public static final int EVENT_CONNECTED = 5;
+    public static final int EVENT_DISCONNECTED = 6;
+
+    public static final int MAGIC = 0x43454C42; // "BLEC" in file order
+    public static final int VERSION = 1;
+    public static final int SEGMENT_HEADER_SIZE = 16;
+    public static final int FRAME_HEADER_SIZE = 36;
+    public static final int MAX_PAYLOAD = 0xFFFF;
+
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    public static final int DEFAULT_MAX_SEGMENTS = 64;
+
+    static final String SEGMENT_PREFIX = "capture-";
+    static final String SEGMENT_SUFFIX = ".bin";
+
+    private final File dir;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private int firstSegmentIndex;
+    private boolean closed;
+    private IOException lastError;
+
+    private long framesWritten;
+    private long bytesWritten;
+    private long framesDropped;
+
+    public CaptureRecorder(@NonNull File dir) throws IOException {
+        this(dir, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+    }
+
+    /** Appends after any segments already in {@code dir}; nothing is overwritten. */
+    public CaptureRecorder(@NonNull File dir, int segmentSize, int maxSegments) throws IOException {
+        if (segmentSize < SEGMENT_HEADER_SIZE + FRAME_HEADER_SIZE) {
+            throw new IllegalArgumentException("segmentSize too small: " + segmentSize);
+        }
+        if (maxSegments <= 0) throw new IllegalArgumentException("maxSegments must be > 0");
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+
+        int[] existing = segmentIndices(dir);
+        firstSegmentIndex = existing.length > 0 ? existing[0] : 0;
+        segmentIndex = existing.length > 0 ? existing[existing.length - 1] : -1;
+        openNextSegment();
+    }
+
+    // region Recording
+
+    public boolean recordScan(long timestampNanos, CharSequence address, int rssi,
+                           byte[] advertisement) {
+        return record(EVENT_SCAN, timestampNanos, MacAddresses.pack(address), 0L, 0L, rssi,
+                advertisement, 0, advertisement != null ? advertisement.length : 0);
+    }
+
+    public boolean recordValue(int type, long timestampNanos, CharSequence address, UUID uuid,
+                            int status, byte[] value) {
+        return record(type, timestampNanos, MacAddresses.pack(address),
+                uuid != null ? uuid.getMostSignificantBits() : 0L,
+                uuid != null ? uuid.getLeastSignificantBits() : 0L,
+                status, value, 0, value != null ? value.length : 0);
+    }
+
+    public boolean recordConnection(boolean connected, long timestampNanos, CharSequence address,
+                                 int status) {
+        return record(connected ? EVENT_CONNECTED : EVENT_DISCONNECTED, timestampNanos,
+                MacAddresses.pack(address), 0L, 0L, status, null, 0, 0);
+    }
+
+    /**
+     * Append one frame. Payloads longer than {@link #MAX_PAYLOAD} or than a segment can hold
+     * are truncated. Returns false if the recorder is closed or failed.
+     */
+    public synchronized boolean record(int type, long timestampNanos, long mac,
+                                       long uuidMsb, long uuidLsb, int rssiOrStatus,
+                                       byte[] payload, int offset, int length) {
+        if (closed || segment == null) {
+            framesDropped++;
+            return false;
+        }
+        if (type <= EVENT_END || type > 0xFF) throw new IllegalArgumentException("bad type: " + type);
+
+        int n = payload != null ? Math.min(length, maxPayload()) : 0;
+        int frameSize = FRAME_HEADER_SIZE + n;
+        if (segment.remaining() < frameSize) {
+            try {
+                openNextSegment();
+            } catch (IOException e) {
+                lastError = e;
+                segment = null;
+                framesDropped++;
+                return false;
+            }
+        }
+
+        MappedByteBuffer b = segment;
+        b.putShort((short) n);
+        b.put((byte) type);
+        b.put((byte) rssiOrStatus);
+        b.putLong(timestampNanos);
+        b.putLong(mac);
+        b.putLong(uuidMsb);
+        b.putLong(uuidLsb);
+        if (n > 0) b.put(payload, offset, n);
+
+        framesWritten++;
+        bytesWritten += frameSize;
+        return true;
+    }
+
+    /** Push dirty pages of the current segment to the file. */
+    public synchronized void flush() {
+        if (segment != null) segment.force();
+    }
+
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+    }
+
+    // endregion
+
+    // region Stats
+
+    public synchronized long getFramesWritten() {
+        return framesWritten;
+    }
+
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public synchronized long getFramesDropped() {
+        return framesDropped;
+    }
+
+    public synchronized int getSegmentIndex() {
+        return segmentIndex;
+    }
+
+    public synchronized IOException getLastError() {
+        return lastError;
+    }
+
+    public File getDirectory() {
+        return dir;
+    }
+
+    // endregion
+
+    // region Segments
+
+    private int maxPayload() {
+        return Math.min(MAX_PAYLOAD, segmentSize - SEGMENT_HEADER_SIZE - FRAME_HEADER_SIZE);
+    }
+
+    private void openNextSegment() throws IOException {
+        if (segment != null) segment.force();
+        segmentIndex++;
+        File f = segmentFile(dir, segmentIndex);
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw");
+             FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segment.putInt(MAGIC);
+        segment.putInt(VERSION);
+        segment.putInt(segmentIndex);
+        segment.putInt(0);
+
+        while (segmentIndex - firstSegmentIndex + 1 > maxSegments) {
+            File old = segmentFile(dir, firstSegmentIndex);
+            if (old.exists() && !old.delete()) break;
+            firstSegmentIndex++;
+        }
+    }
+
+    static File segmentFile(File dir, int index) {
+        return new File(dir, SEGMENT_PREFIX + String.format(java.util.Locale.US, "%05d", index)
+                + SEGMENT_SUFFIX);
+    }
+
+    /** Indices of the capture segments in {@code dir}, ascending. */
+    public static int[] segmentIndices(File dir) {
+        String[] names = dir.list();
+        if (names == null) return new int[0];
+        int[] out = new int[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) continue;
+            try {
+                int index = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length()));
+                out[count++] = index;
+            } catch (NumberFormatException ignored) {
+                // not ours
+            }
+        }
+        int[] indices = Arrays.copyOf(out, count);
+        Arrays.sort(indices);
+        return indices;
+    }
+
+    // endregion
+}
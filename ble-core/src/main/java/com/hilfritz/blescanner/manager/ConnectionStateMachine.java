@@ -0,0 +1,121 @@
+package com.hilfritz.blescanner.manager;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lifecycle of one GATT client connection, advanced with lock-free compare-and-set transitions.
+ *
+ * Commands ({@link #connect}, {@link #disconnect}) come from the app and events
+ * ({@link #onConnected}, {@link #onServicesDiscovered}, {@link #onDisconnected}) from the
+ * Bluetooth callback thread, and the two race. Each method makes one allowed transition
+ * atomically and returns true, or changes nothing and returns false: two racing connects
+ * cannot both open a BluetoothGatt, and a late "connected" after a disconnect is ignored.
+ *
+ * <pre>
+ * IDLE -> CONNECTING -> CONNECTED -> DISCOVERING -> READY
+ *                           ^-----------'  ^-----------'   (discovery failed / Service Changed)
+ * CONNECTING / CONNECTED / DISCOVERING / READY -> DISCONNECTING
+ * any state -> IDLE                                       (link lost or closed)
+ * </pre>
+ */
+public final class ConnectionStateMachine {
+
+    public enum State {
+        IDLE,
+        CONNECTING,
+        CONNECTED,
+        DISCOVERING,
+        READY,
+        DISCONNECTING;
+
+        /** A BluetoothGatt exists for this state (everything but IDLE). */
+        public boolean hasGatt() {
+            return this != IDLE;
+        }
+    }
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.IDLE);
+
+    @NonNull
+    public State getState() {
+        return state.get();
+    }
+
+    public static boolean isAllowed(@NonNull State from, @NonNull State to) {
+        if (to == State.IDLE) return true;
+        switch (from) {
+            case IDLE:
+                return to == State.CONNECTING;
+            case CONNECTING:
+                return to == State.CONNECTED || to == State.DISCONNECTING;
+            case CONNECTED:
+            case READY:
+                return to == State.DISCOVERING || to == State.DISCONNECTING;
+            case DISCOVERING:
+                return to == State.READY || to == State.CONNECTED || to == State.DISCONNECTING;
+            default:
+                return false;
+        }
+    }
+
+    /** IDLE to CONNECTING. The caller that gets true owns opening the connection. */
+    public boolean connect() {
+        return state.compareAndSet(State.IDLE, State.CONNECTING);
+    }
+
+    /** CONNECTING to CONNECTED; false if a disconnect got there first. */
+    public boolean onConnected() {
+        return state.compareAndSet(State.CONNECTING, State.CONNECTED);
+    }
+
+    /** CONNECTED or READY (rediscovery) to DISCOVERING. */
+    public boolean discover() {
+        return advance(State.DISCOVERING);
+    }
+
+    /** DISCOVERING to READY. */
+    public boolean onServicesDiscovered() {
+        return state.compareAndSet(State.DISCOVERING, State.READY);
+    }
+
+    /** DISCOVERING back to CONNECTED, so discovery can be tried again. */
+    public boolean onDiscoveryFailed() {
+        return state.compareAndSet(State.DISCOVERING, State.CONNECTED);
+    }
+
+    /** Any connected or connecting state to DISCONNECTING; false when idle or already leaving. */
+    public boolean disconnect() {
+        return advance(State.DISCONNECTING);
+    }
+
+    /**
+     * The link is gone or the client was closed: back to IDLE from anywhere. Returns the state
+     * left, so exactly one caller per connection sees something other than IDLE.
+     */
+    @NonNull
+    public State onDisconnected() {
+        return state.getAndSet(State.IDLE);
+    }
+
+    /** Explicit transition, e.g. for callers that know the state they expect to leave. */
+    public boolean transition(@NonNull State from, @NonNull State to) {
+        if (!isAllowed(from, to)) return false;
+        return state.compareAndSet(from, to);
+    }
+
+    private boolean advance(State to) {
+        while (true) {
+            State current = state.get();
+            if (!isAllowed(current, to)) return false;
+            if (state.compareAndSet(current, to)) return true;
+        }
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "ConnectionStateMachine(" + state.get() + ")";
+    }
+}
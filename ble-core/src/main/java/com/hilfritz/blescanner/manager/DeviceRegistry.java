@@ -0,0 +1,238 @@
+package com.hilfritz.blescanner.manager;
+
+import androidx.annotation.NonNull;
+
+import com.hilfritz.blescanner.utils.LongIntHashMap;
+import com.hilfritz.blescanner.utils.MacAddresses;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything the scanner knows about nearby devices, independent of any screen.
+ *
+ * Each device gets a slot in flat primitive arrays: a fixed-size ring of RSSI/timestamp samples,
+ * the last raw RSSI and an exponentially smoothed RSSI that is updated in O(1) per sample.
+ * Capacity is fixed up front, so memory stays bounded no matter how many advertisers are
+ * around; when it is full the least recently seen device is evicted.
+ *
+ * All methods are synchronized: the scan callback writes, the UI reads {@link Snapshot}s.
+ * Timestamps are supplied by the caller (elapsed realtime millis in BleManager).
+ */
+public class DeviceRegistry {
+
+    public static final int DEFAULT_CAPACITY = 2048;
+    public static final int DEFAULT_SAMPLES_PER_DEVICE = 16;
+    public static final float DEFAULT_ALPHA = 0.25f;
+
+    /** Immutable copy of one device's state. */
+    public static final class Snapshot {
+        public final String address;
+        public final String name;
+        public final int lastRssi;
+        public final float smoothedRssi;
+        public final int sampleCount;
+        public final long firstSeenMs;
+        public final long lastSeenMs;
+
+        Snapshot(String address, String name, int lastRssi, float smoothedRssi,
+                 int sampleCount, long firstSeenMs, long lastSeenMs) {
+            this.address = address;
+            this.name = name;
+            this.lastRssi = lastRssi;
+            this.smoothedRssi = smoothedRssi;
+            this.sampleCount = sampleCount;
+            this.firstSeenMs = firstSeenMs;
+            this.lastSeenMs = lastSeenMs;
+        }
+
+        public int getSmoothedRssiRounded() {
+            return Math.round(smoothedRssi);
+        }
+    }
+
+    private final int capacity;
+    private final int samplesPerDevice;
+    private final float alpha;
+
+    private final LongIntHashMap slotByMac;
+    private final int[] freeSlots;
+    private int freeCount;
+
+    // Per-slot state
+    private final long[] macs;
+    private final String[] addresses;
+    private final String[] names;
+    private final int[] lastRssi;
+    private final float[] smoothedRssi;
+    private final long[] firstSeen;
+    private final long[] lastSeen;
+    private final int[] ringHead;   // next write position
+    private final int[] ringCount;  // valid samples, <= samplesPerDevice
+    private final long[] totalSamples;
+
+    // Sample rings, slot-major: slot s owns [s * samplesPerDevice, (s + 1) * samplesPerDevice)
+    private final byte[] rssiRing;
+    private final long[] timeRing;
+
+    public DeviceRegistry() {
+        this(DEFAULT_CAPACITY, DEFAULT_SAMPLES_PER_DEVICE, DEFAULT_ALPHA);
+    }
+
+    /**
+     * @param alpha EMA weight of a new sample in (0, 1]; lower is smoother but slower to follow
+     */
+    public DeviceRegistry(int capacity, int samplesPerDevice, float alpha) {
+        if (capacity <= 0 || samplesPerDevice <= 0) {
+            throw new IllegalArgumentException("capacity and samplesPerDevice must be > 0");
+        }
+        if (!(alpha > 0f && alpha <= 1f)) {
+            throw new IllegalArgumentException("alpha must be in (0, 1]: " + alpha);
+        }
+        this.capacity = capacity;
+        this.samplesPerDevice = samplesPerDevice;
+        this.alpha = alpha;
+
+        slotByMac = new LongIntHashMap(capacity);
+        freeSlots = new int[capacity];
+        for (int i = 0; i < capacity; i++) freeSlots[i] = capacity - 1 - i;
+        freeCount = capacity;
+
+        macs = new long[capacity];
+        addresses = new String[capacity];
+        names = new String[capacity];
+        lastRssi = new int[capacity];
+        smoothedRssi = new float[capacity];
+        firstSeen = new long[capacity];
+        lastSeen = new long[capacity];
+        ringHead = new int[capacity];
+        ringCount = new int[capacity];
+        totalSamples = new long[capacity];
+        rssiRing = new byte[capacity * samplesPerDevice];
+        timeRing = new long[capacity * samplesPerDevice];
+    }
+
+    /**
+     * Record one advertisement. A null name keeps the last known one. Addresses that are not
+     * MACs are ignored.
+     */
+    public synchronized void record(@NonNull String address, String name, int rssi, long nowMs) {
+        long mac = MacAddresses.pack(address);
+        if (mac == MacAddresses.INVALID) return;
+
+        int slot = slotByMac.get(mac);
+        if (slot < 0) {
+            slot = allocateSlot();
+            slotByMac.put(mac, slot);
+            macs[slot] = mac;
+            addresses[slot] = address;
+            names[slot] = name;
+            firstSeen[slot] = nowMs;
+            smoothedRssi[slot] = rssi;
+            ringHead[slot] = 0;
+            ringCount[slot] = 0;
+            totalSamples[slot] = 0;
+        } else {
+            if (name != null) names[slot] = name;
+            smoothedRssi[slot] += alpha * (rssi - smoothedRssi[slot]);
+        }
+        lastRssi[slot] = rssi;
+        lastSeen[slot] = nowMs;
+        totalSamples[slot]++;
+
+        int i = slot * samplesPerDevice + ringHead[slot];
+        rssiRing[i] = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, rssi));
+        timeRing[i] = nowMs;
+        ringHead[slot] = (ringHead[slot] + 1) % samplesPerDevice;
+        if (ringCount[slot] < samplesPerDevice) ringCount[slot]++;
+    }
+
+    /** Drop every device not seen for {@code maxAgeMs}. Returns how many were removed. */
+    public synchronized int evictStale(long nowMs, long maxAgeMs) {
+        int removed = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (addresses[slot] != null && nowMs - lastSeen[slot] > maxAgeMs) {
+                releaseSlot(slot);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public synchronized void clear() {
+        for (int slot = 0; slot < capacity; slot++) {
+            if (addresses[slot] != null) releaseSlot(slot);
+        }
+    }
+
+    public synchronized int size() {
+        return slotByMac.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized Snapshot snapshot(@NonNull String address) {
+        int slot = slotByMac.get(MacAddresses.pack(address));
+        return slot >= 0 ? snapshotOf(slot) : null;
+    }
+
+    /** All devices, most recently seen first. */
+    public synchronized List<Snapshot> snapshotAll() {
+        List<Snapshot> out = new ArrayList<>(slotByMac.size());
+        for (int slot = 0; slot < capacity; slot++) {
+            if (addresses[slot] != null) out.add(snapshotOf(slot));
+        }
+        out.sort((a, b) -> Long.compare(b.lastSeenMs, a.lastSeenMs));
+        return out;
+    }
+
+    /**
+     * Copy the buffered samples of one device, oldest first, into the caller's arrays
+     * (each at least samplesPerDevice long). Returns the number copied, 0 if unknown.
+     */
+    public synchronized int copySamples(@NonNull String address, int[] rssiOut, long[] timeOut) {
+        int slot = slotByMac.get(MacAddresses.pack(address));
+        if (slot < 0) return 0;
+        int count = ringCount[slot];
+        int start = (ringHead[slot] - count + samplesPerDevice) % samplesPerDevice;
+        int base = slot * samplesPerDevice;
+        for (int n = 0; n < count; n++) {
+            int i = base + (start + n) % samplesPerDevice;
+            rssiOut[n] = rssiRing[i];
+            timeOut[n] = timeRing[i];
+        }
+        return count;
+    }
+
+    private Snapshot snapshotOf(int slot) {
+        return new Snapshot(addresses[slot], names[slot], lastRssi[slot], smoothedRssi[slot],
+                (int) Math.min(Integer.MAX_VALUE, totalSamples[slot]), firstSeen[slot], lastSeen[slot]);
+    }
+
+    private int allocateSlot() {
+        if (freeCount == 0) {
+            // Full: make room by dropping the device we heard from least recently
+            int oldest = 0;
+            for (int slot = 1; slot < capacity; slot++) {
+                if (lastSeen[slot] < lastSeen[oldest]) oldest = slot;
+            }
+            releaseSlot(oldest);
+        }
+        return freeSlots[--freeCount];
+    }
+
+    private void releaseSlot(int slot) {
+        slotByMac.remove(macs[slot]);
+        addresses[slot] = null;
+        names[slot] = null;
+        freeSlots[freeCount++] = slot;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DeviceRegistry(size=" + slotByMac.size() + "/" + capacity
+                + ", samples=" + samplesPerDevice + ", alpha=" + alpha + ")";
+    }
+}
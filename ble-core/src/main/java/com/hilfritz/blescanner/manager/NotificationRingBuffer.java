@@ -0,0 +1,246 @@
+package com.hilfritz.blescanner.manager;
+
+import androidx.annotation.NonNull;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Multi-producer/single-consumer ring of GATT notifications.
+ *
+ * A producer (typically the thread running BluetoothGattCallback) copies each value into a
+ * preallocated slot and returns; the consumer drains whole batches at its own pace. Nothing is allocated per notification on either side.
+ *
+ * When the ring is full the {@link OverflowPolicy} decides:
+ * - DROP_OLDEST overwrites the oldest unread entry (live views: latest data wins).
+ * - DROP_NEWEST discards the incoming value (logging: keep what is already there).
+ * - BLOCK makes the producer wait for space, up to a timeout, and then drops the new value.
+ *   This stalls the Bluetooth callback thread, so keep the consumer fast.
+ *
+ * Values longer than {@code maxPayload} are truncated and counted. Every offer counts as
+ * produced, so at rest produced == consumed + dropped + size().
+ *
+ * Any number of threads may call {@link #offer}: producers take a private lock among
+ * themselves, which costs a lone producer next to nothing and lets two GATT connections (whose
+ * callbacks run on separate binder threads below API 26) or a capture replay feed the same
+ * ring. A BLOCK producer waits for space holding that lock, so the others wait with it.
+ * Exactly one thread may call {@link #drain}; it never takes the lock.
+ */
+public class NotificationRingBuffer {
+
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        DROP_NEWEST,
+        BLOCK
+    }
+
+    public interface Consumer {
+        /**
+         * One drained notification. {@code value} is a scratch buffer owned by the ring and only
+         * valid for the duration of the call; copy what you keep.
+         */
+        void onNotification(long uuidMsb, long uuidLsb, byte[] value, int length, long timestampNanos);
+    }
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    /** Max notification payload at the largest MTU (517 - 3). */
+    public static final int DEFAULT_MAX_PAYLOAD = 514;
+    public static final long DEFAULT_BLOCK_TIMEOUT_NANOS = 50_000_000L;
+
+    private static final long PARK_NANOS = 50_000L;
+
+    private final int capacity;
+    private final int mask;
+    private final int maxPayload;
+    private final OverflowPolicy policy;
+    private final long blockTimeoutNanos;
+
+    // Slot storage, all preallocated
+    private final byte[] payloads;
+    private final int[] lengths;
+    private final long[] uuidMsbs;
+    private final long[] uuidLsbs;
+    private final long[] timestamps;
+    private final byte[] scratch;
+
+    // tail: next slot to write (under producerLock). head: next slot to read; CAS'd by the
+    // consumer, and by a producer when DROP_OLDEST steps over an unread entry.
+    private final Object producerLock = new Object();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    private final AtomicLong produced = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong truncated = new AtomicLong();
+
+    public NotificationRingBuffer(@NonNull OverflowPolicy policy) {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_PAYLOAD, policy, DEFAULT_BLOCK_TIMEOUT_NANOS);
+    }
+
+    /**
+     * @param capacity rounded up to a power of two
+     * @param blockTimeoutNanos only used with {@link OverflowPolicy#BLOCK}
+     */
+    public NotificationRingBuffer(int capacity, int maxPayload, @NonNull OverflowPolicy policy,
+                                  long blockTimeoutNanos) {
+        if (capacity <= 0 || maxPayload <= 0) {
+            throw new IllegalArgumentException("capacity and maxPayload must be > 0");
+        }
+        int cap = Integer.highestOneBit(capacity);
+        if (cap < capacity) cap <<= 1;
+        this.capacity = cap;
+        this.mask = cap - 1;
+        this.maxPayload = maxPayload;
+        this.policy = policy;
+        this.blockTimeoutNanos = blockTimeoutNanos;
+
+        payloads = new byte[cap * maxPayload];
+        lengths = new int[cap];
+        uuidMsbs = new long[cap];
+        uuidLsbs = new long[cap];
+        timestamps = new long[cap];
+        scratch = new byte[maxPayload];
+    }
+
+    // region Producer
+
+    public boolean offer(@NonNull UUID uuid, byte[] value, long timestampNanos) {
+        return offer(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(),
+                value, 0, value != null ? value.length : 0, timestampNanos);
+    }
+
+    /** Copy one notification in. Returns false if it was dropped. Any thread. */
+    public boolean offer(long uuidMsb, long uuidLsb, byte[] value, int offset, int length,
+                         long timestampNanos) {
+        synchronized (producerLock) {
+            return offerLocked(uuidMsb, uuidLsb, value, offset, length, timestampNanos);
+        }
+    }
+
+    private boolean offerLocked(long uuidMsb, long uuidLsb, byte[] value, int offset, int length,
+                                long timestampNanos) {
+        produced.incrementAndGet();
+        long t = tail.get();
+        if (t - head.get() >= capacity && !makeRoom(t)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        int slot = (int) (t & mask);
+        int n = length;
+        if (n > maxPayload) {
+            n = maxPayload;
+            truncated.incrementAndGet();
+        }
+        if (n > 0) System.arraycopy(value, offset, payloads, slot * maxPayload, n);
+        lengths[slot] = n;
+        uuidMsbs[slot] = uuidMsb;
+        uuidLsbs[slot] = uuidLsb;
+        timestamps[slot] = timestampNanos;
+        // Publishes the slot contents to the consumer
+        tail.set(t + 1);
+        return true;
+    }
+
+    private boolean makeRoom(long t) {
+        switch (policy) {
+            case DROP_OLDEST:
+                // Step head over the oldest entry unless the consumer just did
+                long h = head.get();
+                while (t - h >= capacity) {
+                    if (head.compareAndSet(h, h + 1)) {
+                        dropped.incrementAndGet();
+                        return true;
+                    }
+                    h = head.get();
+                }
+                return true;
+            case BLOCK:
+                long deadline = System.nanoTime() + blockTimeoutNanos;
+                while (t - head.get() >= capacity) {
+                    if (System.nanoTime() >= deadline) return false;
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+                return true;
+            case DROP_NEWEST:
+            default:
+                return false;
+        }
+    }
+
+    // endregion
+
+    // region Consumer
+
+    /** Deliver up to {@code maxBatch} entries, oldest first. Returns how many. Consumer thread only. */
+    public int drain(@NonNull Consumer consumer, int maxBatch) {
+        int count = 0;
+        while (count < maxBatch) {
+            long h = head.get();
+            if (h >= tail.get()) break;
+
+            int slot = (int) (h & mask);
+            int n = lengths[slot];
+            long msb = uuidMsbs[slot];
+            long lsb = uuidLsbs[slot];
+            long ts = timestamps[slot];
+            System.arraycopy(payloads, slot * maxPayload, scratch, 0, n);
+            // If the producer dropped this entry meanwhile, what we copied may be torn: retry
+            if (!head.compareAndSet(h, h + 1)) continue;
+
+            consumed.incrementAndGet();
+            count++;
+            consumer.onNotification(msb, lsb, scratch, n, ts);
+        }
+        return count;
+    }
+
+    /** Drain everything currently buffered. */
+    public int drain(@NonNull Consumer consumer) {
+        return drain(consumer, Integer.MAX_VALUE);
+    }
+
+    // endregion
+
+    // region Stats
+
+    public int size() {
+        long n = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(capacity, n));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    public long getProducedCount() {
+        return produced.get();
+    }
+
+    public long getConsumedCount() {
+        return consumed.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getTruncatedCount() {
+        return truncated.get();
+    }
+
+    // endregion
+
+    @Override
+    public String toString() {
+        return "NotificationRingBuffer(" + policy + ", size=" + size() + "/" + capacity
+                + ", produced=" + produced.get() + ", consumed=" + consumed.get()
+                + ", dropped=" + dropped.get() + ")";
+    }
+}
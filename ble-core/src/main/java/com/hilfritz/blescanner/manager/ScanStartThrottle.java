@@ -0,0 +1,59 @@
+package com.hilfritz.blescanner.manager;
+
+/**
+ * Book-keeping for Android's scan-start limit.
+ *
+ * Since Android 7 an app that starts more than 5 scans within 30 seconds is silently throttled:
+ * the call succeeds but no results arrive. This keeps the timestamps of the most recent starts
+ * in a small ring so callers can ask how long to wait before the next start is safe.
+ *
+ * Not thread-safe; BleManager only touches it from the main thread (startScan() and
+ * getScanStartDelayMillis(), which ScanScheduler calls from the main looper).
+ */
+public class ScanStartThrottle {
+
+    public static final int DEFAULT_MAX_STARTS = 5;
+    public static final long DEFAULT_WINDOW_MS = 30_000;
+    // Our clock and the stack's don't tick together; stay a little clear of the edge
+    public static final long DEFAULT_MARGIN_MS = 1_000;
+
+    private final int maxStarts;
+    private final long windowMs;
+    private final long[] starts;
+    private int head;
+    private int count;
+
+    public ScanStartThrottle() {
+        this(DEFAULT_MAX_STARTS, DEFAULT_WINDOW_MS + DEFAULT_MARGIN_MS);
+    }
+
+    public ScanStartThrottle(int maxStarts, long windowMs) {
+        if (maxStarts <= 0) throw new IllegalArgumentException("maxStarts must be > 0");
+        this.maxStarts = maxStarts;
+        this.windowMs = windowMs;
+        this.starts = new long[maxStarts];
+    }
+
+    /** Milliseconds until another start fits in the window; 0 if it fits now. */
+    public long delayUntilAllowed(long nowMs) {
+        if (count < maxStarts) return 0;
+        // The oldest of the last maxStarts starts has to age out first
+        long oldest = starts[head];
+        return Math.max(0, oldest + windowMs - nowMs);
+    }
+
+    public boolean isAllowed(long nowMs) {
+        return delayUntilAllowed(nowMs) == 0;
+    }
+
+    public void recordStart(long nowMs) {
+        starts[head] = nowMs;
+        head = (head + 1) % maxStarts;
+        if (count < maxStarts) count++;
+    }
+
+    public void reset() {
+        head = 0;
+        count = 0;
+    }
+}
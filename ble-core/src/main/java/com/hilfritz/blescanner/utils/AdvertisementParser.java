@@ -0,0 +1,373 @@
+package com.hilfritz.blescanner.utils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Flyweight parser for raw advertising data ({@code ScanRecord.getBytes()}).
+ *
+ * {@link #parse} walks the AD structures in place and only records offsets into the caller's
+ * array: nothing is copied and nothing is allocated, so one instance can be reused for every
+ * scan callback on the same thread. Accessors return offsets/lengths into {@link #getBytes()}
+ * or primitive values; only {@link #getName()} builds an object.
+ *
+ * Not thread-safe, and the parsed view is only valid until the next {@code parse} or until
+ * the caller mutates the array.
+ */
+public final class AdvertisementParser {
+
+    // AD types, Bluetooth Core Supplement part A
+    public static final int AD_FLAGS = 0x01;
+    public static final int AD_UUID16_INCOMPLETE = 0x02;
+    public static final int AD_UUID16_COMPLETE = 0x03;
+    public static final int AD_UUID32_INCOMPLETE = 0x04;
+    public static final int AD_UUID32_COMPLETE = 0x05;
+    public static final int AD_UUID128_INCOMPLETE = 0x06;
+    public static final int AD_UUID128_COMPLETE = 0x07;
+    public static final int AD_NAME_SHORT = 0x08;
+    public static final int AD_NAME_COMPLETE = 0x09;
+    public static final int AD_TX_POWER = 0x0A;
+    public static final int AD_SERVICE_DATA_16 = 0x16;
+    public static final int AD_SERVICE_DATA_32 = 0x20;
+    public static final int AD_SERVICE_DATA_128 = 0x21;
+    public static final int AD_MANUFACTURER_DATA = 0xFF;
+
+    public static final int NO_FLAGS = -1;
+    public static final int NO_TX_POWER = Integer.MIN_VALUE;
+
+    // Legacy advertising + scan response is 62 bytes; extended advertising can carry more
+    private static final int MAX_ENTRIES = 32;
+
+    // Bluetooth Base UUID 0000xxxx-0000-1000-8000-00805F9B34FB
+    private static final long BASE_UUID_MSB = 0x0000000000001000L;
+    private static final long BASE_UUID_LSB = 0x800000805F9B34FBL;
+
+    private byte[] bytes;
+    private int end;
+    private boolean truncated;
+
+    private int flags;
+    private int txPower;
+    private int nameOffset;
+    private int nameLength;
+    private boolean nameComplete;
+
+    private int uuidCount;
+    private final int[] uuidOffsets = new int[MAX_ENTRIES];
+    private final byte[] uuidWidths = new byte[MAX_ENTRIES];
+
+    private int manufacturerCount;
+    private final int[] manufacturerOffsets = new int[MAX_ENTRIES];
+    private final int[] manufacturerLengths = new int[MAX_ENTRIES];
+
+    private int serviceDataCount;
+    private final int[] serviceDataOffsets = new int[MAX_ENTRIES];
+    private final int[] serviceDataLengths = new int[MAX_ENTRIES];
+    private final byte[] serviceDataWidths = new byte[MAX_ENTRIES];
+
+    public boolean parse(byte[] data) {
+        return parse(data, 0, data != null ? data.length : 0);
+    }
+
+    /**
+     * Parse {@code length} bytes starting at {@code offset}. Returns false if the data ends in
+     * the middle of an AD structure; everything before that point is still available.
+     */
+    public boolean parse(byte[] data, int offset, int length) {
+        reset(data, offset + length);
+        if (data == null) return true;
+
+        int pos = offset;
+        while (pos < end) {
+            int len = data[pos] & 0xFF;
+            if (len == 0) break; // zero padding after the significant part
+            int type = pos + 1 < end ? data[pos + 1] & 0xFF : -1;
+            int valueStart = pos + 2;
+            int valueLength = len - 1;
+            if (type < 0 || valueStart + valueLength > end) {
+                truncated = true;
+                break;
+            }
+            onStructure(type, valueStart, valueLength);
+            pos = valueStart + valueLength;
+        }
+        return !truncated;
+    }
+
+    private void reset(byte[] data, int end) {
+        this.bytes = data;
+        this.end = data != null ? end : 0;
+        truncated = false;
+        flags = NO_FLAGS;
+        txPower = NO_TX_POWER;
+        nameOffset = -1;
+        nameLength = 0;
+        nameComplete = false;
+        uuidCount = 0;
+        manufacturerCount = 0;
+        serviceDataCount = 0;
+    }
+
+    private void onStructure(int type, int start, int length) {
+        switch (type) {
+            case AD_FLAGS:
+                if (length >= 1) flags = bytes[start] & 0xFF;
+                break;
+            case AD_UUID16_INCOMPLETE:
+            case AD_UUID16_COMPLETE:
+                addUuids(start, length, 2);
+                break;
+            case AD_UUID32_INCOMPLETE:
+            case AD_UUID32_COMPLETE:
+                addUuids(start, length, 4);
+                break;
+            case AD_UUID128_INCOMPLETE:
+            case AD_UUID128_COMPLETE:
+                addUuids(start, length, 16);
+                break;
+            case AD_NAME_SHORT:
+            case AD_NAME_COMPLETE:
+                // Prefer the complete name if both are present
+                if (nameOffset < 0 || type == AD_NAME_COMPLETE) {
+                    nameOffset = start;
+                    nameLength = length;
+                    nameComplete = type == AD_NAME_COMPLETE;
+                }
+                break;
+            case AD_TX_POWER:
+                if (length >= 1) txPower = bytes[start];
+                break;
+            case AD_SERVICE_DATA_16:
+                addServiceData(start, length, 2);
+                break;
+            case AD_SERVICE_DATA_32:
+                addServiceData(start, length, 4);
+                break;
+            case AD_SERVICE_DATA_128:
+                addServiceData(start, length, 16);
+                break;
+            case AD_MANUFACTURER_DATA:
+                if (length >= 2 && manufacturerCount < MAX_ENTRIES) {
+                    manufacturerOffsets[manufacturerCount] = start;
+                    manufacturerLengths[manufacturerCount] = length;
+                    manufacturerCount++;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void addUuids(int start, int length, int width) {
+        for (int p = start; p + width <= start + length && uuidCount < MAX_ENTRIES; p += width) {
+            uuidOffsets[uuidCount] = p;
+            uuidWidths[uuidCount] = (byte) width;
+            uuidCount++;
+        }
+    }
+
+    private void addServiceData(int start, int length, int width) {
+        if (length < width || serviceDataCount >= MAX_ENTRIES) return;
+        serviceDataOffsets[serviceDataCount] = start;
+        serviceDataLengths[serviceDataCount] = length;
+        serviceDataWidths[serviceDataCount] = (byte) width;
+        serviceDataCount++;
+    }
+
+    // region General
+
+    /** The array passed to the last {@link #parse}; all offsets point into it. */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /** AD flags byte, or {@link #NO_FLAGS}. */
+    public int getFlags() {
+        return flags;
+    }
+
+    /** Advertised TX power level in dBm, or {@link #NO_TX_POWER}. */
+    public int getTxPower() {
+        return txPower;
+    }
+
+    // endregion
+
+    // region Name
+
+    public boolean hasName() {
+        return nameOffset >= 0;
+    }
+
+    public int getNameOffset() {
+        return nameOffset;
+    }
+
+    public int getNameLength() {
+        return nameLength;
+    }
+
+    public boolean isNameComplete() {
+        return nameComplete;
+    }
+
+    /** Decodes the local name. Allocates; prefer {@link #nameStartsWith} for filtering. */
+    public String getName() {
+        if (nameOffset < 0) return null;
+        return new String(bytes, nameOffset, nameLength, StandardCharsets.UTF_8);
+    }
+
+    /** Byte-wise prefix check, exact for ASCII prefixes. Does not allocate. */
+    public boolean nameStartsWith(CharSequence prefix) {
+        if (nameOffset < 0 || prefix.length() > nameLength) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if ((bytes[nameOffset + i] & 0xFF) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // endregion
+
+    // region Service UUIDs
+
+    public int getServiceUuidCount() {
+        return uuidCount;
+    }
+
+    /** 2, 4 or 16 bytes. */
+    public int getServiceUuidWidth(int index) {
+        return uuidWidths[index];
+    }
+
+    public int getServiceUuidOffset(int index) {
+        return uuidOffsets[index];
+    }
+
+    /** 16- or 32-bit value of a short UUID entry (unsigned in a long for 32-bit ones). */
+    public long getServiceUuidShort(int index) {
+        int width = uuidWidths[index];
+        if (width == 16) throw new IllegalStateException("128-bit UUID at index " + index);
+        return readLe(uuidOffsets[index], width);
+    }
+
+    /** Most significant 64 bits of the entry, expanded onto the Base UUID for short forms. */
+    public long getServiceUuidMsb(int index) {
+        return uuidMsb(uuidOffsets[index], uuidWidths[index]);
+    }
+
+    public long getServiceUuidLsb(int index) {
+        return uuidLsb(uuidOffsets[index], uuidWidths[index]);
+    }
+
+    public boolean hasServiceUuid16(int uuid16) {
+        for (int i = 0; i < uuidCount; i++) {
+            if (uuidWidths[i] == 2 && readLe(uuidOffsets[i], 2) == uuid16) return true;
+        }
+        return false;
+    }
+
+    public boolean hasServiceUuid(long msb, long lsb) {
+        for (int i = 0; i < uuidCount; i++) {
+            if (getServiceUuidMsb(i) == msb && getServiceUuidLsb(i) == lsb) return true;
+        }
+        return false;
+    }
+
+    // endregion
+
+    // region Manufacturer data
+
+    public int getManufacturerDataCount() {
+        return manufacturerCount;
+    }
+
+    public int getManufacturerId(int index) {
+        return (int) readLe(manufacturerOffsets[index], 2);
+    }
+
+    /** Offset of the payload after the 2-byte company identifier. */
+    public int getManufacturerDataOffset(int index) {
+        return manufacturerOffsets[index] + 2;
+    }
+
+    public int getManufacturerDataLength(int index) {
+        return manufacturerLengths[index] - 2;
+    }
+
+    /** Index of the first entry for {@code companyId}, or -1. */
+    public int findManufacturerData(int companyId) {
+        for (int i = 0; i < manufacturerCount; i++) {
+            if (getManufacturerId(i) == companyId) return i;
+        }
+        return -1;
+    }
+
+    // endregion
+
+    // region Service data
+
+    public int getServiceDataCount() {
+        return serviceDataCount;
+    }
+
+    public int getServiceDataUuidWidth(int index) {
+        return serviceDataWidths[index];
+    }
+
+    public long getServiceDataUuidMsb(int index) {
+        return uuidMsb(serviceDataOffsets[index], serviceDataWidths[index]);
+    }
+
+    public long getServiceDataUuidLsb(int index) {
+        return uuidLsb(serviceDataOffsets[index], serviceDataWidths[index]);
+    }
+
+    /** 16-bit service UUID of the entry, or -1 for 32/128-bit entries. */
+    public int getServiceDataUuid16(int index) {
+        return serviceDataWidths[index] == 2 ? (int) readLe(serviceDataOffsets[index], 2) : -1;
+    }
+
+    /** Offset of the payload after the UUID. */
+    public int getServiceDataOffset(int index) {
+        return serviceDataOffsets[index] + serviceDataWidths[index];
+    }
+
+    public int getServiceDataLength(int index) {
+        return serviceDataLengths[index] - serviceDataWidths[index];
+    }
+
+    /** Index of the first entry for a 16-bit service UUID, or -1. */
+    public int findServiceData16(int uuid16) {
+        for (int i = 0; i < serviceDataCount; i++) {
+            if (getServiceDataUuid16(i) == uuid16) return i;
+        }
+        return -1;
+    }
+
+    // endregion
+
+    // region Internals
+
+    private long readLe(int offset, int width) {
+        long v = 0;
+        for (int i = width - 1; i >= 0; i--) {
+            v = (v << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return v;
+    }
+
+    private long uuidMsb(int offset, int width) {
+        if (width == 16) return readLe(offset + 8, 8);
+        return (readLe(offset, width) << 32) | BASE_UUID_MSB;
+    }
+
+    private long uuidLsb(int offset, int width) {
+        if (width == 16) return readLe(offset, 8);
+        return BASE_UUID_LSB;
+    }
+
+    // endregion
+}
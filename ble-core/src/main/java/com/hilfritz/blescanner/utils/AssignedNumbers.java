@@ -0,0 +1,211 @@
+package com.hilfritz.blescanner.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Names for Bluetooth SIG assigned numbers: GATT services, characteristics, descriptors and
+ * company identifiers.
+ *
+ * The table ships as the {@code assigned_numbers.txt} resource next to this class and is parsed
+ * on first use into int-keyed open-addressing tables, so a lookup is a couple of array reads
+ * and no Strings are built. {@link #toAlias(long, long)} recognises the SIG base UUID
+ * (0000xxxx-0000-1000-8000-00805F9B34FB) straight from the UUID's two longs.
+ *
+ * Lookups return null for anything not in the table, including vendor UUIDs.
+ */
+public final class AssignedNumbers {
+
+    /** Returned by {@link #toAlias} for UUIDs outside the SIG base. */
+    public static final int NOT_SIG = -1;
+
+    // Low 32 bits of the base UUID's msb, and its lsb
+    private static final long BASE_MSB_LOW = 0x0000_1000L;
+    private static final long BASE_LSB = 0x8000_0080_5F9B_34FBL;
+
+    static final String RESOURCE = "assigned_numbers.txt";
+
+    private AssignedNumbers() {
+        // no instance
+    }
+
+    // region UUIDs
+
+    /**
+     * The 16- or 32-bit alias of a SIG UUID (e.g. 0x2A37), or {@link #NOT_SIG}. 32-bit aliases
+     * above 0x7FFFFFFF are reported as NOT_SIG too; none are assigned.
+     */
+    public static int toAlias(long msb, long lsb) {
+        if (lsb != BASE_LSB || (msb & 0xFFFF_FFFFL) != BASE_MSB_LOW) return NOT_SIG;
+        long alias = msb >>> 32;
+        return alias > Integer.MAX_VALUE ? NOT_SIG : (int) alias;
+    }
+
+    public static int toAlias(UUID uuid) {
+        return toAlias(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /** The full UUID for a 16- or 32-bit alias. */
+    public static UUID fromAlias(int alias) {
+        return new UUID(((alias & 0xFFFF_FFFFL) << 32) | BASE_MSB_LOW, BASE_LSB);
+    }
+
+    // endregion
+
+    // region Lookups
+
+    public static String serviceName(int alias) {
+        return Tables.INSTANCE.services.get(alias);
+    }
+
+    public static String characteristicName(int alias) {
+        return Tables.INSTANCE.characteristics.get(alias);
+    }
+
+    public static String descriptorName(int alias) {
+        return Tables.INSTANCE.descriptors.get(alias);
+    }
+
+    /** Company identifier as found in manufacturer specific data. */
+    public static String companyName(int companyId) {
+        return Tables.INSTANCE.companies.get(companyId);
+    }
+
+    public static String serviceName(UUID uuid) {
+        int alias = toAlias(uuid);
+        return alias == NOT_SIG ? null : serviceName(alias);
+    }
+
+    public static String characteristicName(UUID uuid) {
+        int alias = toAlias(uuid);
+        return alias == NOT_SIG ? null : characteristicName(alias);
+    }
+
+    public static String descriptorName(UUID uuid) {
+        int alias = toAlias(uuid);
+        return alias == NOT_SIG ? null : descriptorName(alias);
+    }
+
+    static int[] sizes() {
+        Tables t = Tables.INSTANCE;
+        return new int[]{t.services.size(), t.characteristics.size(), t.descriptors.size(),
+                t.companies.size()};
+    }
+
+    // endregion
+
+    // region Tables
+
+    /** Loaded on first access by the class-init lock; no synchronization after that. */
+    private static final class Tables {
+        static final Tables INSTANCE = load();
+
+        final IntTable services = new IntTable(128);
+        final IntTable characteristics = new IntTable(512);
+        final IntTable descriptors = new IntTable(32);
+        // The full SIG list has several thousand company identifiers
+        final IntTable companies = new IntTable(4096);
+
+        private static Tables load() {
+            Tables t = new Tables();
+            InputStream in = AssignedNumbers.class.getResourceAsStream(RESOURCE);
+            if (in == null) return t; // stripped from the build: everything resolves to null
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    t.parseLine(line);
+                }
+            } catch (IOException e) {
+                // Keep whatever was read; names are cosmetic
+            }
+            return t;
+        }
+
+        private void parseLine(String line) {
+            if (line.length() < 4 || line.charAt(0) == '#' || line.charAt(1) != ' ') return;
+            int idEnd = line.indexOf(' ', 2);
+            if (idEnd < 0) return;
+            int id;
+            try {
+                id = Integer.parseInt(line.substring(2, idEnd), 16);
+            } catch (NumberFormatException e) {
+                return;
+            }
+            String name = line.substring(idEnd + 1).trim();
+            switch (line.charAt(0)) {
+                case 'S': services.put(id, name); break;
+                case 'C': characteristics.put(id, name); break;
+                case 'D': descriptors.put(id, name); break;
+                case 'M': companies.put(id, name); break;
+                default: break;
+            }
+        }
+    }
+
+    /** Open-addressing int -> String map; only grows. */
+    static final class IntTable {
+        private int[] keys;
+        private String[] values;
+        private int size;
+
+        IntTable(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+            keys = new int[capacity];
+            values = new String[capacity];
+        }
+
+        String get(int key) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                String v = values[i];
+                if (v == null) return null;
+                if (keys[i] == key) return v;
+            }
+        }
+
+        void put(int key, String value) {
+            if ((size + 1) * 2 > keys.length) resize();
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                if (values[i] == null) {
+                    keys[i] = key;
+                    values[i] = value;
+                    size++;
+                    return;
+                }
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            String[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new String[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) put(oldKeys[i], oldValues[i]);
+            }
+        }
+
+        private static int mix(int key) {
+            // Aliases are dense (0x2A00...); spread them over the table
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    // endregion
+}
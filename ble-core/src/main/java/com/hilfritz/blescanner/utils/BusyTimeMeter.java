@@ -0,0 +1,96 @@
+package com.hilfritz.blescanner.utils;
+
+/**
+ * How much of each time window a thread spends busy, from begin/end marks around each unit of
+ * work (e.g. every message a Looper dispatches).
+ *
+ * The marks come from the measured thread only; the results of the last completed window are
+ * volatile so any thread can read them. Timestamps are supplied by the caller (nanoseconds on
+ * one monotonic clock).
+ */
+public final class BusyTimeMeter {
+
+    public static final long DEFAULT_WINDOW_NANOS = 1_000_000_000L;
+
+    private final long windowNanos;
+
+    // Current window, measured thread only
+    private long windowStart = -1;
+    private long busyNanos;
+    private long longestNanos;
+    private int count;
+    private long sliceStart = -1;
+
+    // Last completed window
+    private volatile long lastBusyNanos;
+    private volatile long lastLongestNanos;
+    private volatile int lastCount;
+    private volatile long lastWindowNanos;
+
+    public BusyTimeMeter() {
+        this(DEFAULT_WINDOW_NANOS);
+    }
+
+    public BusyTimeMeter(long windowNanos) {
+        if (windowNanos <= 0) throw new IllegalArgumentException("window must be > 0: " + windowNanos);
+        this.windowNanos = windowNanos;
+    }
+
+    public void begin(long nowNanos) {
+        if (windowStart < 0) windowStart = nowNanos;
+        sliceStart = nowNanos;
+    }
+
+    /**
+     * Close the slice opened by {@link #begin}. Returns true if this completed a window, i.e.
+     * new results are available. A window with no work completes on the next mark after it.
+     */
+    public boolean end(long nowNanos) {
+        if (sliceStart < 0) return false;
+        long slice = nowNanos - sliceStart;
+        sliceStart = -1;
+        // A slice straddling the boundary is credited to the window it ends in
+        busyNanos += slice;
+        if (slice > longestNanos) longestNanos = slice;
+        count++;
+
+        long elapsed = nowNanos - windowStart;
+        if (elapsed < windowNanos) return false;
+        lastBusyNanos = Math.min(busyNanos, elapsed);
+        lastLongestNanos = longestNanos;
+        lastCount = count;
+        lastWindowNanos = elapsed;
+        windowStart = nowNanos;
+        busyNanos = 0;
+        longestNanos = 0;
+        count = 0;
+        return true;
+    }
+
+    /** Busy time in the last window, scaled to milliseconds per second. */
+    public float getBusyMillisPerSecond() {
+        long window = lastWindowNanos;
+        return window > 0 ? lastBusyNanos * 1000f / window : 0f;
+    }
+
+    /** Fraction of the last window spent busy, 0..1. */
+    public float getBusyFraction() {
+        long window = lastWindowNanos;
+        return window > 0 ? (float) lastBusyNanos / window : 0f;
+    }
+
+    public long getLongestSliceNanos() {
+        return lastLongestNanos;
+    }
+
+    /** Units of work completed in the last window. */
+    public int getSliceCount() {
+        return lastCount;
+    }
+
+    @Override
+    public String toString() {
+        return "busy " + Math.round(getBusyMillisPerSecond()) + " ms/s, " + getSliceCount()
+                + " messages, longest " + getLongestSliceNanos() / 1_000_000 + " ms";
+    }
+}
@@ -0,0 +1,208 @@
+package com.hilfritz.blescanner.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public final class GattUtils {
+
+    // Characteristic property bits, same values as BluetoothGattCharacteristic.PROPERTY_*
+    public static final int PROPERTY_READ = 0x02;
+    public static final int PROPERTY_WRITE_NO_RESPONSE = 0x04;
+    public static final int PROPERTY_WRITE = 0x08;
+    public static final int PROPERTY_NOTIFY = 0x10;
+    public static final int PROPERTY_INDICATE = 0x20;
+
+    private GattUtils() {
+        // no instance
+    }
+
+    // region Hex / ASCII
+
+    private static final String EMPTY = "(empty)";
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    // Byte value -> its character in the ASCII column: printable ASCII as is, '.' otherwise
+    private static final char[] ASCII_SAFE = new char[256];
+
+    static {
+        for (int v = 0; v < 256; v++) {
+            ASCII_SAFE[v] = v >= 32 && v <= 126 ? (char) v : '.';
+        }
+    }
+
+    public static final int HEX_DUMP_BYTES_PER_LINE = 16;
+
+    /** "AA BB CC", or "(empty)". */
+    public static String bytesToHex(byte[] bytes) {
+        return bytes == null ? EMPTY : bytesToHex(bytes, 0, bytes.length);
+    }
+
+    public static String bytesToHex(byte[] bytes, int offset, int length) {
+        if (bytes == null || length == 0) return EMPTY;
+        char[] out = new char[hexLength(length)];
+        encodeHex(bytes, offset, length, out, 0);
+        return new String(out);
+    }
+
+    /** Chars written by {@link #encodeHex} for {@code length} bytes (two digits plus separators). */
+    public static int hexLength(int length) {
+        return length <= 0 ? 0 : length * 3 - 1;
+    }
+
+    /**
+     * Write {@code length} bytes as space-separated uppercase hex into {@code dst}, which needs
+     * {@link #hexLength} chars from {@code dstOffset}. Returns the number of chars written.
+     */
+    public static int encodeHex(byte[] src, int offset, int length, char[] dst, int dstOffset) {
+        checkRange(src, offset, length);
+        int p = dstOffset;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int v = src[i] & 0xFF;
+            if (i != offset) dst[p++] = ' ';
+            dst[p++] = HEX_DIGITS[v >>> 4];
+            dst[p++] = HEX_DIGITS[v & 0x0F];
+        }
+        return p - dstOffset;
+    }
+
+    public static StringBuilder appendHex(byte[] src, int offset, int length, StringBuilder out) {
+        checkRange(src, offset, length);
+        out.ensureCapacity(out.length() + hexLength(length));
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int v = src[i] & 0xFF;
+            if (i != offset) out.append(' ');
+            out.append(HEX_DIGITS[v >>> 4]).append(HEX_DIGITS[v & 0x0F]);
+        }
+        return out;
+    }
+
+    /** Same as the StringBuilder overload, for Writers and other sinks. */
+    public static <A extends Appendable> A appendHex(byte[] src, int offset, int length, A out)
+            throws IOException {
+        checkRange(src, offset, length);
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int v = src[i] & 0xFF;
+            if (i != offset) out.append(' ');
+            out.append(HEX_DIGITS[v >>> 4]).append(HEX_DIGITS[v & 0x0F]);
+        }
+        return out;
+    }
+
+    /** Printable ASCII as is, every other byte as '.', or "(empty)". */
+    public static String bytesToAsciiSafe(byte[] bytes) {
+        return bytes == null ? EMPTY : bytesToAsciiSafe(bytes, 0, bytes.length);
+    }
+
+    public static String bytesToAsciiSafe(byte[] bytes, int offset, int length) {
+        if (bytes == null || length == 0) return EMPTY;
+        char[] out = new char[length];
+        encodeAsciiSafe(bytes, offset, length, out, 0);
+        return new String(out);
+    }
+
+    /** One char per byte into {@code dst}. Returns {@code length}. */
+    public static int encodeAsciiSafe(byte[] src, int offset, int length, char[] dst, int dstOffset) {
+        checkRange(src, offset, length);
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = ASCII_SAFE[src[offset + i] & 0xFF];
+        }
+        return length;
+    }
+
+    public static StringBuilder appendAsciiSafe(byte[] src, int offset, int length, StringBuilder out) {
+        checkRange(src, offset, length);
+        out.ensureCapacity(out.length() + length);
+        for (int i = offset, end = offset + length; i < end; i++) {
+            out.append(ASCII_SAFE[src[i] & 0xFF]);
+        }
+        return out;
+    }
+
+    public static <A extends Appendable> A appendAsciiSafe(byte[] src, int offset, int length, A out)
+            throws IOException {
+        checkRange(src, offset, length);
+        for (int i = offset, end = offset + length; i < end; i++) {
+            out.append(ASCII_SAFE[src[i] & 0xFF]);
+        }
+        return out;
+    }
+
+    /**
+     * Classic hex dump for large values, {@code bytesPerLine} bytes per line:
+     * <pre>
+     * 0000  48 65 6C 6C 6F 00 01 02  |Hello...|
+     * </pre>
+     * Offsets are relative to {@code offset}, 4 hex digits (8 past 64 KB). The last line is
+     * padded so the ASCII column lines up. Every line ends with '\n'.
+     */
+    public static StringBuilder appendHexDump(byte[] src, int offset, int length, int bytesPerLine,
+                                              StringBuilder out) {
+        checkRange(src, offset, length);
+        if (bytesPerLine <= 0) throw new IllegalArgumentException("bytesPerLine must be > 0");
+        int offsetDigits = length > 0x10000 ? 8 : 4;
+        int lineChars = offsetDigits + 2 + hexLength(bytesPerLine) + 3 + bytesPerLine + 2;
+        out.ensureCapacity(out.length() + (length + bytesPerLine - 1) / bytesPerLine * lineChars);
+
+        for (int line = 0; line < length; line += bytesPerLine) {
+            for (int shift = (offsetDigits - 1) * 4; shift >= 0; shift -= 4) {
+                out.append(HEX_DIGITS[(line >>> shift) & 0x0F]);
+            }
+            out.append(' ').append(' ');
+            int n = Math.min(bytesPerLine, length - line);
+            appendHex(src, offset + line, n, out);
+            for (int pad = n; pad < bytesPerLine; pad++) out.append(' ').append(' ').append(' ');
+            out.append(' ').append(' ').append('|');
+            appendAsciiSafe(src, offset + line, n, out);
+            out.append('|').append('\n');
+        }
+        return out;
+    }
+
+    public static String hexDump(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) return EMPTY;
+        return appendHexDump(bytes, 0, bytes.length, HEX_DUMP_BYTES_PER_LINE, new StringBuilder())
+                .toString();
+    }
+
+    private static void checkRange(byte[] src, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > src.length - length) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length
+                    + ", size=" + src.length);
+        }
+    }
+
+    // endregion
+
+    /**
+     * Four upper-case hex digits: the 16-bit alias for SIG UUIDs
+     * (0000xxxx-0000-1000-8000-00805f9b34fb → xxxx), otherwise the last four digits.
+     */
+    public static String shortUuid(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        int alias = AssignedNumbers.toAlias(msb, lsb);
+        int v = alias != AssignedNumbers.NOT_SIG && alias <= 0xFFFF ? alias : (int) (lsb & 0xFFFF);
+        return new String(new char[]{
+                HEX_DIGITS[(v >>> 12) & 0x0F], HEX_DIGITS[(v >>> 8) & 0x0F],
+                HEX_DIGITS[(v >>> 4) & 0x0F], HEX_DIGITS[v & 0x0F]});
+    }
+
+    public static String buildPropsText(int props) {
+        List<String> out = new ArrayList<>();
+        if ((props & PROPERTY_READ) != 0) out.add("READ");
+        if ((props & PROPERTY_WRITE) != 0) out.add("WRITE");
+        if ((props & PROPERTY_WRITE_NO_RESPONSE) != 0) out.add("WRITE_NR");
+        if ((props & PROPERTY_NOTIFY) != 0) out.add("NOTIFY");
+        if ((props & PROPERTY_INDICATE) != 0) out.add("INDICATE");
+        return String.join(", ", out);
+    }
+
+    /**
+     * SIG name of a service or characteristic, or null for vendor UUIDs and numbers not in
+     * {@link AssignedNumbers}.
+     */
+    public static String gattName(UUID uuid, boolean isService) {
+        return isService ? AssignedNumbers.serviceName(uuid) : AssignedNumbers.characteristicName(uuid);
+    }
+}
@@ -0,0 +1,151 @@
+package com.hilfritz.blescanner.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing (linear probing) map from {@code long} to {@code int}, with no boxing and no
+ * per-entry objects. Meant for packed MAC addresses ({@link MacAddresses#pack}), so keys must be
+ * non-negative; {@link #EMPTY_KEY} marks a free slot.
+ *
+ * Not thread-safe.
+ */
+public final class LongIntHashMap {
+
+    public static final long EMPTY_KEY = -1L;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final int missingValue;
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public LongIntHashMap(int expectedSize, int missingValue) {
+        this.missingValue = missingValue;
+        allocate(capacityFor(expectedSize));
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        this(expectedSize, -1);
+    }
+
+    /** Value for {@code key}, or the map's missing value. */
+    public int get(long key) {
+        if (key < 0) return missingValue;
+        int slot = slot(key);
+        while (true) {
+            long k = keys[slot];
+            if (k == key) return values[slot];
+            if (k == EMPTY_KEY) return missingValue;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public boolean containsKey(long key) {
+        if (key < 0) return false;
+        int slot = slot(key);
+        while (true) {
+            long k = keys[slot];
+            if (k == key) return true;
+            if (k == EMPTY_KEY) return false;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /** Insert or replace; returns the previous value or the missing value. */
+    public int put(long key, int value) {
+        if (key < 0) throw new IllegalArgumentException("negative key: " + key);
+        int slot = slot(key);
+        while (true) {
+            long k = keys[slot];
+            if (k == key) {
+                int old = values[slot];
+                values[slot] = value;
+                return old;
+            }
+            if (k == EMPTY_KEY) {
+                keys[slot] = key;
+                values[slot] = value;
+                if (++size > resizeAt) rehash(keys.length << 1);
+                return missingValue;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /** Remove {@code key}; returns its value or the missing value. */
+    public int remove(long key) {
+        if (key < 0) return missingValue;
+        int slot = slot(key);
+        while (true) {
+            long k = keys[slot];
+            if (k == EMPTY_KEY) return missingValue;
+            if (k == key) break;
+            slot = (slot + 1) & mask;
+        }
+        int old = values[slot];
+        // Backward-shift deletion: pull later entries of the probe run into the gap
+        int gap = slot;
+        int i = (gap + 1) & mask;
+        while (keys[i] != EMPTY_KEY) {
+            int ideal = slot(keys[i]);
+            if (((i - ideal) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[gap] = EMPTY_KEY;
+        size--;
+        return old;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(keys, EMPTY_KEY);
+        size = 0;
+    }
+
+    private int slot(long key) {
+        // Fibonacci hashing: vendor OUIs make the raw high bits very clustered
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long k = oldKeys[i];
+            if (k == EMPTY_KEY) continue;
+            int slot = slot(k);
+            while (keys[slot] != EMPTY_KEY) slot = (slot + 1) & mask;
+            keys[slot] = k;
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY_KEY);
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 4) / LOAD_FACTOR);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+}
@@ -0,0 +1,53 @@
+package com.hilfritz.blescanner.utils;
+
+public final class MacAddresses {
+
+    /** Returned by {@link #pack(CharSequence)} for anything that is not a MAC address. */
+    public static final long INVALID = -1L;
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private MacAddresses() {
+        // no instance
+    }
+
+    /**
+     * Packs "AA:BB:CC:DD:EE:FF" (either case, ':' or '-' separators) into the low 48 bits of a
+     * long without allocating. Returns {@link #INVALID} for malformed input.
+     */
+    public static long pack(CharSequence address) {
+        if (address == null || address.length() != 17) return INVALID;
+        long packed = 0;
+        for (int i = 0; i < 17; i++) {
+            char c = address.charAt(i);
+            if (i % 3 == 2) {
+                if (c != ':' && c != '-') return INVALID;
+                continue;
+            }
+            int nibble = hexValue(c);
+            if (nibble < 0) return INVALID;
+            packed = (packed << 4) | nibble;
+        }
+        return packed;
+    }
+
+    /** Inverse of {@link #pack}: "AA:BB:CC:DD:EE:FF", upper case. Null for {@link #INVALID}. */
+    public static String format(long packed) {
+        if (packed < 0 || packed > 0xFFFFFFFFFFFFL) return null;
+        char[] out = new char[17];
+        for (int i = 0; i < 6; i++) {
+            int b = (int) (packed >>> (40 - 8 * i)) & 0xFF;
+            out[i * 3] = HEX_DIGITS[b >>> 4];
+            out[i * 3 + 1] = HEX_DIGITS[b & 0x0F];
+            if (i < 5) out[i * 3 + 2] = ':';
+        }
+        return new String(out);
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        return -1;
+    }
+}
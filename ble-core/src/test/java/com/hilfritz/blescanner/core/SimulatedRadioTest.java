@@ -0,0 +1,308 @@
+package com.hilfritz.blescanner.core;
+
+import com.hilfritz.blescanner.manager.DeviceRegistry;
+import com.hilfritz.blescanner.manager.NotificationRingBuffer;
+import com.hilfritz.blescanner.utils.AdvertisementParser;
+import com.hilfritz.blescanner.utils.GattUtils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SimulatedRadioTest {
+
+    private static final String HRM = "AA:BB:CC:00:00:01";
+    private static final UUID HR_SERVICE = UUID.fromString("0000180d-0000-1000-8000-00805f9b34fb");
+    private static final UUID HR_MEASUREMENT = UUID.fromString("00002a37-0000-1000-8000-00805f9b34fb");
+    private static final UUID CONTROL_POINT = UUID.fromString("00002a39-0000-1000-8000-00805f9b34fb");
+
+    private final SimulatedRadio radio = new SimulatedRadio(42);
+
+    @After
+    public void tearDown() {
+        radio.shutdown();
+    }
+
+    private static SimulatedPeripheral.Builder heartRateMonitor() {
+        return new SimulatedPeripheral.Builder(HRM)
+                .setName("HRM")
+                .setAdvertisingIntervalMs(20)
+                .setConnectionLatencyMs(50)
+                .setMaxMtu(185)
+                .addCharacteristic(HR_SERVICE, HR_MEASUREMENT,
+                        GattUtils.PROPERTY_READ | GattUtils.PROPERTY_NOTIFY, new byte[]{0, 60})
+                .addCharacteristic(HR_SERVICE, CONTROL_POINT, GattUtils.PROPERTY_WRITE, null);
+    }
+
+    /** Records every GATT event into a queue the test thread can wait on. */
+    private static class Events implements BleGattCallback {
+        final BlockingQueue<String> queue = new ArrayBlockingQueue<>(10_000);
+        volatile Thread callbackThread;
+
+        private void add(String event) {
+            callbackThread = Thread.currentThread();
+            queue.add(event);
+        }
+
+        String next() throws InterruptedException {
+            String e = queue.poll(2, TimeUnit.SECONDS);
+            assertNotNull("no event", e);
+            return e;
+        }
+
+        @Override
+        public void onConnectionStateChange(BleGatt gatt, int status, boolean connected) {
+            add((connected ? "connected " : "disconnected ") + status);
+        }
+
+        @Override
+        public void onServicesDiscovered(BleGatt gatt, int status) {
+            add("services " + status);
+        }
+
+        @Override
+        public void onCharacteristicRead(BleGatt gatt, UUID characteristic, byte[] value, int status) {
+            add("read " + status + " " + (value != null ? GattUtils.bytesToHex(value) : "null"));
+        }
+
+        @Override
+        public void onCharacteristicWrite(BleGatt gatt, UUID characteristic, int status) {
+            add("write " + status);
+        }
+
+        @Override
+        public void onNotificationStateChanged(BleGatt gatt, UUID characteristic, boolean enabled, int status) {
+            add("notify " + enabled + " " + status);
+        }
+
+        @Override
+        public void onMtuChanged(BleGatt gatt, int mtu, int status) {
+            add("mtu " + mtu + " " + status);
+        }
+    }
+
+    private BleGatt connectAndDiscover(Events events) throws InterruptedException {
+        BleGatt gatt = radio.connect(HRM, events);
+        assertNotNull(gatt);
+        assertEquals("connected 0", events.next());
+        assertTrue(gatt.discoverServices());
+        assertEquals("services 0", events.next());
+        return gatt;
+    }
+
+    @Test
+    public void scanFeedsParserAndRegistryAtTheAdvertisingRate() throws Exception {
+        radio.addPeripheral(heartRateMonitor().setRssi(-70, 5).build());
+        for (int i = 2; i <= 9; i++) {
+            radio.addPeripheral(new SimulatedPeripheral.Builder("AA:BB:CC:00:00:0" + i)
+                    .setAdvertisingIntervalMs(20).build());
+        }
+        DeviceRegistry registry = new DeviceRegistry();
+        AdvertisementParser parser = new AdvertisementParser();
+        AtomicBoolean rssiInRange = new AtomicBoolean(true);
+        CountDownLatch enough = new CountDownLatch(200);
+
+        BleScanner.Callback callback = (address, rssi, adv, ts) -> {
+            String name = parser.parse(adv) && parser.hasName() ? parser.getName() : null;
+            if (HRM.equals(address) && (rssi < -75 || rssi > -65)) rssiInRange.set(false);
+            registry.record(address, name, rssi, TimeUnit.NANOSECONDS.toMillis(ts));
+            enough.countDown();
+        };
+        long start = System.nanoTime();
+        assertTrue(radio.getScanner().startScan(callback));
+        assertTrue(enough.await(5, TimeUnit.SECONDS));
+        radio.getScanner().stopScan(callback);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(9, registry.size());
+        assertEquals("HRM", registry.snapshot(HRM).name);
+        assertTrue(rssiInRange.get());
+        // 9 advertisers at 50/s each need at least ~400 ms for 200 advertisements
+        assertTrue("too fast: " + elapsedMs, elapsedMs >= 350);
+    }
+
+    @Test
+    public void scanOptionsFilterAdvertisers() throws Exception {
+        radio.addPeripheral(new SimulatedPeripheral.Builder("AA:BB:CC:00:00:11")
+                .setAdvertisement(new byte[]{3, 0x03, 0x0D, 0x18}) // 16-bit UUID 0x180D
+                .setAdvertisingIntervalMs(20).build());
+        radio.addPeripheral(new SimulatedPeripheral.Builder("AA:BB:CC:00:00:12")
+                .setAdvertisement(new byte[]{5, (byte) 0xFF, 0x59, 0x00, 0x01, 0x7F})
+                .setAdvertisingIntervalMs(20).build());
+        radio.addPeripheral(new SimulatedPeripheral.Builder("AA:BB:CC:00:00:13")
+                .setAdvertisement(new byte[]{5, (byte) 0xFF, 0x59, 0x00, 0x02, 0x7F})
+                .setAdvertisingIntervalMs(20).build());
+        radio.addPeripheral(new SimulatedPeripheral.Builder("AA:BB:CC:00:00:14")
+                .setName("plain").setAdvertisingIntervalMs(20).build());
+        ScanOptions options = new ScanOptions.Builder()
+                .addFilter(new ScanOptions.Filter.Builder().setServiceUuid(HR_SERVICE).build())
+                .addFilter(new ScanOptions.Filter.Builder()
+                        .setManufacturerData(0x0059, new byte[]{0x01, 0x00}, new byte[]{(byte) 0xFF, 0x00})
+                        .build())
+                .build();
+
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        CountDownLatch enough = new CountDownLatch(40);
+        BleScanner.Callback callback = (address, rssi, adv, ts) -> {
+            seen.add(address);
+            enough.countDown();
+        };
+        assertTrue(radio.getScanner().startScan(options, callback));
+        assertTrue(enough.await(5, TimeUnit.SECONDS));
+        radio.getScanner().stopScan(callback);
+
+        assertEquals(new HashSet<>(Arrays.asList("AA:BB:CC:00:00:11", "AA:BB:CC:00:00:12")), seen);
+    }
+
+    @Test
+    public void connectHonoursLatencyAndFailsForUnknownDevices() throws Exception {
+        radio.addPeripheral(heartRateMonitor().build());
+        Events events = new Events();
+        long start = System.nanoTime();
+        radio.connect(HRM, events);
+        assertEquals("connected 0", events.next());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+        assertEquals("simulated-radio", events.callbackThread.getName());
+
+        Events missing = new Events();
+        BleGatt gatt = radio.connect("AA:BB:CC:99:99:99", missing);
+        assertEquals("disconnected " + BleGatt.GATT_ERROR, missing.next());
+        assertFalse(gatt.discoverServices());
+    }
+
+    @Test
+    public void allowsOneOperationAtATime() throws Exception {
+        // Long enough that the second call always lands while the first is in flight
+        radio.addPeripheral(heartRateMonitor().setOperationLatencyMs(200).build());
+        Events events = new Events();
+        BleGatt gatt = connectAndDiscover(events);
+
+        assertTrue(gatt.readCharacteristic(HR_MEASUREMENT));
+        assertFalse(gatt.readCharacteristic(HR_MEASUREMENT));
+        assertEquals("read 0 00 3C", events.next());
+
+        assertTrue(gatt.writeCharacteristic(CONTROL_POINT, new byte[]{1}, true));
+        assertEquals("write 0", events.next());
+        assertArrayEquals(new byte[]{1}, radio.getPeripheral(HRM).getValue(CONTROL_POINT));
+
+        // Control point has no READ and no WRITE_NO_RESPONSE
+        assertTrue(gatt.readCharacteristic(CONTROL_POINT));
+        assertEquals("read " + BleGatt.GATT_READ_NOT_PERMITTED + " null", events.next());
+        assertTrue(gatt.writeCharacteristic(CONTROL_POINT, new byte[]{1}, false));
+        assertEquals("write " + BleGatt.GATT_WRITE_NOT_PERMITTED, events.next());
+    }
+
+    @Test
+    public void mtuIsCappedByPeripheralAndBoundsNotifications() throws Exception {
+        byte[] big = new byte[300];
+        radio.addPeripheral(heartRateMonitor()
+                .setNotificationRate(HR_MEASUREMENT, 100, sequence -> big)
+                .build());
+        AtomicLong maxLength = new AtomicLong();
+        CountDownLatch received = new CountDownLatch(5);
+        Events events = new Events() {
+            @Override
+            public void onCharacteristicChanged(BleGatt gatt, UUID characteristic, byte[] value, long ts) {
+                maxLength.accumulateAndGet(value.length, Math::max);
+                received.countDown();
+            }
+        };
+        BleGatt gatt = connectAndDiscover(events);
+
+        assertTrue(gatt.requestMtu(517));
+        assertEquals("mtu 185 0", events.next());
+        assertTrue(gatt.setNotificationsEnabled(HR_MEASUREMENT, true));
+        assertEquals("notify true 0", events.next());
+        assertTrue(received.await(2, TimeUnit.SECONDS));
+        assertEquals(182, maxLength.get());
+    }
+
+    @Test
+    public void notificationsStreamIntoRingBufferAtConfiguredRate() throws Exception {
+        int rate = 500;
+        radio.addPeripheral(heartRateMonitor()
+                .setNotificationRate(HR_MEASUREMENT, rate,
+                        sequence -> new byte[]{0, (byte) sequence})
+                .build());
+        NotificationRingBuffer ring = new NotificationRingBuffer(
+                NotificationRingBuffer.OverflowPolicy.DROP_OLDEST);
+        Events events = new Events() {
+            @Override
+            public void onCharacteristicChanged(BleGatt gatt, UUID characteristic, byte[] value, long ts) {
+                ring.offer(characteristic, value, ts);
+            }
+        };
+        BleGatt gatt = connectAndDiscover(events);
+        assertTrue(gatt.setNotificationsEnabled(HR_MEASUREMENT, true));
+        assertEquals("notify true 0", events.next());
+
+        // Consumer thread drains while the radio thread produces
+        long[] lastSequence = {-1};
+        boolean[] ordered = {true};
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+        while (System.nanoTime() < deadline) {
+            ring.drain((msb, lsb, value, length, tsNanos) -> {
+                int seq = value[1] & 0xFF;
+                if (lastSequence[0] >= 0 && seq != ((lastSequence[0] + 1) & 0xFF)) ordered[0] = false;
+                lastSequence[0] = seq;
+            });
+            Thread.sleep(5);
+        }
+        assertTrue(gatt.setNotificationsEnabled(HR_MEASUREMENT, false));
+        assertEquals("notify false 0", events.next());
+        ring.drain((msb, lsb, value, length, tsNanos) -> {
+        });
+
+        long produced = ring.getProducedCount();
+        assertTrue(ordered[0]);
+        assertEquals(0, ring.getDroppedCount());
+        assertEquals(produced, ring.getConsumedCount());
+        // 500/s for ~0.5 s; generous bounds for loaded CI machines
+        assertTrue("produced " + produced, produced > rate / 10 && produced <= rate);
+    }
+
+    @Test
+    public void removingPeripheralDropsConnection() throws Exception {
+        radio.addPeripheral(heartRateMonitor().build());
+        Events events = new Events();
+        BleGatt gatt = connectAndDiscover(events);
+
+        radio.removePeripheral(HRM);
+        assertEquals("disconnected " + BleGatt.GATT_CONNECTION_TIMEOUT, events.next());
+        assertFalse(gatt.readCharacteristic(HR_MEASUREMENT));
+        assertNull(radio.getPeripheral(HRM));
+    }
+
+    @Test
+    public void disconnectBeforeConnectedCancelsAttempt() throws Exception {
+        radio.addPeripheral(heartRateMonitor().setConnectionLatencyMs(20).build());
+        Events events = new Events();
+        BleGatt gatt = radio.connect(HRM, events);
+        gatt.disconnect();
+        assertNull(events.queue.poll(200, TimeUnit.MILLISECONDS));
+
+        gatt = radio.connect(HRM, events);
+        assertEquals("connected 0", events.next());
+        gatt.disconnect();
+        assertEquals("disconnected 0", events.next());
+        gatt.close();
+    }
+}
@@ -0,0 +1,136 @@
+package com.hilfritz.blescanner.decoders;
+
+import com.hilfritz.blescanner.utils.AssignedNumbers;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CharacteristicDecodersTest {
+
+    private static byte[] bytes(int... values) {
+        byte[] b = new byte[values.length];
+        for (int i = 0; i < values.length; i++) b[i] = (byte) values[i];
+        return b;
+    }
+
+    @Test
+    public void heartRateAllFields() {
+        HeartRateMeasurement hr = HeartRateMeasurement.DECODER.newRecord();
+        // uint16 rate, contact supported + detected, energy, two RR intervals
+        assertTrue(HeartRateMeasurement.DECODER.decode(
+                bytes(0x1F, 0x2C, 0x01, 0x10, 0x00, 0x00, 0x04, 0x00, 0x02), hr));
+        assertEquals(300, hr.heartRate);
+        assertTrue(hr.sensorContactSupported);
+        assertTrue(hr.sensorContactDetected);
+        assertEquals(16, hr.energyExpended);
+        assertEquals(2, hr.rrCount);
+        assertEquals(1000f, hr.getRrIntervalMillis(0), 0.01f);
+        assertEquals(500f, hr.getRrIntervalMillis(1), 0.01f);
+
+        // Same record, minimal value: stale optional fields are cleared
+        assertTrue(HeartRateMeasurement.DECODER.decode(bytes(0x00, 72), hr));
+        assertEquals(72, hr.heartRate);
+        assertFalse(hr.sensorContactSupported);
+        assertEquals(HeartRateMeasurement.NO_ENERGY_EXPENDED, hr.energyExpended);
+        assertEquals(0, hr.rrCount);
+        assertEquals("72 bpm", hr.toString());
+
+        // Flags announce energy expended that is not there
+        assertFalse(HeartRateMeasurement.DECODER.decode(bytes(0x08, 72, 0x10), hr));
+    }
+
+    @Test
+    public void temperatureMeasurementFloatAndTimestamp() {
+        TemperatureMeasurement t = TemperatureMeasurement.DECODER.newRecord();
+        // 3650 * 10^-2 °C, timestamp 2024-03-05 10:20:30, type 2 (body)
+        assertTrue(TemperatureMeasurement.DECODER.decode(bytes(0x06, 0x42, 0x0E, 0x00, 0xFE,
+                0xE8, 0x07, 3, 5, 10, 20, 30, 2), t));
+        assertEquals(36.5, t.value, 1e-9);
+        assertFalse(t.fahrenheit);
+        assertTrue(t.hasTimestamp);
+        assertEquals(2024, t.year);
+        assertEquals(30, t.seconds);
+        assertEquals(2, t.type);
+
+        // 977 * 10^-1 °F, NaN mantissa
+        assertTrue(TemperatureMeasurement.DECODER.decode(bytes(0x01, 0xD1, 0x03, 0x00, 0xFF), t));
+        assertEquals(36.5, t.getCelsius(), 0.01);
+        assertEquals(TemperatureMeasurement.NO_TYPE, t.type);
+        assertTrue(TemperatureMeasurement.DECODER.decode(bytes(0x00, 0xFF, 0xFF, 0x7F, 0x00), t));
+        assertTrue(Double.isNaN(t.value));
+
+        TemperatureMeasurement plain = TemperatureMeasurement.TEMPERATURE_DECODER.newRecord();
+        assertTrue(TemperatureMeasurement.TEMPERATURE_DECODER.decode(bytes(0x0C, 0xFE), plain));
+        assertEquals(-5.0, plain.value, 1e-9);
+        assertEquals(TemperatureMeasurement.UUID16_TEMPERATURE, plain.getUuid16());
+    }
+
+    @Test
+    public void cyclingAndRunning() {
+        CscMeasurement csc = CscMeasurement.DECODER.newRecord();
+        assertTrue(CscMeasurement.DECODER.decode(bytes(0x03,
+                0x10, 0x27, 0x00, 0x80, 0x00, 0x04, 0x05, 0x00, 0x00, 0x08), csc));
+        assertEquals(0x8000_2710L, csc.wheelRevolutions);
+        assertEquals(1024, csc.lastWheelEventTime);
+        assertEquals(5, csc.crankRevolutions);
+        assertEquals(2048, csc.lastCrankEventTime);
+        assertTrue(CscMeasurement.DECODER.decode(bytes(0x02, 0x06, 0x00, 0x00, 0x0C), csc));
+        assertFalse(csc.hasWheel);
+        assertEquals(6, csc.crankRevolutions);
+        assertFalse(CscMeasurement.DECODER.decode(bytes(0x01, 0x10, 0x27), csc));
+
+        RscMeasurement rsc = RscMeasurement.DECODER.newRecord();
+        assertTrue(RscMeasurement.DECODER.decode(bytes(0x07, 0x00, 0x03, 170, 120, 0x00,
+                0x10, 0x27, 0x00, 0x00), rsc));
+        assertEquals(3f, rsc.getSpeedMetresPerSecond(), 1e-6f);
+        assertEquals(170, rsc.cadence);
+        assertTrue(rsc.running);
+        assertEquals(120, rsc.strideLength);
+        assertEquals(10_000, rsc.totalDistance);
+    }
+
+    @Test
+    public void registryDispatchesByUuidAndReusesRecords() {
+        CharacteristicDecoders decoders = new CharacteristicDecoders();
+        UUID battery = AssignedNumbers.fromAlias(BatteryLevel.UUID16);
+        DecodedValue first = decoders.decode(battery, bytes(87));
+        assertEquals("87%", first.toString());
+        assertSame(first, decoders.decode(battery, bytes(12)));
+        assertEquals(12, ((BatteryLevel) first).percent);
+
+        UUID hrm = AssignedNumbers.fromAlias(HeartRateMeasurement.UUID16);
+        assertTrue(decoders.canDecode(hrm.getMostSignificantBits(), hrm.getLeastSignificantBits()));
+        byte[] framed = bytes(0xEE, 0x00, 61, 0xEE);
+        HeartRateMeasurement hr = (HeartRateMeasurement) decoders.decode(
+                hrm.getMostSignificantBits(), hrm.getLeastSignificantBits(), framed, 1, 2);
+        assertEquals(61, hr.heartRate);
+
+        assertNull(decoders.decode(UUID.fromString("6e400003-b5a3-f393-e0a9-e50e24dcca9e"),
+                bytes(1, 2)));
+        assertNull(decoders.decode(AssignedNumbers.fromAlias(0x2A00), bytes(1)));
+        assertNull("malformed", decoders.decode(battery, new byte[0]));
+    }
+
+    @Test
+    public void byteBuffersDecodeWithoutMovingPosition() {
+        CharacteristicDecoders decoders = new CharacteristicDecoders();
+        UUID hrm = AssignedNumbers.fromAlias(HeartRateMeasurement.UUID16);
+        for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(8), ByteBuffer.allocateDirect(8)}) {
+            buffer.put((byte) 0xAA).put(bytes(0x10, 90, 0x00, 0x04));
+            buffer.flip().position(1);
+            HeartRateMeasurement hr = (HeartRateMeasurement) decoders.decode(hrm, buffer);
+            assertEquals(90, hr.heartRate);
+            assertEquals(1, hr.rrCount);
+            assertEquals(1024, hr.rrIntervals[0]);
+            assertEquals(1, buffer.position());
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.hilfritz.blescanner.manager;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BleEventBusTest {
+
+    private static final UUID HR_MEASUREMENT = UUID.fromString("00002a37-0000-1000-8000-00805f9b34fb");
+
+    private final BleEventBus bus = new BleEventBus();
+    private final ExecutorService slowThread = Executors.newSingleThreadExecutor();
+    private final ExecutorService fastThread = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        slowThread.shutdownNow();
+        fastThread.shutdownNow();
+    }
+
+    /** Records RSSI values (used as sequence numbers) in delivery order. */
+    private static class Recorder implements BleEventBus.Subscriber {
+        final List<Integer> rssis = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done;
+
+        Recorder(int expected) {
+            done = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void onScanResult(String address, String name, int rssi, long timestampNanos) {
+            rssis.add(rssi);
+            done.countDown();
+        }
+    }
+
+    @Test
+    public void everySubscriberGetsEveryEventInOrder() throws Exception {
+        Recorder a = new Recorder(100);
+        Recorder b = new Recorder(100);
+        bus.subscribe(a, fastThread);
+        bus.subscribe(b, BleEventBus.DIRECT);
+        for (int i = 0; i < 100; i++) bus.publishScanResult("AA:BB:CC:00:00:01", null, i, i);
+
+        assertTrue(a.done.await(2, TimeUnit.SECONDS));
+        for (Recorder r : new Recorder[]{a, b}) {
+            assertEquals(100, r.rssis.size());
+            for (int i = 0; i < 100; i++) assertEquals(i, (int) r.rssis.get(i));
+        }
+    }
+
+    @Test
+    public void slowSubscriberDelaysNobody() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Recorder slow = new Recorder(1) {
+            @Override
+            public void onScanResult(String address, String name, int rssi, long timestampNanos) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onScanResult(address, name, rssi, timestampNanos);
+            }
+        };
+        Recorder fast = new Recorder(1000);
+        BleEventBus.Subscription slowSub = bus.subscribe(slow, slowThread, 16,
+                BleEventBus.Overflow.DROP_OLDEST);
+        bus.subscribe(fast, fastThread, 2000, BleEventBus.Overflow.DROP_OLDEST);
+
+        // Park the slow subscriber inside its first event
+        bus.publishScanResult("AA:BB:CC:00:00:01", null, 0, 0);
+        while (slowSub.getQueuedCount() > 0) Thread.sleep(1);
+
+        long start = System.nanoTime();
+        for (int i = 1; i < 1000; i++) bus.publishScanResult("AA:BB:CC:00:00:01", null, i, i);
+        long publishMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(fast.done.await(2, TimeUnit.SECONDS));
+        assertEquals(1000, fast.rssis.size());
+        // The publisher never waited for the stuck subscriber
+        assertTrue("publish took " + publishMs + " ms", publishMs < 1000);
+        assertEquals(16, slowSub.getQueuedCount());
+
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (slowSub.getQueuedCount() > 0 && System.nanoTime() < deadline) Thread.sleep(5);
+        Thread.sleep(20);
+        // The parked event, then the newest 16
+        assertEquals(17, slow.rssis.size());
+        assertEquals(999, (int) slow.rssis.get(16));
+        assertEquals(1000 - 17, slowSub.getDroppedCount());
+    }
+
+    @Test
+    public void dropNewestKeepsQueuedEvents() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        slowThread.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Recorder logger = new Recorder(4);
+        BleEventBus.Subscription sub = bus.subscribe(logger, slowThread, 4,
+                BleEventBus.Overflow.DROP_NEWEST);
+        for (int i = 0; i < 10; i++) bus.publishScanResult("AA:BB:CC:00:00:01", null, i, i);
+        release.countDown();
+
+        assertTrue(logger.done.await(2, TimeUnit.SECONDS));
+        assertEquals(0, (int) logger.rssis.get(0));
+        assertEquals(4, logger.rssis.size());
+        assertEquals(3, (int) logger.rssis.get(3));
+        assertEquals(6, sub.getDroppedCount());
+    }
+
+    @Test
+    public void notificationsAreCopiedOnceAndShared() {
+        byte[][] seen = new byte[2][];
+        bus.subscribe(new BleEventBus.Subscriber() {
+            @Override
+            public void onNotification(UUID characteristic, byte[] value, long ts) {
+                seen[0] = value;
+            }
+        }, BleEventBus.DIRECT);
+        bus.subscribe(new BleEventBus.Subscriber() {
+            @Override
+            public void onNotification(UUID characteristic, byte[] value, long ts) {
+                seen[1] = value;
+            }
+        }, BleEventBus.DIRECT);
+
+        byte[] stackBuffer = {0, 72};
+        bus.publishNotification(HR_MEASUREMENT, stackBuffer, 1);
+        stackBuffer[1] = 0;
+        assertEquals(72, seen[0][1]);
+        assertSame(seen[0], seen[1]);
+    }
+
+    @Test
+    public void cancelAndFailuresAreIsolated() {
+        AtomicInteger states = new AtomicInteger();
+        BleEventBus.Subscription thrower = bus.subscribe(new BleEventBus.Subscriber() {
+            @Override
+            public void onConnectionStateChanged(String address, int state) {
+                throw new IllegalStateException("boom");
+            }
+        }, BleEventBus.DIRECT);
+        BleEventBus.Subscription counter = bus.subscribe(new BleEventBus.Subscriber() {
+            @Override
+            public void onConnectionStateChanged(String address, int state) {
+                states.incrementAndGet();
+            }
+        }, BleEventBus.DIRECT);
+
+        bus.publishConnectionState("AA:BB:CC:00:00:01", BleEventBus.STATE_CONNECTING);
+        bus.publishConnectionState("AA:BB:CC:00:00:01", BleEventBus.STATE_CONNECTED);
+        assertEquals(2, thrower.getFailureCount());
+        assertEquals(2, states.get());
+
+        counter.cancel();
+        assertTrue(counter.isCancelled());
+        assertEquals(1, bus.getSubscriberCount());
+        bus.publishConnectionState("AA:BB:CC:00:00:01", BleEventBus.STATE_DISCONNECTED);
+        assertEquals(2, states.get());
+        thrower.cancel();
+        assertFalse(bus.hasSubscribers());
+    }
+
+    @Test
+    public void concurrentPublishersAndSubscribeChurn() throws Exception {
+        int publishers = 4;
+        int perPublisher = 5_000;
+        AtomicInteger received = new AtomicInteger();
+        BleEventBus.Subscription steady = bus.subscribe(new BleEventBus.Subscriber() {
+            @Override
+            public void onScanResult(String address, String name, int rssi, long ts) {
+                received.incrementAndGet();
+            }
+        }, fastThread, publishers * perPublisher, BleEventBus.Overflow.DROP_NEWEST);
+
+        ExecutorService pool = Executors.newFixedThreadPool(publishers + 1);
+        CountDownLatch go = new CountDownLatch(1);
+        for (int p = 0; p < publishers; p++) {
+            pool.execute(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perPublisher; i++) bus.publishScanResult("A", null, i, i);
+            });
+        }
+        // Subscribers coming and going while events flow
+        pool.execute(() -> {
+            for (int i = 0; i < 500; i++) {
+                bus.subscribe(new BleEventBus.Subscriber() {
+                }, BleEventBus.DIRECT).cancel();
+            }
+        });
+        go.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (received.get() < publishers * perPublisher && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(publishers * perPublisher, received.get());
+        assertEquals(0, steady.getDroppedCount());
+        assertEquals(1, bus.getSubscriberCount());
+    }
+}
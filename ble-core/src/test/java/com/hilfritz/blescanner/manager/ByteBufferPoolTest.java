@@ -0,0 +1,72 @@
+package com.hilfritz.blescanner.manager;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ByteBufferPoolTest {
+
+    @Test
+    public void roundsUpToSizeClass() {
+        ByteBufferPool pool = new ByteBufferPool();
+        assertEquals(512, pool.acquire(1).capacity());
+        assertEquals(512, pool.acquire(512).capacity());
+        assertEquals(1024, pool.acquire(513).capacity());
+        assertEquals(4096, pool.acquire(3000).capacity());
+        assertTrue(pool.acquire(10).isDirect());
+    }
+
+    @Test
+    public void releasedBuffersAreReusedCleared() {
+        ByteBufferPool pool = new ByteBufferPool();
+        ByteBuffer a = pool.acquire(600);
+        a.put((byte) 1).put((byte) 2);
+        pool.release(a);
+
+        ByteBuffer b = pool.acquire(1000);
+        assertSame(a, b);
+        assertEquals(0, b.position());
+        assertEquals(b.capacity(), b.limit());
+        assertEquals(1, pool.getReusedCount());
+        assertEquals(1, pool.getAllocatedCount());
+    }
+
+    @Test
+    public void idleBuffersPerClassAreBounded() {
+        ByteBufferPool pool = new ByteBufferPool(4096, 2);
+        ByteBuffer[] buffers = new ByteBuffer[4];
+        for (int i = 0; i < buffers.length; i++) buffers[i] = pool.acquire(512);
+        for (ByteBuffer b : buffers) pool.release(b);
+        assertEquals(2, pool.idleCount());
+    }
+
+    @Test
+    public void foreignAndOversizedBuffersAreNotPooled() {
+        ByteBufferPool pool = new ByteBufferPool(1024, 4);
+        pool.release(ByteBuffer.allocate(512));        // heap
+        pool.release(ByteBuffer.allocateDirect(700));  // not a class size
+        ByteBuffer big = pool.acquire(5000);
+        assertEquals(5000, big.capacity());
+        pool.release(big);
+        assertEquals(0, pool.idleCount());
+    }
+
+    @Test
+    public void growKeepsContentAndRecyclesOldBuffer() {
+        ByteBufferPool pool = new ByteBufferPool();
+        ByteBuffer small = pool.acquire(512);
+        for (int i = 0; i < 512; i++) small.put((byte) i);
+
+        ByteBuffer grown = pool.grow(small, 600);
+        assertEquals(1024, grown.capacity());
+        assertEquals(512, grown.position());
+        for (int i = 0; i < 512; i++) assertEquals((byte) i, grown.get(i));
+        assertEquals(1, pool.idleCount());
+
+        assertSame(grown, pool.grow(grown, 1000));
+    }
+}
@@ -0,0 +1,151 @@
+package com.hilfritz.blescanner.manager;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CaptureRecorderTest {
+
+    private static final String ADDRESS = "AA:BB:CC:DD:EE:FF";
+    private static final UUID HEART_RATE = UUID.fromString("00002a37-0000-1000-8000-00805f9b34fb");
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static ByteBuffer readSegment(File dir, int index) throws Exception {
+        byte[] bytes = Files.readAllBytes(CaptureRecorder.segmentFile(dir, index).toPath());
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    public void writesHeaderAndFrames() throws Exception {
+        File dir = tmp.newFolder();
+        CaptureRecorder recorder = new CaptureRecorder(dir, 4096, 4);
+        recorder.recordScan(1_000L, ADDRESS, -60, new byte[]{2, 1, 6});
+        recorder.recordValue(CaptureRecorder.EVENT_NOTIFY, 2_000L, ADDRESS, HEART_RATE, 0,
+                new byte[]{0, 72});
+        recorder.recordConnection(false, 3_000L, ADDRESS, 19);
+        recorder.close();
+
+        ByteBuffer b = readSegment(dir, 0);
+        assertEquals(4096, b.capacity());
+        assertEquals(CaptureRecorder.MAGIC, b.getInt());
+        assertEquals(CaptureRecorder.VERSION, b.getInt());
+        assertEquals(0, b.getInt());
+        b.getInt();
+
+        assertEquals(3, b.getShort());
+        assertEquals(CaptureRecorder.EVENT_SCAN, b.get());
+        assertEquals(-60, b.get());
+        assertEquals(1_000L, b.getLong());
+        assertEquals(0xAABBCCDDEEFFL, b.getLong());
+        assertEquals(0L, b.getLong());
+        assertEquals(0L, b.getLong());
+        byte[] adv = new byte[3];
+        b.get(adv);
+        assertArrayEquals(new byte[]{2, 1, 6}, adv);
+
+        assertEquals(2, b.getShort());
+        assertEquals(CaptureRecorder.EVENT_NOTIFY, b.get());
+        assertEquals(0, b.get());
+        assertEquals(2_000L, b.getLong());
+        b.getLong();
+        assertEquals(HEART_RATE.getMostSignificantBits(), b.getLong());
+        assertEquals(HEART_RATE.getLeastSignificantBits(), b.getLong());
+        b.getShort();
+
+        assertEquals(0, b.getShort());
+        assertEquals(CaptureRecorder.EVENT_DISCONNECTED, b.get());
+        assertEquals(19, b.get());
+        b.position(b.position() + 32);
+
+        // Zero-filled tail reads as the end marker
+        b.getShort();
+        assertEquals(CaptureRecorder.EVENT_END, b.get());
+
+        assertEquals(3, recorder.getFramesWritten());
+        assertEquals(3 * CaptureRecorder.FRAME_HEADER_SIZE + 5, recorder.getBytesWritten());
+    }
+
+    @Test
+    public void rotatesAndDeletesOldestSegments() throws Exception {
+        File dir = tmp.newFolder();
+        // Room for exactly two 64-byte-payload frames per segment
+        int frame = CaptureRecorder.FRAME_HEADER_SIZE + 64;
+        CaptureRecorder recorder = new CaptureRecorder(dir,
+                CaptureRecorder.SEGMENT_HEADER_SIZE + 2 * frame, 3);
+        byte[] payload = new byte[64];
+        for (int i = 0; i < 10; i++) {
+            assertTrue(recorder.recordScan(i, ADDRESS, -50, payload));
+        }
+        recorder.close();
+
+        assertEquals(4, recorder.getSegmentIndex());
+        assertArrayEquals(new int[]{2, 3, 4}, CaptureRecorder.segmentIndices(dir));
+        assertEquals(10, recorder.getFramesWritten());
+    }
+
+    @Test
+    public void readerReturnsFramesAcrossSegmentsInOrder() throws Exception {
+        File dir = tmp.newFolder();
+        CaptureRecorder recorder = new CaptureRecorder(dir, 256, 16);
+        for (int i = 0; i < 20; i++) {
+            recorder.recordValue(CaptureRecorder.EVENT_NOTIFY, i, ADDRESS, HEART_RATE, 0,
+                    new byte[]{(byte) i, (byte) (i * 2)});
+        }
+        recorder.recordConnection(false, 99, ADDRESS, 0x85);
+        recorder.close();
+        assertTrue(recorder.getSegmentIndex() > 0);
+
+        CaptureReader reader = new CaptureReader(dir);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(reader.next());
+            assertEquals(CaptureRecorder.EVENT_NOTIFY, reader.getType());
+            assertEquals(i, reader.getTimestampNanos());
+            assertEquals(0xAABBCCDDEEFFL, reader.getMac());
+            assertEquals(HEART_RATE.getLeastSignificantBits(), reader.getUuidLsb());
+            assertArrayEquals(new byte[]{(byte) i, (byte) (i * 2)}, reader.getPayload());
+        }
+        assertTrue(reader.next());
+        assertEquals(CaptureRecorder.EVENT_DISCONNECTED, reader.getType());
+        assertEquals(0x85, reader.getStatus());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void newRecorderAppendsAfterExistingSegments() throws Exception {
+        File dir = tmp.newFolder();
+        new CaptureRecorder(dir, 1024, 8).close();
+        CaptureRecorder second = new CaptureRecorder(dir, 1024, 8);
+        assertEquals(1, second.getSegmentIndex());
+        second.close();
+    }
+
+    @Test
+    public void closedRecorderDropsEvents() throws Exception {
+        CaptureRecorder recorder = new CaptureRecorder(tmp.newFolder(), 1024, 2);
+        recorder.close();
+        assertFalse(recorder.record(CaptureRecorder.EVENT_SCAN, 0, 0, 0, 0, 0, null, 0, 0));
+        assertEquals(1, recorder.getFramesDropped());
+    }
+
+    @Test
+    public void oversizedPayloadIsTruncatedToSegment() throws Exception {
+        int size = 256;
+        CaptureRecorder recorder = new CaptureRecorder(tmp.newFolder(), size, 2);
+        recorder.recordScan(0, ADDRESS, 0, new byte[1000]);
+        recorder.close();
+        assertEquals(size - CaptureRecorder.SEGMENT_HEADER_SIZE, recorder.getBytesWritten());
+    }
+}
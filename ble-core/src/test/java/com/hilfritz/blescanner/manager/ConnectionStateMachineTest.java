@@ -0,0 +1,178 @@
+package com.hilfritz.blescanner.manager;
+
+import com.hilfritz.blescanner.manager.ConnectionStateMachine.State;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionStateMachineTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    public void happyPathAndRediscovery() {
+        ConnectionStateMachine sm = new ConnectionStateMachine();
+        assertEquals(State.IDLE, sm.getState());
+        assertTrue(sm.connect());
+        assertTrue(sm.onConnected());
+        assertTrue(sm.discover());
+        assertTrue(sm.onServicesDiscovered());
+        assertEquals(State.READY, sm.getState());
+        // Service Changed
+        assertTrue(sm.discover());
+        assertTrue(sm.onServicesDiscovered());
+        assertTrue(sm.disconnect());
+        assertEquals(State.DISCONNECTING, sm.onDisconnected());
+        assertEquals(State.IDLE, sm.getState());
+    }
+
+    @Test
+    public void failedDiscoveryCanBeRetried() {
+        ConnectionStateMachine sm = new ConnectionStateMachine();
+        assertTrue(sm.connect());
+        assertTrue(sm.onConnected());
+        assertFalse(sm.onDiscoveryFailed());
+        assertTrue(sm.discover());
+        assertTrue(sm.onDiscoveryFailed());
+        assertEquals(State.CONNECTED, sm.getState());
+        assertFalse(sm.onServicesDiscovered());
+        assertTrue(sm.discover());
+        assertTrue(sm.onServicesDiscovered());
+        assertFalse(sm.onDiscoveryFailed());
+        assertEquals(State.READY, sm.getState());
+    }
+
+    @Test
+    public void invalidCommandsAreRejected() {
+        ConnectionStateMachine sm = new ConnectionStateMachine();
+        assertFalse(sm.onConnected());
+        assertFalse(sm.discover());
+        assertFalse(sm.onServicesDiscovered());
+        assertFalse(sm.disconnect());
+        assertEquals(State.IDLE, sm.getState());
+
+        assertTrue(sm.connect());
+        assertFalse(sm.connect());
+        assertFalse(sm.discover());
+        assertFalse(sm.onServicesDiscovered());
+
+        // A disconnect while connecting wins over the late "connected" event
+        assertTrue(sm.disconnect());
+        assertFalse(sm.disconnect());
+        assertFalse(sm.onConnected());
+        assertFalse(sm.connect());
+        assertFalse(sm.discover());
+        assertEquals(State.DISCONNECTING, sm.getState());
+
+        assertFalse(sm.transition(State.DISCONNECTING, State.READY));
+        assertFalse(sm.transition(State.CONNECTING, State.IDLE));
+        assertTrue(sm.transition(State.DISCONNECTING, State.IDLE));
+        assertEquals(State.IDLE, sm.onDisconnected());
+    }
+
+    @Test
+    public void racingConnectsOpenExactlyOnce() throws Exception {
+        ConnectionStateMachine sm = new ConnectionStateMachine();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        int rounds = 2_000;
+        AtomicInteger[] winners = new AtomicInteger[rounds];
+        for (int r = 0; r < rounds; r++) winners[r] = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int r = 0; r < rounds; r++) {
+                        barrier.await();
+                        if (sm.connect()) winners[r].incrementAndGet();
+                        // Everyone has tried before the round is reset
+                        if (barrier.await() == 0) sm.onDisconnected();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) f.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        for (int r = 0; r < rounds; r++) assertEquals("round " + r, 1, winners[r].get());
+    }
+
+    /**
+     * Commands and events fired at random from many threads. Whoever wins connect() "opens a
+     * GATT", whoever gets a non-IDLE state back from onDisconnected() "closes" it: every client
+     * opened must be closed exactly once, never twice and never leaked.
+     */
+    @Test
+    public void randomHammeringClosesEveryClientOnce() throws Exception {
+        ConnectionStateMachine sm = new ConnectionStateMachine();
+        AtomicInteger opened = new AtomicInteger();
+        AtomicInteger closed = new AtomicInteger();
+        AtomicInteger ready = new AtomicInteger();
+        int opsPerThread = 200_000;
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch go = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                long seed = t;
+                futures.add(pool.submit(() -> {
+                    Random random = new Random(seed);
+                    go.await();
+                    for (int i = 0; i < opsPerThread; i++) {
+                        switch (random.nextInt(7)) {
+                            case 0:
+                                if (sm.connect()) opened.incrementAndGet();
+                                break;
+                            case 1:
+                                sm.onConnected();
+                                break;
+                            case 2:
+                                sm.discover();
+                                break;
+                            case 3:
+                                if (sm.onServicesDiscovered()) ready.incrementAndGet();
+                                break;
+                            case 4:
+                                sm.disconnect();
+                                break;
+                            case 5:
+                                sm.onDiscoveryFailed();
+                                break;
+                            default:
+                                if (random.nextInt(4) != 0) break;
+                                if (sm.onDisconnected().hasGatt()) closed.incrementAndGet();
+                                break;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            go.countDown();
+            for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // The last session may still be open
+        if (sm.onDisconnected().hasGatt()) closed.incrementAndGet();
+        assertTrue("never connected", opened.get() > 0);
+        assertEquals(opened.get(), closed.get());
+        assertTrue("never reached READY", ready.get() > 0);
+    }
+}
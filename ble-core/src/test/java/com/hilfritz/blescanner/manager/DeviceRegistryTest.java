@@ -0,0 +1,85 @@
+package com.hilfritz.blescanner.manager;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class DeviceRegistryTest {
+
+    private static final String A = "AA:BB:CC:00:00:01";
+    private static final String B = "AA:BB:CC:00:00:02";
+    private static final String C = "AA:BB:CC:00:00:03";
+
+    @Test
+    public void smoothsRssiWithEma() {
+        DeviceRegistry registry = new DeviceRegistry(8, 4, 0.5f);
+        registry.record(A, "tag", -60, 0);
+        registry.record(A, null, -80, 10);
+        registry.record(A, null, -80, 20);
+
+        DeviceRegistry.Snapshot s = registry.snapshot(A);
+        assertNotNull(s);
+        assertEquals("tag", s.name);
+        assertEquals(-80, s.lastRssi);
+        assertEquals(-75f, s.smoothedRssi, 0.001f);
+        assertEquals(3, s.sampleCount);
+        assertEquals(0, s.firstSeenMs);
+        assertEquals(20, s.lastSeenMs);
+    }
+
+    @Test
+    public void ringKeepsTheNewestSamplesOldestFirst() {
+        DeviceRegistry registry = new DeviceRegistry(8, 3, 1f);
+        for (int i = 0; i < 5; i++) registry.record(A, null, -50 - i, i * 100);
+
+        int[] rssi = new int[3];
+        long[] time = new long[3];
+        assertEquals(3, registry.copySamples(A, rssi, time));
+        assertArrayEquals(new int[]{-52, -53, -54}, rssi);
+        assertArrayEquals(new long[]{200, 300, 400}, time);
+    }
+
+    @Test
+    public void evictsStaleDevices() {
+        DeviceRegistry registry = new DeviceRegistry(8, 4, 0.5f);
+        registry.record(A, null, -60, 0);
+        registry.record(B, null, -60, 5_000);
+
+        assertEquals(1, registry.evictStale(10_000, 8_000));
+        assertNull(registry.snapshot(A));
+        assertNotNull(registry.snapshot(B));
+    }
+
+    @Test
+    public void fullRegistryEvictsLeastRecentlySeen() {
+        DeviceRegistry registry = new DeviceRegistry(2, 4, 0.5f);
+        registry.record(A, null, -60, 0);
+        registry.record(B, null, -60, 10);
+        registry.record(A, null, -60, 20);
+        registry.record(C, null, -60, 30);
+
+        assertEquals(2, registry.size());
+        assertNull(registry.snapshot(B));
+        List<DeviceRegistry.Snapshot> all = registry.snapshotAll();
+        assertEquals(C, all.get(0).address);
+        assertEquals(A, all.get(1).address);
+    }
+
+    @Test
+    public void reusedSlotStartsFresh() {
+        DeviceRegistry registry = new DeviceRegistry(1, 4, 0.5f);
+        registry.record(A, "old", -90, 0);
+        registry.record(B, null, -40, 10);
+
+        DeviceRegistry.Snapshot s = registry.snapshot(B);
+        assertNull(s.name);
+        assertEquals(-40f, s.smoothedRssi, 0.001f);
+        assertEquals(1, s.sampleCount);
+        assertEquals(1, registry.copySamples(B, new int[4], new long[4]));
+    }
+}
@@ -0,0 +1,229 @@
+package com.hilfritz.blescanner.manager;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NotificationRingBufferTest {
+
+    private static final long MSB = 0x00002a3700001000L;
+    private static final long LSB = 0x800000805f9b34fbL;
+
+    /** Records the first payload byte of each drained entry. */
+    private static final class Collector implements NotificationRingBuffer.Consumer {
+        final List<Integer> firstBytes = new ArrayList<>();
+
+        @Override
+        public void onNotification(long uuidMsb, long uuidLsb, byte[] value, int length, long ts) {
+            firstBytes.add(length > 0 ? value[0] & 0xFF : -1);
+        }
+    }
+
+    private static boolean offer(NotificationRingBuffer ring, int marker) {
+        return ring.offer(MSB, LSB, new byte[]{(byte) marker, 1, 2}, 0, 3, marker);
+    }
+
+    @Test
+    public void capacityIsRoundedUpToPowerOfTwo() {
+        NotificationRingBuffer ring = new NotificationRingBuffer(
+                5, 8, NotificationRingBuffer.OverflowPolicy.DROP_NEWEST, 0);
+        assertEquals(8, ring.capacity());
+    }
+
+    @Test
+    public void drainsInOrderWithMetadata() {
+        NotificationRingBuffer ring = new NotificationRingBuffer(
+                8, 16, NotificationRingBuffer.OverflowPolicy.DROP_NEWEST, 0);
+        byte[] value = {9, 8, 7};
+        assertTrue(ring.offer(MSB, LSB, value, 0, value.length, 42L));
+        assertTrue(offer(ring, 2));
+
+        List<byte[]> values = new ArrayList<>();
+        List<Long> stamps = new ArrayList<>();
+        int n = ring.drain((msb, lsb, v, len, ts) -> {
+            assertEquals(MSB, msb);
+            assertEquals(LSB, lsb);
+            byte[] copy = new byte[len];
+            System.arraycopy(v, 0, copy, 0, len);
+            values.add(copy);
+            stamps.add(ts);
+        });
+
+        assertEquals(2, n);
+        assertArrayEquals(value, values.get(0));
+        assertEquals(42L, (long) stamps.get(0));
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void drainRespectsBatchLimit() {
+        NotificationRingBuffer ring = new NotificationRingBuffer(
+                8, 16, NotificationRingBuffer.OverflowPolicy.DROP_NEWEST, 0);
+        for (int i = 0; i < 5; i++) offer(ring, i);
+        Collector c = new Collector();
+        assertEquals(3, ring.drain(c, 3));
+        assertEquals(2, ring.size());
+    }
+
+    @Test
+    public void dropNewestKeepsExistingEntries() {
+        NotificationRingBuffer ring = new NotificationRingBuffer(
+                4, 16, NotificationRingBuffer.OverflowPolicy.DROP_NEWEST, 0);
+        for (int i = 0; i < 4; i++) assertTrue(offer(ring, i));
+        assertFalse(offer(ring, 4));
+        assertFalse(offer(ring, 5));
+
+        Collector c = new Collector();
+        ring.drain(c);
+        assertEquals(List.of(0, 1, 2, 3), c.firstBytes);
+        assertEquals(6, ring.getProducedCount());
+        assertEquals(4, ring.getConsumedCount());
+        assertEquals(2, ring.getDroppedCount());
+    }
+
+    @Test
+    public void dropOldestKeepsLatestEntries() {
+        NotificationRingBuffer ring = new NotificationRingBuffer(
+                4, 16, NotificationRingBuffer.OverflowPolicy.DROP_OLDEST, 0);
+        for (int i = 0; i < 6; i++) assertTrue(offer(ring, i));
+
+        Collector c = new Collector();
+        ring.drain(c);
+        assertEquals(List.of(2, 3, 4, 5), c.firstBytes);
+        assertEquals(2, ring.getDroppedCount());
+    }
+
+    @Test
+    public void blockGivesUpAfterTimeout() {
+        NotificationRingBuffer ring = new NotificationRingBuffer(
+                2, 16, NotificationRingBuffer.OverflowPolicy.BLOCK, 5_000_000L);
+        assertTrue(offer(ring, 0));
+        assertTrue(offer(ring, 1));
+        long start = System.nanoTime();
+        assertFalse(offer(ring, 2));
+        assertTrue(System.nanoTime() - start >= 5_000_000L);
+        assertEquals(1, ring.getDroppedCount());
+    }
+
+    @Test
+    public void oversizedValuesAreTruncated() {
+        NotificationRingBuffer ring = new NotificationRingBuffer(
+                2, 4, NotificationRingBuffer.OverflowPolicy.DROP_NEWEST, 0);
+        ring.offer(MSB, LSB, new byte[10], 0, 10, 0);
+        int[] len = new int[1];
+        ring.drain((msb, lsb, v, n, ts) -> len[0] = n);
+        assertEquals(4, len[0]);
+        assertEquals(1, ring.getTruncatedCount());
+    }
+
+    @Test
+    public void blockingProducerLosesNothingUnderConcurrency() throws Exception {
+        concurrentRun(NotificationRingBuffer.OverflowPolicy.BLOCK, true);
+    }
+
+    @Test
+    public void dropOldestStaysOrderedUnderConcurrency() throws Exception {
+        concurrentRun(NotificationRingBuffer.OverflowPolicy.DROP_OLDEST, false);
+    }
+
+    @Test
+    public void concurrentProducersAreNotLostOrTorn() throws Exception {
+        final int producers = 3;
+        final int perProducer = 50_000;
+        NotificationRingBuffer ring = new NotificationRingBuffer(64, 8,
+                NotificationRingBuffer.OverflowPolicy.BLOCK, 1_000_000_000L);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int id = p;
+            threads[p] = new Thread(() -> {
+                byte[] value = new byte[8];
+                for (int i = 0; i < perProducer; i++) {
+                    // Producer id and sequence number, twice, so torn entries are detectable
+                    int tag = (id << 24) | i;
+                    for (int b = 0; b < 8; b += 4) {
+                        value[b] = (byte) (tag >>> 24);
+                        value[b + 1] = (byte) (tag >>> 16);
+                        value[b + 2] = (byte) (tag >>> 8);
+                        value[b + 3] = (byte) tag;
+                    }
+                    ring.offer(MSB, LSB, value, 0, 8, tag);
+                }
+            });
+        }
+
+        int[] next = new int[producers];
+        long[] received = {0};
+        NotificationRingBuffer.Consumer consumer = (msb, lsb, v, len, ts) -> {
+            int a = ((v[0] & 0xFF) << 24) | ((v[1] & 0xFF) << 16) | ((v[2] & 0xFF) << 8) | (v[3] & 0xFF);
+            int b = ((v[4] & 0xFF) << 24) | ((v[5] & 0xFF) << 16) | ((v[6] & 0xFF) << 8) | (v[7] & 0xFF);
+            assertEquals("torn entry", a, b);
+            assertEquals(a, ts);
+            int id = a >>> 24;
+            // Each producer's entries arrive in its own order, none skipped
+            assertEquals("producer " + id, next[id], a & 0xFFFFFF);
+            next[id]++;
+            received[0]++;
+        };
+
+        for (Thread t : threads) t.start();
+        while (received[0] < (long) producers * perProducer) {
+            if (ring.drain(consumer, 32) == 0) Thread.yield();
+        }
+        for (Thread t : threads) t.join();
+
+        assertEquals(0, ring.getDroppedCount());
+        assertEquals(producers * perProducer, ring.getProducedCount());
+        assertEquals(0, ring.size());
+    }
+
+    private static void concurrentRun(NotificationRingBuffer.OverflowPolicy policy,
+                                      boolean expectLossless) throws Exception {
+        final int total = 200_000;
+        NotificationRingBuffer ring = new NotificationRingBuffer(64, 8, policy, 1_000_000_000L);
+        AtomicBoolean done = new AtomicBoolean();
+
+        Thread producer = new Thread(() -> {
+            byte[] value = new byte[8];
+            for (int i = 0; i < total; i++) {
+                // Sequence number in every byte pair so torn reads are detectable
+                for (int b = 0; b < 8; b += 4) {
+                    value[b] = (byte) (i >>> 24);
+                    value[b + 1] = (byte) (i >>> 16);
+                    value[b + 2] = (byte) (i >>> 8);
+                    value[b + 3] = (byte) i;
+                }
+                ring.offer(MSB, LSB, value, 0, 8, i);
+            }
+            done.set(true);
+        });
+
+        long[] last = {-1};
+        long[] received = {0};
+        NotificationRingBuffer.Consumer consumer = (msb, lsb, v, len, ts) -> {
+            int a = ((v[0] & 0xFF) << 24) | ((v[1] & 0xFF) << 16) | ((v[2] & 0xFF) << 8) | (v[3] & 0xFF);
+            int b = ((v[4] & 0xFF) << 24) | ((v[5] & 0xFF) << 16) | ((v[6] & 0xFF) << 8) | (v[7] & 0xFF);
+            assertEquals("torn entry", a, b);
+            assertEquals(a, ts);
+            assertTrue("out of order", a > last[0]);
+            last[0] = a;
+            received[0]++;
+        };
+
+        producer.start();
+        while (!done.get()) ring.drain(consumer, 32);
+        producer.join();
+        ring.drain(consumer);
+
+        assertEquals(total, ring.getProducedCount());
+        assertEquals(received[0], ring.getConsumedCount());
+        assertEquals(total, ring.getConsumedCount() + ring.getDroppedCount());
+        if (expectLossless) assertEquals(total, received[0]);
+    }
+}
@@ -0,0 +1,42 @@
+package com.hilfritz.blescanner.manager;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScanStartThrottleTest {
+
+    @Test
+    public void allowsUpToMaxStartsInWindow() {
+        ScanStartThrottle throttle = new ScanStartThrottle(5, 30_000);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(throttle.isAllowed(i * 1_000));
+            throttle.recordStart(i * 1_000);
+        }
+        assertFalse(throttle.isAllowed(5_000));
+    }
+
+    @Test
+    public void delayIsUntilOldestStartAgesOut() {
+        ScanStartThrottle throttle = new ScanStartThrottle(5, 30_000);
+        for (int i = 0; i < 5; i++) throttle.recordStart(i * 1_000);
+
+        assertEquals(25_000, throttle.delayUntilAllowed(5_000));
+        assertEquals(0, throttle.delayUntilAllowed(30_000));
+
+        // Next start pushes the window forward to the second-oldest start
+        throttle.recordStart(30_000);
+        assertEquals(1_000, throttle.delayUntilAllowed(30_000));
+    }
+
+    @Test
+    public void resetForgetsHistory() {
+        ScanStartThrottle throttle = new ScanStartThrottle(2, 30_000);
+        throttle.recordStart(0);
+        throttle.recordStart(1);
+        throttle.reset();
+        assertTrue(throttle.isAllowed(2));
+    }
+}
@@ -0,0 +1,106 @@
+package com.hilfritz.blescanner.utils;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AdvertisementParserTest {
+
+    // Flags, 16-bit UUIDs 180D/180F, complete name "HRM-1", TX power -8,
+    // manufacturer 0x004C payload 02 15, service data 180F -> 0x55
+    static final byte[] SAMPLE = {
+            0x02, 0x01, 0x06,
+            0x05, 0x03, 0x0D, 0x18, 0x0F, 0x18,
+            0x06, 0x09, 'H', 'R', 'M', '-', '1',
+            0x02, 0x0A, (byte) 0xF8,
+            0x05, (byte) 0xFF, 0x4C, 0x00, 0x02, 0x15,
+            0x04, 0x16, 0x0F, 0x18, 0x55,
+            0x00, 0x00, 0x00
+    };
+
+    @Test
+    public void parsesAllStructures() {
+        AdvertisementParser p = new AdvertisementParser();
+        assertTrue(p.parse(SAMPLE));
+
+        assertEquals(0x06, p.getFlags());
+        assertEquals(-8, p.getTxPower());
+        assertEquals("HRM-1", p.getName());
+        assertTrue(p.isNameComplete());
+        assertTrue(p.nameStartsWith("HRM"));
+        assertFalse(p.nameStartsWith("HRX"));
+
+        assertEquals(2, p.getServiceUuidCount());
+        assertEquals(0x180D, p.getServiceUuidShort(0));
+        assertTrue(p.hasServiceUuid16(0x180F));
+        assertFalse(p.hasServiceUuid16(0x1810));
+        UUID hr = UUID.fromString("0000180d-0000-1000-8000-00805f9b34fb");
+        assertEquals(hr.getMostSignificantBits(), p.getServiceUuidMsb(0));
+        assertEquals(hr.getLeastSignificantBits(), p.getServiceUuidLsb(0));
+
+        int m = p.findManufacturerData(0x004C);
+        assertEquals(0, m);
+        assertEquals(2, p.getManufacturerDataLength(m));
+        assertEquals(0x02, SAMPLE[p.getManufacturerDataOffset(m)]);
+
+        int sd = p.findServiceData16(0x180F);
+        assertEquals(0, sd);
+        assertEquals(1, p.getServiceDataLength(sd));
+        assertEquals(0x55, SAMPLE[p.getServiceDataOffset(sd)]);
+    }
+
+    @Test
+    public void parses128BitUuidsLittleEndian() {
+        UUID uuid = UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e");
+        byte[] data = new byte[18];
+        data[0] = 17;
+        data[1] = AdvertisementParser.AD_UUID128_COMPLETE;
+        long lsb = uuid.getLeastSignificantBits();
+        long msb = uuid.getMostSignificantBits();
+        for (int i = 0; i < 8; i++) {
+            data[2 + i] = (byte) (lsb >>> (8 * i));
+            data[10 + i] = (byte) (msb >>> (8 * i));
+        }
+
+        AdvertisementParser p = new AdvertisementParser();
+        assertTrue(p.parse(data));
+        assertEquals(1, p.getServiceUuidCount());
+        assertEquals(16, p.getServiceUuidWidth(0));
+        assertTrue(p.hasServiceUuid(msb, lsb));
+    }
+
+    @Test
+    public void keepsStructuresBeforeTruncation() {
+        byte[] data = {0x02, 0x01, 0x1A, 0x09, 0x09, 'a', 'b'};
+        AdvertisementParser p = new AdvertisementParser();
+        assertFalse(p.parse(data));
+        assertTrue(p.isTruncated());
+        assertEquals(0x1A, p.getFlags());
+        assertNull(p.getName());
+    }
+
+    @Test
+    public void reuseClearsPreviousResult() {
+        AdvertisementParser p = new AdvertisementParser();
+        p.parse(SAMPLE);
+        assertTrue(p.parse(new byte[]{0x02, 0x01, 0x04}));
+        assertEquals(0x04, p.getFlags());
+        assertEquals(AdvertisementParser.NO_TX_POWER, p.getTxPower());
+        assertEquals(0, p.getServiceUuidCount());
+        assertEquals(0, p.getManufacturerDataCount());
+        assertFalse(p.hasName());
+    }
+
+    @Test
+    public void handlesNullAndEmpty() {
+        AdvertisementParser p = new AdvertisementParser();
+        assertTrue(p.parse(null));
+        assertTrue(p.parse(new byte[0]));
+        assertEquals(AdvertisementParser.NO_FLAGS, p.getFlags());
+    }
+}
@@ -0,0 +1,68 @@
+package com.hilfritz.blescanner.utils;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AssignedNumbersTest {
+
+    private static final UUID HR_MEASUREMENT = UUID.fromString("00002a37-0000-1000-8000-00805f9b34fb");
+    private static final UUID VENDOR = UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e");
+
+    @Test
+    public void aliasRoundTripsThroughBaseUuid() {
+        assertEquals(0x2A37, AssignedNumbers.toAlias(HR_MEASUREMENT));
+        assertEquals(HR_MEASUREMENT, AssignedNumbers.fromAlias(0x2A37));
+        assertEquals(0xFEEDBEEF & 0x7FFFFFFF,
+                AssignedNumbers.toAlias(AssignedNumbers.fromAlias(0xFEEDBEEF & 0x7FFFFFFF)));
+        assertEquals(AssignedNumbers.NOT_SIG, AssignedNumbers.toAlias(VENDOR));
+        // Right alias position, wrong base
+        assertEquals(AssignedNumbers.NOT_SIG, AssignedNumbers.toAlias(
+                UUID.fromString("00002a37-0000-1000-8000-00805f9b34fc")));
+    }
+
+    @Test
+    public void resolvesEachKind() {
+        assertEquals("Heart Rate", AssignedNumbers.serviceName(0x180D));
+        assertEquals("Heart Rate Measurement", AssignedNumbers.characteristicName(HR_MEASUREMENT));
+        assertEquals("Client Characteristic Configuration", AssignedNumbers.descriptorName(0x2902));
+        assertEquals("Apple, Inc.", AssignedNumbers.companyName(0x004C));
+        // Kinds are separate tables
+        assertNull(AssignedNumbers.serviceName(0x2A37));
+        assertNull(AssignedNumbers.characteristicName(VENDOR));
+    }
+
+    @Test
+    public void loadsWholeResource() {
+        int[] sizes = AssignedNumbers.sizes();
+        assertTrue("services " + sizes[0], sizes[0] >= 40);
+        assertTrue("characteristics " + sizes[1], sizes[1] >= 150);
+        assertTrue("descriptors " + sizes[2], sizes[2] >= 10);
+        assertTrue("companies " + sizes[3], sizes[3] >= 20);
+    }
+
+    @Test
+    public void intTableGrowsPastInitialCapacity() {
+        AssignedNumbers.IntTable table = new AssignedNumbers.IntTable(2);
+        for (int i = 0; i < 1000; i++) table.put(0x2A00 + i, "n" + i);
+        table.put(0x2A00, "first");
+        assertEquals(1000, table.size());
+        assertEquals("first", table.get(0x2A00));
+        assertEquals("n999", table.get(0x2A00 + 999));
+        assertNull(table.get(0));
+    }
+
+    @Test
+    public void gattUtilsUsesRegistry() {
+        assertEquals("2A37", GattUtils.shortUuid(HR_MEASUREMENT));
+        assertEquals("CA9E", GattUtils.shortUuid(VENDOR));
+        assertEquals("Battery Service",
+                GattUtils.gattName(AssignedNumbers.fromAlias(0x180F), true));
+        assertEquals("Battery Level", GattUtils.gattName(AssignedNumbers.fromAlias(0x2A19), false));
+        assertNull(GattUtils.gattName(VENDOR, false));
+    }
+}
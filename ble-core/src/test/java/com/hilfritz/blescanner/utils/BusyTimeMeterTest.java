@@ -0,0 +1,51 @@
+package com.hilfritz.blescanner.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BusyTimeMeterTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void reportsBusyTimePerWindow() {
+        BusyTimeMeter meter = new BusyTimeMeter(1000 * MS);
+        // 10 messages of 20 ms spread over the first second
+        for (int i = 0; i < 10; i++) {
+            meter.begin(i * 100 * MS);
+            assertFalse(meter.end((i * 100 + 20) * MS));
+        }
+        assertEquals(0f, meter.getBusyMillisPerSecond(), 0f);
+
+        meter.begin(1000 * MS);
+        assertTrue(meter.end(1050 * MS));
+        assertEquals(11, meter.getSliceCount());
+        assertEquals(50 * MS, meter.getLongestSliceNanos());
+        // 250 ms busy over 1050 ms
+        assertEquals(250f * 1000 / 1050, meter.getBusyMillisPerSecond(), 0.01f);
+        assertEquals(250f / 1050, meter.getBusyFraction(), 1e-4f);
+
+        // Next window starts fresh
+        meter.begin(1100 * MS);
+        meter.end(1110 * MS);
+        meter.begin(2050 * MS);
+        assertTrue(meter.end(2051 * MS));
+        assertEquals(2, meter.getSliceCount());
+        assertEquals(10 * MS, meter.getLongestSliceNanos());
+        assertEquals(11f * 1000 / 1001, meter.getBusyMillisPerSecond(), 0.01f);
+    }
+
+    @Test
+    public void unmatchedEndIsIgnoredAndBusyIsCapped() {
+        BusyTimeMeter meter = new BusyTimeMeter(100 * MS);
+        assertFalse(meter.end(5 * MS));
+        // One message longer than the window
+        meter.begin(0);
+        assertTrue(meter.end(300 * MS));
+        assertEquals(1000f, meter.getBusyMillisPerSecond(), 0.01f);
+        assertEquals(1, meter.getSliceCount());
+    }
+}
@@ -0,0 +1,81 @@
+package com.hilfritz.blescanner.utils;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class GattUtilsTest {
+
+    private static final byte[] VALUE = {0x00, 0x0F, 0x7F, (byte) 0x80, (byte) 0xFF, 'A', 'z', ' '};
+
+    /** The original String.format implementation, kept as the reference. */
+    private static String formatHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) sb.append(String.format("%02X ", b));
+        return sb.toString().trim();
+    }
+
+    @Test
+    public void hexMatchesFormatterOutput() {
+        Random random = new Random(3);
+        for (int size : new int[]{1, 2, 20, 244, 512}) {
+            byte[] value = new byte[size];
+            random.nextBytes(value);
+            assertEquals(formatHex(value), GattUtils.bytesToHex(value));
+        }
+        assertEquals("00 0F 7F 80 FF 41 7A 20", GattUtils.bytesToHex(VALUE));
+    }
+
+    @Test
+    public void emptyAndNullKeepPlaceholder() {
+        assertEquals("(empty)", GattUtils.bytesToHex(null));
+        assertEquals("(empty)", GattUtils.bytesToHex(new byte[0]));
+        assertEquals("(empty)", GattUtils.bytesToAsciiSafe(null));
+        assertEquals("(empty)", GattUtils.bytesToAsciiSafe(VALUE, 3, 0));
+    }
+
+    @Test
+    public void offsetLengthOverloads() throws Exception {
+        assertEquals("7F 80 FF", GattUtils.bytesToHex(VALUE, 2, 3));
+        assertEquals("Az", GattUtils.bytesToAsciiSafe(VALUE, 5, 2));
+
+        char[] dst = new char[12];
+        dst[0] = '[';
+        int n = GattUtils.encodeHex(VALUE, 4, 2, dst, 1);
+        assertEquals(GattUtils.hexLength(2), n);
+        assertEquals("[FF 41", new String(dst, 0, 1 + n));
+
+        StringBuilder sb = new StringBuilder("x=");
+        GattUtils.appendHex(VALUE, 0, 2, sb).append(" / ");
+        GattUtils.appendAsciiSafe(VALUE, 4, 4, sb);
+        assertEquals("x=00 0F / .Az ", sb.toString());
+
+        StringWriter writer = new StringWriter();
+        GattUtils.appendHex(VALUE, 5, 2, writer);
+        assertEquals("41 7A", writer.toString());
+    }
+
+    @Test
+    public void asciiReplacesNonPrintable() {
+        assertEquals(".....Az ", GattUtils.bytesToAsciiSafe(VALUE));
+    }
+
+    @Test
+    public void hexDumpPadsLastLine() {
+        byte[] value = "Hello, GATT world".getBytes();
+        String dump = GattUtils.appendHexDump(value, 0, value.length, 8, new StringBuilder()).toString();
+        assertEquals(""
+                + "0000  48 65 6C 6C 6F 2C 20 47  |Hello, G|\n"
+                + "0008  41 54 54 20 77 6F 72 6C  |ATT worl|\n"
+                + "0010  64                       |d|\n", dump);
+        assertEquals(2, GattUtils.hexDump(new byte[32]).split("\n").length);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsRangeOutsideArray() {
+        GattUtils.bytesToHex(VALUE, 6, 3);
+    }
+}
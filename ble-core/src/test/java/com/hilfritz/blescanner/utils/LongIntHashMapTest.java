@@ -0,0 +1,101 @@
+package com.hilfritz.blescanner.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LongIntHashMapTest {
+
+    @Test
+    public void packParsesBothCasesAndSeparators() {
+        assertEquals(0xAABBCCDDEEFFL, MacAddresses.pack("AA:BB:CC:DD:EE:FF"));
+        assertEquals(0xAABBCCDDEEFFL, MacAddresses.pack("aa-bb-cc-dd-ee-ff"));
+        assertEquals(0L, MacAddresses.pack("00:00:00:00:00:00"));
+    }
+
+    @Test
+    public void packRejectsMalformedAddresses() {
+        assertEquals(MacAddresses.INVALID, MacAddresses.pack(null));
+        assertEquals(MacAddresses.INVALID, MacAddresses.pack("AA:BB:CC:DD:EE"));
+        assertEquals(MacAddresses.INVALID, MacAddresses.pack("AA:BB:CC:DD:EE:FG"));
+        assertEquals(MacAddresses.INVALID, MacAddresses.pack("AA.BB:CC:DD:EE:FF"));
+    }
+
+    @Test
+    public void formatIsInverseOfPack() {
+        assertEquals("AA:BB:CC:DD:EE:FF", MacAddresses.format(MacAddresses.pack("aa:bb:cc:dd:ee:ff")));
+        assertEquals("00:01:02:03:04:05", MacAddresses.format(0x000102030405L));
+        assertEquals(null, MacAddresses.format(MacAddresses.INVALID));
+    }
+
+    @Test
+    public void putGetReplace() {
+        LongIntHashMap map = new LongIntHashMap(4);
+        assertEquals(-1, map.get(42));
+        assertEquals(-1, map.put(42, 1));
+        assertEquals(1, map.put(42, 2));
+        assertEquals(2, map.get(42));
+        assertTrue(map.containsKey(42));
+        assertFalse(map.containsKey(43));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void matchesHashMapThroughResizes() {
+        Random random = new Random(7);
+        LongIntHashMap map = new LongIntHashMap(2);
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            // Narrow key range so that puts also hit existing keys
+            long key = random.nextInt(5_000) * 0x10000L;
+            map.put(key, i);
+            expected.put(key, i);
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Integer> e : expected.entrySet()) {
+            assertEquals((int) e.getValue(), map.get(e.getKey()));
+        }
+    }
+
+    @Test
+    public void removeKeepsProbeRunsReachable() {
+        Random random = new Random(11);
+        LongIntHashMap map = new LongIntHashMap(16);
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(2_000);
+            if (random.nextBoolean()) {
+                map.put(key, i);
+                expected.put(key, i);
+            } else {
+                Integer old = expected.remove(key);
+                assertEquals(old != null ? old : -1, map.remove(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (long key = 0; key < 2_000; key++) {
+            Integer v = expected.get(key);
+            assertEquals(v != null ? v : -1, map.get(key));
+        }
+    }
+
+    @Test
+    public void clearEmptiesTheMap() {
+        LongIntHashMap map = new LongIntHashMap(4);
+        for (int i = 0; i < 100; i++) map.put(i, i);
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(-1, map.get(5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeKeys() {
+        new LongIntHashMap(4).put(-5, 1);
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Regenerates ble-core's assigned_numbers.txt from a checkout of the Bluetooth SIG's public
+ * repository (https://bitbucket.org/bluetooth-SIG/public). Run from the project root:
+ *
+ *   java scripts/GenerateAssignedNumbers.java /path/to/public
+ *
+ * Names already in the file win, so hand-picked ones ("Battery Service" rather than the YAML's
+ * short form) survive; every id the YAML adds is appended under its SIG name.
+ */
+public class GenerateAssignedNumbers {
+
+    private static final Path RESOURCE = Paths.get(
+            "ble-core/src/main/resources/com/hilfritz/blescanner/utils/assigned_numbers.txt");
+
+    private static final char[] KINDS = {'S', 'C', 'D', 'M'};
+    private static final String[] YAML_FILES = {
+            "uuids/service_uuids.yaml",
+            "uuids/characteristic_uuids.yaml",
+            "uuids/descriptors.yaml",
+            "company_identifiers/company_identifiers.yaml",
+    };
+    private static final String[] LABELS = {
+            "services", "characteristics", "descriptors", "company identifiers",
+    };
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java scripts/GenerateAssignedNumbers.java <checkout of bluetooth-SIG/public>");
+            System.exit(2);
+        }
+        Path numbers = Paths.get(args[0], "assigned_numbers");
+        List<Map<Integer, String>> sources = new ArrayList<>();
+        for (String name : YAML_FILES) {
+            Path yaml = numbers.resolve(name);
+            if (!Files.isRegularFile(yaml)) {
+                System.err.println("Missing " + yaml);
+                System.exit(1);
+            }
+            sources.add(parseSigYaml(Files.readAllLines(yaml, StandardCharsets.UTF_8)));
+        }
+
+        List<String> merged = merge(Files.readAllLines(RESOURCE, StandardCharsets.UTF_8), sources);
+        Files.write(RESOURCE, (String.join("\n", merged) + "\n").getBytes(StandardCharsets.UTF_8));
+
+        int entries = 0;
+        for (String line : merged) {
+            if (line.length() > 1 && line.charAt(1) == ' ') entries++;
+        }
+        System.out.println("Wrote " + entries + " entries to " + RESOURCE);
+    }
+
+    /** Id to name from a SIG YAML list whose entries carry {@code uuid:} or {@code value:} plus {@code name:}. */
+    static Map<Integer, String> parseSigYaml(List<String> lines) {
+        // Sorted by id, first name per id wins
+        Map<Integer, String> entries = new TreeMap<>();
+        Integer id = null;
+        for (String raw : lines) {
+            String line = raw.trim();
+            if (line.startsWith("- ")) line = line.substring(2);
+            int colon = line.indexOf(':');
+            if (colon < 0) continue;
+            String key = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if (key.equals("uuid") || key.equals("value")) {
+                id = parseHex(value);
+            } else if (key.equals("name")) {
+                String name = unquote(value).trim();
+                if (id != null && !name.isEmpty()) entries.putIfAbsent(id, name);
+                id = null;
+            }
+        }
+        return entries;
+    }
+
+    private static Integer parseHex(String value) {
+        if (value.startsWith("0x") || value.startsWith("0X")) value = value.substring(2);
+        try {
+            return Integer.parseInt(value, 16);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.startsWith("'") && value.endsWith("'")) {
+            return value.substring(1, value.length() - 1).replace("''", "'");
+        }
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1).replace("\\\"", "\"");
+        }
+        return value;
+    }
+
+    /** The existing lines untouched, then one line per id they don't name yet, per kind. */
+    static List<String> merge(List<String> existing, List<Map<Integer, String>> sources) {
+        Set<String> known = new HashSet<>();
+        for (String line : existing) {
+            if (line.length() <= 3 || line.charAt(0) == '#' || line.charAt(1) != ' ') continue;
+            int end = line.indexOf(' ', 2);
+            Integer id = parseHex(end < 0 ? line.substring(2) : line.substring(2, end));
+            if (id != null) known.add(line.charAt(0) + ":" + id);
+        }
+
+        List<String> out = new ArrayList<>(existing);
+        while (!out.isEmpty() && out.get(out.size() - 1).trim().isEmpty()) {
+            out.remove(out.size() - 1);
+        }
+        for (int i = 0; i < KINDS.length; i++) {
+            List<String> added = new ArrayList<>();
+            for (Map.Entry<Integer, String> e : sources.get(i).entrySet()) {
+                if (known.contains(KINDS[i] + ":" + e.getKey())) continue;
+                added.add(KINDS[i] + " " + String.format("%04X", e.getKey()) + " " + e.getValue());
+            }
+            if (added.isEmpty()) continue;
+            out.add("");
+            out.add("# Generated from the SIG YAML (" + LABELS[i] + ")");
+            out.addAll(added);
+        }
+        return out;
+    }
+}
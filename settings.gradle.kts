@@ -21,3 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "BLEScanner"
 include(":app")
+include(":ble-core")
+include(":benchmarks")